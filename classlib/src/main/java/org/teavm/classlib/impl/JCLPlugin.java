@@ -23,6 +23,7 @@ import java.lang.invoke.MethodType;
 import java.util.ServiceLoader;
 import org.teavm.classlib.impl.lambda.LambdaMetafactorySubstitutor;
 import org.teavm.classlib.impl.unicode.CLDRReader;
+import org.teavm.classlib.java.lang.NativeStringTransformer;
 import org.teavm.classlib.java.lang.reflect.AnnotationDependencyListener;
 import org.teavm.backend.javascript.TeaVMJavaScriptHost;
 import org.teavm.model.MethodReference;
@@ -40,6 +41,9 @@ public class JCLPlugin implements TeaVMPlugin {
         TeaVMJavaScriptHost jsExtension = host.getExtension(TeaVMJavaScriptHost.class);
         if (jsExtension != null) {
             jsExtension.add(loadServicesMethod, serviceLoaderSupp);
+            if (jsExtension.isNativeStrings()) {
+                host.add(new NativeStringTransformer());
+            }
         }
 
         JavacSupport javacSupport = new JavacSupport();
@@ -73,9 +73,9 @@ public class LambdaMetafactorySubstitutor implements BootstrapMethodSubstitutor
         }
 
         ValueEmitter result = invoke(pe, implMethod, passedArguments);
-        if (result != null) {
+        ValueType expectedResult = instantiatedMethodType[instantiatedMethodType.length - 1];
+        if (result != null && expectedResult != ValueType.VOID) {
             ValueType actualResult = implementorSignature[implementorSignature.length - 1];
-            ValueType expectedResult = instantiatedMethodType[instantiatedMethodType.length - 1];
             tryConvertArgument(result, actualResult, expectedResult).returnValue();
         } else {
             pe.exit();
@@ -133,7 +133,7 @@ public class LambdaMetafactorySubstitutor implements BootstrapMethodSubstitutor
                 return arg;
             }
             arg = tryConvertArgument(arg, from, ValueType.primitive(toType));
-            return arg.getProgramEmitter().invoke(primitiveClass, "valueOf", ValueType.primitive(toType), arg);
+            return arg.getProgramEmitter().invoke(primitiveClass, "valueOf", ValueType.object(primitiveClass), arg);
         } else if (from instanceof ValueType.Object && to instanceof ValueType.Primitive) {
             String primitiveClass = ((ValueType.Object) from).getClassName();
             PrimitiveType fromType = getWrappedPrimitive(primitiveClass);
@@ -34,8 +34,8 @@ public class LongNativeGenerator implements Generator {
                         .append(context.getParameterName(2)).append(");").softNewLine();
                 break;
             case "hashCode":
-                writer.append("return ").append(context.getParameterName(1)).append(".hi ^ ")
-                        .append(context.getParameterName(1)).append(".lo;").softNewLine();
+                writer.append("return Long_hashCode(").append(context.getParameterName(1)).append(");")
+                        .softNewLine();
                 break;
         }
     }
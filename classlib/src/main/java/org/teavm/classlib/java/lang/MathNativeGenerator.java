@@ -28,9 +28,22 @@ import org.teavm.model.MethodReference;
 public class MathNativeGenerator implements Generator {
     @Override
     public void generate(GeneratorContext context, SourceWriter writer, MethodReference methodRef) throws IOException {
+        if (methodRef.getName().equals("copySign")) {
+            copySign(context, writer);
+            return;
+        }
         function(context, writer, "Math." + methodRef.getName(), methodRef.parameterCount());
     }
 
+    private void copySign(GeneratorContext context, SourceWriter writer) throws IOException {
+        String magnitude = context.getParameterName(1);
+        String sign = context.getParameterName(2);
+        writer.append("return (").append(sign).ws().append("<").ws().append("0").ws().append("||").ws()
+                .append("1").ws().append("/").ws().append(sign).ws().append("<").ws().append("0").ws()
+                .append("?").ws().append("-1").ws().append(":").ws().append("1)").ws().append("*").ws()
+                .append("Math.abs(").append(magnitude).append(");").softNewLine();
+    }
+
     private void function(GeneratorContext context, SourceWriter writer, String name, int paramCount)
             throws IOException {
         writer.append("return ").append(name).append("(");
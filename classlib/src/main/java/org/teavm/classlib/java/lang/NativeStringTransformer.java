@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.lang;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.teavm.backend.javascript.spi.GeneratedBy;
+import org.teavm.dependency.PluggableDependency;
+import org.teavm.diagnostics.Diagnostics;
+import org.teavm.model.AnnotationHolder;
+import org.teavm.model.AnnotationValue;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ClassHolderTransformer;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.ValueType;
+
+/**
+ * <p>Turns methods of {@link TString} that access representation of a string into native methods
+ * generated by {@link StringNativeGenerator}. Installed when the JavaScript backend represents strings
+ * by native JavaScript strings.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class NativeStringTransformer implements ClassHolderTransformer {
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList("initWithChars", "initWithCharArray",
+            "initWithString", "length", "charAtUnchecked", "copyChars", "regionEquals", "equalChars",
+            "indexOfChar", "lastIndexOfChar", "indexOfString", "lastIndexOfString", "substringUnchecked",
+            "concatWith", "replaceChars", "computeHashCode"));
+
+    @Override
+    public void transformClass(ClassHolder cls, ClassReaderSource innerSource, Diagnostics diagnostics) {
+        if (!cls.getName().equals("java.lang.String")) {
+            return;
+        }
+        for (MethodHolder method : cls.getMethods()) {
+            if (!METHODS.contains(method.getName()) || method.hasModifier(ElementModifier.STATIC)) {
+                continue;
+            }
+            method.setProgram(null);
+            method.getModifiers().add(ElementModifier.NATIVE);
+            AnnotationHolder annot = new AnnotationHolder(GeneratedBy.class.getName());
+            annot.getValues().put("value", new AnnotationValue(ValueType.parse(StringNativeGenerator.class)));
+            method.getAnnotations().add(annot);
+            annot = new AnnotationHolder(PluggableDependency.class.getName());
+            annot.getValues().put("value", new AnnotationValue(ValueType.parse(StringNativeGenerator.class)));
+            method.getAnnotations().add(annot);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.lang;
+
+import java.io.IOException;
+import org.teavm.backend.javascript.codegen.SourceWriter;
+import org.teavm.backend.javascript.spi.Generator;
+import org.teavm.backend.javascript.spi.GeneratorContext;
+import org.teavm.dependency.DependencyAgent;
+import org.teavm.dependency.DependencyPlugin;
+import org.teavm.dependency.MethodDependency;
+import org.teavm.model.CallLocation;
+import org.teavm.model.FieldReference;
+import org.teavm.model.MethodReference;
+
+/**
+ * <p>Generates methods of {@link TString} that access representation of a string, when the JavaScript backend
+ * stores contents of a string in a native JavaScript string. Callers of these methods check all bounds,
+ * so that generated code does not.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class StringNativeGenerator implements Generator, DependencyPlugin {
+    private static final FieldReference NATIVE_STRING = new FieldReference("java.lang.String", "nativeString");
+
+    @Override
+    public void methodReached(DependencyAgent agent, MethodDependency method, CallLocation location) {
+        agent.linkField(NATIVE_STRING, location);
+        switch (method.getReference().getName()) {
+            case "substringUnchecked":
+            case "concatWith":
+            case "replaceChars":
+                method.getResult().propagate(agent.getType("java.lang.String"));
+                break;
+        }
+    }
+
+    @Override
+    public void generate(GeneratorContext context, SourceWriter writer, MethodReference methodRef) throws IOException {
+        String self = context.getParameterName(0);
+        switch (methodRef.getName()) {
+            case "initWithChars":
+                assign(writer, self);
+                writer.append("$rt_charsToString(").append(context.getParameterName(1)).append(".data,")
+                        .ws().append(context.getParameterName(2)).append(",").ws()
+                        .append(context.getParameterName(3)).append(");").softNewLine();
+                break;
+            case "initWithCharArray": {
+                String array = context.getParameterName(1);
+                assign(writer, self);
+                writer.append("$rt_charsToString(").append(array).append(".data,").ws().append("0,").ws()
+                        .append(array).append(".data.length);").softNewLine();
+                break;
+            }
+            case "initWithString":
+                assign(writer, self);
+                nativeString(writer, context.getParameterName(1)).append(";").softNewLine();
+                break;
+            case "length":
+                writer.append("return ");
+                nativeString(writer, self).append(".length;").softNewLine();
+                break;
+            case "charAtUnchecked":
+                writer.append("return ");
+                nativeString(writer, self).append(".charCodeAt(").append(context.getParameterName(1))
+                        .append(");").softNewLine();
+                break;
+            case "copyChars":
+                generateCopyChars(context, writer);
+                break;
+            case "regionEquals":
+                generateRegionEquals(context, writer);
+                break;
+            case "equalChars":
+                writer.append("return ");
+                nativeString(writer, self).ws().append("===").ws();
+                nativeString(writer, context.getParameterName(1)).ws().append("?").ws().append("1").ws()
+                        .append(":").ws().append("0;").softNewLine();
+                break;
+            case "indexOfChar":
+            case "lastIndexOfChar":
+                writer.append("return ");
+                nativeString(writer, self).append(".").append(methodRef.getName().startsWith("last")
+                        ? "lastIndexOf" : "indexOf").append("(String.fromCharCode(")
+                        .append(context.getParameterName(1)).append("),").ws()
+                        .append(context.getParameterName(2)).append(");").softNewLine();
+                break;
+            case "indexOfString":
+            case "lastIndexOfString":
+                writer.append("return ");
+                nativeString(writer, self).append(".").append(methodRef.getName().startsWith("last")
+                        ? "lastIndexOf" : "indexOf").append("(");
+                nativeString(writer, context.getParameterName(1)).append(",").ws()
+                        .append(context.getParameterName(2)).append(");").softNewLine();
+                break;
+            case "substringUnchecked":
+                writer.append("return $rt_str(");
+                nativeString(writer, self).append(".substring(").append(context.getParameterName(1))
+                        .append(",").ws().append(context.getParameterName(2)).append("));").softNewLine();
+                break;
+            case "concatWith":
+                writer.append("return $rt_str(");
+                nativeString(writer, self).ws().append("+").ws();
+                nativeString(writer, context.getParameterName(1)).append(");").softNewLine();
+                break;
+            case "replaceChars":
+                writer.append("return $rt_str(");
+                nativeString(writer, self).append(".split(String.fromCharCode(")
+                        .append(context.getParameterName(1)).append(")).join(String.fromCharCode(")
+                        .append(context.getParameterName(2)).append(")));").softNewLine();
+                break;
+            case "computeHashCode":
+                generateHashCode(context, writer);
+                break;
+        }
+    }
+
+    private void generateCopyChars(GeneratorContext context, SourceWriter writer) throws IOException {
+        String srcBegin = context.getParameterName(1);
+        String srcEnd = context.getParameterName(2);
+        String dst = context.getParameterName(3);
+        String dstBegin = context.getParameterName(4);
+        writer.append("var text").ws().append("=").ws();
+        nativeString(writer, context.getParameterName(0)).append(";").softNewLine();
+        writer.append("var data").ws().append("=").ws().append(dst).append(".data;").softNewLine();
+        writer.append("while").ws().append("(").append(srcBegin).ws().append("<").ws().append(srcEnd)
+                .append(")").ws().append("{").indent().softNewLine();
+        writer.append("data[").append(dstBegin).append("++]").ws().append("=").ws().append("text.charCodeAt(")
+                .append(srcBegin).append("++);").softNewLine();
+        writer.outdent().append("}").softNewLine();
+    }
+
+    private void generateRegionEquals(GeneratorContext context, SourceWriter writer) throws IOException {
+        String toffset = context.getParameterName(1);
+        String ooffset = context.getParameterName(3);
+        String len = context.getParameterName(4);
+        writer.append("return ");
+        nativeString(writer, context.getParameterName(0)).append(".substring(").append(toffset).append(",")
+                .ws().append(toffset).ws().append("+").ws().append(len).append(")").ws().append("===").ws();
+        nativeString(writer, context.getParameterName(2)).append(".substring(").append(ooffset).append(",")
+                .ws().append(ooffset).ws().append("+").ws().append(len).append(")").ws().append("?").ws()
+                .append("1").ws().append(":").ws().append("0;").softNewLine();
+    }
+
+    private void generateHashCode(GeneratorContext context, SourceWriter writer) throws IOException {
+        writer.append("var text").ws().append("=").ws();
+        nativeString(writer, context.getParameterName(0)).append(";").softNewLine();
+        writer.append("var hash").ws().append("=").ws().append("0;").softNewLine();
+        writer.append("for").ws().append("(var i").ws().append("=").ws().append("0;").ws().append("i")
+                .ws().append("<").ws().append("text.length;").ws().append("i").ws().append("=").ws()
+                .append("(i").ws().append("+").ws().append("1)").ws().append("|").ws().append("0)").ws()
+                .append("{").indent().softNewLine();
+        writer.append("hash").ws().append("=").ws().append("(31").ws().append("*").ws().append("hash")
+                .ws().append("+").ws().append("text.charCodeAt(i))").ws().append("|").ws().append("0;")
+                .softNewLine();
+        writer.outdent().append("}").softNewLine();
+        writer.append("return hash;").softNewLine();
+    }
+
+    private void assign(SourceWriter writer, String instance) throws IOException {
+        nativeString(writer, instance).ws().append("=").ws();
+    }
+
+    private SourceWriter nativeString(SourceWriter writer, String instance) throws IOException {
+        return writer.append(instance).append(".").appendField(NATIVE_STRING);
+    }
+}
@@ -152,6 +152,16 @@ class TAbstractStringBuilder extends TObject implements TSerializable, TCharSequ
     }
 
     protected TAbstractStringBuilder insert(int target, long value, int radix) {
+        if (value == Long.MIN_VALUE) {
+            // can't negate MIN_VALUE, so insert all digits except for the last one, then the last one
+            int lastDigit = (int) -(value % radix);
+            int oldLength = length;
+            insert(target, value / radix, radix);
+            target += length - oldLength;
+            insertSpace(target, target + 1);
+            buffer[target] = TCharacter.forDigit(lastDigit, radix);
+            return this;
+        }
         boolean positive = true;
         if (value < 0) {
             positive = false;
@@ -15,6 +15,8 @@
  */
 package org.teavm.classlib.java.lang;
 
+import org.teavm.classlib.java.util.stream.TIntStream;
+
 /**
  *
  * @author Alexey Andreev
@@ -26,6 +28,10 @@ public interface TCharSequence {
 
     TCharSequence subSequence(int start, int end);
 
+    default TIntStream chars() {
+        return TIntStream.range(0, length()).map(this::charAt);
+    }
+
     @Override
     String toString();
 }
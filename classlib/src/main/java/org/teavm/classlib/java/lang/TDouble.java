@@ -15,6 +15,8 @@
  */
 package org.teavm.classlib.java.lang;
 
+import org.teavm.interop.Import;
+import org.teavm.interop.Unmanaged;
 import org.teavm.jso.JSBody;
 
 public class TDouble extends TNumber implements TComparable<TDouble> {
@@ -220,12 +222,17 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
     }
 
     @JSBody(params = "v", script = "return isNaN(v);")
+    @Import(module = "runtime", name = "isNaN")
+    @Unmanaged
     public static native boolean isNaN(double v);
 
     @JSBody(params = {}, script = "return NaN;")
+    @Import(module = "runtime", name = "getNaN")
     private static native double getNaN();
 
-    @JSBody(params = "v", script = "return !isFinite(v);")
+    @JSBody(params = "v", script = "return !isFinite(v) && !isNaN(v);")
+    @Import(module = "runtime", name = "isInfinite")
+    @Unmanaged
     public static native boolean isInfinite(double v);
 
     public static long doubleToRawLongBits(double value) {
@@ -253,7 +260,7 @@ public class TDouble extends TNumber implements TComparable<TDouble> {
         } else {
             doubleMantissa = abs * 0x1p1022 * binaryExponent(negExp - 1022);
         }
-        long mantissa = (long) (doubleMantissa + 0.5) & 0xFFFFFFFFFFFFFL;
+        long mantissa = (long) doubleMantissa & 0xFFFFFFFFFFFFFL;
         return mantissa | ((exp + 1023L) << 52) | (value < 0 || 1 / value == NEGATIVE_INFINITY ? (1L << 63) : 0);
     }
 
@@ -16,6 +16,7 @@
 package org.teavm.classlib.java.lang;
 
 import org.teavm.interop.Import;
+import org.teavm.interop.Unmanaged;
 import org.teavm.jso.JSBody;
 
 public class TFloat extends TNumber implements TComparable<TFloat> {
@@ -91,14 +92,16 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
 
     @JSBody(params = "v", script = "return isNaN(v);")
     @Import(module = "runtime", name = "isNaN")
+    @Unmanaged
     public static native boolean isNaN(float v);
 
     public static boolean isInfinite(float v) {
-        return !isFinite(v);
+        return !isFinite(v) && !isNaN(v);
     }
 
     @JSBody(params = "v", script = "return isFinite(v);")
     @Import(module = "runtime", name = "isFinite")
+    @Unmanaged
     private static native boolean isFinite(float v);
 
     @JSBody(params = {}, script = "return NaN;")
@@ -231,7 +234,7 @@ public class TFloat extends TNumber implements TComparable<TFloat> {
     }
 
     public static int compare(float f1, float f2) {
-        return f1 > f2 ? 1 : f2 < f1 ? -1 : 0;
+        return f1 > f2 ? 1 : f1 < f2 ? -1 : 0;
     }
 
     @Override
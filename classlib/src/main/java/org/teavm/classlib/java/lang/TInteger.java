@@ -248,6 +248,18 @@ public class TInteger extends TNumber implements TComparable<TInteger> {
         return x > y ? 1 : x < y ? -1 : 0;
     }
 
+    public static int sum(int a, int b) {
+        return a + b;
+    }
+
+    public static int max(int a, int b) {
+        return a > b ? a : b;
+    }
+
+    public static int min(int a, int b) {
+        return a < b ? a : b;
+    }
+
     public static int numberOfLeadingZeros(int i) {
         if (i == 0) {
             return SIZE;
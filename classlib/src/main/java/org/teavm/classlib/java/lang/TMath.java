@@ -17,6 +17,7 @@ package org.teavm.classlib.java.lang;
 
 import org.teavm.backend.javascript.spi.GeneratedBy;
 import org.teavm.interop.Import;
+import org.teavm.interop.Unmanaged;
 
 public final class TMath extends TObject {
     public static final double E = 2.71828182845904523536;
@@ -71,6 +72,7 @@ public final class TMath extends TObject {
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "sqrt")
+    @Unmanaged
     public static native double sqrt(double a);
 
     public static double cbrt(double a) {
@@ -84,10 +86,12 @@ public final class TMath extends TObject {
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "ceil")
+    @Unmanaged
     public static native double ceil(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
     @Import(module = "math", name = "floor")
+    @Unmanaged
     public static native double floor(double a);
 
     @GeneratedBy(MathNativeGenerator.class)
@@ -130,21 +134,25 @@ public final class TMath extends TObject {
         return a > b ? a : b;
     }
 
-    public static double min(double a, double b) {
-        return a < b ? a : b;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "math", name = "min")
+    @Unmanaged
+    public static native double min(double a, double b);
 
-    public static double max(double a, double b) {
-        return a > b ? a : b;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "math", name = "max")
+    @Unmanaged
+    public static native double max(double a, double b);
 
-    public static float min(float a, float b) {
-        return a < b ? a : b;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "math", name = "min")
+    @Unmanaged
+    public static native float min(float a, float b);
 
-    public static float max(float a, float b) {
-        return a > b ? a : b;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "math", name = "max")
+    @Unmanaged
+    public static native float max(float a, float b);
 
     public static int abs(int n) {
         return n > 0 ? n : -n;
@@ -154,13 +162,15 @@ public final class TMath extends TObject {
         return n > 0 ? n : -n;
     }
 
-    public static float abs(float n) {
-        return n > 0 ? n : -n;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "math", name = "abs")
+    @Unmanaged
+    public static native float abs(float n);
 
-    public static double abs(double n) {
-        return n > 0 ? n : -n;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "math", name = "abs")
+    @Unmanaged
+    public static native double abs(double n);
 
     public static double ulp(double d) {
         return pow(2, getExponent(d) - 52);
@@ -205,19 +215,15 @@ public final class TMath extends TObject {
         return log(x + 1);
     }
 
-    public static float copySign(float magnitude, float sign) {
-        if (sign == 0 || sign == -0) {
-            return sign;
-        }
-        return (sign > 0) == (magnitude > 0) ? magnitude : -magnitude;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "runtime", name = "copySign")
+    @Unmanaged
+    public static native float copySign(float magnitude, float sign);
 
-    public static double copySign(double magnitude, double sign) {
-        if (sign == 0 || sign == -0) {
-            return sign;
-        }
-        return (sign > 0) == (magnitude > 0) ? magnitude : -magnitude;
-    }
+    @GeneratedBy(MathNativeGenerator.class)
+    @Import(module = "runtime", name = "copySign")
+    @Unmanaged
+    public static native double copySign(double magnitude, double sign);
 
     public static int getExponent(double d) {
         d = abs(d);
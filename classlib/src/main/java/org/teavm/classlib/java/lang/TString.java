@@ -24,6 +24,7 @@ import org.teavm.classlib.java.nio.charset.impl.TUTF8Charset;
 import org.teavm.classlib.java.util.TArrays;
 import org.teavm.classlib.java.util.TComparator;
 import org.teavm.classlib.java.util.THashMap;
+import org.teavm.classlib.java.util.TLinkedHashMap;
 import org.teavm.classlib.java.util.TMap;
 import org.teavm.classlib.java.util.regex.TPattern;
 
@@ -35,28 +36,25 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     public static final TComparator<TString> CASE_INSENSITIVE_ORDER = (o1, o2) -> o1.compareToIgnoreCase(o2);
     private char[] characters;
     private transient int hashCode;
+    private Object nativeString;
     private static TMap<TString, TString> pool = new THashMap<>();
+    private static final int PATTERN_CACHE_SIZE = 32;
+    private static TMap<String, TPattern> patternCache;
 
     public TString() {
-        this.characters = new char[0];
+        initWithCharArray(new char[0]);
     }
 
     public TString(TString other) {
-        characters = other.characters;
+        initWithString(other);
     }
 
     public TString(char[] characters) {
-        this.characters = new char[characters.length];
-        for (int i = 0; i < characters.length; ++i) {
-            this.characters[i] = characters[i];
-        }
+        initWithChars(characters, 0, characters.length);
     }
 
     public TString(char[] value, int offset, int count) {
-        this.characters = new char[count];
-        for (int i = 0; i < count; ++i) {
-            this.characters[i] = value[i + offset];
-        }
+        initWithChars(value, offset, count);
     }
 
     public TString(byte[] bytes, int offset, int length, TString charsetName) throws TUnsupportedEncodingException {
@@ -84,29 +82,31 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public TString(int[] codePoints, int offset, int count) {
-        characters = new char[count * 2];
+        char[] chars = new char[count * 2];
         int charCount = 0;
         for (int i = 0; i < count; ++i) {
             int codePoint = codePoints[offset++];
             if (codePoint >= TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
-                characters[charCount++] = TCharacter.highSurrogate(codePoint);
-                characters[charCount++] = TCharacter.lowSurrogate(codePoint);
+                chars[charCount++] = TCharacter.highSurrogate(codePoint);
+                chars[charCount++] = TCharacter.lowSurrogate(codePoint);
             } else {
-                characters[charCount++] = (char) codePoint;
+                chars[charCount++] = (char) codePoint;
             }
         }
-        if (charCount < characters.length) {
-            characters = TArrays.copyOf(characters, charCount);
+        if (charCount < chars.length) {
+            chars = TArrays.copyOf(chars, charCount);
         }
+        initWithCharArray(chars);
     }
 
     private void initWithBytes(byte[] bytes, int offset, int length, TCharset charset) {
         TCharBuffer buffer = charset.decode(TByteBuffer.wrap(bytes, offset, length));
         if (buffer.hasArray() && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
-            characters = buffer.array();
+            initWithCharArray(buffer.array());
         } else {
-            characters = new char[buffer.remaining()];
-            buffer.get(characters);
+            char[] chars = new char[buffer.remaining()];
+            buffer.get(chars);
+            initWithCharArray(chars);
         }
     }
 
@@ -116,10 +116,10 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
 
     @Override
     public char charAt(int index) {
-        if (index < 0 || index >= characters.length) {
+        if (index < 0 || index >= length()) {
             throw new TStringIndexOutOfBoundsException();
         }
-        return characters[index];
+        return charAtUnchecked(index);
     }
 
     public int codePointAt(int index) {
@@ -138,13 +138,8 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         return TCharacter.offsetByCodePoints(this, index, codePointOffset);
     }
 
-    @Override
-    public int length() {
-        return characters.length;
-    }
-
     public boolean isEmpty() {
-        return characters.length == 0;
+        return length() == 0;
     }
 
     public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
@@ -152,17 +147,15 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
                 || dstBegin + (srcEnd - srcBegin) > dst.length) {
             throw new TIndexOutOfBoundsException();
         }
-        while (srcBegin < srcEnd) {
-            dst[dstBegin++] = charAt(srcBegin++);
-        }
+        copyChars(srcBegin, srcEnd, dst, dstBegin);
     }
 
     public boolean contentEquals(TStringBuffer buffer) {
-        if (characters.length != buffer.length()) {
+        if (length() != buffer.length()) {
             return false;
         }
-        for (int i = 0; i < characters.length; ++i) {
-            if (characters[i] != buffer.charAt(i)) {
+        for (int i = 0; i < buffer.length(); ++i) {
+            if (charAtUnchecked(i) != buffer.charAt(i)) {
                 return false;
             }
         }
@@ -173,11 +166,11 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (this == charSeq) {
             return true;
         }
-        if (characters.length != charSeq.length()) {
+        if (length() != charSeq.length()) {
             return false;
         }
-        for (int i = 0; i < characters.length; ++i) {
-            if (characters[i] != charSeq.charAt(i)) {
+        for (int i = 0; i < charSeq.length(); ++i) {
+            if (charAtUnchecked(i) != charSeq.charAt(i)) {
                 return false;
             }
         }
@@ -191,8 +184,8 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         }
         int l = TMath.min(length(), anotherString.length());
         for (int i = 0; i < l; ++i) {
-            char a = charAt(i);
-            char b = anotherString.charAt(i);
+            char a = charAtUnchecked(i);
+            char b = anotherString.charAtUnchecked(i);
             if (a - b != 0) {
                 return a - b;
             }
@@ -216,15 +209,10 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public boolean startsWith(TString prefix, int toffset) {
-        if (toffset + prefix.length() > length()) {
+        if (toffset < 0 || toffset + prefix.length() > length()) {
             return false;
         }
-        for (int i = 0; i < prefix.length(); ++i) {
-            if (prefix.charAt(i) != charAt(toffset++)) {
-                return false;
-            }
-        }
-        return true;
+        return regionEquals(toffset, prefix, 0, prefix.length());
     }
 
     public boolean startsWith(TString prefix) {
@@ -256,12 +244,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (toffset < 0 || ooffset < 0 || toffset + len > length() || ooffset + len > other.length()) {
             return false;
         }
-        for (int i = 0; i < len; ++i) {
-            if (charAt(toffset++) != other.charAt(ooffset++)) {
-                return false;
-            }
-        }
-        return true;
+        return len <= 0 || regionEquals(toffset, other, ooffset, len);
     }
 
     public boolean endsWith(TString suffix) {
@@ -271,29 +254,18 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (suffix.length() > length()) {
             return false;
         }
-        int j = 0;
-        for (int i = length() - suffix.length(); i < length(); ++i) {
-            if (charAt(i) != suffix.charAt(j++)) {
-                return false;
-            }
-        }
-        return true;
+        return regionEquals(length() - suffix.length(), suffix, 0, suffix.length());
     }
 
     public int indexOf(int ch, int fromIndex) {
+        fromIndex = TMath.max(fromIndex, 0);
         if (ch < TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
-            char bmpChar = (char) ch;
-            for (int i = fromIndex; i < characters.length; ++i) {
-                if (characters[i] == bmpChar) {
-                    return i;
-                }
-            }
-            return -1;
+            return indexOfChar((char) ch, fromIndex);
         } else {
             char hi = TCharacter.highSurrogate(ch);
             char lo = TCharacter.lowSurrogate(ch);
-            for (int i = fromIndex; i < characters.length - 1; ++i) {
-                if (characters[i] == hi && characters[i + 1] == lo) {
+            for (int i = fromIndex; i < length() - 1; ++i) {
+                if (charAtUnchecked(i) == hi && charAtUnchecked(i + 1) == lo) {
                     return i;
                 }
             }
@@ -306,19 +278,14 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public int lastIndexOf(int ch, int fromIndex) {
+        fromIndex = TMath.min(fromIndex, length() - 1);
         if (ch < TCharacter.MIN_SUPPLEMENTARY_CODE_POINT) {
-            char bmpChar = (char) ch;
-            for (int i = fromIndex; i >= 0; --i) {
-                if (characters[i] == bmpChar) {
-                    return i;
-                }
-            }
-            return -1;
+            return fromIndex >= 0 ? lastIndexOfChar((char) ch, fromIndex) : -1;
         } else {
             char hi = TCharacter.highSurrogate(ch);
             char lo = TCharacter.lowSurrogate(ch);
             for (int i = fromIndex; i >= 1; --i) {
-                if (characters[i] == lo && characters[i - 1] == hi) {
+                if (charAtUnchecked(i) == lo && charAtUnchecked(i - 1) == hi) {
                     return i - 1;
                 }
             }
@@ -331,17 +298,8 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public int indexOf(TString str, int fromIndex) {
-        int toIndex = length() - str.length();
-        outer:
-        for (int i = fromIndex; i <= toIndex; ++i) {
-            for (int j = 0; j < str.length(); ++j) {
-                if (charAt(i + j) != str.charAt(j)) {
-                    continue outer;
-                }
-            }
-            return i;
-        }
-        return -1;
+        fromIndex = TMath.min(TMath.max(fromIndex, 0), length());
+        return indexOfString(str, fromIndex);
     }
 
     public int indexOf(TString str) {
@@ -350,16 +308,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
 
     public int lastIndexOf(TString str, int fromIndex) {
         fromIndex = Math.min(fromIndex, length() - str.length());
-        outer:
-        for (int i = fromIndex; i >= 0; --i) {
-            for (int j = 0; j < str.length(); ++j) {
-                if (charAt(i + j) != str.charAt(j)) {
-                    continue outer;
-                }
-            }
-            return i;
-        }
-        return -1;
+        return fromIndex >= 0 ? lastIndexOfString(str, fromIndex) : -1;
     }
 
     public int lastIndexOf(TString str) {
@@ -367,10 +316,10 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public TString substring(int beginIndex, int endIndex) {
-        if (beginIndex > endIndex) {
+        if (beginIndex < 0 || beginIndex > endIndex || endIndex > length()) {
             throw new TIndexOutOfBoundsException();
         }
-        return new TString(characters, beginIndex, endIndex - beginIndex);
+        return substringUnchecked(beginIndex, endIndex);
     }
 
     public TString substring(int beginIndex) {
@@ -386,26 +335,14 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (str.isEmpty()) {
             return this;
         }
-        char[] buffer = new char[length() + str.length()];
-        int index = 0;
-        for (int i = 0; i < length(); ++i) {
-            buffer[index++] = charAt(i);
-        }
-        for (int i = 0; i < str.length(); ++i) {
-            buffer[index++] = str.charAt(i);
-        }
-        return new TString(buffer);
+        return concatWith(str);
     }
 
     public TString replace(char oldChar, char newChar) {
         if (oldChar == newChar) {
             return this;
         }
-        char[] buffer = new char[length()];
-        for (int i = 0; i < length(); ++i) {
-            buffer[i] = charAt(i) == oldChar ? newChar : charAt(i);
-        }
-        return new TString(buffer);
+        return replaceChars(oldChar, newChar);
     }
 
     public boolean contains(TCharSequence s) {
@@ -458,10 +395,8 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public char[] toCharArray() {
-        char[] array = new char[characters.length];
-        for (int i = 0; i < array.length; ++i) {
-            array[i] = characters[i];
-        }
+        char[] array = new char[length()];
+        copyChars(0, array.length, array, 0);
         return array;
     }
 
@@ -517,16 +452,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (!(other instanceof TString)) {
             return false;
         }
-        TString str = (TString) other;
-        if (str.length() != length()) {
-            return false;
-        }
-        for (int i = 0; i < str.length(); ++i) {
-            if (charAt(i) != str.charAt(i)) {
-                return false;
-            }
-        }
-        return true;
+        return equalChars((TString) other);
     }
 
     public boolean equalsIgnoreCase(TString other) {
@@ -556,7 +482,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public byte[] getBytes(TCharset charset) {
-        TByteBuffer buffer = charset.encode(TCharBuffer.wrap(characters));
+        TByteBuffer buffer = charset.encode(TCharBuffer.wrap(toCharArray()));
         if (buffer.hasArray() && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
             return buffer.array();
         } else {
@@ -569,9 +495,7 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     @Override
     public int hashCode() {
         if (hashCode == 0) {
-            for (char c : characters) {
-                hashCode = 31 * hashCode + c;
-            }
+            hashCode = computeHashCode();
         }
         return hashCode;
     }
@@ -584,15 +508,16 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (isEmpty()) {
             return this;
         }
-        int[] codePoints = new int[characters.length];
+        char[] chars = toCharArray();
+        int[] codePoints = new int[chars.length];
         int codePointCount = 0;
-        for (int i = 0; i < characters.length; ++i) {
-            if (i == characters.length - 1 || !TCharacter.isHighSurrogate(characters[i])
-                    || !TCharacter.isLowSurrogate(characters[i + 1])) {
-                codePoints[codePointCount++] = TCharacter.toLowerCase(characters[i]);
+        for (int i = 0; i < chars.length; ++i) {
+            if (i == chars.length - 1 || !TCharacter.isHighSurrogate(chars[i])
+                    || !TCharacter.isLowSurrogate(chars[i + 1])) {
+                codePoints[codePointCount++] = TCharacter.toLowerCase(chars[i]);
             } else {
                 codePoints[codePointCount++] = TCharacter.toLowerCase(TCharacter.toCodePoint(
-                        characters[i], characters[i + 1]));
+                        chars[i], chars[i + 1]));
                 ++i;
             }
         }
@@ -603,15 +528,16 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
         if (isEmpty()) {
             return this;
         }
-        int[] codePoints = new int[characters.length];
+        char[] chars = toCharArray();
+        int[] codePoints = new int[chars.length];
         int codePointCount = 0;
-        for (int i = 0; i < characters.length; ++i) {
-            if (i == characters.length - 1 || !TCharacter.isHighSurrogate(characters[i])
-                    || !TCharacter.isLowSurrogate(characters[i + 1])) {
-                codePoints[codePointCount++] = TCharacter.toUpperCase(characters[i]);
+        for (int i = 0; i < chars.length; ++i) {
+            if (i == chars.length - 1 || !TCharacter.isHighSurrogate(chars[i])
+                    || !TCharacter.isLowSurrogate(chars[i + 1])) {
+                codePoints[codePointCount++] = TCharacter.toUpperCase(chars[i]);
             } else {
                 codePoints[codePointCount++] = TCharacter.toUpperCase(TCharacter.toCodePoint(
-                        characters[i], characters[i + 1]));
+                        chars[i], chars[i + 1]));
                 ++i;
             }
         }
@@ -628,22 +554,247 @@ public class TString extends TObject implements TSerializable, TComparable<TStri
     }
 
     public boolean matches(String regex) {
-        return TPattern.matches(regex, this.toString());
+        return compilePattern(regex).matcher(toString()).matches();
     }
 
     public String[] split(String regex) {
-        return TPattern.compile(regex).split(this.toString());
+        return split(regex, 0);
     }
 
     public String[] split(String regex, int limit) {
-        return TPattern.compile(regex).split(this.toString(), limit);
+        String literal = literalRegex(regex);
+        if (literal != null) {
+            return splitLiteral(TString.wrap(literal), limit);
+        }
+        return compilePattern(regex).split(this.toString(), limit);
     }
 
     public String replaceAll(String regex, String replacement) {
-        return TPattern.compile(regex).matcher(toString()).replaceAll(replacement);
+        String literal = literalRegex(regex);
+        if (literal != null && isLiteralReplacement(replacement)) {
+            return replaceLiteral(TString.wrap(literal), TString.wrap(replacement), true);
+        }
+        return compilePattern(regex).matcher(toString()).replaceAll(replacement);
     }
 
     public String replaceFirst(String regex, String replacement) {
-        return TPattern.compile(regex).matcher(toString()).replaceFirst(replacement);
+        String literal = literalRegex(regex);
+        if (literal != null && isLiteralReplacement(replacement)) {
+            return replaceLiteral(TString.wrap(literal), TString.wrap(replacement), false);
+        }
+        return compilePattern(regex).matcher(toString()).replaceFirst(replacement);
+    }
+
+    // Returns the string matched by a regex that consists of plain characters and escaped punctuation only,
+    // e.g. "," or "\\|", or null if the regex needs to be compiled.
+    private static String literalRegex(String regex) {
+        if (regex.isEmpty()) {
+            return null;
+        }
+        if (regex.length() == 1) {
+            return isRegexMetaChar(regex.charAt(0)) ? null : regex;
+        }
+        if (regex.length() == 2 && regex.charAt(0) == '\\') {
+            char c = regex.charAt(1);
+            return !TCharacter.isLetterOrDigit(c) && c < TCharacter.MIN_HIGH_SURROGATE ? String.valueOf(c) : null;
+        }
+        for (int i = 0; i < regex.length(); ++i) {
+            if (isRegexMetaChar(regex.charAt(i))) {
+                return null;
+            }
+        }
+        return regex;
+    }
+
+    private static boolean isRegexMetaChar(char c) {
+        return ".$|()[]{}^?*+\\".indexOf(c) >= 0 || TCharacter.isSurrogate(c);
+    }
+
+    private static boolean isLiteralReplacement(String replacement) {
+        return replacement.indexOf('$') < 0 && replacement.indexOf('\\') < 0;
+    }
+
+    private static TPattern compilePattern(String regex) {
+        if (patternCache == null) {
+            patternCache = new TLinkedHashMap<String, TPattern>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(TMap.Entry<String, TPattern> eldest) {
+                    return size() > PATTERN_CACHE_SIZE;
+                }
+            };
+        }
+        TPattern pattern = patternCache.get(regex);
+        if (pattern == null) {
+            pattern = TPattern.compile(regex);
+            patternCache.put(regex, pattern);
+        }
+        return pattern;
+    }
+
+    private String[] splitLiteral(TString separator, int limit) {
+        if (isEmpty()) {
+            return new String[] { "" };
+        }
+        int count = 1;
+        int index = indexOf(separator);
+        while (index >= 0 && (limit <= 0 || count < limit)) {
+            ++count;
+            index = indexOf(separator, index + separator.length());
+        }
+
+        String[] result = new String[count];
+        int start = 0;
+        for (int i = 0; i < count - 1; ++i) {
+            int end = indexOf(separator, start);
+            result[i] = substring(start, end).toString();
+            start = end + separator.length();
+        }
+        result[count - 1] = substring(start).toString();
+
+        if (limit == 0) {
+            while (count > 0 && result[count - 1].isEmpty()) {
+                --count;
+            }
+            if (count < result.length) {
+                result = TArrays.copyOf(result, count);
+            }
+        }
+        return result;
+    }
+
+    private String replaceLiteral(TString target, TString replacement, boolean all) {
+        int index = indexOf(target);
+        if (index < 0) {
+            return toString();
+        }
+        TStringBuilder sb = new TStringBuilder();
+        int start = 0;
+        do {
+            sb.append(substring(start, index)).append(replacement);
+            start = index + target.length();
+            index = all ? indexOf(target, start) : -1;
+        } while (index >= 0);
+        sb.append(substring(start));
+        return sb.toString();
+    }
+
+    // Only the methods below access the representation of a string directly. When the JavaScript backend
+    // represents strings by native JavaScript strings, it replaces them with StringNativeGenerator,
+    // so that the characters array is never allocated.
+
+    private void initWithChars(char[] value, int offset, int count) {
+        characters = new char[count];
+        for (int i = 0; i < count; ++i) {
+            characters[i] = value[i + offset];
+        }
+    }
+
+    private void initWithCharArray(char[] array) {
+        characters = array;
+    }
+
+    private void initWithString(TString other) {
+        characters = other.characters;
+    }
+
+    @Override
+    public int length() {
+        return characters.length;
+    }
+
+    private char charAtUnchecked(int index) {
+        return characters[index];
+    }
+
+    private void copyChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        while (srcBegin < srcEnd) {
+            dst[dstBegin++] = characters[srcBegin++];
+        }
+    }
+
+    private boolean regionEquals(int toffset, TString other, int ooffset, int len) {
+        for (int i = 0; i < len; ++i) {
+            if (characters[toffset++] != other.characters[ooffset++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalChars(TString other) {
+        return characters.length == other.characters.length
+                && regionEquals(0, other, 0, characters.length);
+    }
+
+    private int indexOfChar(char c, int fromIndex) {
+        for (int i = fromIndex; i < characters.length; ++i) {
+            if (characters[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOfChar(char c, int fromIndex) {
+        for (int i = fromIndex; i >= 0; --i) {
+            if (characters[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOfString(TString str, int fromIndex) {
+        int toIndex = characters.length - str.characters.length;
+        outer:
+        for (int i = fromIndex; i <= toIndex; ++i) {
+            for (int j = 0; j < str.characters.length; ++j) {
+                if (characters[i + j] != str.characters[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private int lastIndexOfString(TString str, int fromIndex) {
+        outer:
+        for (int i = fromIndex; i >= 0; --i) {
+            for (int j = 0; j < str.characters.length; ++j) {
+                if (characters[i + j] != str.characters[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private TString substringUnchecked(int beginIndex, int endIndex) {
+        return new TString(characters, beginIndex, endIndex - beginIndex);
+    }
+
+    private TString concatWith(TString str) {
+        char[] buffer = new char[characters.length + str.characters.length];
+        System.arraycopy(characters, 0, buffer, 0, characters.length);
+        System.arraycopy(str.characters, 0, buffer, characters.length, str.characters.length);
+        return new TString(buffer);
+    }
+
+    private TString replaceChars(char oldChar, char newChar) {
+        char[] buffer = new char[characters.length];
+        for (int i = 0; i < characters.length; ++i) {
+            buffer[i] = characters[i] == oldChar ? newChar : characters[i];
+        }
+        return new TString(buffer);
+    }
+
+    private int computeHashCode() {
+        int hash = 0;
+        for (char c : characters) {
+            hash = 31 * hash + c;
+        }
+        return hash;
     }
 }
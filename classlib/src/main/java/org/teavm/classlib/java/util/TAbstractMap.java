@@ -265,6 +265,22 @@ public abstract class TAbstractMap<K, V> extends TObject implements TMap<K, V> {
         return result;
     }
 
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        TIterator<? extends TMap.Entry<K, V>> iter = entrySet().iterator();
+        while (iter.hasNext()) {
+            TMap.Entry<K, V> entry = iter.next();
+            sb.append(String.valueOf(entry.getKey())).append("=").append(String.valueOf(entry.getValue()));
+            if (iter.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
     @Override
     protected Object clone() throws TCloneNotSupportedException {
         TAbstractMap<?, ?> copy = (TAbstractMap<?, ?>) super.clone();
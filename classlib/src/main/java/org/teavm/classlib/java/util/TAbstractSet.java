@@ -45,4 +45,28 @@ public abstract class TAbstractSet<E> extends TAbstractCollection<E> implements
         }
         return modified;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TSet)) {
+            return false;
+        }
+        TSet<?> other = (TSet<?>) obj;
+        return size() == other.size() && containsAll(other);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (TIterator<E> iter = iterator(); iter.hasNext();) {
+            E elem = iter.next();
+            if (elem != null) {
+                result += elem.hashCode();
+            }
+        }
+        return result;
+    }
 }
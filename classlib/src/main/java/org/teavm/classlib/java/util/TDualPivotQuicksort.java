@@ -0,0 +1,984 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+/**
+ * <p>Sorts primitive arrays in place by dual-pivot quicksort. Small ranges are sorted by insertion sort. When
+ * recursion gets too deep, which happens only on adversarial inputs, the range is sorted by heap sort,
+ * so worst case is <code>O(n log n)</code>.</p>
+ *
+ * <p>Floating-point values are ordered as by {@link Double#compare(double, double)}: <code>-0.0</code> goes
+ * before <code>0.0</code>, <code>NaN</code> goes last.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class TDualPivotQuicksort {
+    private static final int INSERTION_SORT_THRESHOLD = 47;
+
+    private TDualPivotQuicksort() {
+    }
+
+    private static int depthLimit(int length) {
+        int depth = 0;
+        while (length > 1) {
+            depth += 2;
+            length >>>= 1;
+        }
+        return depth;
+    }
+
+    static void sort(int[] a, int fromIndex, int toIndex) {
+        sort(a, fromIndex, toIndex - 1, depthLimit(toIndex - fromIndex));
+    }
+
+    private static void sort(int[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            int pivot1 = a[m1];
+            int pivot2 = a[m2];
+            if (pivot1 > pivot2) {
+                int tmp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = tmp;
+            }
+            a[m1] = a[left];
+            a[m2] = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                int ak = a[k];
+                if (ak < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = ak;
+                } else if (ak > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = ak;
+                    ak = a[k];
+                    if (ak < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            sort(a, left, less - 2, depth);
+            sort(a, great + 2, right, depth);
+            if (pivot1 == pivot2) {
+                return;
+            }
+
+            if (great - less > (right - left) / 2) {
+                // Too many elements are between pivots, move the ones equal to pivots out of the way
+                for (int k = less; k <= great; ++k) {
+                    int ak = a[k];
+                    if (ak == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    } else if (ak == pivot2) {
+                        while (k < great && a[great] == pivot2) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = ak;
+                        ak = a[k];
+                        if (ak == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = ak;
+                        }
+                    }
+                }
+            }
+            left = less;
+            right = great;
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(int[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            int ai = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > ai) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = ai;
+        }
+    }
+
+    private static void heapSort(int[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            int tmp = a[left];
+            a[left] = a[left + end];
+            a[left + end] = tmp;
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(int[] a, int base, int index, int size) {
+        int value = a[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && a[base + child + 1] > a[base + child]) {
+                ++child;
+            }
+            if (a[base + child] <= value) {
+                break;
+            }
+            a[base + index] = a[base + child];
+            index = child;
+        }
+        a[base + index] = value;
+    }
+
+    static void sort(long[] a, int fromIndex, int toIndex) {
+        sort(a, fromIndex, toIndex - 1, depthLimit(toIndex - fromIndex));
+    }
+
+    private static void sort(long[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            long pivot1 = a[m1];
+            long pivot2 = a[m2];
+            if (pivot1 > pivot2) {
+                long tmp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = tmp;
+            }
+            a[m1] = a[left];
+            a[m2] = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                long ak = a[k];
+                if (ak < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = ak;
+                } else if (ak > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = ak;
+                    ak = a[k];
+                    if (ak < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            sort(a, left, less - 2, depth);
+            sort(a, great + 2, right, depth);
+            if (pivot1 == pivot2) {
+                return;
+            }
+
+            if (great - less > (right - left) / 2) {
+                // Too many elements are between pivots, move the ones equal to pivots out of the way
+                for (int k = less; k <= great; ++k) {
+                    long ak = a[k];
+                    if (ak == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    } else if (ak == pivot2) {
+                        while (k < great && a[great] == pivot2) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = ak;
+                        ak = a[k];
+                        if (ak == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = ak;
+                        }
+                    }
+                }
+            }
+            left = less;
+            right = great;
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(long[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            long ai = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > ai) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = ai;
+        }
+    }
+
+    private static void heapSort(long[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            long tmp = a[left];
+            a[left] = a[left + end];
+            a[left + end] = tmp;
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] a, int base, int index, int size) {
+        long value = a[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && a[base + child + 1] > a[base + child]) {
+                ++child;
+            }
+            if (a[base + child] <= value) {
+                break;
+            }
+            a[base + index] = a[base + child];
+            index = child;
+        }
+        a[base + index] = value;
+    }
+
+    static void sort(short[] a, int fromIndex, int toIndex) {
+        sort(a, fromIndex, toIndex - 1, depthLimit(toIndex - fromIndex));
+    }
+
+    private static void sort(short[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            short pivot1 = a[m1];
+            short pivot2 = a[m2];
+            if (pivot1 > pivot2) {
+                short tmp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = tmp;
+            }
+            a[m1] = a[left];
+            a[m2] = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                short ak = a[k];
+                if (ak < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = ak;
+                } else if (ak > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = ak;
+                    ak = a[k];
+                    if (ak < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            sort(a, left, less - 2, depth);
+            sort(a, great + 2, right, depth);
+            if (pivot1 == pivot2) {
+                return;
+            }
+
+            if (great - less > (right - left) / 2) {
+                // Too many elements are between pivots, move the ones equal to pivots out of the way
+                for (int k = less; k <= great; ++k) {
+                    short ak = a[k];
+                    if (ak == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    } else if (ak == pivot2) {
+                        while (k < great && a[great] == pivot2) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = ak;
+                        ak = a[k];
+                        if (ak == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = ak;
+                        }
+                    }
+                }
+            }
+            left = less;
+            right = great;
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(short[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            short ai = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > ai) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = ai;
+        }
+    }
+
+    private static void heapSort(short[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            short tmp = a[left];
+            a[left] = a[left + end];
+            a[left + end] = tmp;
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(short[] a, int base, int index, int size) {
+        short value = a[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && a[base + child + 1] > a[base + child]) {
+                ++child;
+            }
+            if (a[base + child] <= value) {
+                break;
+            }
+            a[base + index] = a[base + child];
+            index = child;
+        }
+        a[base + index] = value;
+    }
+
+    static void sort(char[] a, int fromIndex, int toIndex) {
+        sort(a, fromIndex, toIndex - 1, depthLimit(toIndex - fromIndex));
+    }
+
+    private static void sort(char[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            char pivot1 = a[m1];
+            char pivot2 = a[m2];
+            if (pivot1 > pivot2) {
+                char tmp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = tmp;
+            }
+            a[m1] = a[left];
+            a[m2] = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                char ak = a[k];
+                if (ak < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = ak;
+                } else if (ak > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = ak;
+                    ak = a[k];
+                    if (ak < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            sort(a, left, less - 2, depth);
+            sort(a, great + 2, right, depth);
+            if (pivot1 == pivot2) {
+                return;
+            }
+
+            if (great - less > (right - left) / 2) {
+                // Too many elements are between pivots, move the ones equal to pivots out of the way
+                for (int k = less; k <= great; ++k) {
+                    char ak = a[k];
+                    if (ak == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    } else if (ak == pivot2) {
+                        while (k < great && a[great] == pivot2) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = ak;
+                        ak = a[k];
+                        if (ak == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = ak;
+                        }
+                    }
+                }
+            }
+            left = less;
+            right = great;
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(char[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            char ai = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > ai) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = ai;
+        }
+    }
+
+    private static void heapSort(char[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            char tmp = a[left];
+            a[left] = a[left + end];
+            a[left + end] = tmp;
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(char[] a, int base, int index, int size) {
+        char value = a[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && a[base + child + 1] > a[base + child]) {
+                ++child;
+            }
+            if (a[base + child] <= value) {
+                break;
+            }
+            a[base + index] = a[base + child];
+            index = child;
+        }
+        a[base + index] = value;
+    }
+
+    static void sort(byte[] a, int fromIndex, int toIndex) {
+        sort(a, fromIndex, toIndex - 1, depthLimit(toIndex - fromIndex));
+    }
+
+    private static void sort(byte[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            byte pivot1 = a[m1];
+            byte pivot2 = a[m2];
+            if (pivot1 > pivot2) {
+                byte tmp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = tmp;
+            }
+            a[m1] = a[left];
+            a[m2] = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                byte ak = a[k];
+                if (ak < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = ak;
+                } else if (ak > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = ak;
+                    ak = a[k];
+                    if (ak < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            sort(a, left, less - 2, depth);
+            sort(a, great + 2, right, depth);
+            if (pivot1 == pivot2) {
+                return;
+            }
+
+            if (great - less > (right - left) / 2) {
+                // Too many elements are between pivots, move the ones equal to pivots out of the way
+                for (int k = less; k <= great; ++k) {
+                    byte ak = a[k];
+                    if (ak == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    } else if (ak == pivot2) {
+                        while (k < great && a[great] == pivot2) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = ak;
+                        ak = a[k];
+                        if (ak == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = ak;
+                        }
+                    }
+                }
+            }
+            left = less;
+            right = great;
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(byte[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            byte ai = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > ai) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = ai;
+        }
+    }
+
+    private static void heapSort(byte[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            byte tmp = a[left];
+            a[left] = a[left + end];
+            a[left + end] = tmp;
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(byte[] a, int base, int index, int size) {
+        byte value = a[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && a[base + child + 1] > a[base + child]) {
+                ++child;
+            }
+            if (a[base + child] <= value) {
+                break;
+            }
+            a[base + index] = a[base + child];
+            index = child;
+        }
+        a[base + index] = value;
+    }
+
+    static void sort(float[] a, int fromIndex, int toIndex) {
+        // NaN can't be compared by <, so it is moved to the end. -0.0 is equal to 0.0 for <, so negative zeros
+        // are replaced by positive ones and restored after sorting.
+        int end = toIndex;
+        int negativeZeros = 0;
+        for (int k = toIndex - 1; k >= fromIndex; --k) {
+            float ak = a[k];
+            if (ak != ak) {
+                a[k] = a[--end];
+                a[end] = ak;
+            } else if (ak == 0 && 1 / ak < 0) {
+                a[k] = 0;
+                ++negativeZeros;
+            }
+        }
+        sort(a, fromIndex, end - 1, depthLimit(end - fromIndex));
+
+        if (negativeZeros > 0) {
+            int zero = fromIndex;
+            int high = end;
+            while (zero < high) {
+                int mid = (zero + high) >>> 1;
+                if (a[mid] < 0) {
+                    zero = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            while (negativeZeros-- > 0) {
+                a[zero++] = -0.0f;
+            }
+        }
+    }
+
+    private static void sort(float[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            float pivot1 = a[m1];
+            float pivot2 = a[m2];
+            if (pivot1 > pivot2) {
+                float tmp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = tmp;
+            }
+            a[m1] = a[left];
+            a[m2] = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                float ak = a[k];
+                if (ak < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = ak;
+                } else if (ak > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = ak;
+                    ak = a[k];
+                    if (ak < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            sort(a, left, less - 2, depth);
+            sort(a, great + 2, right, depth);
+            if (pivot1 == pivot2) {
+                return;
+            }
+
+            if (great - less > (right - left) / 2) {
+                // Too many elements are between pivots, move the ones equal to pivots out of the way
+                for (int k = less; k <= great; ++k) {
+                    float ak = a[k];
+                    if (ak == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    } else if (ak == pivot2) {
+                        while (k < great && a[great] == pivot2) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = ak;
+                        ak = a[k];
+                        if (ak == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = ak;
+                        }
+                    }
+                }
+            }
+            left = less;
+            right = great;
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(float[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            float ai = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > ai) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = ai;
+        }
+    }
+
+    private static void heapSort(float[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            float tmp = a[left];
+            a[left] = a[left + end];
+            a[left + end] = tmp;
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(float[] a, int base, int index, int size) {
+        float value = a[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && a[base + child + 1] > a[base + child]) {
+                ++child;
+            }
+            if (a[base + child] <= value) {
+                break;
+            }
+            a[base + index] = a[base + child];
+            index = child;
+        }
+        a[base + index] = value;
+    }
+
+    static void sort(double[] a, int fromIndex, int toIndex) {
+        // NaN can't be compared by <, so it is moved to the end. -0.0 is equal to 0.0 for <, so negative zeros
+        // are replaced by positive ones and restored after sorting.
+        int end = toIndex;
+        int negativeZeros = 0;
+        for (int k = toIndex - 1; k >= fromIndex; --k) {
+            double ak = a[k];
+            if (ak != ak) {
+                a[k] = a[--end];
+                a[end] = ak;
+            } else if (ak == 0 && 1 / ak < 0) {
+                a[k] = 0;
+                ++negativeZeros;
+            }
+        }
+        sort(a, fromIndex, end - 1, depthLimit(end - fromIndex));
+
+        if (negativeZeros > 0) {
+            int zero = fromIndex;
+            int high = end;
+            while (zero < high) {
+                int mid = (zero + high) >>> 1;
+                if (a[mid] < 0) {
+                    zero = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            while (negativeZeros-- > 0) {
+                a[zero++] = -0.0;
+            }
+        }
+    }
+
+    private static void sort(double[] a, int left, int right, int depth) {
+        while (right - left >= INSERTION_SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                heapSort(a, left, right);
+                return;
+            }
+
+            int third = (right - left) / 3;
+            int m1 = left + third;
+            int m2 = right - third;
+            double pivot1 = a[m1];
+            double pivot2 = a[m2];
+            if (pivot1 > pivot2) {
+                double tmp = pivot1;
+                pivot1 = pivot2;
+                pivot2 = tmp;
+            }
+            a[m1] = a[left];
+            a[m2] = a[right];
+
+            int less = left + 1;
+            int great = right - 1;
+            for (int k = less; k <= great; ++k) {
+                double ak = a[k];
+                if (ak < pivot1) {
+                    a[k] = a[less];
+                    a[less++] = ak;
+                } else if (ak > pivot2) {
+                    while (k < great && a[great] > pivot2) {
+                        --great;
+                    }
+                    a[k] = a[great];
+                    a[great--] = ak;
+                    ak = a[k];
+                    if (ak < pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    }
+                }
+            }
+            a[left] = a[less - 1];
+            a[less - 1] = pivot1;
+            a[right] = a[great + 1];
+            a[great + 1] = pivot2;
+
+            sort(a, left, less - 2, depth);
+            sort(a, great + 2, right, depth);
+            if (pivot1 == pivot2) {
+                return;
+            }
+
+            if (great - less > (right - left) / 2) {
+                // Too many elements are between pivots, move the ones equal to pivots out of the way
+                for (int k = less; k <= great; ++k) {
+                    double ak = a[k];
+                    if (ak == pivot1) {
+                        a[k] = a[less];
+                        a[less++] = ak;
+                    } else if (ak == pivot2) {
+                        while (k < great && a[great] == pivot2) {
+                            --great;
+                        }
+                        a[k] = a[great];
+                        a[great--] = ak;
+                        ak = a[k];
+                        if (ak == pivot1) {
+                            a[k] = a[less];
+                            a[less++] = ak;
+                        }
+                    }
+                }
+            }
+            left = less;
+            right = great;
+        }
+        insertionSort(a, left, right);
+    }
+
+    private static void insertionSort(double[] a, int left, int right) {
+        for (int i = left + 1; i <= right; ++i) {
+            double ai = a[i];
+            int j = i - 1;
+            while (j >= left && a[j] > ai) {
+                a[j + 1] = a[j];
+                --j;
+            }
+            a[j + 1] = ai;
+        }
+    }
+
+    private static void heapSort(double[] a, int left, int right) {
+        int size = right - left + 1;
+        for (int i = size / 2 - 1; i >= 0; --i) {
+            siftDown(a, left, i, size);
+        }
+        for (int end = size - 1; end > 0; --end) {
+            double tmp = a[left];
+            a[left] = a[left + end];
+            a[left + end] = tmp;
+            siftDown(a, left, 0, end);
+        }
+    }
+
+    private static void siftDown(double[] a, int base, int index, int size) {
+        double value = a[base + index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && a[base + child + 1] > a[base + child]) {
+                ++child;
+            }
+            if (a[base + child] <= value) {
+                break;
+            }
+            a[base + index] = a[base + child];
+            index = child;
+        }
+        a[base + index] = value;
+    }
+}
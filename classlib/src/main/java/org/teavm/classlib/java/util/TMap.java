@@ -56,7 +56,29 @@ public interface TMap<K, V> {
     TCollection<V> values();
 
     TSet<Entry<K, V>> entrySet();
-    
+
+    default V getOrDefault(Object key, V defaultValue) {
+        V v = get(key);
+        return v != null || containsKey(key) ? v : defaultValue;
+    }
+
+    default V putIfAbsent(K key, V value) {
+        V v = get(key);
+        if (v == null) {
+            v = put(key, value);
+        }
+        return v;
+    }
+
+    default boolean remove(Object key, Object value) {
+        if (containsKey(key) && TObjects.equals(get(key), value)) {
+            remove(key);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
     default boolean replace(K key, V value, V newValue) {
         if (containsKey(key) && TObjects.equals(get(key), value)) {
             put(key, newValue);
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.util.function.TConsumer;
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+
+/**
+ *
+ * @author Alexey Andreev
+ * @param <T>
+ */
+public final class TOptional<T> {
+    private static final TOptional<?> EMPTY = new TOptional<>(null);
+    private final T value;
+
+    private TOptional(T value) {
+        this.value = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> TOptional<T> empty() {
+        return (TOptional<T>) EMPTY;
+    }
+
+    public static <T> TOptional<T> of(T value) {
+        return new TOptional<>(TObjects.requireNonNull(value));
+    }
+
+    public static <T> TOptional<T> ofNullable(T value) {
+        return value != null ? new TOptional<>(value) : empty();
+    }
+
+    public T get() {
+        if (value == null) {
+            throw new TNoSuchElementException();
+        }
+        return value;
+    }
+
+    public boolean isPresent() {
+        return value != null;
+    }
+
+    public void ifPresent(TConsumer<? super T> consumer) {
+        if (value != null) {
+            consumer.accept(value);
+        }
+    }
+
+    public TOptional<T> filter(TPredicate<? super T> predicate) {
+        return value == null || predicate.test(value) ? this : empty();
+    }
+
+    public <U> TOptional<U> map(TFunction<? super T, ? extends U> mapper) {
+        return value != null ? ofNullable(mapper.apply(value)) : empty();
+    }
+
+    public <U> TOptional<U> flatMap(TFunction<? super T, TOptional<U>> mapper) {
+        return value != null ? TObjects.requireNonNull(mapper.apply(value)) : empty();
+    }
+
+    public T orElse(T other) {
+        return value != null ? value : other;
+    }
+
+    public T orElseGet(TSupplier<? extends T> other) {
+        return value != null ? value : other.get();
+    }
+
+    public <X extends Throwable> T orElseThrow(TSupplier<? extends X> exceptionSupplier) throws X {
+        if (value == null) {
+            throw exceptionSupplier.get();
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TOptional)) {
+            return false;
+        }
+        return TObjects.equals(value, ((TOptional<?>) obj).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return TObjects.hashCode(value);
+    }
+
+    @Override
+    public String toString() {
+        return value != null ? "Optional[" + value + "]" : "Optional.empty";
+    }
+}
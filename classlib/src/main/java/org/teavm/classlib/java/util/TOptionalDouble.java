@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.lang.TDouble;
+import org.teavm.classlib.java.util.function.TDoubleConsumer;
+import org.teavm.classlib.java.util.function.TDoubleSupplier;
+import org.teavm.classlib.java.util.function.TSupplier;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public final class TOptionalDouble {
+    private static final TOptionalDouble EMPTY = new TOptionalDouble(false, 0);
+    private final boolean present;
+    private final double value;
+
+    private TOptionalDouble(boolean present, double value) {
+        this.present = present;
+        this.value = value;
+    }
+
+    public static TOptionalDouble empty() {
+        return EMPTY;
+    }
+
+    public static TOptionalDouble of(double value) {
+        return new TOptionalDouble(true, value);
+    }
+
+    public double getAsDouble() {
+        if (!present) {
+            throw new TNoSuchElementException();
+        }
+        return value;
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    public void ifPresent(TDoubleConsumer consumer) {
+        if (present) {
+            consumer.accept(value);
+        }
+    }
+
+    public double orElse(double other) {
+        return present ? value : other;
+    }
+
+    public double orElseGet(TDoubleSupplier other) {
+        return present ? value : other.getAsDouble();
+    }
+
+    public <X extends Throwable> double orElseThrow(TSupplier<X> exceptionSupplier) throws X {
+        if (!present) {
+            throw exceptionSupplier.get();
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TOptionalDouble)) {
+            return false;
+        }
+        TOptionalDouble other = (TOptionalDouble) obj;
+        return present ? other.present && TDouble.compare(value, other.value) == 0 : !other.present;
+    }
+
+    @Override
+    public int hashCode() {
+        return present ? TDouble.valueOf(value).hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return present ? "OptionalDouble[" + value + "]" : "OptionalDouble.empty";
+    }
+}
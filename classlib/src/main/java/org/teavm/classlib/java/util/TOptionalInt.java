@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.util.function.TIntConsumer;
+import org.teavm.classlib.java.util.function.TIntSupplier;
+import org.teavm.classlib.java.util.function.TSupplier;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public final class TOptionalInt {
+    private static final TOptionalInt EMPTY = new TOptionalInt(false, 0);
+    private final boolean present;
+    private final int value;
+
+    private TOptionalInt(boolean present, int value) {
+        this.present = present;
+        this.value = value;
+    }
+
+    public static TOptionalInt empty() {
+        return EMPTY;
+    }
+
+    public static TOptionalInt of(int value) {
+        return new TOptionalInt(true, value);
+    }
+
+    public int getAsInt() {
+        if (!present) {
+            throw new TNoSuchElementException();
+        }
+        return value;
+    }
+
+    public boolean isPresent() {
+        return present;
+    }
+
+    public void ifPresent(TIntConsumer consumer) {
+        if (present) {
+            consumer.accept(value);
+        }
+    }
+
+    public int orElse(int other) {
+        return present ? value : other;
+    }
+
+    public int orElseGet(TIntSupplier other) {
+        return present ? value : other.getAsInt();
+    }
+
+    public <X extends Throwable> int orElseThrow(TSupplier<X> exceptionSupplier) throws X {
+        if (!present) {
+            throw exceptionSupplier.get();
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TOptionalInt)) {
+            return false;
+        }
+        TOptionalInt other = (TOptionalInt) obj;
+        return present ? other.present && value == other.value : !other.present;
+    }
+
+    @Override
+    public int hashCode() {
+        return present ? value : 0;
+    }
+
+    @Override
+    public String toString() {
+        return present ? "OptionalInt[" + value + "]" : "OptionalInt.empty";
+    }
+}
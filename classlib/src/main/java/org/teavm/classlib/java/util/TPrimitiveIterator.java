@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.util.function.TDoubleConsumer;
+import org.teavm.classlib.java.util.function.TIntConsumer;
+import org.teavm.classlib.java.util.function.TLongConsumer;
+
+/**
+ *
+ * @author Alexey Andreev
+ * @param <T>
+ * @param <C>
+ */
+public interface TPrimitiveIterator<T, C> extends TIterator<T> {
+    void forEachRemaining(C action);
+
+    interface OfInt extends TPrimitiveIterator<Integer, TIntConsumer> {
+        int nextInt();
+
+        @Override
+        default Integer next() {
+            return nextInt();
+        }
+
+        @Override
+        default void forEachRemaining(TIntConsumer action) {
+            while (hasNext()) {
+                action.accept(nextInt());
+            }
+        }
+    }
+
+    interface OfLong extends TPrimitiveIterator<Long, TLongConsumer> {
+        long nextLong();
+
+        @Override
+        default Long next() {
+            return nextLong();
+        }
+
+        @Override
+        default void forEachRemaining(TLongConsumer action) {
+            while (hasNext()) {
+                action.accept(nextLong());
+            }
+        }
+    }
+
+    interface OfDouble extends TPrimitiveIterator<Double, TDoubleConsumer> {
+        double nextDouble();
+
+        @Override
+        default Double next() {
+            return nextDouble();
+        }
+
+        @Override
+        default void forEachRemaining(TDoubleConsumer action) {
+            while (hasNext()) {
+                action.accept(nextDouble());
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util;
+
+import org.teavm.classlib.java.lang.TMath;
+
+/**
+ * <p>Stable adaptive merge sort of object arrays, a simplified version of TimSort. The range is split into
+ * ascending runs, descending runs are reversed and short runs are extended by binary insertion sort. Runs are
+ * merged in place, with a temporary buffer as large as the smaller of two runs. Before merging, elements that
+ * are already in their final positions are skipped, so nearly sorted arrays take nearly linear time.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class TTimSort {
+    private static final int MIN_MERGE = 32;
+    private static final int MAX_RUN_COUNT = 49;
+    private final Object[] a;
+    private final TComparator<Object> c;
+    private Object[] tmp;
+    private final int[] runBase = new int[MAX_RUN_COUNT];
+    private final int[] runLength = new int[MAX_RUN_COUNT];
+    private int runCount;
+
+    private TTimSort(Object[] a, TComparator<Object> c) {
+        this.a = a;
+        this.c = c;
+    }
+
+    static void sort(Object[] a, int fromIndex, int toIndex, TComparator<Object> c) {
+        int remaining = toIndex - fromIndex;
+        if (remaining < 2) {
+            return;
+        }
+        if (remaining < MIN_MERGE) {
+            int runLength = countRunAndMakeAscending(a, fromIndex, toIndex, c);
+            binarySort(a, fromIndex, toIndex, fromIndex + runLength, c);
+            return;
+        }
+
+        TTimSort sorter = new TTimSort(a, c);
+        int minRun = minRunLength(remaining);
+        do {
+            int runLength = countRunAndMakeAscending(a, fromIndex, toIndex, c);
+            if (runLength < minRun) {
+                int forcedLength = TMath.min(remaining, minRun);
+                binarySort(a, fromIndex, fromIndex + forcedLength, fromIndex + runLength, c);
+                runLength = forcedLength;
+            }
+            sorter.pushRun(fromIndex, runLength);
+            sorter.mergeCollapse();
+            fromIndex += runLength;
+            remaining -= runLength;
+        } while (remaining > 0);
+        sorter.mergeForceCollapse();
+    }
+
+    private static int minRunLength(int length) {
+        int lowBits = 0;
+        while (length >= MIN_MERGE) {
+            lowBits |= length & 1;
+            length >>= 1;
+        }
+        return length + lowBits;
+    }
+
+    private static int countRunAndMakeAscending(Object[] a, int fromIndex, int toIndex, TComparator<Object> c) {
+        int end = fromIndex + 1;
+        if (end == toIndex) {
+            return 1;
+        }
+        if (c.compare(a[end++], a[fromIndex]) < 0) {
+            while (end < toIndex && c.compare(a[end], a[end - 1]) < 0) {
+                ++end;
+            }
+            reverse(a, fromIndex, end);
+        } else {
+            while (end < toIndex && c.compare(a[end], a[end - 1]) >= 0) {
+                ++end;
+            }
+        }
+        return end - fromIndex;
+    }
+
+    private static void reverse(Object[] a, int fromIndex, int toIndex) {
+        --toIndex;
+        while (fromIndex < toIndex) {
+            Object tmp = a[fromIndex];
+            a[fromIndex++] = a[toIndex];
+            a[toIndex--] = tmp;
+        }
+    }
+
+    private static void binarySort(Object[] a, int fromIndex, int toIndex, int start, TComparator<Object> c) {
+        for (; start < toIndex; ++start) {
+            Object pivot = a[start];
+            int left = fromIndex;
+            int right = start;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (c.compare(pivot, a[mid]) < 0) {
+                    right = mid;
+                } else {
+                    left = mid + 1;
+                }
+            }
+            System.arraycopy(a, left, a, left + 1, start - left);
+            a[left] = pivot;
+        }
+    }
+
+    private void pushRun(int base, int length) {
+        runBase[runCount] = base;
+        runLength[runCount] = length;
+        ++runCount;
+    }
+
+    private void mergeCollapse() {
+        while (runCount > 1) {
+            int n = runCount - 2;
+            if (n > 0 && runLength[n - 1] <= runLength[n] + runLength[n + 1]
+                    || n > 1 && runLength[n - 2] <= runLength[n] + runLength[n - 1]) {
+                if (runLength[n - 1] < runLength[n + 1]) {
+                    --n;
+                }
+            } else if (runLength[n] > runLength[n + 1]) {
+                break;
+            }
+            mergeAt(n);
+        }
+    }
+
+    private void mergeForceCollapse() {
+        while (runCount > 1) {
+            int n = runCount - 2;
+            if (n > 0 && runLength[n - 1] < runLength[n + 1]) {
+                --n;
+            }
+            mergeAt(n);
+        }
+    }
+
+    private void mergeAt(int i) {
+        int base1 = runBase[i];
+        int length1 = runLength[i];
+        int base2 = runBase[i + 1];
+        int length2 = runLength[i + 1];
+        runLength[i] = length1 + length2;
+        if (i == runCount - 3) {
+            runBase[i + 1] = runBase[i + 2];
+            runLength[i + 1] = runLength[i + 2];
+        }
+        --runCount;
+
+        int skip = upperBound(a[base2], base1, base1 + length1) - base1;
+        base1 += skip;
+        length1 -= skip;
+        if (length1 == 0) {
+            return;
+        }
+        length2 = lowerBound(a[base1 + length1 - 1], base2, base2 + length2) - base2;
+        if (length2 == 0) {
+            return;
+        }
+
+        if (length1 <= length2) {
+            mergeLow(base1, length1, base2, length2);
+        } else {
+            mergeHigh(base1, length1, base2, length2);
+        }
+    }
+
+    private int upperBound(Object key, int fromIndex, int toIndex) {
+        while (fromIndex < toIndex) {
+            int mid = (fromIndex + toIndex) >>> 1;
+            if (c.compare(key, a[mid]) < 0) {
+                toIndex = mid;
+            } else {
+                fromIndex = mid + 1;
+            }
+        }
+        return fromIndex;
+    }
+
+    private int lowerBound(Object key, int fromIndex, int toIndex) {
+        while (fromIndex < toIndex) {
+            int mid = (fromIndex + toIndex) >>> 1;
+            if (c.compare(a[mid], key) < 0) {
+                fromIndex = mid + 1;
+            } else {
+                toIndex = mid;
+            }
+        }
+        return fromIndex;
+    }
+
+    private Object[] ensureCapacity(int capacity) {
+        if (tmp == null || tmp.length < capacity) {
+            tmp = new Object[TMath.max(capacity, tmp != null ? tmp.length * 2 : 0)];
+        }
+        return tmp;
+    }
+
+    private void mergeLow(int base1, int length1, int base2, int length2) {
+        Object[] buffer = ensureCapacity(length1);
+        System.arraycopy(a, base1, buffer, 0, length1);
+        int cursor1 = 0;
+        int cursor2 = base2;
+        int end2 = base2 + length2;
+        int dest = base1;
+        while (cursor1 < length1 && cursor2 < end2) {
+            if (c.compare(a[cursor2], buffer[cursor1]) < 0) {
+                a[dest++] = a[cursor2++];
+            } else {
+                a[dest++] = buffer[cursor1++];
+            }
+        }
+        System.arraycopy(buffer, cursor1, a, dest, length1 - cursor1);
+    }
+
+    private void mergeHigh(int base1, int length1, int base2, int length2) {
+        Object[] buffer = ensureCapacity(length2);
+        System.arraycopy(a, base2, buffer, 0, length2);
+        int cursor1 = base1 + length1 - 1;
+        int cursor2 = length2 - 1;
+        int dest = base2 + length2 - 1;
+        while (cursor2 >= 0 && cursor1 >= base1) {
+            if (c.compare(buffer[cursor2], a[cursor1]) < 0) {
+                a[dest--] = a[cursor1--];
+            } else {
+                a[dest--] = buffer[cursor2--];
+            }
+        }
+        System.arraycopy(buffer, 0, a, dest - cursor2, cursor2 + 1);
+    }
+}
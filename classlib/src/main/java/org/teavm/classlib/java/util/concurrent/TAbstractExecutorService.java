@@ -0,0 +1,210 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.lang.TObject;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.util.TArrayList;
+import org.teavm.classlib.java.util.TCollection;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TList;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public abstract class TAbstractExecutorService extends TObject implements TExecutorService {
+    protected <T> TRunnableFuture<T> newTaskFor(TRunnable runnable, T value) {
+        return new TFutureTask<>(runnable, value);
+    }
+
+    protected <T> TRunnableFuture<T> newTaskFor(TCallable<T> callable) {
+        return new TFutureTask<>(callable);
+    }
+
+    @Override
+    public TFuture<?> submit(TRunnable task) {
+        if (task == null) {
+            throw new TNullPointerException();
+        }
+        TRunnableFuture<Void> future = newTaskFor(task, null);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> TFuture<T> submit(TRunnable task, T result) {
+        if (task == null) {
+            throw new TNullPointerException();
+        }
+        TRunnableFuture<T> future = newTaskFor(task, result);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> TFuture<T> submit(TCallable<T> task) {
+        if (task == null) {
+            throw new TNullPointerException();
+        }
+        TRunnableFuture<T> future = newTaskFor(task);
+        execute(future);
+        return future;
+    }
+
+    @Override
+    public <T> TList<TFuture<T>> invokeAll(TCollection<? extends TCallable<T>> tasks) throws InterruptedException {
+        TList<TFuture<T>> futures = submitAll(tasks);
+        boolean done = false;
+        try {
+            for (TIterator<TFuture<T>> iter = futures.iterator(); iter.hasNext();) {
+                TFuture<T> future = iter.next();
+                if (!future.isDone()) {
+                    try {
+                        future.get();
+                    } catch (TCancellationException | TExecutionException e) {
+                        // Result is reported by the future itself
+                    }
+                }
+            }
+            done = true;
+            return futures;
+        } finally {
+            if (!done) {
+                cancelAll(futures);
+            }
+        }
+    }
+
+    @Override
+    public <T> TList<TFuture<T>> invokeAll(TCollection<? extends TCallable<T>> tasks, long timeout, TTimeUnit unit)
+            throws InterruptedException {
+        long deadline = TWaiters.deadline(timeout, unit);
+        TList<TFuture<T>> futures = submitAll(tasks);
+        boolean done = false;
+        try {
+            for (TIterator<TFuture<T>> iter = futures.iterator(); iter.hasNext();) {
+                TFuture<T> future = iter.next();
+                if (!future.isDone()) {
+                    try {
+                        future.get(deadline - System.currentTimeMillis(), TTimeUnit.MILLISECONDS);
+                    } catch (TCancellationException | TExecutionException e) {
+                        // Result is reported by the future itself
+                    } catch (TTimeoutException e) {
+                        return futures;
+                    }
+                }
+            }
+            done = true;
+            return futures;
+        } finally {
+            if (!done) {
+                cancelAll(futures);
+            }
+        }
+    }
+
+    private <T> TList<TFuture<T>> submitAll(TCollection<? extends TCallable<T>> tasks) {
+        if (tasks == null) {
+            throw new TNullPointerException();
+        }
+        TList<TFuture<T>> futures = new TArrayList<>(tasks.size());
+        boolean submitted = false;
+        try {
+            for (TIterator<? extends TCallable<T>> iter = tasks.iterator(); iter.hasNext();) {
+                TRunnableFuture<T> future = newTaskFor(iter.next());
+                futures.add(future);
+                execute(future);
+            }
+            submitted = true;
+            return futures;
+        } finally {
+            if (!submitted) {
+                cancelAll(futures);
+            }
+        }
+    }
+
+    private static <T> void cancelAll(TList<TFuture<T>> futures) {
+        for (TIterator<TFuture<T>> iter = futures.iterator(); iter.hasNext();) {
+            iter.next().cancel(true);
+        }
+    }
+
+    @Override
+    public <T> T invokeAny(TCollection<? extends TCallable<T>> tasks) throws InterruptedException,
+            TExecutionException {
+        try {
+            return doInvokeAny(tasks, false, 0);
+        } catch (TTimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public <T> T invokeAny(TCollection<? extends TCallable<T>> tasks, long timeout, TTimeUnit unit)
+            throws InterruptedException, TExecutionException, TTimeoutException {
+        return doInvokeAny(tasks, true, TWaiters.deadline(timeout, unit));
+    }
+
+    private <T> T doInvokeAny(TCollection<? extends TCallable<T>> tasks, boolean timed, long deadline)
+            throws InterruptedException, TExecutionException, TTimeoutException {
+        if (tasks == null) {
+            throw new TNullPointerException();
+        }
+        if (tasks.isEmpty()) {
+            throw new TIllegalArgumentException();
+        }
+        TArrayBlockingQueue<TFuture<T>> completed = new TArrayBlockingQueue<>(tasks.size());
+        TList<TFuture<T>> futures = new TArrayList<>(tasks.size());
+        try {
+            for (TIterator<? extends TCallable<T>> iter = tasks.iterator(); iter.hasNext();) {
+                TFutureTask<T> future = new TFutureTask<T>(iter.next()) {
+                    @Override
+                    protected void done() {
+                        completed.offer(this);
+                    }
+                };
+                futures.add(future);
+                execute(future);
+            }
+            TExecutionException lastException = null;
+            for (int i = 0; i < futures.size(); ++i) {
+                TFuture<T> future;
+                if (timed) {
+                    future = completed.poll(deadline - System.currentTimeMillis(), TTimeUnit.MILLISECONDS);
+                    if (future == null) {
+                        throw new TTimeoutException();
+                    }
+                } else {
+                    future = completed.take();
+                }
+                try {
+                    return future.get();
+                } catch (TExecutionException e) {
+                    lastException = e;
+                } catch (TCancellationException e) {
+                    lastException = new TExecutionException(e);
+                }
+            }
+            throw lastException;
+        } finally {
+            cancelAll(futures);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.io.TSerializable;
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TIllegalStateException;
+import org.teavm.classlib.java.lang.TMath;
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.util.TAbstractQueue;
+import org.teavm.classlib.java.util.TCollection;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TNoSuchElementException;
+
+/**
+ * <p>Bounded FIFO queue backed by a ring buffer. Non-blocking operations are as cheap as in
+ * {@link org.teavm.classlib.java.util.TArrayDeque}. {@link #put(Object)} and {@link #take()} suspend the current
+ * green thread while the queue is full or empty, and they are resumed by whichever operation changes that.</p>
+ *
+ * @author Alexey Andreev
+ * @param <E>
+ */
+public class TArrayBlockingQueue<E> extends TAbstractQueue<E> implements TBlockingQueue<E>, TSerializable {
+    private static final long serialVersionUID = -817911632652898426L;
+    private final Object[] items;
+    private int takeIndex;
+    private int putIndex;
+    private int count;
+    private final TWaiters notEmpty = new TWaiters();
+    private final TWaiters notFull = new TWaiters();
+
+    public TArrayBlockingQueue(int capacity) {
+        this(capacity, false);
+    }
+
+    public TArrayBlockingQueue(int capacity, boolean fair) {
+        if (capacity <= 0) {
+            throw new TIllegalArgumentException();
+        }
+        items = new Object[capacity];
+    }
+
+    public TArrayBlockingQueue(int capacity, boolean fair, TCollection<? extends E> c) {
+        this(capacity, fair);
+        for (TIterator<? extends E> iter = c.iterator(); iter.hasNext();) {
+            add(iter.next());
+        }
+    }
+
+    private void enqueue(E e) {
+        items[putIndex] = e;
+        if (++putIndex == items.length) {
+            putIndex = 0;
+        }
+        ++count;
+        notEmpty.signalAll();
+    }
+
+    @SuppressWarnings("unchecked")
+    private E dequeue() {
+        E e = (E) items[takeIndex];
+        items[takeIndex] = null;
+        if (++takeIndex == items.length) {
+            takeIndex = 0;
+        }
+        --count;
+        notFull.signalAll();
+        return e;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new TNullPointerException();
+        }
+        if (count == items.length) {
+            return false;
+        }
+        enqueue(e);
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) {
+            throw new TNullPointerException();
+        }
+        while (count == items.length) {
+            notFull.await();
+        }
+        enqueue(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TTimeUnit unit) throws InterruptedException {
+        if (e == null) {
+            throw new TNullPointerException();
+        }
+        long deadline = TWaiters.deadline(timeout, unit);
+        while (count == items.length) {
+            if (!notFull.awaitUntil(deadline)) {
+                return false;
+            }
+        }
+        enqueue(e);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        return count > 0 ? dequeue() : null;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        while (count == 0) {
+            notEmpty.await();
+        }
+        return dequeue();
+    }
+
+    @Override
+    public E poll(long timeout, TTimeUnit unit) throws InterruptedException {
+        long deadline = TWaiters.deadline(timeout, unit);
+        while (count == 0) {
+            if (!notEmpty.awaitUntil(deadline)) {
+                return null;
+            }
+        }
+        return dequeue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        return (E) items[takeIndex];
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return items.length - count;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        for (int i = 0, index = takeIndex; i < count; ++i) {
+            if (o.equals(items[index])) {
+                return true;
+            }
+            if (++index == items.length) {
+                index = 0;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        for (int i = 0, index = takeIndex; i < count; ++i) {
+            if (o.equals(items[index])) {
+                removeAt(index);
+                return true;
+            }
+            if (++index == items.length) {
+                index = 0;
+            }
+        }
+        return false;
+    }
+
+    private void removeAt(int index) {
+        if (index == takeIndex) {
+            dequeue();
+            return;
+        }
+        while (true) {
+            int next = index + 1 == items.length ? 0 : index + 1;
+            if (next == putIndex) {
+                break;
+            }
+            items[index] = items[next];
+            index = next;
+        }
+        items[index] = null;
+        putIndex = index;
+        --count;
+        notFull.signalAll();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < items.length; ++i) {
+            items[i] = null;
+        }
+        takeIndex = 0;
+        putIndex = 0;
+        count = 0;
+        notFull.signalAll();
+    }
+
+    @Override
+    public int drainTo(TCollection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(TCollection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new TNullPointerException();
+        }
+        if (c == this) {
+            throw new TIllegalArgumentException();
+        }
+        int n = 0;
+        while (n < maxElements && count > 0) {
+            c.add(dequeue());
+            ++n;
+        }
+        return n;
+    }
+
+    @Override
+    public TIterator<E> iterator() {
+        Object[] snapshot = toArray();
+        return new TIterator<E>() {
+            private int index;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index == snapshot.length) {
+                    throw new TNoSuchElementException();
+                }
+                last = index;
+                return (E) snapshot[index++];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new TIllegalStateException();
+                }
+                removeElement(snapshot[last]);
+                last = -1;
+            }
+        };
+    }
+
+    private void removeElement(Object e) {
+        for (int i = 0, index = takeIndex; i < count; ++i) {
+            if (items[index] == e) {
+                removeAt(index);
+                return;
+            }
+            if (++index == items.length) {
+                index = 0;
+            }
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] result = new Object[count];
+        int firstPart = TMath.min(count, items.length - takeIndex);
+        System.arraycopy(items, takeIndex, result, 0, firstPart);
+        System.arraycopy(items, 0, result, firstPart, count - firstPart);
+        return result;
+    }
+}
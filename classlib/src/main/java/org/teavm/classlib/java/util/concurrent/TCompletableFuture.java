@@ -0,0 +1,771 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.lang.TObject;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.lang.TThread;
+import org.teavm.classlib.java.lang.TThrowable;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TBiFunction;
+import org.teavm.classlib.java.util.function.TConsumer;
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TSupplier;
+
+/**
+ * <p>Future that can be completed explicitly and that runs dependent actions when it completes. Since TeaVM
+ * threads never run simultaneously, a future is a plain object: its result and a list of callbacks to run on
+ * completion. Non-async actions run in the thread that completes the future, async ones are passed to
+ * an executor, which by default starts a new green thread for each of them. {@link #get()} and {@link #join()}
+ * suspend the current green thread until the future completes.</p>
+ *
+ * @author Alexey Andreev
+ * @param <T>
+ */
+public class TCompletableFuture<T> extends TObject implements TFuture<T>, TCompletionStage<T> {
+    private static final AltResult NIL = new AltResult(null);
+    private static final TExecutor ASYNC_POOL = command -> new TThread(command).start();
+    private Object result;
+    private Callback firstCallback;
+    private Callback lastCallback;
+    private TWaiters waiters;
+
+    public TCompletableFuture() {
+    }
+
+    private TCompletableFuture(Object result) {
+        this.result = result;
+    }
+
+    public static <U> TCompletableFuture<U> supplyAsync(TSupplier<U> supplier) {
+        return supplyAsync(supplier, ASYNC_POOL);
+    }
+
+    public static <U> TCompletableFuture<U> supplyAsync(TSupplier<U> supplier, TExecutor executor) {
+        if (supplier == null || executor == null) {
+            throw new TNullPointerException();
+        }
+        TCompletableFuture<U> dst = new TCompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                dst.completeValue(supplier.get());
+            } catch (Throwable e) {
+                dst.completeThrowable(e);
+            }
+        });
+        return dst;
+    }
+
+    public static TCompletableFuture<Void> runAsync(TRunnable runnable) {
+        return runAsync(runnable, ASYNC_POOL);
+    }
+
+    public static TCompletableFuture<Void> runAsync(TRunnable runnable, TExecutor executor) {
+        if (runnable == null) {
+            throw new TNullPointerException();
+        }
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        }, executor);
+    }
+
+    public static <U> TCompletableFuture<U> completedFuture(U value) {
+        return new TCompletableFuture<>(encodeValue(value));
+    }
+
+    public static TCompletableFuture<Void> allOf(TCompletableFuture<?>... cfs) {
+        TCompletableFuture<Void> dst = new TCompletableFuture<>();
+        if (cfs.length == 0) {
+            dst.result = NIL;
+            return dst;
+        }
+        int[] remaining = { cfs.length };
+        for (TCompletableFuture<?> cf : cfs) {
+            cf.addCallback(() -> {
+                if (--remaining[0] > 0) {
+                    return;
+                }
+                for (TCompletableFuture<?> other : cfs) {
+                    if (exceptionOf(other.result) != null) {
+                        dst.completeResult(encodeRelay(other.result));
+                        return;
+                    }
+                }
+                dst.completeResult(NIL);
+            });
+        }
+        return dst;
+    }
+
+    public static TCompletableFuture<Object> anyOf(TCompletableFuture<?>... cfs) {
+        TCompletableFuture<Object> dst = new TCompletableFuture<>();
+        for (TCompletableFuture<?> cf : cfs) {
+            cf.addCallback(() -> dst.completeResult(encodeRelay(cf.result)));
+        }
+        return dst;
+    }
+
+    private static Object encodeValue(Object value) {
+        return value == null ? NIL : value;
+    }
+
+    private static Object encodeThrowable(Throwable x) {
+        return new AltResult(x instanceof TCompletionException ? x : new TCompletionException((TThrowable) x));
+    }
+
+    private static Object encodeRelay(Object r) {
+        Throwable x = exceptionOf(r);
+        return x != null && !(x instanceof TCompletionException) ? encodeThrowable(x) : r;
+    }
+
+    private static Throwable exceptionOf(Object r) {
+        return r instanceof AltResult ? ((AltResult) r).ex : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T valueOf(Object r) {
+        return r instanceof AltResult ? null : (T) r;
+    }
+
+    private boolean completeValue(T value) {
+        return completeResult(encodeValue(value));
+    }
+
+    private boolean completeThrowable(Throwable x) {
+        return completeResult(encodeThrowable(x));
+    }
+
+    private boolean completeResult(Object r) {
+        if (result != null) {
+            return false;
+        }
+        result = r;
+        fireCallbacks();
+        return true;
+    }
+
+    private void fireCallbacks() {
+        Callback callback = firstCallback;
+        firstCallback = null;
+        lastCallback = null;
+        while (callback != null) {
+            callback.action.run();
+            callback = callback.next;
+        }
+        if (waiters != null) {
+            waiters.signalAll();
+        }
+    }
+
+    private void addCallback(TRunnable action) {
+        if (result != null) {
+            action.run();
+            return;
+        }
+        Callback callback = new Callback(action);
+        if (lastCallback == null) {
+            firstCallback = callback;
+        } else {
+            lastCallback.next = callback;
+        }
+        lastCallback = callback;
+    }
+
+    private static void dispatch(TCompletableFuture<?> dst, TExecutor executor, TRunnable action) {
+        if (executor == null) {
+            action.run();
+            return;
+        }
+        try {
+            executor.execute(action);
+        } catch (Throwable e) {
+            dst.completeThrowable(e);
+        }
+    }
+
+    private static TExecutor screenExecutor(TExecutor executor) {
+        if (executor == null) {
+            throw new TNullPointerException();
+        }
+        return executor;
+    }
+
+    private static void requireNonNull(Object action) {
+        if (action == null) {
+            throw new TNullPointerException();
+        }
+    }
+
+    private <U> TCompletableFuture<U> uniStage(TExecutor executor, TFunction<? super T, ? extends U> fn) {
+        TCompletableFuture<U> dst = new TCompletableFuture<>();
+        addCallback(() -> {
+            Object r = result;
+            if (exceptionOf(r) != null) {
+                dst.completeResult(encodeRelay(r));
+                return;
+            }
+            dispatch(dst, executor, () -> {
+                try {
+                    T t = valueOf(r);
+                    dst.completeValue(fn.apply(t));
+                } catch (Throwable e) {
+                    dst.completeThrowable(e);
+                }
+            });
+        });
+        return dst;
+    }
+
+    private <U, V> TCompletableFuture<V> biStage(TCompletionStage<? extends U> other, TExecutor executor,
+            TBiFunction<? super T, ? super U, ? extends V> fn) {
+        TCompletableFuture<? extends U> b = other.toCompletableFuture();
+        TCompletableFuture<V> dst = new TCompletableFuture<>();
+        TRunnable trigger = new TRunnable() {
+            private boolean fired;
+
+            @Override
+            public void run() {
+                if (fired) {
+                    return;
+                }
+                Object r = result;
+                Object s = b.result;
+                Object failed = exceptionOf(r) != null ? r : exceptionOf(s) != null ? s : null;
+                if (failed == null && (r == null || s == null)) {
+                    return;
+                }
+                fired = true;
+                if (failed != null) {
+                    dst.completeResult(encodeRelay(failed));
+                    return;
+                }
+                dispatch(dst, executor, () -> {
+                    try {
+                        T t = valueOf(r);
+                        U u = valueOf(s);
+                        dst.completeValue(fn.apply(t, u));
+                    } catch (Throwable e) {
+                        dst.completeThrowable(e);
+                    }
+                });
+            }
+        };
+        addCallback(trigger);
+        b.addCallback(trigger);
+        return dst;
+    }
+
+    private static <U> TCompletableFuture<U> either(TCompletableFuture<? extends U> a,
+            TCompletableFuture<? extends U> b) {
+        TCompletableFuture<U> first = new TCompletableFuture<>();
+        a.addCallback(() -> first.completeResult(a.result));
+        b.addCallback(() -> first.completeResult(b.result));
+        return first;
+    }
+
+    private <U> TCompletableFuture<U> composeStage(TExecutor executor,
+            TFunction<? super T, ? extends TCompletionStage<U>> fn) {
+        requireNonNull(fn);
+        TCompletableFuture<U> dst = new TCompletableFuture<>();
+        addCallback(() -> {
+            Object r = result;
+            if (exceptionOf(r) != null) {
+                dst.completeResult(encodeRelay(r));
+                return;
+            }
+            dispatch(dst, executor, () -> {
+                try {
+                    T t = valueOf(r);
+                    TCompletableFuture<U> next = fn.apply(t).toCompletableFuture();
+                    next.addCallback(() -> dst.completeResult(encodeRelay(next.result)));
+                } catch (Throwable e) {
+                    dst.completeThrowable(e);
+                }
+            });
+        });
+        return dst;
+    }
+
+    private TCompletableFuture<T> whenCompleteStage(TExecutor executor,
+            TBiConsumer<? super T, ? super Throwable> action) {
+        requireNonNull(action);
+        TCompletableFuture<T> dst = new TCompletableFuture<>();
+        addCallback(() -> {
+            Object r = result;
+            dispatch(dst, executor, () -> {
+                Throwable x = exceptionOf(r);
+                try {
+                    T t = valueOf(r);
+                    action.accept(t, x);
+                } catch (Throwable e) {
+                    if (x == null) {
+                        dst.completeThrowable(e);
+                        return;
+                    }
+                }
+                dst.completeResult(encodeRelay(r));
+            });
+        });
+        return dst;
+    }
+
+    private <U> TCompletableFuture<U> handleStage(TExecutor executor,
+            TBiFunction<? super T, Throwable, ? extends U> fn) {
+        requireNonNull(fn);
+        TCompletableFuture<U> dst = new TCompletableFuture<>();
+        addCallback(() -> {
+            Object r = result;
+            dispatch(dst, executor, () -> {
+                try {
+                    T t = valueOf(r);
+                    dst.completeValue(fn.apply(t, exceptionOf(r)));
+                } catch (Throwable e) {
+                    dst.completeThrowable(e);
+                }
+            });
+        });
+        return dst;
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> thenApply(TFunction<? super T, ? extends U> fn) {
+        requireNonNull(fn);
+        return uniStage(null, fn);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> thenApplyAsync(TFunction<? super T, ? extends U> fn) {
+        return thenApplyAsync(fn, ASYNC_POOL);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> thenApplyAsync(TFunction<? super T, ? extends U> fn, TExecutor executor) {
+        requireNonNull(fn);
+        return uniStage(screenExecutor(executor), fn);
+    }
+
+    @Override
+    public TCompletableFuture<Void> thenAccept(TConsumer<? super T> action) {
+        return acceptStage(null, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> thenAcceptAsync(TConsumer<? super T> action) {
+        return acceptStage(ASYNC_POOL, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> thenAcceptAsync(TConsumer<? super T> action, TExecutor executor) {
+        return acceptStage(screenExecutor(executor), action);
+    }
+
+    private TCompletableFuture<Void> acceptStage(TExecutor executor, TConsumer<? super T> action) {
+        requireNonNull(action);
+        return uniStage(executor, t -> {
+            action.accept(t);
+            return null;
+        });
+    }
+
+    @Override
+    public TCompletableFuture<Void> thenRun(TRunnable action) {
+        return runStage(null, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> thenRunAsync(TRunnable action) {
+        return runStage(ASYNC_POOL, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> thenRunAsync(TRunnable action, TExecutor executor) {
+        return runStage(screenExecutor(executor), action);
+    }
+
+    private TCompletableFuture<Void> runStage(TExecutor executor, TRunnable action) {
+        requireNonNull(action);
+        return uniStage(executor, t -> {
+            action.run();
+            return null;
+        });
+    }
+
+    @Override
+    public <U, V> TCompletableFuture<V> thenCombine(TCompletionStage<? extends U> other,
+            TBiFunction<? super T, ? super U, ? extends V> fn) {
+        requireNonNull(fn);
+        return biStage(other, null, fn);
+    }
+
+    @Override
+    public <U, V> TCompletableFuture<V> thenCombineAsync(TCompletionStage<? extends U> other,
+            TBiFunction<? super T, ? super U, ? extends V> fn) {
+        return thenCombineAsync(other, fn, ASYNC_POOL);
+    }
+
+    @Override
+    public <U, V> TCompletableFuture<V> thenCombineAsync(TCompletionStage<? extends U> other,
+            TBiFunction<? super T, ? super U, ? extends V> fn, TExecutor executor) {
+        requireNonNull(fn);
+        return biStage(other, screenExecutor(executor), fn);
+    }
+
+    @Override
+    public <U> TCompletableFuture<Void> thenAcceptBoth(TCompletionStage<? extends U> other,
+            TBiConsumer<? super T, ? super U> action) {
+        return acceptBothStage(other, null, action);
+    }
+
+    @Override
+    public <U> TCompletableFuture<Void> thenAcceptBothAsync(TCompletionStage<? extends U> other,
+            TBiConsumer<? super T, ? super U> action) {
+        return acceptBothStage(other, ASYNC_POOL, action);
+    }
+
+    @Override
+    public <U> TCompletableFuture<Void> thenAcceptBothAsync(TCompletionStage<? extends U> other,
+            TBiConsumer<? super T, ? super U> action, TExecutor executor) {
+        return acceptBothStage(other, screenExecutor(executor), action);
+    }
+
+    private <U> TCompletableFuture<Void> acceptBothStage(TCompletionStage<? extends U> other, TExecutor executor,
+            TBiConsumer<? super T, ? super U> action) {
+        requireNonNull(action);
+        return biStage(other, executor, (T t, U u) -> {
+            action.accept(t, u);
+            return null;
+        });
+    }
+
+    @Override
+    public TCompletableFuture<Void> runAfterBoth(TCompletionStage<?> other, TRunnable action) {
+        return runAfterBothStage(other, null, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> runAfterBothAsync(TCompletionStage<?> other, TRunnable action) {
+        return runAfterBothStage(other, ASYNC_POOL, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> runAfterBothAsync(TCompletionStage<?> other, TRunnable action,
+            TExecutor executor) {
+        return runAfterBothStage(other, screenExecutor(executor), action);
+    }
+
+    private TCompletableFuture<Void> runAfterBothStage(TCompletionStage<?> other, TExecutor executor,
+            TRunnable action) {
+        requireNonNull(action);
+        return biStage(other, executor, (t, u) -> {
+            action.run();
+            return null;
+        });
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> applyToEither(TCompletionStage<? extends T> other,
+            TFunction<? super T, U> fn) {
+        requireNonNull(fn);
+        return either(this, other.toCompletableFuture()).uniStage(null, fn);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> applyToEitherAsync(TCompletionStage<? extends T> other,
+            TFunction<? super T, U> fn) {
+        return applyToEitherAsync(other, fn, ASYNC_POOL);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> applyToEitherAsync(TCompletionStage<? extends T> other,
+            TFunction<? super T, U> fn, TExecutor executor) {
+        requireNonNull(fn);
+        return either(this, other.toCompletableFuture()).uniStage(screenExecutor(executor), fn);
+    }
+
+    @Override
+    public TCompletableFuture<Void> acceptEither(TCompletionStage<? extends T> other, TConsumer<? super T> action) {
+        return either(this, other.toCompletableFuture()).acceptStage(null, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> acceptEitherAsync(TCompletionStage<? extends T> other,
+            TConsumer<? super T> action) {
+        return either(this, other.toCompletableFuture()).acceptStage(ASYNC_POOL, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> acceptEitherAsync(TCompletionStage<? extends T> other,
+            TConsumer<? super T> action, TExecutor executor) {
+        return either(this, other.toCompletableFuture()).acceptStage(screenExecutor(executor), action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> runAfterEither(TCompletionStage<?> other, TRunnable action) {
+        return either(this, other.toCompletableFuture()).runStage(null, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> runAfterEitherAsync(TCompletionStage<?> other, TRunnable action) {
+        return either(this, other.toCompletableFuture()).runStage(ASYNC_POOL, action);
+    }
+
+    @Override
+    public TCompletableFuture<Void> runAfterEitherAsync(TCompletionStage<?> other, TRunnable action,
+            TExecutor executor) {
+        return either(this, other.toCompletableFuture()).runStage(screenExecutor(executor), action);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> thenCompose(TFunction<? super T, ? extends TCompletionStage<U>> fn) {
+        return composeStage(null, fn);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> thenComposeAsync(TFunction<? super T, ? extends TCompletionStage<U>> fn) {
+        return composeStage(ASYNC_POOL, fn);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> thenComposeAsync(TFunction<? super T, ? extends TCompletionStage<U>> fn,
+            TExecutor executor) {
+        return composeStage(screenExecutor(executor), fn);
+    }
+
+    @Override
+    public TCompletableFuture<T> exceptionally(TFunction<Throwable, ? extends T> fn) {
+        requireNonNull(fn);
+        TCompletableFuture<T> dst = new TCompletableFuture<>();
+        addCallback(() -> {
+            Object r = result;
+            Throwable x = exceptionOf(r);
+            if (x == null) {
+                dst.completeResult(r);
+                return;
+            }
+            try {
+                dst.completeValue(fn.apply(x));
+            } catch (Throwable e) {
+                dst.completeThrowable(e);
+            }
+        });
+        return dst;
+    }
+
+    @Override
+    public TCompletableFuture<T> whenComplete(TBiConsumer<? super T, ? super Throwable> action) {
+        return whenCompleteStage(null, action);
+    }
+
+    @Override
+    public TCompletableFuture<T> whenCompleteAsync(TBiConsumer<? super T, ? super Throwable> action) {
+        return whenCompleteStage(ASYNC_POOL, action);
+    }
+
+    @Override
+    public TCompletableFuture<T> whenCompleteAsync(TBiConsumer<? super T, ? super Throwable> action,
+            TExecutor executor) {
+        return whenCompleteStage(screenExecutor(executor), action);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> handle(TBiFunction<? super T, Throwable, ? extends U> fn) {
+        return handleStage(null, fn);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> handleAsync(TBiFunction<? super T, Throwable, ? extends U> fn) {
+        return handleStage(ASYNC_POOL, fn);
+    }
+
+    @Override
+    public <U> TCompletableFuture<U> handleAsync(TBiFunction<? super T, Throwable, ? extends U> fn,
+            TExecutor executor) {
+        return handleStage(screenExecutor(executor), fn);
+    }
+
+    @Override
+    public TCompletableFuture<T> toCompletableFuture() {
+        return this;
+    }
+
+    @Override
+    public boolean isDone() {
+        return result != null;
+    }
+
+    @Override
+    public T get() throws InterruptedException, TExecutionException {
+        while (result == null) {
+            waiters().await();
+        }
+        return reportGet(result);
+    }
+
+    @Override
+    public T get(long timeout, TTimeUnit unit) throws InterruptedException, TExecutionException, TTimeoutException {
+        if (unit == null) {
+            throw new TNullPointerException();
+        }
+        long deadline = TWaiters.deadline(timeout, unit);
+        while (result == null) {
+            if (!waiters().awaitUntil(deadline)) {
+                throw new TTimeoutException();
+            }
+        }
+        return reportGet(result);
+    }
+
+    public T join() {
+        boolean interrupted = false;
+        while (result == null) {
+            try {
+                waiters().await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            TThread.currentThread().interrupt();
+        }
+        return reportJoin(result);
+    }
+
+    public T getNow(T valueIfAbsent) {
+        return result != null ? reportJoin(result) : valueIfAbsent;
+    }
+
+    private TWaiters waiters() {
+        if (waiters == null) {
+            waiters = new TWaiters();
+        }
+        return waiters;
+    }
+
+    private static <T> T reportGet(Object r) throws TExecutionException {
+        Throwable x = exceptionOf(r);
+        if (x == null) {
+            return valueOf(r);
+        }
+        if (x instanceof TCancellationException) {
+            throw (TCancellationException) x;
+        }
+        if (x instanceof TCompletionException && x.getCause() != null) {
+            x = x.getCause();
+        }
+        throw new TExecutionException((TThrowable) x);
+    }
+
+    private static <T> T reportJoin(Object r) {
+        Throwable x = exceptionOf(r);
+        if (x == null) {
+            return valueOf(r);
+        }
+        if (x instanceof TCancellationException) {
+            throw (TCancellationException) x;
+        }
+        if (x instanceof TCompletionException) {
+            throw (TCompletionException) x;
+        }
+        throw new TCompletionException((TThrowable) x);
+    }
+
+    public boolean complete(T value) {
+        return completeValue(value);
+    }
+
+    public boolean completeExceptionally(Throwable ex) {
+        if (ex == null) {
+            throw new TNullPointerException();
+        }
+        return completeResult(new AltResult(ex));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = completeResult(new AltResult(new TCancellationException()));
+        return cancelled || isCancelled();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return exceptionOf(result) instanceof TCancellationException;
+    }
+
+    public boolean isCompletedExceptionally() {
+        return exceptionOf(result) != null;
+    }
+
+    public void obtrudeValue(T value) {
+        obtrude(encodeValue(value));
+    }
+
+    public void obtrudeException(Throwable ex) {
+        if (ex == null) {
+            throw new TNullPointerException();
+        }
+        obtrude(new AltResult(ex));
+    }
+
+    private void obtrude(Object r) {
+        boolean wasDone = result != null;
+        result = r;
+        if (!wasDone) {
+            fireCallbacks();
+        }
+    }
+
+    public int getNumberOfDependents() {
+        int count = 0;
+        for (Callback callback = firstCallback; callback != null; callback = callback.next) {
+            ++count;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        Object r = result;
+        int count = getNumberOfDependents();
+        String state;
+        if (r == null) {
+            state = count == 0 ? "[Incomplete]" : "[Incomplete, with " + count + " dependents]";
+        } else if (exceptionOf(r) != null) {
+            state = "[Completed exceptionally: " + exceptionOf(r) + "]";
+        } else {
+            state = "[Completed normally]";
+        }
+        return super.toString() + state;
+    }
+
+    static final class AltResult {
+        final Throwable ex;
+
+        AltResult(Throwable ex) {
+            this.ex = ex;
+        }
+    }
+
+    static final class Callback {
+        final TRunnable action;
+        Callback next;
+
+        Callback(TRunnable action) {
+            this.action = action;
+        }
+    }
+}
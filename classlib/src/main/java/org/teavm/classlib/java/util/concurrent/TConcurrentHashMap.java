@@ -0,0 +1,567 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.io.TSerializable;
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TIllegalStateException;
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.lang.TUnsupportedOperationException;
+import org.teavm.classlib.java.util.TAbstractCollection;
+import org.teavm.classlib.java.util.TAbstractMap;
+import org.teavm.classlib.java.util.TAbstractSet;
+import org.teavm.classlib.java.util.TCollection;
+import org.teavm.classlib.java.util.TEnumeration;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TMap;
+import org.teavm.classlib.java.util.TNoSuchElementException;
+import org.teavm.classlib.java.util.TSet;
+
+/**
+ * <p>Hash table with separate chaining, like {@link org.teavm.classlib.java.util.THashMap}. TeaVM threads never
+ * preempt each other, so every operation that does not call user code is atomic, and the table needs no locks
+ * at all. What differs from a plain hash map is iteration: it never throws
+ * {@link org.teavm.classlib.java.util.TConcurrentModificationException}, since a thread may suspend in the middle
+ * of a loop while other threads modify the map. Removed nodes keep their links and resizing copies nodes
+ * to a new table, so an iterator walks a consistent snapshot of chains and may or may not see later
+ * modifications.</p>
+ *
+ * @author Alexey Andreev
+ * @param <K>
+ * @param <V>
+ */
+public class TConcurrentHashMap<K, V> extends TAbstractMap<K, V> implements TConcurrentMap<K, V>, TSerializable {
+    private static final long serialVersionUID = 7249069246763182397L;
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+    private transient Node<K, V>[] table;
+    private transient int size;
+    private transient int threshold;
+    private final float loadFactor;
+    private transient KeySetView<K, V> keySet;
+    private transient TCollection<V> values;
+    private transient TSet<TMap.Entry<K, V>> entrySet;
+
+    public TConcurrentHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TConcurrentHashMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    public TConcurrentHashMap(int initialCapacity, float loadFactor) {
+        this(initialCapacity, loadFactor, 1);
+    }
+
+    public TConcurrentHashMap(int initialCapacity, float loadFactor, int concurrencyLevel) {
+        if (initialCapacity < 0 || !(loadFactor > 0) || concurrencyLevel <= 0) {
+            throw new TIllegalArgumentException();
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor((long) (1.0 + initialCapacity / loadFactor)));
+    }
+
+    public TConcurrentHashMap(TMap<? extends K, ? extends V> m) {
+        this(m.size());
+        putAll(m);
+    }
+
+    private static int tableSizeFor(long capacity) {
+        int result = 1;
+        while (result < capacity && result < MAXIMUM_CAPACITY) {
+            result <<= 1;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        table = (Node<K, V>[]) new Node<?, ?>[capacity];
+        threshold = capacity < MAXIMUM_CAPACITY ? (int) (capacity * loadFactor) : Integer.MAX_VALUE;
+    }
+
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Node<K, V> findNode(Object key) {
+        if (key == null) {
+            throw new TNullPointerException();
+        }
+        int hash = spread(key);
+        Node<K, V>[] tab = table;
+        for (Node<K, V> node = tab[hash & (tab.length - 1)]; node != null; node = node.next) {
+            if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long mappingCount() {
+        return size;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = findNode(key);
+        return node != null ? node.value : null;
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Node<K, V> node = findNode(key);
+        return node != null ? node.value : defaultValue;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findNode(key) != null;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        if (value == null) {
+            throw new TNullPointerException();
+        }
+        Node<K, V>[] tab = table;
+        for (int i = 0; i < tab.length; ++i) {
+            for (Node<K, V> node = tab[i]; node != null; node = node.next) {
+                if (node.value == value || value.equals(node.value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(Object value) {
+        return containsValue(value);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return putValue(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return putValue(key, value, true);
+    }
+
+    private V putValue(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) {
+            throw new TNullPointerException();
+        }
+        int hash = spread(key);
+        Node<K, V>[] tab = table;
+        int index = hash & (tab.length - 1);
+        for (Node<K, V> node = tab[index]; node != null; node = node.next) {
+            if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                V old = node.value;
+                if (!onlyIfAbsent) {
+                    node.value = value;
+                }
+                return old;
+            }
+        }
+        tab[index] = new Node<>(hash, key, value, tab[index]);
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    private void resize() {
+        Node<K, V>[] oldTable = table;
+        allocate(oldTable.length * 2);
+        Node<K, V>[] tab = table;
+        int mask = tab.length - 1;
+        for (int i = 0; i < oldTable.length; ++i) {
+            for (Node<K, V> node = oldTable[i]; node != null; node = node.next) {
+                int index = node.hash & mask;
+                tab[index] = new Node<>(node.hash, node.key, node.value, tab[index]);
+            }
+        }
+    }
+
+    @Override
+    public void putAll(TMap<? extends K, ? extends V> m) {
+        for (TIterator<? extends TMap.Entry<? extends K, ? extends V>> iter = m.entrySet().iterator();
+                iter.hasNext();) {
+            TMap.Entry<? extends K, ? extends V> entry = iter.next();
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return removeNode(key, null);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (key == null) {
+            throw new TNullPointerException();
+        }
+        return value != null && removeNode(key, value) != null;
+    }
+
+    private V removeNode(Object key, Object expectedValue) {
+        if (key == null) {
+            throw new TNullPointerException();
+        }
+        int hash = spread(key);
+        Node<K, V>[] tab = table;
+        int index = hash & (tab.length - 1);
+        Node<K, V> prev = null;
+        for (Node<K, V> node = tab[index]; node != null; node = node.next) {
+            if (node.hash == hash && (node.key == key || key.equals(node.key))) {
+                if (expectedValue != null && expectedValue != node.value && !expectedValue.equals(node.value)) {
+                    return null;
+                }
+                if (prev == null) {
+                    tab[index] = node.next;
+                } else {
+                    prev.next = node.next;
+                }
+                --size;
+                return node.value;
+            }
+            prev = node;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null || newValue == null) {
+            throw new TNullPointerException();
+        }
+        Node<K, V> node = findNode(key);
+        if (node == null || (node.value != oldValue && !oldValue.equals(node.value))) {
+            return false;
+        }
+        node.value = newValue;
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (value == null) {
+            throw new TNullPointerException();
+        }
+        Node<K, V> node = findNode(key);
+        if (node == null) {
+            return null;
+        }
+        V old = node.value;
+        node.value = value;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Node<K, V>[] tab = table;
+        for (int i = 0; i < tab.length; ++i) {
+            tab[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public KeySetView<K, V> keySet() {
+        if (keySet == null) {
+            keySet = new KeySetView<>(this, null);
+        }
+        return keySet;
+    }
+
+    public KeySetView<K, V> keySet(V mappedValue) {
+        if (mappedValue == null) {
+            throw new TNullPointerException();
+        }
+        return new KeySetView<>(this, mappedValue);
+    }
+
+    public static <K> KeySetView<K, Boolean> newKeySet() {
+        return new KeySetView<>(new TConcurrentHashMap<>(), Boolean.TRUE);
+    }
+
+    public static <K> KeySetView<K, Boolean> newKeySet(int initialCapacity) {
+        return new KeySetView<>(new TConcurrentHashMap<>(initialCapacity), Boolean.TRUE);
+    }
+
+    @Override
+    public TCollection<V> values() {
+        if (values == null) {
+            values = new TAbstractCollection<V>() {
+                @Override
+                public TIterator<V> iterator() {
+                    return new ValueIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    return containsValue(o);
+                }
+
+                @Override
+                public void clear() {
+                    TConcurrentHashMap.this.clear();
+                }
+            };
+        }
+        return values;
+    }
+
+    @Override
+    public TSet<TMap.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new TAbstractSet<TMap.Entry<K, V>>() {
+                @Override
+                public TIterator<TMap.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof TMap.Entry)) {
+                        return false;
+                    }
+                    TMap.Entry<?, ?> entry = (TMap.Entry<?, ?>) o;
+                    Object key = entry.getKey();
+                    Object value = entry.getValue();
+                    if (key == null || value == null) {
+                        return false;
+                    }
+                    V actual = get(key);
+                    return actual != null && (actual == value || actual.equals(value));
+                }
+
+                @Override
+                public boolean remove(Object o) {
+                    if (!(o instanceof TMap.Entry)) {
+                        return false;
+                    }
+                    TMap.Entry<?, ?> entry = (TMap.Entry<?, ?>) o;
+                    Object key = entry.getKey();
+                    Object value = entry.getValue();
+                    return key != null && value != null && TConcurrentHashMap.this.remove(key, value);
+                }
+
+                @Override
+                public void clear() {
+                    TConcurrentHashMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    public TEnumeration<K> keys() {
+        return new KeyIterator();
+    }
+
+    public TEnumeration<V> elements() {
+        return new ValueIterator();
+    }
+
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        V value;
+        Node<K, V> next;
+
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private abstract class HashIterator {
+        private final Node<K, V>[] tab = table;
+        private int index;
+        private Node<K, V> next;
+        private Node<K, V> last;
+
+        HashIterator() {
+            advance(null);
+        }
+
+        private void advance(Node<K, V> node) {
+            node = node != null ? node.next : null;
+            while (node == null && index < tab.length) {
+                node = tab[index++];
+            }
+            next = node;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public boolean hasMoreElements() {
+            return next != null;
+        }
+
+        final Node<K, V> nextNode() {
+            Node<K, V> node = next;
+            if (node == null) {
+                throw new TNoSuchElementException();
+            }
+            advance(node);
+            last = node;
+            return node;
+        }
+
+        public void remove() {
+            if (last == null) {
+                throw new TIllegalStateException();
+            }
+            TConcurrentHashMap.this.remove(last.key);
+            last = null;
+        }
+    }
+
+    private class KeyIterator extends HashIterator implements TIterator<K>, TEnumeration<K> {
+        @Override
+        public K next() {
+            return nextNode().key;
+        }
+
+        @Override
+        public K nextElement() {
+            return nextNode().key;
+        }
+    }
+
+    private class ValueIterator extends HashIterator implements TIterator<V>, TEnumeration<V> {
+        @Override
+        public V next() {
+            return nextNode().value;
+        }
+
+        @Override
+        public V nextElement() {
+            return nextNode().value;
+        }
+    }
+
+    private class EntryIterator extends HashIterator implements TIterator<TMap.Entry<K, V>> {
+        @Override
+        public TMap.Entry<K, V> next() {
+            Node<K, V> node = nextNode();
+            return new WriteThroughEntry(node.key, node.value);
+        }
+    }
+
+    private class WriteThroughEntry extends TAbstractMap.SimpleEntry<K, V> {
+        WriteThroughEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (value == null) {
+                throw new TNullPointerException();
+            }
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+
+    public static class KeySetView<K, V> extends TAbstractSet<K> implements TSerializable {
+        private final TConcurrentHashMap<K, V> map;
+        private final V value;
+
+        KeySetView(TConcurrentHashMap<K, V> map, V value) {
+            this.map = map;
+            this.value = value;
+        }
+
+        public TConcurrentHashMap<K, V> getMap() {
+            return map;
+        }
+
+        public V getMappedValue() {
+            return value;
+        }
+
+        @Override
+        public TIterator<K> iterator() {
+            return map.new KeyIterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.size == 0;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean add(K e) {
+            if (value == null) {
+                throw new TUnsupportedOperationException();
+            }
+            return map.putIfAbsent(e, value) == null;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return map.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.io.TSerializable;
+import org.teavm.classlib.java.lang.TIllegalStateException;
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.util.TAbstractQueue;
+import org.teavm.classlib.java.util.TCollection;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TNoSuchElementException;
+import org.teavm.classlib.java.util.TQueue;
+
+/**
+ * <p>Unbounded FIFO queue of linked nodes. Operations of TeaVM threads never interleave, so the queue is
+ * an ordinary linked list. Removed nodes are marked and keep their links, so an iterator, which may be
+ * suspended between two calls, skips them and never throws
+ * {@link org.teavm.classlib.java.util.TConcurrentModificationException}.</p>
+ *
+ * @author Alexey Andreev
+ * @param <E>
+ */
+public class TConcurrentLinkedQueue<E> extends TAbstractQueue<E> implements TQueue<E>, TSerializable {
+    private static final long serialVersionUID = 196745693267521676L;
+    private transient Node<E> head;
+    private transient Node<E> tail;
+    private transient int size;
+
+    public TConcurrentLinkedQueue() {
+    }
+
+    public TConcurrentLinkedQueue(TCollection<? extends E> c) {
+        for (TIterator<? extends E> iter = c.iterator(); iter.hasNext();) {
+            offer(iter.next());
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new TNullPointerException();
+        }
+        Node<E> node = new Node<>(e);
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+        ++size;
+        return true;
+    }
+
+    @Override
+    public boolean add(E e) {
+        return offer(e);
+    }
+
+    @Override
+    public E poll() {
+        Node<E> node = head;
+        if (node == null) {
+            return null;
+        }
+        unlink(node, null);
+        return node.item;
+    }
+
+    @Override
+    public E peek() {
+        Node<E> node = head;
+        return node != null ? node.item : null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head == null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        for (Node<E> node = head; node != null; node = node.next) {
+            if (o.equals(node.item)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        Node<E> prev = null;
+        for (Node<E> node = head; node != null; node = node.next) {
+            if (o.equals(node.item)) {
+                unlink(node, prev);
+                return true;
+            }
+            prev = node;
+        }
+        return false;
+    }
+
+    private void unlink(Node<E> node, Node<E> prev) {
+        if (prev == null) {
+            head = node.next;
+        } else {
+            prev.next = node.next;
+        }
+        if (tail == node) {
+            tail = prev;
+        }
+        node.removed = true;
+        --size;
+    }
+
+    private void unlink(Node<E> target) {
+        Node<E> prev = null;
+        for (Node<E> node = head; node != null; node = node.next) {
+            if (node == target) {
+                unlink(node, prev);
+                return;
+            }
+            prev = node;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Node<E> node = head; node != null; node = node.next) {
+            node.removed = true;
+        }
+        head = null;
+        tail = null;
+        size = 0;
+    }
+
+    @Override
+    public TIterator<E> iterator() {
+        return new TIterator<E>() {
+            private Node<E> current;
+            private Node<E> last;
+
+            private Node<E> successor() {
+                return skipRemoved(current == null ? head : current.next);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return successor() != null;
+            }
+
+            @Override
+            public E next() {
+                Node<E> node = successor();
+                if (node == null) {
+                    throw new TNoSuchElementException();
+                }
+                current = node;
+                last = node;
+                return node.item;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new TIllegalStateException();
+                }
+                if (!last.removed) {
+                    unlink(last);
+                }
+                last = null;
+            }
+        };
+    }
+
+    private static <E> Node<E> skipRemoved(Node<E> node) {
+        while (node != null && node.removed) {
+            node = node.next;
+        }
+        return node;
+    }
+
+    static class Node<E> {
+        final E item;
+        Node<E> next;
+        boolean removed;
+
+        Node(E item) {
+            this.item = item;
+        }
+    }
+}
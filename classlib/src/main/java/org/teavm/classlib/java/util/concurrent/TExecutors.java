@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.lang.TString;
+import org.teavm.classlib.java.lang.TThread;
+
+/**
+ * <p>Factory methods for executors. Every executor runs tasks in TeaVM green threads, which are cheap, so a
+ * cached pool costs about the same as a fixed one.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class TExecutors {
+    private static final long CACHED_KEEP_ALIVE = 60000;
+    private static int poolCount;
+
+    private TExecutors() {
+    }
+
+    public static TExecutorService newFixedThreadPool(int threadCount) {
+        return newFixedThreadPool(threadCount, defaultThreadFactory());
+    }
+
+    public static TExecutorService newFixedThreadPool(int threadCount, TThreadFactory threadFactory) {
+        if (threadCount <= 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TGreenThreadExecutor(threadCount, 0, threadFactory);
+    }
+
+    public static TExecutorService newSingleThreadExecutor() {
+        return newFixedThreadPool(1);
+    }
+
+    public static TExecutorService newSingleThreadExecutor(TThreadFactory threadFactory) {
+        return newFixedThreadPool(1, threadFactory);
+    }
+
+    public static TExecutorService newCachedThreadPool() {
+        return newCachedThreadPool(defaultThreadFactory());
+    }
+
+    public static TExecutorService newCachedThreadPool(TThreadFactory threadFactory) {
+        return new TGreenThreadExecutor(Integer.MAX_VALUE, CACHED_KEEP_ALIVE, threadFactory);
+    }
+
+    public static TThreadFactory defaultThreadFactory() {
+        int pool = ++poolCount;
+        int[] threadCount = new int[1];
+        return r -> new TThread(r, TString.wrap("pool-" + pool + "-thread-" + ++threadCount[0]));
+    }
+
+    public static <T> TCallable<T> callable(TRunnable task, T result) {
+        if (task == null) {
+            throw new TNullPointerException();
+        }
+        return () -> {
+            task.run();
+            return result;
+        };
+    }
+
+    public static TCallable<Object> callable(TRunnable task) {
+        return callable(task, null);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.lang.TObject;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.lang.TThread;
+import org.teavm.classlib.java.lang.TThrowable;
+
+/**
+ * <p>Cancellable computation, whose result can be obtained by {@link #get()}. Threads that call
+ * {@link #get()} before the computation completes suspend until {@link #run()} finishes in another green
+ * thread.</p>
+ *
+ * @author Alexey Andreev
+ * @param <V>
+ */
+public class TFutureTask<V> extends TObject implements TRunnableFuture<V> {
+    private static final int NEW = 0;
+    private static final int NORMAL = 1;
+    private static final int EXCEPTIONAL = 2;
+    private static final int CANCELLED = 3;
+    private static final int INTERRUPTED = 4;
+    private TCallable<V> callable;
+    private int state;
+    private Object outcome;
+    private TThread runner;
+    private TWaiters waiters;
+
+    public TFutureTask(TCallable<V> callable) {
+        if (callable == null) {
+            throw new TNullPointerException();
+        }
+        this.callable = callable;
+    }
+
+    public TFutureTask(TRunnable runnable, V result) {
+        this(TExecutors.callable(runnable, result));
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state >= CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state != NEW;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (state != NEW) {
+            return false;
+        }
+        state = mayInterruptIfRunning ? INTERRUPTED : CANCELLED;
+        if (mayInterruptIfRunning && runner != null) {
+            runner.interrupt();
+        }
+        finish();
+        return true;
+    }
+
+    @Override
+    public V get() throws InterruptedException, TExecutionException {
+        while (state == NEW) {
+            waiters().await();
+        }
+        return report();
+    }
+
+    @Override
+    public V get(long timeout, TTimeUnit unit) throws InterruptedException, TExecutionException, TTimeoutException {
+        if (unit == null) {
+            throw new TNullPointerException();
+        }
+        long deadline = TWaiters.deadline(timeout, unit);
+        while (state == NEW) {
+            if (!waiters().awaitUntil(deadline)) {
+                throw new TTimeoutException();
+            }
+        }
+        return report();
+    }
+
+    private TWaiters waiters() {
+        if (waiters == null) {
+            waiters = new TWaiters();
+        }
+        return waiters;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V report() throws TExecutionException {
+        switch (state) {
+            case NORMAL:
+                return (V) outcome;
+            case EXCEPTIONAL:
+                throw new TExecutionException((TThrowable) outcome);
+            default:
+                throw new TCancellationException();
+        }
+    }
+
+    protected void done() {
+    }
+
+    protected void set(V v) {
+        if (state == NEW) {
+            outcome = v;
+            state = NORMAL;
+            finish();
+        }
+    }
+
+    protected void setException(Throwable t) {
+        if (state == NEW) {
+            outcome = t;
+            state = EXCEPTIONAL;
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (waiters != null) {
+            waiters.signalAll();
+        }
+        done();
+        callable = null;
+    }
+
+    @Override
+    public void run() {
+        if (state != NEW || runner != null) {
+            return;
+        }
+        runner = TThread.currentThread();
+        try {
+            V result;
+            try {
+                result = callable.call();
+            } catch (Throwable e) {
+                setException(e);
+                return;
+            }
+            set(result);
+        } finally {
+            runner = null;
+        }
+    }
+
+    protected boolean runAndReset() {
+        if (state != NEW || runner != null) {
+            return false;
+        }
+        runner = TThread.currentThread();
+        try {
+            callable.call();
+        } catch (Throwable e) {
+            setException(e);
+        } finally {
+            runner = null;
+        }
+        return state == NEW;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.lang.TNullPointerException;
+import org.teavm.classlib.java.lang.TRunnable;
+import org.teavm.classlib.java.lang.TThread;
+import org.teavm.classlib.java.util.TArrayDeque;
+import org.teavm.classlib.java.util.TArrayList;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TList;
+
+/**
+ * <p>Executor service that runs tasks in a pool of green threads. Workers are started on demand, up to the
+ * maximum number of threads, and take tasks from a shared queue. A worker with nothing to do suspends until
+ * a task is submitted or the executor shuts down; a worker of a cached pool stops if no task comes in the
+ * keep-alive time.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class TGreenThreadExecutor extends TAbstractExecutorService {
+    private final int maxThreads;
+    private final long keepAliveMillis;
+    private final TThreadFactory threadFactory;
+    private final TArrayDeque<TRunnable> queue = new TArrayDeque<>();
+    private final TList<TThread> workers = new TArrayList<>();
+    private final TWaiters workAvailable = new TWaiters();
+    private final TWaiters termination = new TWaiters();
+    private int idleCount;
+    private boolean shutdown;
+
+    TGreenThreadExecutor(int maxThreads, long keepAliveMillis, TThreadFactory threadFactory) {
+        if (threadFactory == null) {
+            throw new TNullPointerException();
+        }
+        this.maxThreads = maxThreads;
+        this.keepAliveMillis = keepAliveMillis;
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public void execute(TRunnable command) {
+        if (command == null) {
+            throw new TNullPointerException();
+        }
+        if (shutdown) {
+            throw new TRejectedExecutionException();
+        }
+        queue.add(command);
+        if (queue.size() > idleCount && workers.size() < maxThreads) {
+            TThread worker = threadFactory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+        workAvailable.signalAll();
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                TRunnable task = queue.poll();
+                if (task != null) {
+                    Thread.interrupted();
+                    try {
+                        task.run();
+                    } catch (RuntimeException | Error e) {
+                        e.printStackTrace();
+                    }
+                    continue;
+                }
+                if (shutdown || !awaitTask()) {
+                    break;
+                }
+            }
+        } finally {
+            workers.remove(TThread.currentThread());
+            if (shutdown && workers.isEmpty()) {
+                termination.signalAll();
+            }
+        }
+    }
+
+    private boolean awaitTask() {
+        ++idleCount;
+        try {
+            if (keepAliveMillis <= 0) {
+                workAvailable.await();
+                return true;
+            }
+            long deadline = System.currentTimeMillis() + keepAliveMillis;
+            workAvailable.awaitUntil(deadline);
+            return !queue.isEmpty() || System.currentTimeMillis() < deadline;
+        } catch (InterruptedException e) {
+            return true;
+        } finally {
+            --idleCount;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        workAvailable.signalAll();
+        if (workers.isEmpty()) {
+            termination.signalAll();
+        }
+    }
+
+    @Override
+    public TList<TRunnable> shutdownNow() {
+        shutdown();
+        TList<TRunnable> pending = new TArrayList<>(queue);
+        queue.clear();
+        for (TIterator<TThread> iter = workers.iterator(); iter.hasNext();) {
+            iter.next().interrupt();
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && workers.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TTimeUnit unit) throws InterruptedException {
+        long deadline = TWaiters.deadline(timeout, unit);
+        while (!isTerminated()) {
+            if (!termination.awaitUntil(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import org.teavm.classlib.java.lang.TRuntimeException;
+import org.teavm.classlib.java.lang.TString;
+import org.teavm.classlib.java.lang.TThrowable;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public class TRejectedExecutionException extends TRuntimeException {
+    private static final long serialVersionUID = 2303924573387275795L;
+
+    public TRejectedExecutionException() {
+        super();
+    }
+
+    public TRejectedExecutionException(TString message) {
+        super(message);
+    }
+
+    public TRejectedExecutionException(TString message, TThrowable cause) {
+        super(message, cause);
+    }
+
+    public TRejectedExecutionException(TThrowable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public enum TTimeUnit {
+    NANOSECONDS(1L),
+    MICROSECONDS(1000L),
+    MILLISECONDS(1000L * 1000),
+    SECONDS(1000L * 1000 * 1000),
+    MINUTES(60L * 1000 * 1000 * 1000),
+    HOURS(60L * 60 * 1000 * 1000 * 1000),
+    DAYS(24L * 60 * 60 * 1000 * 1000 * 1000);
+
+    private final long nanos;
+
+    TTimeUnit(long nanos) {
+        this.nanos = nanos;
+    }
+
+    public long convert(long sourceDuration, TTimeUnit sourceUnit) {
+        return scale(sourceDuration, sourceUnit.nanos, nanos);
+    }
+
+    public long toNanos(long duration) {
+        return scale(duration, nanos, NANOSECONDS.nanos);
+    }
+
+    public long toMicros(long duration) {
+        return scale(duration, nanos, MICROSECONDS.nanos);
+    }
+
+    public long toMillis(long duration) {
+        return scale(duration, nanos, MILLISECONDS.nanos);
+    }
+
+    public long toSeconds(long duration) {
+        return scale(duration, nanos, SECONDS.nanos);
+    }
+
+    public long toMinutes(long duration) {
+        return scale(duration, nanos, MINUTES.nanos);
+    }
+
+    public long toHours(long duration) {
+        return scale(duration, nanos, HOURS.nanos);
+    }
+
+    public long toDays(long duration) {
+        return scale(duration, nanos, DAYS.nanos);
+    }
+
+    public void timedWait(Object obj, long timeout) throws InterruptedException {
+        if (timeout > 0) {
+            obj.wait(waitMillis(timeout));
+        }
+    }
+
+    public void timedJoin(Thread thread, long timeout) throws InterruptedException {
+        if (timeout > 0) {
+            thread.join(waitMillis(timeout));
+        }
+    }
+
+    public void sleep(long timeout) throws InterruptedException {
+        if (timeout > 0) {
+            Thread.sleep(waitMillis(timeout));
+        }
+    }
+
+    private long waitMillis(long timeout) {
+        long millis = toMillis(timeout);
+        return millis > 0 ? millis : 1;
+    }
+
+    private static long scale(long duration, long sourceNanos, long targetNanos) {
+        if (sourceNanos == targetNanos) {
+            return duration;
+        } else if (sourceNanos < targetNanos) {
+            return duration / (targetNanos / sourceNanos);
+        }
+        long ratio = sourceNanos / targetNanos;
+        long max = Long.MAX_VALUE / ratio;
+        if (duration > max) {
+            return Long.MAX_VALUE;
+        } else if (duration < -max) {
+            return Long.MIN_VALUE;
+        }
+        return duration * ratio;
+    }
+}
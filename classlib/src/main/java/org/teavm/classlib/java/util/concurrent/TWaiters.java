@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+/**
+ * <p>Green threads that are suspended until some state changes, e.g. until a queue gets an element or a future
+ * completes. TeaVM threads are switched only when a thread suspends, so a check of state followed by
+ * {@link #await()} can't miss a change made by another thread, and no lock is needed around the state itself.
+ * The monitor is entered only when some thread is actually waiting, so uncontended operations pay nothing
+ * but a field read.</p>
+ *
+ * @author Alexey Andreev
+ */
+final class TWaiters {
+    private final Object lock = new Object();
+    private int count;
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void await() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        synchronized (lock) {
+            ++count;
+            try {
+                lock.wait();
+            } finally {
+                --count;
+            }
+        }
+    }
+
+    boolean awaitUntil(long deadline) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return false;
+        }
+        synchronized (lock) {
+            ++count;
+            try {
+                lock.wait(remaining);
+            } finally {
+                --count;
+            }
+        }
+        return true;
+    }
+
+    void signalAll() {
+        if (count > 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    static long deadline(long timeout, TTimeUnit unit) {
+        long now = System.currentTimeMillis();
+        if (timeout <= 0) {
+            return now;
+        }
+        long millis = TTimeUnit.MILLISECONDS.convert(timeout, unit);
+        if (millis == 0) {
+            millis = 1;
+        }
+        return millis < Long.MAX_VALUE - now ? now + millis : Long.MAX_VALUE;
+    }
+}
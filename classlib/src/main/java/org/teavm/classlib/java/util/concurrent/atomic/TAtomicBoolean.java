@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent.atomic;
+
+import org.teavm.classlib.java.io.TSerializable;
+import org.teavm.classlib.java.lang.TObject;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public class TAtomicBoolean extends TObject implements TSerializable {
+    private static final long serialVersionUID = 4654671469794556979L;
+    private boolean value;
+
+    public TAtomicBoolean() {
+    }
+
+    public TAtomicBoolean(boolean initialValue) {
+        value = initialValue;
+    }
+
+    public final boolean get() {
+        return value;
+    }
+
+    public final void set(boolean newValue) {
+        value = newValue;
+    }
+
+    public final void lazySet(boolean newValue) {
+        value = newValue;
+    }
+
+    public final boolean getAndSet(boolean newValue) {
+        boolean result = value;
+        value = newValue;
+        return result;
+    }
+
+    public final boolean compareAndSet(boolean expect, boolean update) {
+        if (value != expect) {
+            return false;
+        }
+        value = update;
+        return true;
+    }
+
+    public boolean weakCompareAndSet(boolean expect, boolean update) {
+        return compareAndSet(expect, update);
+    }
+
+    @Override
+    public String toString() {
+        return Boolean.toString(value);
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import org.teavm.classlib.java.lang.TIllegalStateException;
+import org.teavm.classlib.java.lang.TString;
+import org.teavm.classlib.java.util.TArrayList;
+import org.teavm.classlib.java.util.TCollection;
+import org.teavm.classlib.java.util.TComparator;
+import org.teavm.classlib.java.util.THashMap;
+import org.teavm.classlib.java.util.THashSet;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TList;
+import org.teavm.classlib.java.util.TMap;
+import org.teavm.classlib.java.util.TObjects;
+import org.teavm.classlib.java.util.TOptional;
+import org.teavm.classlib.java.util.TSet;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TBinaryOperator;
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.function.TToDoubleFunction;
+import org.teavm.classlib.java.util.function.TToIntFunction;
+import org.teavm.classlib.java.util.function.TToLongFunction;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public final class TCollectors {
+    private TCollectors() {
+    }
+
+    public static <T, C extends TCollection<T>> TCollector<T, ?, C> toCollection(TSupplier<C> collectionFactory) {
+        return TCollector.of(collectionFactory, TCollection::add, (a, b) -> {
+            a.addAll(b);
+            return a;
+        });
+    }
+
+    public static <T> TCollector<T, ?, TList<T>> toList() {
+        return toCollection(TArrayList::new);
+    }
+
+    public static <T> TCollector<T, ?, TSet<T>> toSet() {
+        return toCollection(THashSet::new);
+    }
+
+    public static TCollector<CharSequence, ?, String> joining() {
+        return TCollector.of(StringBuilder::new, StringBuilder::append, StringBuilder::append,
+                StringBuilder::toString);
+    }
+
+    public static TCollector<CharSequence, ?, String> joining(CharSequence delimiter) {
+        return joining(delimiter, "", "");
+    }
+
+    public static TCollector<CharSequence, ?, String> joining(CharSequence delimiter, CharSequence prefix,
+            CharSequence suffix) {
+        return TCollector.<CharSequence, StringBuilder[], String>of(() -> new StringBuilder[1], (a, item) -> {
+            if (a[0] == null) {
+                a[0] = new StringBuilder().append(prefix);
+            } else {
+                a[0].append(delimiter);
+            }
+            a[0].append(item);
+        }, (a, b) -> {
+            if (b[0] != null) {
+                if (a[0] == null) {
+                    a[0] = b[0];
+                } else {
+                    a[0].append(delimiter).append(b[0], prefix.length(), b[0].length());
+                }
+            }
+            return a;
+        }, a -> a[0] != null ? a[0].append(suffix).toString() : prefix.toString() + suffix);
+    }
+
+    public static <T, U, A, R> TCollector<T, ?, R> mapping(TFunction<? super T, ? extends U> mapper,
+            TCollector<? super U, A, R> downstream) {
+        TBiConsumer<A, ? super U> downstreamAccumulator = downstream.accumulator();
+        return TCollector.of(downstream.supplier(), (A a, T t) -> downstreamAccumulator.accept(a, mapper.apply(t)),
+                downstream.combiner(), downstream.finisher());
+    }
+
+    public static <T, A, R, RR> TCollector<T, A, RR> collectingAndThen(TCollector<T, A, R> downstream,
+            TFunction<R, RR> finisher) {
+        TFunction<A, R> downstreamFinisher = downstream.finisher();
+        return TCollector.of(downstream.supplier(), downstream.accumulator(), downstream.combiner(),
+                a -> finisher.apply(downstreamFinisher.apply(a)));
+    }
+
+    public static <T> TCollector<T, ?, Long> counting() {
+        return TCollector.of(() -> new long[1], (a, t) -> a[0]++, (a, b) -> {
+            a[0] += b[0];
+            return a;
+        }, a -> a[0]);
+    }
+
+    public static <T> TCollector<T, ?, TOptional<T>> minBy(TComparator<? super T> comparator) {
+        return reducing(TBinaryOperator.minBy(comparator));
+    }
+
+    public static <T> TCollector<T, ?, TOptional<T>> maxBy(TComparator<? super T> comparator) {
+        return reducing(TBinaryOperator.maxBy(comparator));
+    }
+
+    public static <T> TCollector<T, ?, Integer> summingInt(TToIntFunction<? super T> mapper) {
+        return TCollector.of(() -> new int[1], (a, t) -> a[0] += mapper.applyAsInt(t), (a, b) -> {
+            a[0] += b[0];
+            return a;
+        }, a -> a[0]);
+    }
+
+    public static <T> TCollector<T, ?, Long> summingLong(TToLongFunction<? super T> mapper) {
+        return TCollector.of(() -> new long[1], (a, t) -> a[0] += mapper.applyAsLong(t), (a, b) -> {
+            a[0] += b[0];
+            return a;
+        }, a -> a[0]);
+    }
+
+    public static <T> TCollector<T, ?, Double> summingDouble(TToDoubleFunction<? super T> mapper) {
+        return TCollector.of(() -> new double[1], (a, t) -> a[0] += mapper.applyAsDouble(t), (a, b) -> {
+            a[0] += b[0];
+            return a;
+        }, a -> a[0]);
+    }
+
+    public static <T> TCollector<T, ?, Double> averagingInt(TToIntFunction<? super T> mapper) {
+        return TCollector.of(() -> new long[2], (a, t) -> {
+            a[0] += mapper.applyAsInt(t);
+            a[1]++;
+        }, (a, b) -> {
+            a[0] += b[0];
+            a[1] += b[1];
+            return a;
+        }, a -> a[1] == 0 ? 0.0 : (double) a[0] / a[1]);
+    }
+
+    public static <T> TCollector<T, ?, Double> averagingLong(TToLongFunction<? super T> mapper) {
+        return TCollector.of(() -> new long[2], (a, t) -> {
+            a[0] += mapper.applyAsLong(t);
+            a[1]++;
+        }, (a, b) -> {
+            a[0] += b[0];
+            a[1] += b[1];
+            return a;
+        }, a -> a[1] == 0 ? 0.0 : (double) a[0] / a[1]);
+    }
+
+    public static <T> TCollector<T, ?, Double> averagingDouble(TToDoubleFunction<? super T> mapper) {
+        return TCollector.of(() -> new double[2], (a, t) -> {
+            a[0] += mapper.applyAsDouble(t);
+            a[1]++;
+        }, (a, b) -> {
+            a[0] += b[0];
+            a[1] += b[1];
+            return a;
+        }, a -> a[1] == 0 ? 0.0 : a[0] / a[1]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> TCollector<T, ?, T> reducing(T identity, TBinaryOperator<T> op) {
+        return TCollector.<T, Object[], T>of(() -> new Object[] { identity }, (a, t) -> a[0] = op.apply((T) a[0], t),
+                (a, b) -> {
+                    a[0] = op.apply((T) a[0], (T) b[0]);
+                    return a;
+                }, a -> (T) a[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> TCollector<T, ?, TOptional<T>> reducing(TBinaryOperator<T> op) {
+        return TCollector.<T, Object[], TOptional<T>>of(() -> new Object[2], (a, t) -> {
+            a[0] = a[1] != null ? op.apply((T) a[0], t) : t;
+            a[1] = Boolean.TRUE;
+        }, (a, b) -> {
+            if (b[1] != null) {
+                a[0] = a[1] != null ? op.apply((T) a[0], (T) b[0]) : b[0];
+                a[1] = Boolean.TRUE;
+            }
+            return a;
+        }, a -> a[1] != null ? TOptional.of((T) a[0]) : TOptional.empty());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T, U> TCollector<T, ?, U> reducing(U identity, TFunction<? super T, ? extends U> mapper,
+            TBinaryOperator<U> op) {
+        return TCollector.<T, Object[], U>of(() -> new Object[] { identity },
+                (a, t) -> a[0] = op.apply((U) a[0], mapper.apply(t)), (a, b) -> {
+                    a[0] = op.apply((U) a[0], (U) b[0]);
+                    return a;
+                }, a -> (U) a[0]);
+    }
+
+    public static <T, K> TCollector<T, ?, TMap<K, TList<T>>> groupingBy(TFunction<? super T, ? extends K> classifier) {
+        return groupingBy(classifier, toList());
+    }
+
+    public static <T, K, A, D> TCollector<T, ?, TMap<K, D>> groupingBy(TFunction<? super T, ? extends K> classifier,
+            TCollector<? super T, A, D> downstream) {
+        return groupingBy(classifier, THashMap::new, downstream);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T, K, D, A, M extends TMap<K, D>> TCollector<T, ?, M> groupingBy(
+            TFunction<? super T, ? extends K> classifier, TSupplier<M> mapFactory,
+            TCollector<? super T, A, D> downstream) {
+        TSupplier<A> downstreamSupplier = downstream.supplier();
+        TBiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        TBinaryOperator<A> downstreamCombiner = downstream.combiner();
+        TFunction<A, D> downstreamFinisher = downstream.finisher();
+        TBiConsumer<TMap<K, A>, T> accumulator = (map, t) -> {
+            K key = TObjects.requireNonNull(classifier.apply(t), "element cannot be mapped to a null key");
+            A container = map.get(key);
+            if (container == null) {
+                container = downstreamSupplier.get();
+                map.put(key, container);
+            }
+            downstreamAccumulator.accept(container, t);
+        };
+        TBinaryOperator<TMap<K, A>> combiner = (a, b) -> {
+            for (TIterator<TMap.Entry<K, A>> iter = b.entrySet().iterator(); iter.hasNext();) {
+                TMap.Entry<K, A> entry = iter.next();
+                A container = a.get(entry.getKey());
+                a.put(entry.getKey(), container != null
+                        ? downstreamCombiner.apply(container, entry.getValue())
+                        : entry.getValue());
+            }
+            return a;
+        };
+        return TCollector.of((TSupplier<TMap<K, A>>) mapFactory, accumulator, combiner, map -> {
+            for (TIterator<TMap.Entry<K, A>> iter = map.entrySet().iterator(); iter.hasNext();) {
+                TMap.Entry<K, A> entry = iter.next();
+                ((TMap.Entry<K, Object>) (TMap.Entry<K, ?>) entry).setValue(downstreamFinisher.apply(
+                        entry.getValue()));
+            }
+            return (M) map;
+        });
+    }
+
+    public static <T> TCollector<T, ?, TMap<Boolean, TList<T>>> partitioningBy(TPredicate<? super T> predicate) {
+        return partitioningBy(predicate, toList());
+    }
+
+    public static <T, D, A> TCollector<T, ?, TMap<Boolean, D>> partitioningBy(TPredicate<? super T> predicate,
+            TCollector<? super T, A, D> downstream) {
+        TSupplier<A> downstreamSupplier = downstream.supplier();
+        TBiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        TBinaryOperator<A> downstreamCombiner = downstream.combiner();
+        TFunction<A, D> downstreamFinisher = downstream.finisher();
+        return TCollector.<T, Object[], TMap<Boolean, D>>of(
+                () -> new Object[] { downstreamSupplier.get(), downstreamSupplier.get() },
+                (a, t) -> downstreamAccumulator.accept(partition(a, predicate.test(t)), t),
+                (a, b) -> {
+                    a[0] = downstreamCombiner.apply(partition(a, false), partition(b, false));
+                    a[1] = downstreamCombiner.apply(partition(a, true), partition(b, true));
+                    return a;
+                },
+                a -> {
+                    TMap<Boolean, D> map = new THashMap<>();
+                    map.put(false, downstreamFinisher.apply(partition(a, false)));
+                    map.put(true, downstreamFinisher.apply(partition(a, true)));
+                    return map;
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> A partition(Object[] partitions, boolean value) {
+        return (A) partitions[value ? 1 : 0];
+    }
+
+    public static <T, K, U> TCollector<T, ?, TMap<K, U>> toMap(TFunction<? super T, ? extends K> keyMapper,
+            TFunction<? super T, ? extends U> valueMapper) {
+        return toMap(keyMapper, valueMapper, (a, b) -> {
+            throw new TIllegalStateException(TString.wrap("Duplicate key " + a));
+        });
+    }
+
+    public static <T, K, U> TCollector<T, ?, TMap<K, U>> toMap(TFunction<? super T, ? extends K> keyMapper,
+            TFunction<? super T, ? extends U> valueMapper, TBinaryOperator<U> mergeFunction) {
+        return toMap(keyMapper, valueMapper, mergeFunction, THashMap::new);
+    }
+
+    public static <T, K, U, M extends TMap<K, U>> TCollector<T, ?, M> toMap(
+            TFunction<? super T, ? extends K> keyMapper, TFunction<? super T, ? extends U> valueMapper,
+            TBinaryOperator<U> mergeFunction, TSupplier<M> mapSupplier) {
+        return TCollector.of(mapSupplier, (map, t) -> merge(map, keyMapper.apply(t),
+                TObjects.requireNonNull(valueMapper.apply(t)), mergeFunction), (a, b) -> {
+                    for (TIterator<TMap.Entry<K, U>> iter = b.entrySet().iterator(); iter.hasNext();) {
+                        TMap.Entry<K, U> entry = iter.next();
+                        merge(a, entry.getKey(), entry.getValue(), mergeFunction);
+                    }
+                    return a;
+                });
+    }
+
+    private static <K, U> void merge(TMap<K, U> map, K key, U value, TBinaryOperator<U> mergeFunction) {
+        U oldValue = map.get(key);
+        map.put(key, oldValue != null ? mergeFunction.apply(oldValue, value) : value);
+    }
+}
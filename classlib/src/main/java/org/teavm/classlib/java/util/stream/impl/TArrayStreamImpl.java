@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TPredicate;
+
+/**
+ *
+ * @author Alexey Andreev
+ * @param <T>
+ */
+public class TArrayStreamImpl<T> extends TSimpleStreamImpl<T> {
+    private Object[] array;
+    private int index;
+    private int end;
+
+    public TArrayStreamImpl(Object[] array, int start, int end) {
+        this.array = array;
+        this.index = start;
+        this.end = end;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean next(TPredicate<? super T> consumer) {
+        int i = index;
+        while (i < end) {
+            if (!consumer.test((T) array[i++])) {
+                index = i;
+                return i < end;
+            }
+        }
+        index = end;
+        return false;
+    }
+
+    @Override
+    public long count() {
+        return end - index;
+    }
+}
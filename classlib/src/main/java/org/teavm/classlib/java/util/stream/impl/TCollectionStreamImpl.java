@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.TCollection;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.function.TPredicate;
+
+/**
+ *
+ * @author Alexey Andreev
+ * @param <T>
+ */
+public class TCollectionStreamImpl<T> extends TSimpleStreamImpl<T> {
+    private TCollection<T> collection;
+    private TIterator<T> iterator;
+
+    public TCollectionStreamImpl(TCollection<T> collection) {
+        this.collection = collection;
+    }
+
+    @Override
+    public boolean next(TPredicate<? super T> consumer) {
+        if (iterator == null) {
+            iterator = collection.iterator();
+        }
+        while (iterator.hasNext()) {
+            if (!consumer.test(iterator.next())) {
+                return iterator.hasNext();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long count() {
+        return iterator == null ? collection.size() : super.count();
+    }
+}
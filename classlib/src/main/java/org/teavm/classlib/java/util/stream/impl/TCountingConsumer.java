@@ -0,0 +1,41 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+/**
+ * <p>Counts elements of a stream of any kind. Most of the time the counter fits into <code>int</code>,
+ * which is much cheaper than <code>long</code> in JavaScript, so the counter is only added to a
+ * <code>long</code> total when it grows large.</p>
+ *
+ * @author Alexey Andreev
+ */
+class TCountingConsumer {
+    private static final int FLUSH_THRESHOLD = 1 << 30;
+    private int count;
+    private long total;
+
+    boolean increment() {
+        if (++count == FLUSH_THRESHOLD) {
+            total += count;
+            count = 0;
+        }
+        return true;
+    }
+
+    long getCount() {
+        return total + count;
+    }
+}
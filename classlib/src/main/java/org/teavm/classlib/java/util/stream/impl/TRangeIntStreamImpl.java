@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.util.function.TIntPredicate;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+public class TRangeIntStreamImpl extends TSimpleIntStreamImpl {
+    private int current;
+    private int end;
+
+    public TRangeIntStreamImpl(int start, int end) {
+        this.current = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean next(TIntPredicate consumer) {
+        int i = current;
+        while (i < end) {
+            if (!consumer.test(i++)) {
+                current = i;
+                return i < end;
+            }
+        }
+        current = i;
+        return false;
+    }
+
+    @Override
+    public long count() {
+        return current < end ? (long) end - current : 0;
+    }
+}
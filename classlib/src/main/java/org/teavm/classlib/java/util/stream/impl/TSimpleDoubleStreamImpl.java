@@ -0,0 +1,503 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TMath;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.THashSet;
+import org.teavm.classlib.java.util.TOptionalDouble;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TDoubleBinaryOperator;
+import org.teavm.classlib.java.util.function.TDoubleConsumer;
+import org.teavm.classlib.java.util.function.TDoubleFunction;
+import org.teavm.classlib.java.util.function.TDoublePredicate;
+import org.teavm.classlib.java.util.function.TDoubleToIntFunction;
+import org.teavm.classlib.java.util.function.TDoubleToLongFunction;
+import org.teavm.classlib.java.util.function.TDoubleUnaryOperator;
+import org.teavm.classlib.java.util.function.TIntPredicate;
+import org.teavm.classlib.java.util.function.TLongPredicate;
+import org.teavm.classlib.java.util.function.TObjDoubleConsumer;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class for all stages of <code>double</code> streams, see {@link TSimpleStreamImpl} for details.
+ * Elements are passed to consumers as <code>double</code> values, so there is no boxing between stages.</p>
+ *
+ * @author Alexey Andreev
+ */
+public abstract class TSimpleDoubleStreamImpl implements TDoubleStream {
+    private final TBaseStream<?, ?> upstream;
+    private Runnable closeHandler;
+
+    protected TSimpleDoubleStreamImpl() {
+        this(null);
+    }
+
+    protected TSimpleDoubleStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * <p>Pushes elements of the stream to the consumer, see {@link TSimpleStreamImpl#next(TPredicate)}.</p>
+     *
+     * @param consumer receives elements, returns <code>false</code> to stop the stream.
+     * @return <code>false</code> if the stream is known to be exhausted, <code>true</code> otherwise.
+     */
+    public abstract boolean next(TDoublePredicate consumer);
+
+    @Override
+    public TDoubleStream filter(TDoublePredicate predicate) {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleDoubleStreamImpl.this.next(e -> !predicate.test(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream map(TDoubleUnaryOperator mapper) {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleDoubleStreamImpl.this.next(e -> consumer.test(mapper.applyAsDouble(e)));
+            }
+        };
+    }
+
+    @Override
+    public <U> TStream<U> mapToObj(TDoubleFunction<? extends U> mapper) {
+        return new TSimpleStreamImpl<U>(this) {
+            @Override
+            public boolean next(TPredicate<? super U> consumer) {
+                return TSimpleDoubleStreamImpl.this.next(e -> consumer.test(mapper.apply(e)));
+            }
+        };
+    }
+
+    @Override
+    public TIntStream mapToInt(TDoubleToIntFunction mapper) {
+        return new TSimpleIntStreamImpl(this) {
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                return TSimpleDoubleStreamImpl.this.next(e -> consumer.test(mapper.applyAsInt(e)));
+            }
+        };
+    }
+
+    @Override
+    public TLongStream mapToLong(TDoubleToLongFunction mapper) {
+        return new TSimpleLongStreamImpl(this) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleDoubleStreamImpl.this.next(e -> consumer.test(mapper.applyAsLong(e)));
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream flatMap(TDoubleFunction<? extends TDoubleStream> mapper) {
+        return new TSimpleDoubleStreamImpl(this) {
+            TSimpleDoubleStreamImpl current;
+            boolean done;
+
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                while (true) {
+                    if (current != null) {
+                        if (current.next(consumer)) {
+                            return true;
+                        }
+                        current.close();
+                        current = null;
+                    }
+                    if (done) {
+                        return false;
+                    }
+                    done = !TSimpleDoubleStreamImpl.this.next(e -> {
+                        TDoubleStream stream = mapper.apply(e);
+                        if (stream == null) {
+                            return true;
+                        }
+                        current = wrap(stream);
+                        return false;
+                    });
+                }
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream distinct() {
+        return new TSimpleDoubleStreamImpl(this) {
+            THashSet<Double> seen = new THashSet<>();
+
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleDoubleStreamImpl.this.next(e -> !seen.add(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream sorted() {
+        return new TSimpleDoubleStreamImpl(this) {
+            TArrayDoubleStreamImpl sorted;
+
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                if (sorted == null) {
+                    double[] array = TSimpleDoubleStreamImpl.this.toArray();
+                    TArrays.sort(array);
+                    sorted = new TArrayDoubleStreamImpl(array, 0, array.length);
+                }
+                return sorted.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream peek(TDoubleConsumer action) {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleDoubleStreamImpl.this.next(e -> {
+                    action.accept(e);
+                    return consumer.test(e);
+                });
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleDoubleStreamImpl(this) {
+            long remaining = maxSize;
+
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                if (remaining == 0) {
+                    return false;
+                }
+                boolean more = TSimpleDoubleStreamImpl.this.next(e -> {
+                    --remaining;
+                    return consumer.test(e) && remaining > 0;
+                });
+                return more && remaining > 0;
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleDoubleStreamImpl(this) {
+            long remaining = n;
+
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                if (remaining > 0) {
+                    if (!TSimpleDoubleStreamImpl.this.next(e -> --remaining > 0)) {
+                        return false;
+                    }
+                    if (remaining > 0) {
+                        return true;
+                    }
+                }
+                return TSimpleDoubleStreamImpl.this.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public void forEach(TDoubleConsumer action) {
+        drain(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TDoubleConsumer action) {
+        forEach(action);
+    }
+
+    @Override
+    public double[] toArray() {
+        double[][] array = { new double[16] };
+        int[] size = new int[1];
+        forEach(e -> {
+            if (size[0] == array[0].length) {
+                array[0] = TArrays.copyOf(array[0], size[0] * 2);
+            }
+            array[0][size[0]++] = e;
+        });
+        return size[0] == array[0].length ? array[0] : TArrays.copyOf(array[0], size[0]);
+    }
+
+    @Override
+    public double reduce(double identity, TDoubleBinaryOperator op) {
+        double[] result = { identity };
+        forEach(e -> {
+            result[0] = op.applyAsDouble(result[0], e);
+        });
+        return result[0];
+    }
+
+    @Override
+    public TOptionalDouble reduce(TDoubleBinaryOperator op) {
+        double[] result = new double[1];
+        boolean[] present = new boolean[1];
+        forEach(e -> {
+            result[0] = present[0] ? op.applyAsDouble(result[0], e) : e;
+            present[0] = true;
+        });
+        return present[0] ? TOptionalDouble.of(result[0]) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TObjDoubleConsumer<R> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        forEach(e -> accumulator.accept(container, e));
+        return container;
+    }
+
+    @Override
+    public double sum() {
+        double[] summation = new double[3];
+        forEach(e -> sumWithCompensation(summation, e));
+        return finalSum(summation);
+    }
+
+    @Override
+    public TOptionalDouble min() {
+        return reduce(TMath::min);
+    }
+
+    @Override
+    public TOptionalDouble max() {
+        return reduce(TMath::max);
+    }
+
+    @Override
+    public long count() {
+        TCountingConsumer counter = new TCountingConsumer();
+        drain(e -> counter.increment());
+        return counter.getCount();
+    }
+
+    @Override
+    public TOptionalDouble average() {
+        double[] summation = new double[3];
+        int[] count = new int[1];
+        forEach(e -> {
+            sumWithCompensation(summation, e);
+            ++count[0];
+        });
+        return count[0] > 0 ? TOptionalDouble.of(finalSum(summation) / count[0]) : TOptionalDouble.empty();
+    }
+
+    /**
+     * <p>Kahan summation, the same that JDK uses, so that sums are equal to those computed on JVM.
+     * <code>summation[0]</code> is the sum, <code>summation[1]</code> is compensation of lost low bits,
+     * <code>summation[2]</code> is a simple sum, which is used when the compensated sum becomes NaN
+     * because of infinite values.</p>
+     */
+    private static void sumWithCompensation(double[] summation, double value) {
+        double compensated = value - summation[1];
+        double sum = summation[0];
+        double newSum = sum + compensated;
+        summation[1] = (newSum - sum) - compensated;
+        summation[0] = newSum;
+        summation[2] += value;
+    }
+
+    private static double finalSum(double[] summation) {
+        double sum = summation[0] + summation[1];
+        if (Double.isNaN(sum) && Double.isInfinite(summation[2])) {
+            return summation[2];
+        }
+        return sum;
+    }
+
+    @Override
+    public boolean anyMatch(TDoublePredicate predicate) {
+        return find(predicate);
+    }
+
+    @Override
+    public boolean allMatch(TDoublePredicate predicate) {
+        return !find(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean noneMatch(TDoublePredicate predicate) {
+        return !find(predicate);
+    }
+
+    @Override
+    public TOptionalDouble findFirst() {
+        double[] result = new double[1];
+        return find(e -> {
+            result[0] = e;
+            return true;
+        }) ? TOptionalDouble.of(result[0]) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public TOptionalDouble findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TStream<Double> boxed() {
+        return mapToObj(Double::valueOf);
+    }
+
+    @Override
+    public TPrimitiveIterator.OfDouble iterator() {
+        return new TSimpleDoubleStreamIterator(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TDoubleStream sequential() {
+        return this;
+    }
+
+    @Override
+    public TDoubleStream parallel() {
+        return this;
+    }
+
+    @Override
+    public TDoubleStream unordered() {
+        return this;
+    }
+
+    @Override
+    public TDoubleStream onClose(Runnable closeHandler) {
+        Runnable previous = this.closeHandler;
+        this.closeHandler = previous == null ? closeHandler : () -> {
+            try {
+                previous.run();
+            } finally {
+                closeHandler.run();
+            }
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        Runnable handler = closeHandler;
+        closeHandler = null;
+        try {
+            if (upstream != null) {
+                upstream.close();
+            }
+        } finally {
+            if (handler != null) {
+                handler.run();
+            }
+        }
+    }
+
+    private void drain(TDoublePredicate consumer) {
+        while (next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+    }
+
+    private boolean find(TDoublePredicate predicate) {
+        boolean[] found = new boolean[1];
+        TDoublePredicate consumer = e -> {
+            if (predicate.test(e)) {
+                found[0] = true;
+                return false;
+            }
+            return true;
+        };
+        while (!found[0] && next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+        return found[0];
+    }
+
+    public static TDoubleStream concat(TDoubleStream a, TDoubleStream b) {
+        TSimpleDoubleStreamImpl first = wrap(a);
+        TSimpleDoubleStreamImpl second = wrap(b);
+        return new TSimpleDoubleStreamImpl() {
+            boolean firstDone;
+
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                if (!firstDone) {
+                    if (first.next(consumer)) {
+                        return true;
+                    }
+                    firstDone = true;
+                }
+                return second.next(consumer);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    first.close();
+                    second.close();
+                } finally {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    public static TSimpleDoubleStreamImpl wrap(TDoubleStream stream) {
+        if (stream instanceof TSimpleDoubleStreamImpl) {
+            return (TSimpleDoubleStreamImpl) stream;
+        }
+        TPrimitiveIterator.OfDouble iterator = stream.iterator();
+        return new TSimpleDoubleStreamImpl(stream) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                while (iterator.hasNext()) {
+                    if (!consumer.test(iterator.nextDouble())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+}
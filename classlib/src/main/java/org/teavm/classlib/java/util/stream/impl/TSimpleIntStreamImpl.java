@@ -0,0 +1,503 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TMath;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.THashSet;
+import org.teavm.classlib.java.util.TOptionalDouble;
+import org.teavm.classlib.java.util.TOptionalInt;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TDoublePredicate;
+import org.teavm.classlib.java.util.function.TIntBinaryOperator;
+import org.teavm.classlib.java.util.function.TIntConsumer;
+import org.teavm.classlib.java.util.function.TIntFunction;
+import org.teavm.classlib.java.util.function.TIntPredicate;
+import org.teavm.classlib.java.util.function.TIntToDoubleFunction;
+import org.teavm.classlib.java.util.function.TIntToLongFunction;
+import org.teavm.classlib.java.util.function.TIntUnaryOperator;
+import org.teavm.classlib.java.util.function.TLongPredicate;
+import org.teavm.classlib.java.util.function.TObjIntConsumer;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class for all stages of <code>int</code> streams, see {@link TSimpleStreamImpl} for details.
+ * Elements are passed to consumers as <code>int</code> values, so there is no boxing between stages.</p>
+ *
+ * @author Alexey Andreev
+ */
+public abstract class TSimpleIntStreamImpl implements TIntStream {
+    private final TBaseStream<?, ?> upstream;
+    private Runnable closeHandler;
+
+    protected TSimpleIntStreamImpl() {
+        this(null);
+    }
+
+    protected TSimpleIntStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * <p>Pushes elements of the stream to the consumer, see {@link TSimpleStreamImpl#next(TPredicate)}.</p>
+     *
+     * @param consumer receives elements, returns <code>false</code> to stop the stream.
+     * @return <code>false</code> if the stream is known to be exhausted, <code>true</code> otherwise.
+     */
+    public abstract boolean next(TIntPredicate consumer);
+
+    @Override
+    public TIntStream filter(TIntPredicate predicate) {
+        return new TSimpleIntStreamImpl(this) {
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> !predicate.test(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TIntStream map(TIntUnaryOperator mapper) {
+        return new TSimpleIntStreamImpl(this) {
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> consumer.test(mapper.applyAsInt(e)));
+            }
+        };
+    }
+
+    @Override
+    public <U> TStream<U> mapToObj(TIntFunction<? extends U> mapper) {
+        return new TSimpleStreamImpl<U>(this) {
+            @Override
+            public boolean next(TPredicate<? super U> consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> consumer.test(mapper.apply(e)));
+            }
+        };
+    }
+
+    @Override
+    public TLongStream mapToLong(TIntToLongFunction mapper) {
+        return new TSimpleLongStreamImpl(this) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> consumer.test(mapper.applyAsLong(e)));
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream mapToDouble(TIntToDoubleFunction mapper) {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> consumer.test(mapper.applyAsDouble(e)));
+            }
+        };
+    }
+
+    @Override
+    public TIntStream flatMap(TIntFunction<? extends TIntStream> mapper) {
+        return new TSimpleIntStreamImpl(this) {
+            TSimpleIntStreamImpl current;
+            boolean done;
+
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                while (true) {
+                    if (current != null) {
+                        if (current.next(consumer)) {
+                            return true;
+                        }
+                        current.close();
+                        current = null;
+                    }
+                    if (done) {
+                        return false;
+                    }
+                    done = !TSimpleIntStreamImpl.this.next(e -> {
+                        TIntStream stream = mapper.apply(e);
+                        if (stream == null) {
+                            return true;
+                        }
+                        current = wrap(stream);
+                        return false;
+                    });
+                }
+            }
+        };
+    }
+
+    @Override
+    public TIntStream distinct() {
+        return new TSimpleIntStreamImpl(this) {
+            THashSet<Integer> seen = new THashSet<>();
+
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> !seen.add(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TIntStream sorted() {
+        return new TSimpleIntStreamImpl(this) {
+            TArrayIntStreamImpl sorted;
+
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                if (sorted == null) {
+                    int[] array = TSimpleIntStreamImpl.this.toArray();
+                    TArrays.sort(array);
+                    sorted = new TArrayIntStreamImpl(array, 0, array.length);
+                }
+                return sorted.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public TIntStream peek(TIntConsumer action) {
+        return new TSimpleIntStreamImpl(this) {
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> {
+                    action.accept(e);
+                    return consumer.test(e);
+                });
+            }
+        };
+    }
+
+    @Override
+    public TIntStream limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleIntStreamImpl(this) {
+            long remaining = maxSize;
+
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                if (remaining == 0) {
+                    return false;
+                }
+                boolean more = TSimpleIntStreamImpl.this.next(e -> {
+                    --remaining;
+                    return consumer.test(e) && remaining > 0;
+                });
+                return more && remaining > 0;
+            }
+        };
+    }
+
+    @Override
+    public TIntStream skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleIntStreamImpl(this) {
+            long remaining = n;
+
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                if (remaining > 0) {
+                    if (!TSimpleIntStreamImpl.this.next(e -> --remaining > 0)) {
+                        return false;
+                    }
+                    if (remaining > 0) {
+                        return true;
+                    }
+                }
+                return TSimpleIntStreamImpl.this.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public void forEach(TIntConsumer action) {
+        drain(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TIntConsumer action) {
+        forEach(action);
+    }
+
+    @Override
+    public int[] toArray() {
+        int[][] array = { new int[16] };
+        int[] size = new int[1];
+        forEach(e -> {
+            if (size[0] == array[0].length) {
+                array[0] = TArrays.copyOf(array[0], size[0] * 2);
+            }
+            array[0][size[0]++] = e;
+        });
+        return size[0] == array[0].length ? array[0] : TArrays.copyOf(array[0], size[0]);
+    }
+
+    @Override
+    public int reduce(int identity, TIntBinaryOperator op) {
+        int[] result = { identity };
+        forEach(e -> {
+            result[0] = op.applyAsInt(result[0], e);
+        });
+        return result[0];
+    }
+
+    @Override
+    public TOptionalInt reduce(TIntBinaryOperator op) {
+        int[] result = new int[1];
+        boolean[] present = new boolean[1];
+        forEach(e -> {
+            result[0] = present[0] ? op.applyAsInt(result[0], e) : e;
+            present[0] = true;
+        });
+        return present[0] ? TOptionalInt.of(result[0]) : TOptionalInt.empty();
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TObjIntConsumer<R> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        forEach(e -> accumulator.accept(container, e));
+        return container;
+    }
+
+    @Override
+    public int sum() {
+        int[] sum = new int[1];
+        forEach(e -> {
+            sum[0] += e;
+        });
+        return sum[0];
+    }
+
+    @Override
+    public TOptionalInt min() {
+        return reduce(TMath::min);
+    }
+
+    @Override
+    public TOptionalInt max() {
+        return reduce(TMath::max);
+    }
+
+    @Override
+    public long count() {
+        TCountingConsumer counter = new TCountingConsumer();
+        drain(e -> counter.increment());
+        return counter.getCount();
+    }
+
+    @Override
+    public TOptionalDouble average() {
+        long[] sum = new long[1];
+        int[] count = new int[1];
+        forEach(e -> {
+            sum[0] += e;
+            ++count[0];
+        });
+        return count[0] > 0 ? TOptionalDouble.of((double) sum[0] / count[0]) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public boolean anyMatch(TIntPredicate predicate) {
+        return find(predicate);
+    }
+
+    @Override
+    public boolean allMatch(TIntPredicate predicate) {
+        return !find(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean noneMatch(TIntPredicate predicate) {
+        return !find(predicate);
+    }
+
+    @Override
+    public TOptionalInt findFirst() {
+        int[] result = new int[1];
+        return find(e -> {
+            result[0] = e;
+            return true;
+        }) ? TOptionalInt.of(result[0]) : TOptionalInt.empty();
+    }
+
+    @Override
+    public TOptionalInt findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TLongStream asLongStream() {
+        return new TSimpleLongStreamImpl(this) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream asDoubleStream() {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleIntStreamImpl.this.next(e -> consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TStream<Integer> boxed() {
+        return mapToObj(Integer::valueOf);
+    }
+
+    @Override
+    public TPrimitiveIterator.OfInt iterator() {
+        return new TSimpleIntStreamIterator(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TIntStream sequential() {
+        return this;
+    }
+
+    @Override
+    public TIntStream parallel() {
+        return this;
+    }
+
+    @Override
+    public TIntStream unordered() {
+        return this;
+    }
+
+    @Override
+    public TIntStream onClose(Runnable closeHandler) {
+        Runnable previous = this.closeHandler;
+        this.closeHandler = previous == null ? closeHandler : () -> {
+            try {
+                previous.run();
+            } finally {
+                closeHandler.run();
+            }
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        Runnable handler = closeHandler;
+        closeHandler = null;
+        try {
+            if (upstream != null) {
+                upstream.close();
+            }
+        } finally {
+            if (handler != null) {
+                handler.run();
+            }
+        }
+    }
+
+    private void drain(TIntPredicate consumer) {
+        while (next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+    }
+
+    private boolean find(TIntPredicate predicate) {
+        boolean[] found = new boolean[1];
+        TIntPredicate consumer = e -> {
+            if (predicate.test(e)) {
+                found[0] = true;
+                return false;
+            }
+            return true;
+        };
+        while (!found[0] && next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+        return found[0];
+    }
+
+    public static TIntStream concat(TIntStream a, TIntStream b) {
+        TSimpleIntStreamImpl first = wrap(a);
+        TSimpleIntStreamImpl second = wrap(b);
+        return new TSimpleIntStreamImpl() {
+            boolean firstDone;
+
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                if (!firstDone) {
+                    if (first.next(consumer)) {
+                        return true;
+                    }
+                    firstDone = true;
+                }
+                return second.next(consumer);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    first.close();
+                    second.close();
+                } finally {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    public static TSimpleIntStreamImpl wrap(TIntStream stream) {
+        if (stream instanceof TSimpleIntStreamImpl) {
+            return (TSimpleIntStreamImpl) stream;
+        }
+        TPrimitiveIterator.OfInt iterator = stream.iterator();
+        return new TSimpleIntStreamImpl(stream) {
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                while (iterator.hasNext()) {
+                    if (!consumer.test(iterator.nextInt())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+}
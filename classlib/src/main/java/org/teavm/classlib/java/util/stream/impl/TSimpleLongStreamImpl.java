@@ -0,0 +1,493 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.lang.TMath;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.THashSet;
+import org.teavm.classlib.java.util.TOptionalDouble;
+import org.teavm.classlib.java.util.TOptionalLong;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TDoublePredicate;
+import org.teavm.classlib.java.util.function.TIntPredicate;
+import org.teavm.classlib.java.util.function.TLongBinaryOperator;
+import org.teavm.classlib.java.util.function.TLongConsumer;
+import org.teavm.classlib.java.util.function.TLongFunction;
+import org.teavm.classlib.java.util.function.TLongPredicate;
+import org.teavm.classlib.java.util.function.TLongToDoubleFunction;
+import org.teavm.classlib.java.util.function.TLongToIntFunction;
+import org.teavm.classlib.java.util.function.TLongUnaryOperator;
+import org.teavm.classlib.java.util.function.TObjLongConsumer;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class for all stages of <code>long</code> streams, see {@link TSimpleStreamImpl} for details.
+ * Elements are passed to consumers as <code>long</code> values, so there is no boxing between stages.</p>
+ *
+ * @author Alexey Andreev
+ */
+public abstract class TSimpleLongStreamImpl implements TLongStream {
+    private final TBaseStream<?, ?> upstream;
+    private Runnable closeHandler;
+
+    protected TSimpleLongStreamImpl() {
+        this(null);
+    }
+
+    protected TSimpleLongStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * <p>Pushes elements of the stream to the consumer, see {@link TSimpleStreamImpl#next(TPredicate)}.</p>
+     *
+     * @param consumer receives elements, returns <code>false</code> to stop the stream.
+     * @return <code>false</code> if the stream is known to be exhausted, <code>true</code> otherwise.
+     */
+    public abstract boolean next(TLongPredicate consumer);
+
+    @Override
+    public TLongStream filter(TLongPredicate predicate) {
+        return new TSimpleLongStreamImpl(this) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> !predicate.test(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TLongStream map(TLongUnaryOperator mapper) {
+        return new TSimpleLongStreamImpl(this) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> consumer.test(mapper.applyAsLong(e)));
+            }
+        };
+    }
+
+    @Override
+    public <U> TStream<U> mapToObj(TLongFunction<? extends U> mapper) {
+        return new TSimpleStreamImpl<U>(this) {
+            @Override
+            public boolean next(TPredicate<? super U> consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> consumer.test(mapper.apply(e)));
+            }
+        };
+    }
+
+    @Override
+    public TIntStream mapToInt(TLongToIntFunction mapper) {
+        return new TSimpleIntStreamImpl(this) {
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> consumer.test(mapper.applyAsInt(e)));
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream mapToDouble(TLongToDoubleFunction mapper) {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> consumer.test(mapper.applyAsDouble(e)));
+            }
+        };
+    }
+
+    @Override
+    public TLongStream flatMap(TLongFunction<? extends TLongStream> mapper) {
+        return new TSimpleLongStreamImpl(this) {
+            TSimpleLongStreamImpl current;
+            boolean done;
+
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                while (true) {
+                    if (current != null) {
+                        if (current.next(consumer)) {
+                            return true;
+                        }
+                        current.close();
+                        current = null;
+                    }
+                    if (done) {
+                        return false;
+                    }
+                    done = !TSimpleLongStreamImpl.this.next(e -> {
+                        TLongStream stream = mapper.apply(e);
+                        if (stream == null) {
+                            return true;
+                        }
+                        current = wrap(stream);
+                        return false;
+                    });
+                }
+            }
+        };
+    }
+
+    @Override
+    public TLongStream distinct() {
+        return new TSimpleLongStreamImpl(this) {
+            THashSet<Long> seen = new THashSet<>();
+
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> !seen.add(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TLongStream sorted() {
+        return new TSimpleLongStreamImpl(this) {
+            TArrayLongStreamImpl sorted;
+
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                if (sorted == null) {
+                    long[] array = TSimpleLongStreamImpl.this.toArray();
+                    TArrays.sort(array);
+                    sorted = new TArrayLongStreamImpl(array, 0, array.length);
+                }
+                return sorted.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public TLongStream peek(TLongConsumer action) {
+        return new TSimpleLongStreamImpl(this) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> {
+                    action.accept(e);
+                    return consumer.test(e);
+                });
+            }
+        };
+    }
+
+    @Override
+    public TLongStream limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleLongStreamImpl(this) {
+            long remaining = maxSize;
+
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                if (remaining == 0) {
+                    return false;
+                }
+                boolean more = TSimpleLongStreamImpl.this.next(e -> {
+                    --remaining;
+                    return consumer.test(e) && remaining > 0;
+                });
+                return more && remaining > 0;
+            }
+        };
+    }
+
+    @Override
+    public TLongStream skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleLongStreamImpl(this) {
+            long remaining = n;
+
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                if (remaining > 0) {
+                    if (!TSimpleLongStreamImpl.this.next(e -> --remaining > 0)) {
+                        return false;
+                    }
+                    if (remaining > 0) {
+                        return true;
+                    }
+                }
+                return TSimpleLongStreamImpl.this.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public void forEach(TLongConsumer action) {
+        drain(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TLongConsumer action) {
+        forEach(action);
+    }
+
+    @Override
+    public long[] toArray() {
+        long[][] array = { new long[16] };
+        int[] size = new int[1];
+        forEach(e -> {
+            if (size[0] == array[0].length) {
+                array[0] = TArrays.copyOf(array[0], size[0] * 2);
+            }
+            array[0][size[0]++] = e;
+        });
+        return size[0] == array[0].length ? array[0] : TArrays.copyOf(array[0], size[0]);
+    }
+
+    @Override
+    public long reduce(long identity, TLongBinaryOperator op) {
+        long[] result = { identity };
+        forEach(e -> {
+            result[0] = op.applyAsLong(result[0], e);
+        });
+        return result[0];
+    }
+
+    @Override
+    public TOptionalLong reduce(TLongBinaryOperator op) {
+        long[] result = new long[1];
+        boolean[] present = new boolean[1];
+        forEach(e -> {
+            result[0] = present[0] ? op.applyAsLong(result[0], e) : e;
+            present[0] = true;
+        });
+        return present[0] ? TOptionalLong.of(result[0]) : TOptionalLong.empty();
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TObjLongConsumer<R> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        forEach(e -> accumulator.accept(container, e));
+        return container;
+    }
+
+    @Override
+    public long sum() {
+        long[] sum = new long[1];
+        forEach(e -> {
+            sum[0] += e;
+        });
+        return sum[0];
+    }
+
+    @Override
+    public TOptionalLong min() {
+        return reduce(TMath::min);
+    }
+
+    @Override
+    public TOptionalLong max() {
+        return reduce(TMath::max);
+    }
+
+    @Override
+    public long count() {
+        TCountingConsumer counter = new TCountingConsumer();
+        drain(e -> counter.increment());
+        return counter.getCount();
+    }
+
+    @Override
+    public TOptionalDouble average() {
+        long[] sum = new long[1];
+        int[] count = new int[1];
+        forEach(e -> {
+            sum[0] += e;
+            ++count[0];
+        });
+        return count[0] > 0 ? TOptionalDouble.of((double) sum[0] / count[0]) : TOptionalDouble.empty();
+    }
+
+    @Override
+    public boolean anyMatch(TLongPredicate predicate) {
+        return find(predicate);
+    }
+
+    @Override
+    public boolean allMatch(TLongPredicate predicate) {
+        return !find(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean noneMatch(TLongPredicate predicate) {
+        return !find(predicate);
+    }
+
+    @Override
+    public TOptionalLong findFirst() {
+        long[] result = new long[1];
+        return find(e -> {
+            result[0] = e;
+            return true;
+        }) ? TOptionalLong.of(result[0]) : TOptionalLong.empty();
+    }
+
+    @Override
+    public TOptionalLong findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TDoubleStream asDoubleStream() {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleLongStreamImpl.this.next(e -> consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TStream<Long> boxed() {
+        return mapToObj(Long::valueOf);
+    }
+
+    @Override
+    public TPrimitiveIterator.OfLong iterator() {
+        return new TSimpleLongStreamIterator(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TLongStream sequential() {
+        return this;
+    }
+
+    @Override
+    public TLongStream parallel() {
+        return this;
+    }
+
+    @Override
+    public TLongStream unordered() {
+        return this;
+    }
+
+    @Override
+    public TLongStream onClose(Runnable closeHandler) {
+        Runnable previous = this.closeHandler;
+        this.closeHandler = previous == null ? closeHandler : () -> {
+            try {
+                previous.run();
+            } finally {
+                closeHandler.run();
+            }
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        Runnable handler = closeHandler;
+        closeHandler = null;
+        try {
+            if (upstream != null) {
+                upstream.close();
+            }
+        } finally {
+            if (handler != null) {
+                handler.run();
+            }
+        }
+    }
+
+    private void drain(TLongPredicate consumer) {
+        while (next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+    }
+
+    private boolean find(TLongPredicate predicate) {
+        boolean[] found = new boolean[1];
+        TLongPredicate consumer = e -> {
+            if (predicate.test(e)) {
+                found[0] = true;
+                return false;
+            }
+            return true;
+        };
+        while (!found[0] && next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+        return found[0];
+    }
+
+    public static TLongStream concat(TLongStream a, TLongStream b) {
+        TSimpleLongStreamImpl first = wrap(a);
+        TSimpleLongStreamImpl second = wrap(b);
+        return new TSimpleLongStreamImpl() {
+            boolean firstDone;
+
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                if (!firstDone) {
+                    if (first.next(consumer)) {
+                        return true;
+                    }
+                    firstDone = true;
+                }
+                return second.next(consumer);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    first.close();
+                    second.close();
+                } finally {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    public static TSimpleLongStreamImpl wrap(TLongStream stream) {
+        if (stream instanceof TSimpleLongStreamImpl) {
+            return (TSimpleLongStreamImpl) stream;
+        }
+        TPrimitiveIterator.OfLong iterator = stream.iterator();
+        return new TSimpleLongStreamImpl(stream) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                while (iterator.hasNext()) {
+                    if (!consumer.test(iterator.nextLong())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TUnsupportedOperationException;
+import org.teavm.classlib.java.util.TNoSuchElementException;
+import org.teavm.classlib.java.util.TPrimitiveIterator;
+import org.teavm.classlib.java.util.function.TLongPredicate;
+
+/**
+ *
+ * @author Alexey Andreev
+ */
+class TSimpleLongStreamIterator implements TPrimitiveIterator.OfLong {
+    private static final byte NEEDS_FETCH = 0;
+    private static final byte HAS_ELEMENT = 1;
+    private static final byte EXHAUSTED = 2;
+    private TSimpleLongStreamImpl stream;
+    private TLongPredicate consumer = this::accept;
+    private long element;
+    private byte state;
+
+    TSimpleLongStreamIterator(TSimpleLongStreamImpl stream) {
+        this.stream = stream;
+    }
+
+    private boolean accept(long e) {
+        element = e;
+        state = HAS_ELEMENT;
+        return false;
+    }
+
+    private void fetchIfNeeded() {
+        while (state == NEEDS_FETCH) {
+            if (!stream.next(consumer) && state == NEEDS_FETCH) {
+                state = EXHAUSTED;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        fetchIfNeeded();
+        return state == HAS_ELEMENT;
+    }
+
+    @Override
+    public long nextLong() {
+        fetchIfNeeded();
+        if (state != HAS_ELEMENT) {
+            throw new TNoSuchElementException();
+        }
+        state = NEEDS_FETCH;
+        return element;
+    }
+
+    @Override
+    public void remove() {
+        throw new TUnsupportedOperationException();
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalArgumentException;
+import org.teavm.classlib.java.util.TArrayList;
+import org.teavm.classlib.java.util.TArrays;
+import org.teavm.classlib.java.util.TComparator;
+import org.teavm.classlib.java.util.THashSet;
+import org.teavm.classlib.java.util.TIterator;
+import org.teavm.classlib.java.util.TOptional;
+import org.teavm.classlib.java.util.function.TBiConsumer;
+import org.teavm.classlib.java.util.function.TBiFunction;
+import org.teavm.classlib.java.util.function.TBinaryOperator;
+import org.teavm.classlib.java.util.function.TConsumer;
+import org.teavm.classlib.java.util.function.TDoublePredicate;
+import org.teavm.classlib.java.util.function.TFunction;
+import org.teavm.classlib.java.util.function.TIntFunction;
+import org.teavm.classlib.java.util.function.TIntPredicate;
+import org.teavm.classlib.java.util.function.TLongPredicate;
+import org.teavm.classlib.java.util.function.TPredicate;
+import org.teavm.classlib.java.util.function.TSupplier;
+import org.teavm.classlib.java.util.function.TToDoubleFunction;
+import org.teavm.classlib.java.util.function.TToIntFunction;
+import org.teavm.classlib.java.util.function.TToLongFunction;
+import org.teavm.classlib.java.util.stream.TBaseStream;
+import org.teavm.classlib.java.util.stream.TCollector;
+import org.teavm.classlib.java.util.stream.TDoubleStream;
+import org.teavm.classlib.java.util.stream.TIntStream;
+import org.teavm.classlib.java.util.stream.TLongStream;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ * <p>Base class for all stages of object streams. Instead of pulling elements one by one, like iterator does,
+ * a stage pushes them to a consumer passed to {@link #next(TPredicate)}. Every intermediate operation wraps
+ * the consumer and passes it to the previous stage, so a chain of stateless operations runs as a single loop
+ * over the source, without intermediate buffers and without a virtual call to <code>hasNext</code> per
+ * element.</p>
+ *
+ * @author Alexey Andreev
+ * @param <T>
+ */
+public abstract class TSimpleStreamImpl<T> implements TStream<T> {
+    private final TBaseStream<?, ?> upstream;
+    private Runnable closeHandler;
+
+    protected TSimpleStreamImpl() {
+        this(null);
+    }
+
+    protected TSimpleStreamImpl(TBaseStream<?, ?> upstream) {
+        this.upstream = upstream;
+    }
+
+    /**
+     * <p>Pushes elements of the stream to the consumer until either the stream is exhausted or the consumer
+     * returns <code>false</code>. Can be called again to resume the stream from the element that
+     * follows the last pushed one.</p>
+     *
+     * @param consumer receives elements, returns <code>false</code> to stop the stream.
+     * @return <code>false</code> if the stream is known to be exhausted, <code>true</code> otherwise.
+     */
+    public abstract boolean next(TPredicate<? super T> consumer);
+
+    @Override
+    public TStream<T> filter(TPredicate<? super T> predicate) {
+        return new TSimpleStreamImpl<T>(this) {
+            @Override
+            public boolean next(TPredicate<? super T> consumer) {
+                return TSimpleStreamImpl.this.next(e -> !predicate.test(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public <R> TStream<R> map(TFunction<? super T, ? extends R> mapper) {
+        return new TSimpleStreamImpl<R>(this) {
+            @Override
+            public boolean next(TPredicate<? super R> consumer) {
+                return TSimpleStreamImpl.this.next(e -> consumer.test(mapper.apply(e)));
+            }
+        };
+    }
+
+    @Override
+    public TIntStream mapToInt(TToIntFunction<? super T> mapper) {
+        return new TSimpleIntStreamImpl(this) {
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                return TSimpleStreamImpl.this.next(e -> consumer.test(mapper.applyAsInt(e)));
+            }
+        };
+    }
+
+    @Override
+    public TLongStream mapToLong(TToLongFunction<? super T> mapper) {
+        return new TSimpleLongStreamImpl(this) {
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                return TSimpleStreamImpl.this.next(e -> consumer.test(mapper.applyAsLong(e)));
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream mapToDouble(TToDoubleFunction<? super T> mapper) {
+        return new TSimpleDoubleStreamImpl(this) {
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                return TSimpleStreamImpl.this.next(e -> consumer.test(mapper.applyAsDouble(e)));
+            }
+        };
+    }
+
+    @Override
+    public <R> TStream<R> flatMap(TFunction<? super T, ? extends TStream<? extends R>> mapper) {
+        return new TSimpleStreamImpl<R>(this) {
+            TSimpleStreamImpl<? extends R> current;
+            boolean done;
+
+            @Override
+            public boolean next(TPredicate<? super R> consumer) {
+                while (true) {
+                    if (current != null) {
+                        if (current.next(consumer)) {
+                            return true;
+                        }
+                        current.close();
+                        current = null;
+                    }
+                    if (done) {
+                        return false;
+                    }
+                    done = !TSimpleStreamImpl.this.next(e -> {
+                        TStream<? extends R> stream = mapper.apply(e);
+                        if (stream == null) {
+                            return true;
+                        }
+                        current = wrap(stream);
+                        return false;
+                    });
+                }
+            }
+        };
+    }
+
+    @Override
+    public TIntStream flatMapToInt(TFunction<? super T, ? extends TIntStream> mapper) {
+        return new TSimpleIntStreamImpl(this) {
+            TSimpleIntStreamImpl current;
+            boolean done;
+
+            @Override
+            public boolean next(TIntPredicate consumer) {
+                while (true) {
+                    if (current != null) {
+                        if (current.next(consumer)) {
+                            return true;
+                        }
+                        current.close();
+                        current = null;
+                    }
+                    if (done) {
+                        return false;
+                    }
+                    done = !TSimpleStreamImpl.this.next(e -> {
+                        TIntStream stream = mapper.apply(e);
+                        if (stream == null) {
+                            return true;
+                        }
+                        current = TSimpleIntStreamImpl.wrap(stream);
+                        return false;
+                    });
+                }
+            }
+        };
+    }
+
+    @Override
+    public TLongStream flatMapToLong(TFunction<? super T, ? extends TLongStream> mapper) {
+        return new TSimpleLongStreamImpl(this) {
+            TSimpleLongStreamImpl current;
+            boolean done;
+
+            @Override
+            public boolean next(TLongPredicate consumer) {
+                while (true) {
+                    if (current != null) {
+                        if (current.next(consumer)) {
+                            return true;
+                        }
+                        current.close();
+                        current = null;
+                    }
+                    if (done) {
+                        return false;
+                    }
+                    done = !TSimpleStreamImpl.this.next(e -> {
+                        TLongStream stream = mapper.apply(e);
+                        if (stream == null) {
+                            return true;
+                        }
+                        current = TSimpleLongStreamImpl.wrap(stream);
+                        return false;
+                    });
+                }
+            }
+        };
+    }
+
+    @Override
+    public TDoubleStream flatMapToDouble(TFunction<? super T, ? extends TDoubleStream> mapper) {
+        return new TSimpleDoubleStreamImpl(this) {
+            TSimpleDoubleStreamImpl current;
+            boolean done;
+
+            @Override
+            public boolean next(TDoublePredicate consumer) {
+                while (true) {
+                    if (current != null) {
+                        if (current.next(consumer)) {
+                            return true;
+                        }
+                        current.close();
+                        current = null;
+                    }
+                    if (done) {
+                        return false;
+                    }
+                    done = !TSimpleStreamImpl.this.next(e -> {
+                        TDoubleStream stream = mapper.apply(e);
+                        if (stream == null) {
+                            return true;
+                        }
+                        current = TSimpleDoubleStreamImpl.wrap(stream);
+                        return false;
+                    });
+                }
+            }
+        };
+    }
+
+    @Override
+    public TStream<T> distinct() {
+        return new TSimpleStreamImpl<T>(this) {
+            THashSet<T> seen = new THashSet<>();
+
+            @Override
+            public boolean next(TPredicate<? super T> consumer) {
+                return TSimpleStreamImpl.this.next(e -> !seen.add(e) || consumer.test(e));
+            }
+        };
+    }
+
+    @Override
+    public TStream<T> sorted() {
+        return sorted(null);
+    }
+
+    @Override
+    public TStream<T> sorted(TComparator<? super T> comparator) {
+        return new TSimpleStreamImpl<T>(this) {
+            TArrayStreamImpl<T> sorted;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean next(TPredicate<? super T> consumer) {
+                if (sorted == null) {
+                    Object[] array = TSimpleStreamImpl.this.toArray();
+                    TArrays.sort(array, (TComparator<Object>) comparator);
+                    sorted = new TArrayStreamImpl<>(array, 0, array.length);
+                }
+                return sorted.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public TStream<T> peek(TConsumer<? super T> action) {
+        return new TSimpleStreamImpl<T>(this) {
+            @Override
+            public boolean next(TPredicate<? super T> consumer) {
+                return TSimpleStreamImpl.this.next(e -> {
+                    action.accept(e);
+                    return consumer.test(e);
+                });
+            }
+        };
+    }
+
+    @Override
+    public TStream<T> limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleStreamImpl<T>(this) {
+            long remaining = maxSize;
+
+            @Override
+            public boolean next(TPredicate<? super T> consumer) {
+                if (remaining == 0) {
+                    return false;
+                }
+                boolean more = TSimpleStreamImpl.this.next(e -> {
+                    --remaining;
+                    return consumer.test(e) && remaining > 0;
+                });
+                return more && remaining > 0;
+            }
+        };
+    }
+
+    @Override
+    public TStream<T> skip(long n) {
+        if (n < 0) {
+            throw new TIllegalArgumentException();
+        }
+        return new TSimpleStreamImpl<T>(this) {
+            long remaining = n;
+
+            @Override
+            public boolean next(TPredicate<? super T> consumer) {
+                if (remaining > 0) {
+                    if (!TSimpleStreamImpl.this.next(e -> --remaining > 0)) {
+                        return false;
+                    }
+                    if (remaining > 0) {
+                        return true;
+                    }
+                }
+                return TSimpleStreamImpl.this.next(consumer);
+            }
+        };
+    }
+
+    @Override
+    public void forEach(TConsumer<? super T> action) {
+        drain(e -> {
+            action.accept(e);
+            return true;
+        });
+    }
+
+    @Override
+    public void forEachOrdered(TConsumer<? super T> action) {
+        forEach(action);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return toArray(Object[]::new);
+    }
+
+    @Override
+    public <A> A[] toArray(TIntFunction<A[]> generator) {
+        TArrayList<T> list = new TArrayList<>();
+        drain(list::add);
+        return list.toArray(generator.apply(list.size()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T reduce(T identity, TBinaryOperator<T> accumulator) {
+        Object[] result = { identity };
+        forEach(e -> {
+            result[0] = accumulator.apply((T) result[0], e);
+        });
+        return (T) result[0];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TOptional<T> reduce(TBinaryOperator<T> accumulator) {
+        Object[] result = new Object[1];
+        boolean[] present = new boolean[1];
+        forEach(e -> {
+            result[0] = present[0] ? accumulator.apply((T) result[0], e) : e;
+            present[0] = true;
+        });
+        return present[0] ? TOptional.of((T) result[0]) : TOptional.empty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U reduce(U identity, TBiFunction<U, ? super T, U> accumulator, TBinaryOperator<U> combiner) {
+        Object[] result = { identity };
+        forEach(e -> {
+            result[0] = accumulator.apply((U) result[0], e);
+        });
+        return (U) result[0];
+    }
+
+    @Override
+    public <R> R collect(TSupplier<R> supplier, TBiConsumer<R, ? super T> accumulator, TBiConsumer<R, R> combiner) {
+        R container = supplier.get();
+        forEach(e -> accumulator.accept(container, e));
+        return container;
+    }
+
+    @Override
+    public <R, A> R collect(TCollector<? super T, A, R> collector) {
+        A container = collector.supplier().get();
+        TBiConsumer<A, ? super T> accumulator = collector.accumulator();
+        forEach(e -> accumulator.accept(container, e));
+        return collector.finisher().apply(container);
+    }
+
+    @Override
+    public TOptional<T> min(TComparator<? super T> comparator) {
+        return reduce(TBinaryOperator.minBy(comparator));
+    }
+
+    @Override
+    public TOptional<T> max(TComparator<? super T> comparator) {
+        return reduce(TBinaryOperator.maxBy(comparator));
+    }
+
+    @Override
+    public long count() {
+        TCountingConsumer counter = new TCountingConsumer();
+        drain(e -> counter.increment());
+        return counter.getCount();
+    }
+
+    @Override
+    public boolean anyMatch(TPredicate<? super T> predicate) {
+        return find(predicate);
+    }
+
+    @Override
+    public boolean allMatch(TPredicate<? super T> predicate) {
+        return !find(e -> !predicate.test(e));
+    }
+
+    @Override
+    public boolean noneMatch(TPredicate<? super T> predicate) {
+        return !find(predicate);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public TOptional<T> findFirst() {
+        Object[] result = new Object[1];
+        return find(e -> {
+            result[0] = e;
+            return true;
+        }) ? TOptional.of((T) result[0]) : TOptional.empty();
+    }
+
+    @Override
+    public TOptional<T> findAny() {
+        return findFirst();
+    }
+
+    @Override
+    public TIterator<T> iterator() {
+        return new TSimpleStreamIterator<>(this);
+    }
+
+    @Override
+    public boolean isParallel() {
+        return false;
+    }
+
+    @Override
+    public TStream<T> sequential() {
+        return this;
+    }
+
+    @Override
+    public TStream<T> parallel() {
+        return this;
+    }
+
+    @Override
+    public TStream<T> unordered() {
+        return this;
+    }
+
+    @Override
+    public TStream<T> onClose(Runnable closeHandler) {
+        Runnable previous = this.closeHandler;
+        this.closeHandler = previous == null ? closeHandler : () -> {
+            try {
+                previous.run();
+            } finally {
+                closeHandler.run();
+            }
+        };
+        return this;
+    }
+
+    @Override
+    public void close() {
+        Runnable handler = closeHandler;
+        closeHandler = null;
+        try {
+            if (upstream != null) {
+                upstream.close();
+            }
+        } finally {
+            if (handler != null) {
+                handler.run();
+            }
+        }
+    }
+
+    private void drain(TPredicate<? super T> consumer) {
+        while (next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+    }
+
+    private boolean find(TPredicate<? super T> predicate) {
+        boolean[] found = new boolean[1];
+        TPredicate<T> consumer = e -> {
+            if (predicate.test(e)) {
+                found[0] = true;
+                return false;
+            }
+            return true;
+        };
+        while (!found[0] && next(consumer)) {
+            // the stream stopped before it was exhausted, resume it
+        }
+        return found[0];
+    }
+
+    public static <T> TStream<T> concat(TStream<? extends T> a, TStream<? extends T> b) {
+        TSimpleStreamImpl<? extends T> first = wrap(a);
+        TSimpleStreamImpl<? extends T> second = wrap(b);
+        return new TSimpleStreamImpl<T>() {
+            boolean firstDone;
+
+            @Override
+            public boolean next(TPredicate<? super T> consumer) {
+                if (!firstDone) {
+                    if (first.next(consumer)) {
+                        return true;
+                    }
+                    firstDone = true;
+                }
+                return second.next(consumer);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    first.close();
+                    second.close();
+                } finally {
+                    super.close();
+                }
+            }
+        };
+    }
+
+    public static <T> TSimpleStreamImpl<T> wrap(TStream<T> stream) {
+        if (stream instanceof TSimpleStreamImpl) {
+            return (TSimpleStreamImpl<T>) stream;
+        }
+        TIterator<T> iterator = stream.iterator();
+        return new TSimpleStreamImpl<T>(stream) {
+            @Override
+            public boolean next(TPredicate<? super T> consumer) {
+                while (iterator.hasNext()) {
+                    if (!consumer.test(iterator.next())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream.impl;
+
+import org.teavm.classlib.java.lang.TIllegalStateException;
+import org.teavm.classlib.java.util.TArrayList;
+import org.teavm.classlib.java.util.stream.TStream;
+
+/**
+ *
+ * @author Alexey Andreev
+ * @param <T>
+ */
+public class TStreamBuilderImpl<T> implements TStream.Builder<T> {
+    private TArrayList<T> elements = new TArrayList<>();
+    private boolean built;
+
+    @Override
+    public void accept(T t) {
+        if (built) {
+            throw new TIllegalStateException();
+        }
+        elements.add(t);
+    }
+
+    @Override
+    public TStream<T> build() {
+        if (built) {
+            throw new TIllegalStateException();
+        }
+        built = true;
+        return new TArrayStreamImpl<>(elements.toArray(), 0, elements.size());
+    }
+}
@@ -53,6 +53,7 @@ import org.teavm.model.CallLocation;
 import org.teavm.model.ClassHolder;
 import org.teavm.model.ClassHolderTransformer;
 import org.teavm.model.ElementModifier;
+import org.teavm.model.FieldReference;
 import org.teavm.model.ListableClassHolderSource;
 import org.teavm.model.ListableClassReaderSource;
 import org.teavm.model.MethodHolder;
@@ -80,6 +81,9 @@ import org.teavm.vm.spi.TeaVMHostExtension;
 public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
     private TeaVMTargetController controller;
     private boolean minifying = true;
+    private boolean bigIntLongs;
+    private boolean lazyMetadata;
+    private boolean nativeStrings;
     private final Map<MethodReference, Generator> methodGenerators = new HashMap<>();
     private final Map<MethodReference, Injector> methodInjectors = new HashMap<>();
     private final List<RendererListener> rendererListeners = new ArrayList<>();
@@ -138,6 +142,52 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         this.minifying = minifying;
     }
 
+    public boolean isBigIntLongs() {
+        return bigIntLongs;
+    }
+
+    /**
+     * Specifies whether Java <code>long</code> values are represented by JavaScript <code>BigInt</code>
+     * instead of objects with two 32-bit halves. Long arithmetic becomes much cheaper, but the generated code
+     * requires an engine that supports <code>BigInt</code> and <code>BigInt64Array</code>.
+     *
+     * @param bigIntLongs whether TeaVM should represent longs by <code>BigInt</code>.
+     */
+    public void setBigIntLongs(boolean bigIntLongs) {
+        this.bigIntLongs = bigIntLongs;
+    }
+
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    /**
+     * Specifies whether class metadata and virtual method tables are initialized on first use of a class
+     * rather than all at once before the program starts. This reduces startup time of large programs at the
+     * cost of an additional check in every constructor.
+     *
+     * @param lazyMetadata whether TeaVM should initialize class metadata lazily.
+     */
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
+    @Override
+    public boolean isNativeStrings() {
+        return nativeStrings;
+    }
+
+    /**
+     * Specifies whether <code>java.lang.String</code> wraps a native JavaScript string instead of
+     * a <code>char</code> array. Strings pass between Java and JavaScript code without copying, and most
+     * string operations are performed by the engine. Must be set before plugins are installed.
+     *
+     * @param nativeStrings whether TeaVM should represent strings by JavaScript strings.
+     */
+    public void setNativeStrings(boolean nativeStrings) {
+        this.nativeStrings = nativeStrings;
+    }
+
     public MethodNodeCache getAstCache() {
         return astCache;
     }
@@ -159,6 +209,11 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         return true;
     }
 
+    @Override
+    public boolean supportsObjectInitialValues() {
+        return true;
+    }
+
     @Override
     public List<TeaVMHostExtension> getHostExtensions() {
         return Collections.singletonList(this);
@@ -179,6 +234,9 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         internDep.use();
 
         dependencyChecker.linkMethod(new MethodReference(String.class, "length", int.class), null).use();
+        if (nativeStrings) {
+            dependencyChecker.linkField(new FieldReference(String.class.getName(), "nativeString"), null);
+        }
         dependencyChecker.linkMethod(new MethodReference(Object.class, "clone", Object.class), null).use();
         dependencyChecker.linkMethod(new MethodReference(Thread.class, "currentThread", Thread.class), null).use();
         dependencyChecker.linkMethod(new MethodReference(Thread.class, "getMainThread", Thread.class), null).use();
@@ -234,10 +292,13 @@ public class JavaScriptTarget implements TeaVMTarget, TeaVMJavaScriptHost {
         RenderingContext renderingContext = new RenderingContext(debugEmitterToUse, classes,
                 controller.getClassLoader(), controller.getServices(), controller.getProperties(), naming);
         renderingContext.setMinifying(minifying);
+        renderingContext.setBigIntLongs(bigIntLongs);
+        renderingContext.setNativeStrings(nativeStrings);
         Renderer renderer = new Renderer(sourceWriter, asyncMethods, asyncFamilyMethods,
                 controller.getDiagnostics(), renderingContext);
         renderer.setProperties(controller.getProperties());
         renderer.setMinifying(minifying);
+        renderer.setLazyMetadata(lazyMetadata);
         if (debugEmitter != null) {
             for (String className : classes.getClassNames()) {
                 ClassHolder cls = classes.get(className);
@@ -27,4 +27,6 @@ public interface TeaVMJavaScriptHost extends TeaVMHostExtension {
     void add(MethodReference methodRef, Injector injector);
 
     void add(RendererListener listener);
+
+    boolean isNativeStrings();
 }
@@ -17,6 +17,7 @@ package org.teavm.backend.javascript.rendering;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -39,6 +40,7 @@ import org.teavm.common.ServiceRepository;
 import org.teavm.debugging.information.DebugInformationEmitter;
 import org.teavm.debugging.information.DummyDebugInformationEmitter;
 import org.teavm.diagnostics.Diagnostics;
+import org.teavm.model.ClassReader;
 import org.teavm.model.ElementModifier;
 import org.teavm.model.FieldReference;
 import org.teavm.model.ListableClassReaderSource;
@@ -49,11 +51,13 @@ import org.teavm.model.ValueType;
 import org.teavm.vm.RenderingException;
 
 public class Renderer implements RenderingManager {
+    private static final FieldReference NATIVE_STRING = new FieldReference("java.lang.String", "nativeString");
     private final NamingStrategy naming;
     private final SourceWriter writer;
     private final ListableClassReaderSource classSource;
     private final ClassLoader classLoader;
     private boolean minifying;
+    private boolean lazyMetadata;
     private final Properties properties = new Properties();
     private final ServiceRepository services;
     private DebugInformationEmitter debugEmitter = new DummyDebugInformationEmitter();
@@ -95,6 +99,15 @@ public class Renderer implements RenderingManager {
         this.minifying = minifying;
     }
 
+    @Override
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
     @Override
     public ListableClassReaderSource getClassSource() {
         return classSource;
@@ -163,6 +176,9 @@ public class Renderer implements RenderingManager {
             renderRuntimeNullCheck();
             renderRuntimeIntern();
             renderRuntimeThreads();
+            if (context.isBigIntLongs()) {
+                renderRuntimeBigIntLongs();
+            }
         } catch (NamingException e) {
             throw new RenderingException("Error rendering runtime methods. See a cause for details", e);
         } catch (IOException e) {
@@ -180,6 +196,10 @@ public class Renderer implements RenderingManager {
     }
 
     private void renderRuntimeString() throws IOException {
+        if (context.isNativeStrings()) {
+            renderRuntimeNativeString();
+            return;
+        }
         MethodReference stringCons = new MethodReference(String.class, "<init>", char[].class, void.class);
         writer.append("function $rt_str(str) {").indent().softNewLine();
         writer.append("if (str===null){").indent().softNewLine();
@@ -194,7 +214,26 @@ public class Renderer implements RenderingManager {
         writer.outdent().append("}").newLine();
     }
 
+    private void renderRuntimeNativeString() throws IOException {
+        writer.append("function $rt_str(str) {").indent().softNewLine();
+        writer.append("if (str===null){").indent().softNewLine();
+        writer.append("return null;").softNewLine();
+        writer.outdent().append("}").softNewLine();
+        ClassReader stringClass = classSource.get("java.lang.String");
+        if (stringClass != null && stringClass.getMethod(new MethodDescriptor("<clinit>", ValueType.VOID)) != null) {
+            writer.appendClass("java.lang.String").append("_$callClinit();").softNewLine();
+        }
+        writer.append("var result = new ").appendClass("java.lang.String").append("();").softNewLine();
+        writer.append("result.").appendField(NATIVE_STRING).append(" = str;").softNewLine();
+        writer.append("return result;").softNewLine();
+        writer.outdent().append("}").newLine();
+    }
+
     private void renderRuntimeUnwrapString() throws IOException {
+        if (context.isNativeStrings()) {
+            renderRuntimeNativeUnwrapString();
+            return;
+        }
         MethodReference stringLen = new MethodReference(String.class, "length", int.class);
         MethodReference getChars = new MethodReference(String.class, "getChars", int.class, int.class,
                 char[].class, int.class, void.class);
@@ -210,6 +249,12 @@ public class Renderer implements RenderingManager {
         writer.outdent().append("}").newLine();
     }
 
+    private void renderRuntimeNativeUnwrapString() throws IOException {
+        writer.append("function $rt_ustr(str) {").indent().softNewLine();
+        writer.append("return str.").appendField(NATIVE_STRING).append(";").softNewLine();
+        writer.outdent().append("}").newLine();
+    }
+
     private void renderRuntimeNullCheck() throws IOException {
         writer.append("function $rt_nullCheck(val) {").indent().softNewLine();
         writer.append("if (val === null) {").indent().softNewLine();
@@ -243,11 +288,54 @@ public class Renderer implements RenderingManager {
         writer.outdent().append("}").newLine();
     }
 
+    // Generated code operates on BigInt values directly, but native generators and runtime.js still call
+    // Long_* functions, so they are replaced by functions that accept and produce BigInt values
+    private void renderRuntimeBigIntLongs() throws IOException {
+        writer.append("Long_ZERO").ws().append("=").ws().append("0n;").newLine();
+        writer.append("function Long_fromInt(val) {").indent().softNewLine();
+        writer.append("return BigInt(val);").softNewLine();
+        writer.outdent().append("}").newLine();
+
+        writer.append("function Long_fromNumber(val) {").indent().softNewLine();
+        writer.append("if (val !== val) {").indent().softNewLine();
+        writer.append("return 0n;").softNewLine();
+        writer.outdent().append("}").softNewLine();
+        writer.append("if (val >= 9223372036854775807) {").indent().softNewLine();
+        writer.append("return 9223372036854775807n;").softNewLine();
+        writer.outdent().append("}").softNewLine();
+        writer.append("if (val <= -9223372036854775808) {").indent().softNewLine();
+        writer.append("return -9223372036854775808n;").softNewLine();
+        writer.outdent().append("}").softNewLine();
+        writer.append("return BigInt(Math.trunc(val));").softNewLine();
+        writer.outdent().append("}").newLine();
+
+        writer.append("function Long_toNumber(val) {").indent().softNewLine();
+        writer.append("return Number(val);").softNewLine();
+        writer.outdent().append("}").newLine();
+
+        writer.append("function Long_compare(a, b) {").indent().softNewLine();
+        writer.append("return a > b ? 1 : a < b ? -1 : 0;").softNewLine();
+        writer.outdent().append("}").newLine();
+
+        writer.append("function Long_hashCode(a) {").indent().softNewLine();
+        writer.append("return Number(BigInt.asIntN(32, a ^ (a >> 32n)));").softNewLine();
+        writer.outdent().append("}").newLine();
+
+        writer.append("function $rt_createLongArray(sz) {").indent().softNewLine();
+        writer.append("return $rt_createNumericArray($rt_longcls(), new BigInt64Array(sz));").softNewLine();
+        writer.outdent().append("}").newLine();
+    }
+
     private void renderRuntimeAliases() throws IOException {
         String[] names = { "$rt_throw", "$rt_compare", "$rt_nullCheck", "$rt_cls", "$rt_createArray",
                 "$rt_isInstance", "$rt_nativeThread", "$rt_suspending", "$rt_resuming", "$rt_invalidPointer" };
+        List<String> aliasedNames = new ArrayList<>(Arrays.asList(names));
+        if (lazyMetadata) {
+            aliasedNames.add("$rt_lazyConstruct");
+            aliasedNames.add("$rt_lazyClinit");
+        }
         boolean first = true;
-        for (String name : names) {
+        for (String name : aliasedNames) {
             if (!first) {
                 writer.softNewLine();
             }
@@ -289,6 +377,11 @@ public class Renderer implements RenderingManager {
         try {
             writer.append("function ").appendClass(cls.getName()).append("()").ws().append("{")
                     .indent().softNewLine();
+            if (lazyMetadata && !cls.getModifiers().contains(ElementModifier.INTERFACE)) {
+                writer.append("if").ws().append("(").appendClass(cls.getName()).append(".$lazyMetadata)").ws()
+                        .append("return ").appendFunction("$rt_lazyConstruct").append("(")
+                        .appendClass(cls.getName()).append(");").softNewLine();
+            }
             boolean thisAliased = false;
             List<FieldNode> nonStaticFields = new ArrayList<>();
             List<FieldNode> staticFields = new ArrayList<>();
@@ -332,7 +425,10 @@ public class Renderer implements RenderingManager {
                 FieldReference fieldRef = new FieldReference(cls.getName(), field.getName());
                 if (value instanceof String) {
                     context.constantToString(value);
-                    postponedFieldInitializers.add(new PostponedFieldInitializer(fieldRef, (String) value));
+                    postponedFieldInitializers.add(new PostponedFieldInitializer(fieldRef, value));
+                    value = null;
+                } else if (value != null && value.getClass().isArray()) {
+                    postponedFieldInitializers.add(new PostponedFieldInitializer(fieldRef, value));
                     value = null;
                 }
                 writer.append("var ").appendStaticField(fieldRef).ws().append("=").ws()
@@ -373,6 +469,11 @@ public class Renderer implements RenderingManager {
                 writer.appendMethodBody(new MethodReference(cls.getName(), clinit.getDescriptor()))
                         .append("();").softNewLine();
                 writer.outdent().append("}").newLine();
+                if (lazyMetadata) {
+                    for (MethodNode method : clinitMethods) {
+                        renderClinitStub(cls, method);
+                    }
+                }
             }
             if (!cls.getModifiers().contains(ElementModifier.INTERFACE)) {
                 for (MethodNode method : cls.getMethods()) {
@@ -398,7 +499,7 @@ public class Renderer implements RenderingManager {
 
     private void renderClassMetadata(List<ClassNode> classes) {
         try {
-            writer.append("$rt_metadata([");
+            writer.append(lazyMetadata ? "$rt_lazyMetadata([" : "$rt_metadata([");
             boolean first = true;
             for (ClassNode cls : classes) {
                 if (!first) {
@@ -406,62 +507,22 @@ public class Renderer implements RenderingManager {
                 }
                 first = false;
                 writer.appendClass(cls.getName()).append(",").ws();
-                writer.append("\"").append(RenderingUtil.escapeString(cls.getName())).append("\",").ws();
-                if (cls.getParentName() != null) {
-                    writer.appendClass(cls.getParentName());
-                } else {
-                    writer.append("0");
-                }
-                writer.append(',').ws();
-                writer.append("[");
-                for (int i = 0; i < cls.getInterfaces().size(); ++i) {
-                    String iface = cls.getInterfaces().get(i);
-                    if (i > 0) {
-                        writer.append(",").ws();
-                    }
-                    writer.appendClass(iface);
-                }
-                writer.append("],").ws();
-                int flags = 0;
-                if (cls.getModifiers().contains(ElementModifier.ENUM)) {
-                    flags |= 1;
-                }
-                writer.append(flags).append(',').ws();
                 MethodReader clinit = classSource.get(cls.getName()).getMethod(
                         new MethodDescriptor("<clinit>", ValueType.VOID));
-                if (clinit != null) {
-                    writer.appendClass(cls.getName()).append("_$callClinit");
-                } else {
-                    writer.append('0');
-                }
-                writer.append(',').ws();
-
-                List<String> stubNames = new ArrayList<>();
-                List<MethodNode> virtualMethods = new ArrayList<>();
-                for (MethodNode method : cls.getMethods()) {
-                    if (clinit != null && (method.getModifiers().contains(ElementModifier.STATIC)
-                            || method.getReference().getName().equals("<init>"))) {
-                        stubNames.add(naming.getFullNameFor(method.getReference()));
-                    }
-                    if (!method.getModifiers().contains(ElementModifier.STATIC)) {
-                        virtualMethods.add(method);
-                    }
-                }
-                if (stubNames.size() == 1) {
-                    writer.append("'").append(stubNames.get(0)).append("'");
+                if (lazyMetadata) {
+                    renderClinitReference(cls, clinit);
+                    writer.append(',').ws().append("function()").ws().append('{').ws().append("return [");
+                    renderTypeMetadata(cls);
+                    renderVirtualDeclarations(getVirtualMethods(cls));
+                    writer.append("];").ws().append('}');
                 } else {
-                    writer.append('[');
-                    for (int j = 0; j < stubNames.size(); ++j) {
-                        if (j > 0) {
-                            writer.append(",").ws();
-                        }
-                        writer.append("'").append(stubNames.get(j)).append("'");
-                    }
-                    writer.append(']');
+                    renderTypeMetadata(cls);
+                    renderClinitReference(cls, clinit);
+                    writer.append(',').ws();
+                    renderClinitStubNames(cls, clinit);
+                    writer.append(',').ws();
+                    renderVirtualDeclarations(getVirtualMethods(cls));
                 }
-                writer.append(',').ws();
-
-                renderVirtualDeclarations(virtualMethods);
             }
             writer.append("]);").newLine();
         } catch (NamingException e) {
@@ -471,6 +532,78 @@ public class Renderer implements RenderingManager {
         }
     }
 
+    private void renderTypeMetadata(ClassNode cls) throws IOException {
+        writer.append("\"").append(RenderingUtil.escapeString(cls.getName())).append("\",").ws();
+        if (cls.getParentName() != null) {
+            writer.appendClass(cls.getParentName());
+        } else {
+            writer.append("0");
+        }
+        writer.append(',').ws();
+        writer.append("[");
+        for (int i = 0; i < cls.getInterfaces().size(); ++i) {
+            String iface = cls.getInterfaces().get(i);
+            if (i > 0) {
+                writer.append(",").ws();
+            }
+            writer.appendClass(iface);
+        }
+        writer.append("],").ws();
+        int flags = 0;
+        if (cls.getModifiers().contains(ElementModifier.ENUM)) {
+            flags |= 1;
+        }
+        writer.append(flags).append(',').ws();
+    }
+
+    private void renderClinitReference(ClassNode cls, MethodReader clinit) throws IOException {
+        if (clinit != null) {
+            writer.appendClass(cls.getName()).append("_$callClinit");
+        } else {
+            writer.append('0');
+        }
+    }
+
+    private void renderClinitStubNames(ClassNode cls, MethodReader clinit) throws IOException {
+        List<String> stubNames = new ArrayList<>();
+        for (MethodNode method : cls.getMethods()) {
+            if (clinit != null && (method.getModifiers().contains(ElementModifier.STATIC)
+                    || method.getReference().getName().equals("<init>"))) {
+                stubNames.add(naming.getFullNameFor(method.getReference()));
+            }
+        }
+        if (stubNames.size() == 1) {
+            writer.append("'").append(stubNames.get(0)).append("'");
+        } else {
+            writer.append('[');
+            for (int j = 0; j < stubNames.size(); ++j) {
+                if (j > 0) {
+                    writer.append(",").ws();
+                }
+                writer.append("'").append(stubNames.get(j)).append("'");
+            }
+            writer.append(']');
+        }
+    }
+
+    private List<MethodNode> getVirtualMethods(ClassNode cls) {
+        List<MethodNode> virtualMethods = new ArrayList<>();
+        for (MethodNode method : cls.getMethods()) {
+            if (!method.getModifiers().contains(ElementModifier.STATIC)) {
+                virtualMethods.add(method);
+            }
+        }
+        return virtualMethods;
+    }
+
+    private void renderClinitStub(ClassNode cls, MethodNode method) throws IOException {
+        String name = naming.getFullNameFor(method.getReference());
+        writer.append("function ").append(name).append("()").ws().append("{").ws()
+                .appendFunction("$rt_lazyClinit").append("(").appendClass(cls.getName()).append(");").ws()
+                .append("return ").append(name).append(".apply(this,").ws().append("arguments);").ws()
+                .append("}").newLine();
+    }
+
     private static Object getDefaultValue(ValueType type) {
         if (type instanceof ValueType.Primitive) {
             ValueType.Primitive primitive = (ValueType.Primitive) type;
@@ -840,9 +973,9 @@ public class Renderer implements RenderingManager {
 
     private static class PostponedFieldInitializer {
         FieldReference field;
-        String value;
+        Object value;
 
-        public PostponedFieldInitializer(FieldReference field, String value) {
+        public PostponedFieldInitializer(FieldReference field, Object value) {
             this.field = field;
             this.value = value;
         }
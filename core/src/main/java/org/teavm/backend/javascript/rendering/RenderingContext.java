@@ -15,6 +15,7 @@
  */
 package org.teavm.backend.javascript.rendering;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayDeque;
@@ -51,6 +52,8 @@ public class RenderingContext {
     private final List<String> readonlyStringPool = Collections.unmodifiableList(stringPool);
     private final Map<MethodReference, InjectorHolder> injectorMap = new HashMap<>();
     private boolean minifying;
+    private boolean bigIntLongs;
+    private boolean nativeStrings;
 
     public RenderingContext(DebugInformationEmitter debugEmitter, ListableClassReaderSource classSource,
             ClassLoader classLoader, ServiceRepository services, Properties properties,
@@ -121,6 +124,22 @@ public class RenderingContext {
         return minifying;
     }
 
+    public boolean isBigIntLongs() {
+        return bigIntLongs;
+    }
+
+    public void setBigIntLongs(boolean bigIntLongs) {
+        this.bigIntLongs = bigIntLongs;
+    }
+
+    public boolean isNativeStrings() {
+        return nativeStrings;
+    }
+
+    public void setNativeStrings(boolean nativeStrings) {
+        this.nativeStrings = nativeStrings;
+    }
+
     public int lookupString(String string) {
         return stringPoolMap.computeIfAbsent(string, key -> {
             stringPool.add(key);
@@ -145,6 +164,9 @@ public class RenderingContext {
             return "$rt_s(" + index + ")";
         } else if (cst instanceof Long) {
             long value = (Long) cst;
+            if (bigIntLongs) {
+                return value + "n";
+            }
             if (value == 0) {
                 return "Long_ZERO";
             } else if ((int) value == value) {
@@ -154,11 +176,68 @@ public class RenderingContext {
             }
         } else if (cst instanceof Character) {
             return Integer.toString((Character) cst);
+        } else if (cst.getClass().isArray()) {
+            return arrayToString(cst);
         } else {
             return cst.toString();
         }
     }
 
+    private String arrayToString(Object array) {
+        Class<?> itemType = array.getClass().getComponentType();
+        ValueType type;
+        String typedArray;
+        if (itemType == boolean.class) {
+            type = ValueType.BOOLEAN;
+            typedArray = "Int8Array";
+        } else if (itemType == byte.class) {
+            type = ValueType.BYTE;
+            typedArray = "Int8Array";
+        } else if (itemType == short.class) {
+            type = ValueType.SHORT;
+            typedArray = "Int16Array";
+        } else if (itemType == char.class) {
+            type = ValueType.CHARACTER;
+            typedArray = "Uint16Array";
+        } else if (itemType == int.class) {
+            type = ValueType.INTEGER;
+            typedArray = "Int32Array";
+        } else if (itemType == long.class) {
+            type = ValueType.LONG;
+            typedArray = bigIntLongs ? "BigInt64Array" : null;
+        } else if (itemType == float.class) {
+            type = ValueType.FLOAT;
+            typedArray = "Float32Array";
+        } else if (itemType == double.class) {
+            type = ValueType.DOUBLE;
+            typedArray = "Float64Array";
+        } else {
+            throw new IllegalArgumentException("Array of " + itemType.getName() + " is not renderable");
+        }
+
+        StringBuilder sb = new StringBuilder();
+        if (typedArray != null) {
+            sb.append("$rt_createNumericArray(").append(typeToClsString(type)).append(",new ").append(typedArray)
+                    .append("([");
+        } else {
+            sb.append("$rt_wrapArray(").append(typeToClsString(type)).append(",[");
+        }
+        int length = Array.getLength(array);
+        for (int i = 0; i < length; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            Object element = Array.get(array, i);
+            if (element instanceof Boolean) {
+                sb.append((Boolean) element ? 1 : 0);
+            } else {
+                sb.append(constantToString(element));
+            }
+        }
+        sb.append(typedArray != null ? "]))" : "])");
+        return sb.toString();
+    }
+
     public String typeToClsString(ValueType type) {
         int arrayCount = 0;
         while (type instanceof ValueType.Array) {
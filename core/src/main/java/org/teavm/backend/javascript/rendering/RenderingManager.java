@@ -28,6 +28,8 @@ public interface RenderingManager extends ServiceRepository {
 
     boolean isMinifying();
 
+    boolean isLazyMetadata();
+
     ListableClassReaderSource getClassSource();
 
     ClassLoader getClassLoader();
@@ -616,7 +616,9 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
 
     @Override
     public void visit(BinaryExpr expr) {
-        if (expr.getType() == OperationType.LONG) {
+        if (expr.getType() == OperationType.LONG && context.isBigIntLongs()) {
+            visitBigIntBinary(expr);
+        } else if (expr.getType() == OperationType.LONG) {
             switch (expr.getOperation()) {
                 case ADD:
                     visitBinaryFunction(expr, "Long_add");
@@ -749,6 +751,118 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         }
     }
 
+    // BigInt has arbitrary precision, so results that may exceed 64 bits are truncated by BigInt.asIntN
+    private void visitBigIntBinary(BinaryExpr expr) {
+        switch (expr.getOperation()) {
+            case ADD:
+                visitBigIntTruncated(expr, () -> visitBinary(expr, "+", false));
+                break;
+            case SUBTRACT:
+                visitBigIntTruncated(expr, () -> visitBinary(expr, "-", false));
+                break;
+            case MULTIPLY:
+                visitBigIntTruncated(expr, () -> visitBinary(expr, "*", false));
+                break;
+            case DIVIDE:
+                visitBigIntTruncated(expr, () -> visitBinary(expr, "/", false));
+                break;
+            case MODULO:
+                visitBinary(expr, "%", false);
+                break;
+            case BITWISE_OR:
+                visitBinary(expr, "|", false);
+                break;
+            case BITWISE_AND:
+                visitBinary(expr, "&", false);
+                break;
+            case BITWISE_XOR:
+                visitBinary(expr, "^", false);
+                break;
+            case LEFT_SHIFT:
+                visitBigIntTruncated(expr, () -> visitBinary(BinaryOperation.LEFT_SHIFT, "<<",
+                        () -> expr.getFirstOperand().acceptVisitor(this), () -> visitBigIntShiftAmount(expr)));
+                break;
+            case RIGHT_SHIFT:
+                visitBinary(BinaryOperation.RIGHT_SHIFT, ">>", () -> expr.getFirstOperand().acceptVisitor(this),
+                        () -> visitBigIntShiftAmount(expr));
+                break;
+            case UNSIGNED_RIGHT_SHIFT:
+                visitBigIntTruncated(expr, () -> visitBinary(BinaryOperation.RIGHT_SHIFT, ">>", () -> {
+                    try {
+                        writer.append("BigInt.asUintN(64,").ws();
+                        precedence = Precedence.min();
+                        expr.getFirstOperand().acceptVisitor(this);
+                        writer.append(')');
+                    } catch (IOException e) {
+                        throw new RenderingException("IO error occurred", e);
+                    }
+                }, () -> visitBigIntShiftAmount(expr)));
+                break;
+            case COMPARE:
+                visitBinaryFunction(expr, naming.getNameForFunction("$rt_compare"));
+                break;
+            case EQUALS:
+                visitBinary(expr, "==", false);
+                break;
+            case NOT_EQUALS:
+                visitBinary(expr, "!=", false);
+                break;
+            case LESS:
+                visitBinary(expr, "<", false);
+                break;
+            case LESS_OR_EQUALS:
+                visitBinary(expr, "<=", false);
+                break;
+            case GREATER:
+                visitBinary(expr, ">", false);
+                break;
+            case GREATER_OR_EQUALS:
+                visitBinary(expr, ">=", false);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void visitBigIntTruncated(Expr expr, Runnable value) {
+        try {
+            if (expr.getLocation() != null) {
+                pushLocation(expr.getLocation());
+            }
+            writer.append("BigInt.asIntN(64,").ws();
+            precedence = Precedence.min();
+            value.run();
+            writer.append(')');
+            if (expr.getLocation() != null) {
+                popLocation();
+            }
+        } catch (IOException e) {
+            throw new RenderingException("IO error occurred", e);
+        }
+    }
+
+    private void visitBigIntShiftAmount(BinaryExpr expr) {
+        try {
+            Expr amount = expr.getSecondOperand();
+            if (amount instanceof ConstantExpr && ((ConstantExpr) amount).getValue() instanceof Integer) {
+                writer.append(((Integer) ((ConstantExpr) amount).getValue() & 63) + "n");
+                return;
+            }
+            writer.append("BigInt(");
+            precedence = Precedence.min();
+            visitBinary(BinaryOperation.BITWISE_AND, "&", () -> amount.acceptVisitor(this), () -> {
+                try {
+                    writer.append("63");
+                } catch (IOException e) {
+                    throw new RenderingException("IO error occurred", e);
+                }
+            });
+            writer.append(')');
+        } catch (IOException e) {
+            throw new RenderingException("IO error occurred", e);
+        }
+    }
+
     @Override
     public void visit(UnaryExpr expr) {
         try {
@@ -758,7 +872,7 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
             Precedence outerPrecedence = precedence;
             switch (expr.getOperation()) {
                 case NOT: {
-                    if (expr.getType() == OperationType.LONG) {
+                    if (expr.getType() == OperationType.LONG && !context.isBigIntLongs()) {
                         writer.append("Long_not(");
                         precedence = Precedence.min();
                         expr.getOperand().acceptVisitor(this);
@@ -777,7 +891,12 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
                     break;
                 }
                 case NEGATE:
-                    if (expr.getType() == OperationType.LONG) {
+                    if (expr.getType() == OperationType.LONG && context.isBigIntLongs()) {
+                        writer.append("BigInt.asIntN(64,").ws().append("-");
+                        precedence = Precedence.UNARY;
+                        expr.getOperand().acceptVisitor(this);
+                        writer.append(')');
+                    } else if (expr.getType() == OperationType.LONG) {
                         writer.append("Long_neg(");
                         precedence = Precedence.min();
                         expr.getOperand().acceptVisitor(this);
@@ -852,6 +971,26 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
         expr.getValue().acceptVisitor(this);
     }
 
+    private void visitBigIntCast(PrimitiveCastExpr expr) throws IOException {
+        switch (expr.getTarget()) {
+            case INT:
+                writer.append("Number(BigInt.asIntN(32,").ws();
+                precedence = Precedence.min();
+                expr.getValue().acceptVisitor(this);
+                writer.append("))");
+                break;
+            case FLOAT:
+            case DOUBLE:
+                writer.append("Number(");
+                precedence = Precedence.min();
+                expr.getValue().acceptVisitor(this);
+                writer.append(')');
+                break;
+            default:
+                expr.getValue().acceptVisitor(this);
+        }
+    }
+
     @Override
     public void visit(PrimitiveCastExpr expr) {
         try {
@@ -860,7 +999,12 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
             }
             switch (expr.getSource()) {
                 case INT:
-                    if (expr.getTarget() == OperationType.LONG) {
+                    if (expr.getTarget() == OperationType.LONG && context.isBigIntLongs()) {
+                        writer.append("BigInt(");
+                        precedence = Precedence.min();
+                        expr.getValue().acceptVisitor(this);
+                        writer.append(')');
+                    } else if (expr.getTarget() == OperationType.LONG) {
                         writer.append("Long_fromInt(");
                         precedence = Precedence.min();
                         expr.getValue().acceptVisitor(this);
@@ -870,6 +1014,10 @@ public class StatementRenderer implements ExprVisitor, StatementVisitor {
                     }
                     break;
                 case LONG:
+                    if (context.isBigIntLongs()) {
+                        visitBigIntCast(expr);
+                        break;
+                    }
                     switch (expr.getTarget()) {
                         case INT:
                             precedence = Precedence.MEMBER_ACCESS;
@@ -40,6 +40,7 @@ public final class Example {
         testExceptions();
         testBigInteger();
         testGC();
+        testFragmentedAllocation();
     }
 
     private static void testBigInteger() {
@@ -187,6 +188,26 @@ public final class Example {
         System.out.println("GC complete");
     }
 
+    private static void testFragmentedAllocation() {
+        Object[] survivors = new Object[100000];
+        for (int i = 0; i < survivors.length * 2; ++i) {
+            int[] array = new int[i % 8];
+            if (i % 2 == 0) {
+                survivors[i / 2] = array;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 4000000; ++i) {
+            int[] array = new int[i % 8];
+            if (i % 64 == 0) {
+                survivors[(i >> 6) % survivors.length] = array;
+            }
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("Fragmented allocation took " + (end - start) + " milliseconds");
+    }
+
     private static void testExceptions() {
         try {
             throwsException();
@@ -38,8 +38,10 @@ import org.teavm.backend.wasm.intrinsics.AddressIntrinsic;
 import org.teavm.backend.wasm.intrinsics.AllocatorIntrinsic;
 import org.teavm.backend.wasm.intrinsics.ClassIntrinsic;
 import org.teavm.backend.wasm.intrinsics.ExceptionHandlingIntrinsic;
+import org.teavm.backend.wasm.intrinsics.FloatingPointIntrinsic;
 import org.teavm.backend.wasm.intrinsics.FunctionIntrinsic;
 import org.teavm.backend.wasm.intrinsics.GCIntrinsic;
+import org.teavm.backend.wasm.intrinsics.MathIntrinsic;
 import org.teavm.backend.wasm.intrinsics.MutatorIntrinsic;
 import org.teavm.backend.wasm.intrinsics.PlatformClassIntrinsic;
 import org.teavm.backend.wasm.intrinsics.PlatformIntrinsic;
@@ -68,6 +70,8 @@ import org.teavm.backend.wasm.model.expression.WasmReturn;
 import org.teavm.backend.wasm.model.expression.WasmSetLocal;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.optimization.UnusedFunctionElimination;
+import org.teavm.backend.wasm.optimization.WasmOptimizationReport;
+import org.teavm.backend.wasm.optimization.WasmOptimizer;
 import org.teavm.backend.wasm.patches.ClassPatch;
 import org.teavm.backend.wasm.render.WasmBinaryRenderer;
 import org.teavm.backend.wasm.render.WasmBinaryVersion;
@@ -109,6 +113,7 @@ import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.InvokeInstruction;
 import org.teavm.model.lowlevel.ClassInitializerEliminator;
 import org.teavm.model.lowlevel.ClassInitializerTransformer;
+import org.teavm.model.lowlevel.CollectingMethodRepository;
 import org.teavm.model.lowlevel.ShadowStackTransformer;
 import org.teavm.runtime.Allocator;
 import org.teavm.runtime.ExceptionHandling;
@@ -129,16 +134,34 @@ public class WasmTarget implements TeaVMTarget {
     private boolean cEmitted;
     private ClassInitializerEliminator classInitializerEliminator;
     private ClassInitializerTransformer classInitializerTransformer;
+    private CollectingMethodRepository collectingMethodRepository;
     private ShadowStackTransformer shadowStackTransformer;
     private MethodDescriptor clinitDescriptor = new MethodDescriptor("<clinit>", void.class);
     private WasmBinaryVersion version = WasmBinaryVersion.V_0xC;
+    private int minHeapSize = 8 * 1024 * 1024;
+    private int maxHeapSize = 128 * 1024 * 1024;
+    private boolean optimized = true;
+    private boolean optimizationReported;
+    private boolean simdEnabled;
+    private boolean nativeExceptionsEnabled;
+    private WasmOptimizationReport optimizationReport;
 
     @Override
     public void setController(TeaVMTargetController controller) {
         this.controller = controller;
         classInitializerEliminator = new ClassInitializerEliminator(controller.getUnprocessedClassSource());
         classInitializerTransformer = new ClassInitializerTransformer();
-        shadowStackTransformer = new ShadowStackTransformer(controller.getUnprocessedClassSource());
+        collectingMethodRepository = !controller.isIncremental()
+                ? new CollectingMethodRepository(controller.getDependencyInfo())
+                : null;
+    }
+
+    private ShadowStackTransformer getShadowStackTransformer() {
+        if (shadowStackTransformer == null) {
+            shadowStackTransformer = new ShadowStackTransformer(controller.getUnprocessedClassSource(),
+                    collectingMethodRepository, nativeExceptionsEnabled);
+        }
+        return shadowStackTransformer;
     }
 
     @Override
@@ -151,6 +174,11 @@ public class WasmTarget implements TeaVMTarget {
         return true;
     }
 
+    @Override
+    public boolean supportsObjectInitialValues() {
+        return false;
+    }
+
     @Override
     public List<ClassHolderTransformer> getTransformers() {
         List<ClassHolderTransformer> transformers = new ArrayList<>();
@@ -198,6 +226,100 @@ public class WasmTarget implements TeaVMTarget {
         this.version = version;
     }
 
+    public int getMinHeapSize() {
+        return minHeapSize;
+    }
+
+    /**
+     * Specifies the size of the heap allocated at startup. When GC can't free enough memory,
+     * the heap grows, but not beyond {@link #setMaxHeapSize(int) maximum size}.
+     *
+     * @param minHeapSize initial heap size in bytes.
+     */
+    public void setMinHeapSize(int minHeapSize) {
+        this.minHeapSize = minHeapSize;
+    }
+
+    public int getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    /**
+     * Specifies the size the heap can grow to. Memory for the whole heap is not allocated at startup,
+     * but the module declares it as its maximum memory size.
+     *
+     * @param maxHeapSize maximum heap size in bytes.
+     */
+    public void setMaxHeapSize(int maxHeapSize) {
+        this.maxHeapSize = maxHeapSize;
+    }
+
+    public boolean isOptimized() {
+        return optimized;
+    }
+
+    /**
+     * Specifies whether optimizations of WebAssembly code (block flattening, constant folding,
+     * redundant load elimination, tee formation and local coalescing) run on the generated module.
+     * Enabled by default.
+     *
+     * @param optimized whether optimizations are enabled.
+     */
+    public void setOptimized(boolean optimized) {
+        this.optimized = optimized;
+    }
+
+    public boolean isOptimizationReported() {
+        return optimizationReported;
+    }
+
+    /**
+     * Specifies whether the target should collect {@link #getOptimizationReport() statistics} about
+     * optimizations. This requires rendering the module one more time before optimizations are applied.
+     *
+     * @param optimizationReported whether optimization statistics should be collected.
+     */
+    public void setOptimizationReported(boolean optimizationReported) {
+        this.optimizationReported = optimizationReported;
+    }
+
+    public boolean isSimdEnabled() {
+        return simdEnabled;
+    }
+
+    /**
+     * Specifies whether simple counted loops over primitive arrays are vectorized with instructions
+     * of the WebAssembly SIMD proposal. Only takes effect when {@link #setOptimized(boolean) optimizations}
+     * are enabled. Instructions are encoded as defined by the SIMD proposal, so the produced module requires
+     * a runtime that supports SIMD. Disabled by default.
+     *
+     * @param simdEnabled whether SIMD instructions can be emitted.
+     */
+    public void setSimdEnabled(boolean simdEnabled) {
+        this.simdEnabled = simdEnabled;
+    }
+
+    public boolean isNativeExceptionsEnabled() {
+        return nativeExceptionsEnabled;
+    }
+
+    /**
+     * Specifies whether exceptions are propagated with instructions of the WebAssembly exception handling
+     * proposal instead of checking the shadow stack after every call. Calls outside of try blocks then
+     * cost nothing, while exceptions get more expensive to throw. Binary format versions supported by
+     * this target can't encode these instructions, so only C and wast outputs are produced and the build
+     * reports an error about the missing binary. Disabled by default.
+     *
+     * @param nativeExceptionsEnabled whether exception handling instructions should be emitted.
+     */
+    public void setNativeExceptionsEnabled(boolean nativeExceptionsEnabled) {
+        this.nativeExceptionsEnabled = nativeExceptionsEnabled;
+    }
+
+    public WasmOptimizationReport getOptimizationReport() {
+        return optimizationReport;
+    }
+
     @Override
     public void contributeDependencies(DependencyChecker dependencyChecker) {
         for (Class type : Arrays.asList(int.class, long.class, float.class, double.class)) {
@@ -244,6 +366,12 @@ public class WasmTarget implements TeaVMTarget {
 
         dependencyChecker.linkMethod(new MethodReference(ExceptionHandling.class, "catchException",
                 Throwable.class), null).use();
+        if (nativeExceptionsEnabled) {
+            dependencyChecker.linkMethod(new MethodReference(ExceptionHandling.class, "throwNativeException",
+                    Throwable.class, void.class), null).use();
+            dependencyChecker.linkMethod(new MethodReference(ExceptionHandling.class, "findExceptionHandler",
+                    Address.class, boolean.class), null).use();
+        }
 
         dependencyChecker.linkField(new FieldReference("java.lang.Object", "monitor"), null);
 
@@ -272,7 +400,7 @@ public class WasmTarget implements TeaVMTarget {
 
         classInitializerEliminator.apply(program);
         classInitializerTransformer.transform(program);
-        shadowStackTransformer.apply(program, method);
+        getShadowStackTransformer().apply(program, method);
     }
 
     private static boolean needsClinitCall(MethodReader method) {
@@ -302,6 +430,7 @@ public class WasmTarget implements TeaVMTarget {
         WasmStringPool stringPool = new WasmStringPool(classGenerator, binaryWriter);
         WasmGenerationContext context = new WasmGenerationContext(classes, module, controller.getDiagnostics(),
                 vtableProvider, tagRegistry, stringPool);
+        context.setNativeExceptionsEnabled(nativeExceptionsEnabled);
 
         context.addIntrinsic(new AddressIntrinsic(classGenerator));
         context.addIntrinsic(new StructureIntrinsic(classGenerator));
@@ -313,6 +442,8 @@ public class WasmTarget implements TeaVMTarget {
         context.addIntrinsic(new PlatformClassIntrinsic());
         context.addIntrinsic(new PlatformObjectIntrinsic(classGenerator));
         context.addIntrinsic(new ClassIntrinsic());
+        context.addIntrinsic(new MathIntrinsic());
+        context.addIntrinsic(new FloatingPointIntrinsic());
         GCIntrinsic gcIntrinsic = new GCIntrinsic();
         context.addIntrinsic(gcIntrinsic);
         MutatorIntrinsic mutatorIntrinsic = new MutatorIntrinsic();
@@ -324,9 +455,8 @@ public class WasmTarget implements TeaVMTarget {
 
         WasmGenerator generator = new WasmGenerator(decompiler, classes, context, classGenerator, binaryWriter);
 
-        module.setMemorySize(128);
         generateMethods(classes, context, generator, module);
-        exceptionHandlingIntrinsic.postProcess(shadowStackTransformer.getCallSites());
+        exceptionHandlingIntrinsic.postProcess(getShadowStackTransformer().getCallSites());
         generateIsSupertypeFunctions(tagRegistry, module, classGenerator);
         classGenerator.postProcess();
         mutatorIntrinsic.setStaticGcRootsAddress(classGenerator.getStaticGcRootsAddress());
@@ -372,6 +502,18 @@ public class WasmTarget implements TeaVMTarget {
 
         new UnusedFunctionElimination(module).apply();
 
+        int originalSize = 0;
+        WasmOptimizer optimizer = new WasmOptimizer();
+        optimizer.setVectorizationEnabled(simdEnabled);
+        if (optimized) {
+            if (optimizationReported && !nativeExceptionsEnabled) {
+                WasmBinaryWriter sizeWriter = new WasmBinaryWriter();
+                new WasmBinaryRenderer(sizeWriter, version).render(module);
+                originalSize = sizeWriter.getData().length;
+            }
+            optimizer.apply(module);
+        }
+
         if (Boolean.parseBoolean(System.getProperty("wasm.memoryTrace", "false"))) {
             new MemoryAccessTraceTransformation(module).apply();
         }
@@ -379,19 +521,29 @@ public class WasmTarget implements TeaVMTarget {
             new IndirectCallTraceTransformation(module).apply();
         }
 
-        WasmBinaryWriter writer = new WasmBinaryWriter();
-        WasmBinaryRenderer renderer = new WasmBinaryRenderer(writer, version);
-        renderer.render(module);
+        if (!nativeExceptionsEnabled) {
+            WasmBinaryWriter writer = new WasmBinaryWriter();
+            WasmBinaryRenderer renderer = new WasmBinaryRenderer(writer, version);
+            renderer.render(module);
+            if (optimized && optimizationReported) {
+                optimizationReport = new WasmOptimizationReport(originalSize, writer.getData().length, optimizer,
+                        getShadowStackTransformer());
+            }
 
-        try (OutputStream output = buildTarget.createResource(outputName)) {
-            output.write(writer.getData());
-            output.flush();
+            try (OutputStream output = buildTarget.createResource(outputName)) {
+                output.write(writer.getData());
+                output.flush();
+            }
+        } else {
+            controller.getDiagnostics().error(null, "WebAssembly binary format " + version + " can't encode "
+                    + "exception handling instructions, so " + outputName + " was not produced. "
+                    + "Use .wast or .c output or disable native exceptions");
         }
 
-        if (wastEmitted) {
+        if (wastEmitted || nativeExceptionsEnabled) {
             emitWast(module, buildTarget, getBaseName(outputName) + ".wast");
         }
-        if (cEmitted) {
+        if (cEmitted || nativeExceptionsEnabled) {
             emitC(module, buildTarget, getBaseName(outputName) + ".c");
         }
     }
@@ -657,24 +809,28 @@ public class WasmTarget implements TeaVMTarget {
         runtimeIntrinsic.setStackAddress(address);
         address += 65536;
 
-        int gcMemory = module.getMemorySize() * 65536 - address;
-        int storageSize = (gcMemory >> 6) >> 2 << 2;
-        gcIntrinsic.setGCStorageAddress(address);
-        gcIntrinsic.setGCStorageSize(storageSize);
-
-        gcMemory -= storageSize;
-        address += storageSize;
+        int heapLimit = Math.max(maxHeapSize, minHeapSize);
         int regionSize = 32768;
-        int regionCount = gcMemory / (2 + regionSize) + 1;
+        // Heap may get slightly larger than maximum size because memory grows by pages
+        int regionCount = (heapLimit + 65536) / regionSize + 1;
         gcIntrinsic.setRegionSize(regionSize);
         gcIntrinsic.setRegionsAddress(address);
         gcIntrinsic.setRegionMaxCount(regionCount);
-
-        gcMemory -= regionCount * 2;
         address += regionCount * 2;
-        address = (address + 4) >> 2 << 2;
+        address = (address + 7) >> 3 << 3;
         gcIntrinsic.setHeapAddress(address);
-        gcIntrinsic.setAvailableBytes(gcMemory);
+
+        // GC storage and mark bits follow the heap and take 3/64 of its size, GC computes their location
+        // at run time, since they move when memory grows
+        int memorySize = pages(address + minHeapSize + minHeapSize / 64 * 3 + 1024);
+        int maxMemorySize = pages(address + heapLimit + heapLimit / 64 * 3 + 1024);
+        module.setMemorySize(memorySize);
+        module.setMaxMemorySize(maxMemorySize);
+        gcIntrinsic.setInitialMemorySize(memorySize * 65536);
+    }
+
+    private static int pages(long bytes) {
+        return (int) ((bytes - 1) / 65536 + 1);
     }
 
     private VirtualTableProvider createVirtualTableProvider(ListableClassHolderSource classes) {
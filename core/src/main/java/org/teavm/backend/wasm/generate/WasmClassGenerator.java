@@ -197,7 +197,7 @@ public class WasmClassGenerator {
 
         int occupiedSize = binaryData.size;
         if ((occupiedSize & 3) != 0) {
-            occupiedSize = occupiedSize >> 2 << 2 + 1;
+            occupiedSize = (occupiedSize >> 2 << 2) + 4;
         }
         header.setInt(CLASS_SIZE, occupiedSize);
         List<TagRegistry.Range> ranges = tagRegistry.getRanges(name);
@@ -372,7 +372,9 @@ public class WasmClassGenerator {
             int desiredAlignment = getDesiredAlignment(field.getType());
             if (field.hasModifier(ElementModifier.STATIC)) {
                 DataType type = asDataType(field.getType());
-                data.fieldLayout.put(field.getName(), binaryWriter.append(type.createValue()));
+                DataValue value = type.createValue();
+                setInitialValue(value, field.getInitialValue());
+                data.fieldLayout.put(field.getName(), binaryWriter.append(value));
             } else {
                 int offset = align(data.size, desiredAlignment);
                 data.fieldLayout.put(field.getName(), offset);
@@ -384,6 +386,27 @@ public class WasmClassGenerator {
         }
     }
 
+    private static void setInitialValue(DataValue value, Object initialValue) {
+        if (!(initialValue instanceof Number)) {
+            return;
+        }
+        Number number = (Number) initialValue;
+        DataType type = value.getType();
+        if (type == DataPrimitives.BYTE) {
+            value.setByte(0, number.byteValue());
+        } else if (type == DataPrimitives.SHORT) {
+            value.setShort(0, number.shortValue());
+        } else if (type == DataPrimitives.INT) {
+            value.setInt(0, number.intValue());
+        } else if (type == DataPrimitives.LONG) {
+            value.setLong(0, number.longValue());
+        } else if (type == DataPrimitives.FLOAT) {
+            value.setFloat(0, number.floatValue());
+        } else if (type == DataPrimitives.DOUBLE) {
+            value.setDouble(0, number.doubleValue());
+        }
+    }
+
     private static DataType asDataType(ValueType type) {
         if (type instanceof ValueType.Primitive) {
             switch (((ValueType.Primitive) type).getKind()) {
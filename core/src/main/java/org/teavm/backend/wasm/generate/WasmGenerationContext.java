@@ -46,6 +46,7 @@ public class WasmGenerationContext {
     private Map<MethodReference, ImportedMethod> importedMethods = new HashMap<>();
     private List<WasmIntrinsic> intrinsics = new ArrayList<>();
     private Map<MethodReference, WasmIntrinsicHolder> intrinsicCache = new HashMap<>();
+    private boolean nativeExceptionsEnabled;
 
     public WasmGenerationContext(ClassReaderSource classSource, WasmModule module, Diagnostics diagnostics,
             VirtualTableProvider vtableProvider, TagRegistry tagRegistry, WasmStringPool stringPool) {
@@ -57,6 +58,21 @@ public class WasmGenerationContext {
         this.stringPool = stringPool;
     }
 
+    public boolean isNativeExceptionsEnabled() {
+        return nativeExceptionsEnabled;
+    }
+
+    /**
+     * Makes generator catch native exceptions around call sites registered within methods. Should be set
+     * when methods were transformed by {@link org.teavm.model.lowlevel.ShadowStackTransformer} with
+     * native exceptions.
+     *
+     * @param nativeExceptionsEnabled whether call sites are guarded by native exception handlers.
+     */
+    public void setNativeExceptionsEnabled(boolean nativeExceptionsEnabled) {
+        this.nativeExceptionsEnabled = nativeExceptionsEnabled;
+    }
+
     public void addIntrinsic(WasmIntrinsic intrinsic) {
         intrinsics.add(intrinsic);
     }
@@ -105,6 +105,7 @@ import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
 import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
 import org.teavm.backend.wasm.render.WasmTypeInference;
 import org.teavm.interop.Address;
@@ -115,12 +116,15 @@ import org.teavm.model.ValueType;
 import org.teavm.model.classes.TagRegistry;
 import org.teavm.model.classes.VirtualTableEntry;
 import org.teavm.runtime.Allocator;
+import org.teavm.runtime.ExceptionHandling;
 import org.teavm.runtime.RuntimeArray;
 import org.teavm.runtime.RuntimeClass;
 import org.teavm.runtime.ShadowStack;
 
 class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
     private static FieldReference tagField = new FieldReference(RuntimeClass.class.getName(), "tag");
+    private static MethodReference findExceptionHandlerMethod = new MethodReference(ExceptionHandling.class,
+            "findExceptionHandler", Address.class, boolean.class);
     private WasmGenerationContext context;
     private WasmClassGenerator classGenerator;
     private WasmTypeInference typeInference;
@@ -133,6 +137,7 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
     private Set<WasmBlock> usedBlocks = new HashSet<>();
     private List<Deque<WasmLocal>> temporaryVariablesByType = new ArrayList<>();
     private WasmLocal stackVariable;
+    private int stackSize;
     private BinaryWriter binaryWriter;
     WasmExpression result;
 
@@ -158,6 +163,60 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
         statement.acceptVisitor(this);
     }
 
+    private void visitMany(List<Statement> statements, List<WasmExpression> target) {
+        for (int i = 0; i < statements.size(); ++i) {
+            Statement part = statements.get(i);
+            accept(part);
+            if (result != null) {
+                target.add(result);
+            }
+
+            if (context.isNativeExceptionsEnabled() && isCallSiteRegistration(part)) {
+                if (++i == statements.size()) {
+                    throw new IllegalStateException("Call to ShadowStack.registerCallSite must be followed by "
+                            + "a call");
+                }
+                accept(statements.get(i));
+                target.add(catchNativeException(result));
+            }
+        }
+    }
+
+    private boolean isCallSiteRegistration(Statement statement) {
+        if (!(statement instanceof AssignmentStatement)) {
+            return false;
+        }
+        AssignmentStatement assignment = (AssignmentStatement) statement;
+        if (assignment.getLeftValue() != null || !(assignment.getRightValue() instanceof InvocationExpr)) {
+            return false;
+        }
+        MethodReference method = ((InvocationExpr) assignment.getRightValue()).getMethod();
+        return method.getClassName().equals(ShadowStack.class.getName())
+                && method.getName().equals("registerCallSite");
+    }
+
+    private WasmExpression catchNativeException(WasmExpression call) {
+        WasmTry tryExpr = new WasmTry();
+        if (call != null) {
+            tryExpr.getBody().getBody().add(call);
+            tryExpr.setLocation(call.getLocation());
+        }
+
+        // Frames of the methods that were left by the exception are never released, so stack top
+        // has to be restored to the end of the current frame
+        int offset = classGenerator.getFieldOffset(new FieldReference(WasmRuntime.class.getName(), "stack"));
+        WasmExpression stackTop = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD,
+                new WasmGetLocal(stackVariable), new WasmInt32Constant((stackSize << 2) + 4));
+        tryExpr.getCatchBlock().getBody().add(new WasmStoreInt32(4, new WasmInt32Constant(offset), stackTop,
+                WasmInt32Subtype.INT32));
+
+        WasmCall findHandler = new WasmCall(WasmMangling.mangleMethod(findExceptionHandlerMethod));
+        findHandler.getArguments().add(new WasmGetLocal(stackVariable));
+        tryExpr.getCatchBlock().getBody().add(new WasmDrop(findHandler));
+
+        return tryExpr;
+    }
+
     @Override
     public void visit(BinaryExpr expr) {
         switch (expr.getOperation()) {
@@ -573,12 +632,7 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
     @Override
     public void visit(SequentialStatement statement) {
         WasmBlock block = new WasmBlock(false);
-        for (Statement part : statement.getSequence()) {
-            accept(part);
-            if (result != null) {
-                block.getBody().add(result);
-            }
-        }
+        visitMany(statement.getSequence(), block.getBody());
         result = block;
     }
 
@@ -610,18 +664,8 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
         accept(statement.getCondition());
         WasmConditional conditional = new WasmConditional(forCondition(result));
 
-        for (Statement part : statement.getConsequent()) {
-            accept(part);
-            if (result != null) {
-                conditional.getThenBlock().getBody().add(result);
-            }
-        }
-        for (Statement part : statement.getAlternative()) {
-            accept(part);
-            if (result != null) {
-                conditional.getElseBlock().getBody().add(result);
-            }
-        }
+        visitMany(statement.getConsequent(), conditional.getThenBlock().getBody());
+        visitMany(statement.getAlternative(), conditional.getElseBlock().getBody());
         result = conditional;
     }
 
@@ -730,22 +774,12 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
                 targets[condition - min] = wrapper;
             }
 
-            for (Statement part : clause.getBody()) {
-                accept(part);
-                if (result != null) {
-                    caseBlock.getBody().add(result);
-                }
-            }
+            visitMany(clause.getBody(), caseBlock.getBody());
             wrapper = caseBlock;
         }
 
         defaultBlock.getBody().add(wrapper);
-        for (Statement part : statement.getDefaultClause()) {
-            accept(part);
-            if (result != null) {
-                defaultBlock.getBody().add(result);
-            }
-        }
+        visitMany(statement.getDefaultClause(), defaultBlock.getBody());
         wasmSwitch.setDefaultTarget(wrapper);
         wrapper = defaultBlock;
 
@@ -782,12 +816,7 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
             usedBlocks.add(wrapper);
         }
 
-        for (Statement part : statement.getBody()) {
-            accept(part);
-            if (result != null) {
-                loop.getBody().add(result);
-            }
-        }
+        visitMany(statement.getBody(), loop.getBody());
         loop.getBody().add(new WasmBreak(loop));
 
         currentBreakTarget = oldBreakTarget;
@@ -819,6 +848,9 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
                 case "removeGCRoot":
                     generateRemoveGcRoot(expr.getArguments().get(0));
                     return;
+                case "getGCRoot":
+                    generateGetGcRoot(expr.getArguments().get(0));
+                    return;
                 case "registerCallSite":
                     generateRegisterCallSite(expr.getArguments().get(0));
                     return;
@@ -912,6 +944,10 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
         if (stackVariable != null) {
             throw new IllegalStateException("Call to ShadowStack.allocStack must be done only once");
         }
+        if (!(sizeExpr instanceof ConstantExpr)) {
+            throw new IllegalStateException("Size of stack frame must be constant");
+        }
+        stackSize = (Integer) ((ConstantExpr) sizeExpr).getValue();
         stackVariable = getTemporary(WasmType.INT32);
         stackVariable.setName("__stack__");
         InvocationExpr expr = new InvocationExpr();
@@ -1000,6 +1036,26 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
         result = store;
     }
 
+    private void generateGetGcRoot(Expr slotExpr) {
+        if (stackVariable == null) {
+            throw new IllegalStateException("Call to ShadowStack.getGCRoot must be dominated by "
+                    + "Mutator.allocStack");
+        }
+
+        slotExpr.acceptVisitor(this);
+        WasmExpression slotOffset = getSlotOffset(result);
+        WasmExpression address = new WasmGetLocal(stackVariable);
+        if (!(slotOffset instanceof WasmInt32Constant)) {
+            address = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, address, slotOffset);
+        }
+
+        WasmLoadInt32 load = new WasmLoadInt32(4, address, WasmInt32Subtype.INT32);
+        if (slotOffset instanceof WasmInt32Constant) {
+            load.setOffset(((WasmInt32Constant) slotOffset).getValue());
+        }
+        result = load;
+    }
+
     private WasmExpression getSlotOffset(WasmExpression slot) {
         if (slot instanceof WasmInt32Constant) {
             int slotConstant = ((WasmInt32Constant) slot).getValue();
@@ -1019,12 +1075,7 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
             breakTargets.put(statement, block);
         }
 
-        for (Statement part : statement.getBody()) {
-            accept(part);
-            if (result != null) {
-                block.getBody().add(result);
-            }
-        }
+        visitMany(statement.getBody(), block.getBody());
 
         if (statement.getId() != null) {
             breakTargets.remove(statement);
@@ -1166,7 +1217,7 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
                     WasmInt32Subtype.INT32));
         }
 
-        int classPointer = classGenerator.getClassPointer(ValueType.arrayOf(type));
+        int classPointer = classGenerator.getClassPointer(type);
         String allocName = WasmMangling.mangleMethod(new MethodReference(Allocator.class, "allocateMultiArray",
                 RuntimeClass.class, Address.class, int.class, RuntimeArray.class));
         WasmCall call = new WasmCall(allocName);
@@ -1286,12 +1337,7 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
     @Override
     public void visit(TryCatchStatement statement) {
         WasmBlock block = new WasmBlock(false);
-        for (Statement bodyPart : statement.getProtectedBody()) {
-            accept(bodyPart);
-            if (result != null) {
-                block.getBody().add(result);
-            }
-        }
+        visitMany(statement.getProtectedBody(), block.getBody());
         result = block;
     }
 
@@ -1454,6 +1500,16 @@ class WasmGenerationVisitor implements StatementVisitor, ExprVisitor {
             accept(expr);
             return result;
         }
+
+        @Override
+        public WasmLocal getTemporary(WasmType type) {
+            return WasmGenerationVisitor.this.getTemporary(type);
+        }
+
+        @Override
+        public void releaseTemporary(WasmLocal local) {
+            WasmGenerationVisitor.this.releaseTemporary(local);
+        }
     };
 
     private WasmLocal getTemporary(WasmType type) {
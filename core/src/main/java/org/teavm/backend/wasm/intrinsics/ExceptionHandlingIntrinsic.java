@@ -26,6 +26,7 @@ import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
 import org.teavm.backend.wasm.model.expression.WasmIntBinary;
 import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
 import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
 import org.teavm.model.MethodReference;
 import org.teavm.model.lowlevel.CallSiteDescriptor;
 import org.teavm.runtime.ExceptionHandling;
@@ -45,6 +46,7 @@ public class ExceptionHandlingIntrinsic implements WasmIntrinsic {
         }
         switch (methodReference.getName()) {
             case "findCallSiteById":
+            case "unwind":
                 return true;
         }
         return false;
@@ -59,14 +61,22 @@ public class ExceptionHandlingIntrinsic implements WasmIntrinsic {
 
     @Override
     public WasmExpression apply(InvocationExpr invocation, WasmIntrinsicManager manager) {
-        WasmInt32Constant constant = new WasmInt32Constant(0);
-        constant.setLocation(invocation.getLocation());
-        constants.add(constant);
+        switch (invocation.getMethod().getName()) {
+            case "findCallSiteById": {
+                WasmInt32Constant constant = new WasmInt32Constant(0);
+                constant.setLocation(invocation.getLocation());
+                constants.add(constant);
 
-        WasmExpression id = manager.generate(invocation.getArguments().get(0));
-        WasmExpression offset = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.SHL,
-                id, new WasmInt32Constant(3));
+                WasmExpression id = manager.generate(invocation.getArguments().get(0));
+                WasmExpression offset = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.SHL,
+                        id, new WasmInt32Constant(3));
 
-        return new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, constant, offset);
+                return new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, constant, offset);
+            }
+            case "unwind":
+                return new WasmThrow();
+            default:
+                throw new IllegalArgumentException(invocation.getMethod().toString());
+        }
     }
 }
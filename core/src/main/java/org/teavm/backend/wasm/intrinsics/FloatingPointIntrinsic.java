@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.intrinsics;
+
+import org.teavm.ast.InvocationExpr;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloat32Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloat64Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinary;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmFloatType;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.model.MethodReference;
+import org.teavm.model.ValueType;
+
+/**
+ * <p>Implements NaN and infinity checks of {@link Float} and {@link Double} by comparisons and conversions
+ * between floating-point numbers and their bits by <code>reinterpret</code> instructions.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class FloatingPointIntrinsic implements WasmIntrinsic {
+    @Override
+    public boolean isApplicable(MethodReference methodReference) {
+        String className = methodReference.getClassName();
+        if (!className.equals(Float.class.getName()) && !className.equals(Double.class.getName())) {
+            return false;
+        }
+        if (methodReference.parameterCount() != 1) {
+            return false;
+        }
+        switch (methodReference.getName()) {
+            case "isNaN":
+            case "isFinite":
+            case "isInfinite":
+            case "floatToIntBits":
+            case "floatToRawIntBits":
+            case "intBitsToFloat":
+            case "doubleToLongBits":
+            case "doubleToRawLongBits":
+            case "longBitsToDouble":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public WasmExpression apply(InvocationExpr invocation, WasmIntrinsicManager manager) {
+        MethodReference method = invocation.getMethod();
+        WasmExpression argument = manager.generate(invocation.getArguments().get(0));
+        switch (method.getName()) {
+            case "isNaN":
+                return isNaN(argument, getType(method), manager);
+            case "isFinite":
+                return isFinite(argument, getType(method), manager);
+            case "isInfinite":
+                return isInfinite(argument, getType(method), manager);
+            case "floatToRawIntBits":
+                return reinterpret(argument, WasmType.FLOAT32, WasmType.INT32);
+            case "doubleToRawLongBits":
+                return reinterpret(argument, WasmType.FLOAT64, WasmType.INT64);
+            case "intBitsToFloat":
+                return reinterpret(argument, WasmType.INT32, WasmType.FLOAT32);
+            case "longBitsToDouble":
+                return reinterpret(argument, WasmType.INT64, WasmType.FLOAT64);
+            case "floatToIntBits":
+                return toBits(argument, WasmFloatType.FLOAT32, new WasmInt32Constant(0x7FC00000), manager);
+            case "doubleToLongBits":
+                return toBits(argument, WasmFloatType.FLOAT64, new WasmInt64Constant(0x7FF8000000000000L),
+                        manager);
+            default:
+                throw new IllegalArgumentException(method.toString());
+        }
+    }
+
+    private static WasmFloatType getType(MethodReference method) {
+        return method.parameterType(0) == ValueType.FLOAT ? WasmFloatType.FLOAT32 : WasmFloatType.FLOAT64;
+    }
+
+    private static WasmType getWasmType(WasmFloatType type) {
+        return type == WasmFloatType.FLOAT32 ? WasmType.FLOAT32 : WasmType.FLOAT64;
+    }
+
+    // NaN is the only value that is not equal to itself
+    private static WasmExpression isNaN(WasmExpression value, WasmFloatType type, WasmIntrinsicManager manager) {
+        WasmLocal tmp = manager.getTemporary(getWasmType(type));
+        WasmExpression result = new WasmFloatBinary(type, WasmFloatBinaryOperation.NE,
+                new WasmTeeLocal(tmp, value), new WasmGetLocal(tmp));
+        manager.releaseTemporary(tmp);
+        return result;
+    }
+
+    // x - x is zero for finite values and NaN for infinities and NaN
+    private static WasmExpression isFinite(WasmExpression value, WasmFloatType type,
+            WasmIntrinsicManager manager) {
+        WasmLocal tmp = manager.getTemporary(getWasmType(type));
+        WasmExpression difference = new WasmFloatBinary(type, WasmFloatBinaryOperation.SUB,
+                new WasmTeeLocal(tmp, value), new WasmGetLocal(tmp));
+        WasmExpression result = new WasmFloatBinary(type, WasmFloatBinaryOperation.EQ, difference, zero(type));
+        manager.releaseTemporary(tmp);
+        return result;
+    }
+
+    private static WasmExpression isInfinite(WasmExpression value, WasmFloatType type,
+            WasmIntrinsicManager manager) {
+        WasmLocal tmp = manager.getTemporary(getWasmType(type));
+        WasmExpression notNaN = new WasmFloatBinary(type, WasmFloatBinaryOperation.EQ,
+                new WasmTeeLocal(tmp, value), new WasmGetLocal(tmp));
+        WasmExpression difference = new WasmFloatBinary(type, WasmFloatBinaryOperation.SUB,
+                new WasmGetLocal(tmp), new WasmGetLocal(tmp));
+        WasmExpression notFinite = new WasmFloatBinary(type, WasmFloatBinaryOperation.NE, difference, zero(type));
+        WasmExpression result = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.AND, notNaN, notFinite);
+        manager.releaseTemporary(tmp);
+        return result;
+    }
+
+    // Unlike raw conversion, all NaN values are collapsed into the canonical one
+    private static WasmExpression toBits(WasmExpression value, WasmFloatType type, WasmExpression canonicalNaN,
+            WasmIntrinsicManager manager) {
+        WasmType sourceType = getWasmType(type);
+        WasmType targetType = type == WasmFloatType.FLOAT32 ? WasmType.INT32 : WasmType.INT64;
+        WasmLocal tmp = manager.getTemporary(sourceType);
+
+        WasmConditional conditional = new WasmConditional(new WasmFloatBinary(type, WasmFloatBinaryOperation.NE,
+                new WasmTeeLocal(tmp, value), new WasmGetLocal(tmp)));
+        conditional.setType(targetType);
+        conditional.getThenBlock().getBody().add(canonicalNaN);
+        conditional.getElseBlock().getBody().add(reinterpret(new WasmGetLocal(tmp), sourceType, targetType));
+
+        manager.releaseTemporary(tmp);
+        return conditional;
+    }
+
+    private static WasmExpression reinterpret(WasmExpression value, WasmType sourceType, WasmType targetType) {
+        WasmConversion conversion = new WasmConversion(sourceType, targetType, false, value);
+        conversion.setReinterpret(true);
+        return conversion;
+    }
+
+    private static WasmExpression zero(WasmFloatType type) {
+        return type == WasmFloatType.FLOAT32 ? new WasmFloat32Constant(0) : new WasmFloat64Constant(0);
+    }
+}
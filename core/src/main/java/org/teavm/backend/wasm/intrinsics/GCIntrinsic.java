@@ -20,15 +20,13 @@ import java.util.List;
 import org.teavm.ast.InvocationExpr;
 import org.teavm.backend.wasm.model.expression.WasmExpression;
 import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
-import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.model.MethodReference;
 import org.teavm.runtime.GC;
 
 public class GCIntrinsic implements WasmIntrinsic {
     private List<WasmInt32Constant> heapAddressExpressions = new ArrayList<>();
-    private List<WasmInt64Constant> availableBytesExpressions = new ArrayList<>();
-    private List<WasmInt32Constant> gcStorageAddressExpressions = new ArrayList<>();
-    private List<WasmInt32Constant> gcStorageSizeExpressions = new ArrayList<>();
+    private List<WasmInt32Constant> initialMemorySizeExpressions = new ArrayList<>();
     private List<WasmInt32Constant> regionSizeExpressions = new ArrayList<>();
     private List<WasmInt32Constant> regionsAddressExpressions = new ArrayList<>();
     private List<WasmInt32Constant> regionMaxCountExpressions = new ArrayList<>();
@@ -39,21 +37,9 @@ public class GCIntrinsic implements WasmIntrinsic {
         }
     }
 
-    public void setAvailableBytes(long availableBytes) {
-        for (WasmInt64Constant constant : availableBytesExpressions) {
-            constant.setValue(availableBytes);
-        }
-    }
-
-    public void setGCStorageAddress(int address) {
-        for (WasmInt32Constant constant : gcStorageAddressExpressions) {
-            constant.setValue(address);
-        }
-    }
-
-    public void setGCStorageSize(int storageSize) {
-        for (WasmInt32Constant constant : gcStorageSizeExpressions) {
-            constant.setValue(storageSize);
+    public void setInitialMemorySize(int memorySize) {
+        for (WasmInt32Constant constant : initialMemorySizeExpressions) {
+            constant.setValue(memorySize);
         }
     }
 
@@ -82,10 +68,9 @@ public class GCIntrinsic implements WasmIntrinsic {
         }
 
         switch (methodReference.getName()) {
-            case "gcStorageAddress":
-            case "gcStorageSize":
             case "heapAddress":
-            case "availableBytes":
+            case "initialMemorySize":
+            case "growMemory":
             case "regionsAddress":
             case "regionMaxCount":
             case "regionSize":
@@ -99,15 +84,12 @@ public class GCIntrinsic implements WasmIntrinsic {
     public WasmExpression apply(InvocationExpr invocation, WasmIntrinsicManager manager) {
         List<WasmInt32Constant> list;
         switch (invocation.getMethod().getName()) {
-            case "gcStorageAddress":
-                list = gcStorageAddressExpressions;
-                break;
-            case "gcStorageSize":
-                list = gcStorageSizeExpressions;
-                break;
             case "heapAddress":
                 list = heapAddressExpressions;
                 break;
+            case "initialMemorySize":
+                list = initialMemorySizeExpressions;
+                break;
             case "regionsAddress":
                 list = regionsAddressExpressions;
                 break;
@@ -117,11 +99,8 @@ public class GCIntrinsic implements WasmIntrinsic {
             case "regionSize":
                 list = regionSizeExpressions;
                 break;
-            case "availableBytes": {
-                WasmInt64Constant constant = new WasmInt64Constant(0);
-                availableBytesExpressions.add(constant);
-                return constant;
-            }
+            case "growMemory":
+                return new WasmMemoryGrow(manager.generate(invocation.getArguments().get(0)));
             default:
                 throw new IllegalArgumentException(invocation.getMethod().toString());
         }
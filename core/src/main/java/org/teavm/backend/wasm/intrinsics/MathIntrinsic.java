@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.intrinsics;
+
+import org.teavm.ast.InvocationExpr;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinary;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmFloatType;
+import org.teavm.backend.wasm.model.expression.WasmFloatUnary;
+import org.teavm.backend.wasm.model.expression.WasmFloatUnaryOperation;
+import org.teavm.model.MethodReference;
+import org.teavm.model.ValueType;
+
+/**
+ * <p>Lowers floating-point methods of {@link Math} that have direct WebAssembly counterparts to
+ * the corresponding instructions instead of calling imported JavaScript functions.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class MathIntrinsic implements WasmIntrinsic {
+    @Override
+    public boolean isApplicable(MethodReference methodReference) {
+        if (!methodReference.getClassName().equals(Math.class.getName())) {
+            return false;
+        }
+        if (methodReference.parameterCount() == 0 || getType(methodReference) == null) {
+            return false;
+        }
+        switch (methodReference.getName()) {
+            case "sqrt":
+            case "floor":
+            case "ceil":
+            case "abs":
+            case "min":
+            case "max":
+            case "copySign":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public WasmExpression apply(InvocationExpr invocation, WasmIntrinsicManager manager) {
+        WasmFloatType type = getType(invocation.getMethod());
+        switch (invocation.getMethod().getName()) {
+            case "sqrt":
+                return unary(invocation, manager, type, WasmFloatUnaryOperation.SQRT);
+            case "floor":
+                return unary(invocation, manager, type, WasmFloatUnaryOperation.FLOOR);
+            case "ceil":
+                return unary(invocation, manager, type, WasmFloatUnaryOperation.CEIL);
+            case "abs":
+                return unary(invocation, manager, type, WasmFloatUnaryOperation.ABS);
+            case "min":
+                return binary(invocation, manager, type, WasmFloatBinaryOperation.MIN);
+            case "max":
+                return binary(invocation, manager, type, WasmFloatBinaryOperation.MAX);
+            case "copySign":
+                return binary(invocation, manager, type, WasmFloatBinaryOperation.COPYSIGN);
+            default:
+                throw new IllegalArgumentException(invocation.getMethod().toString());
+        }
+    }
+
+    private static WasmFloatType getType(MethodReference methodReference) {
+        ValueType type = methodReference.parameterType(0);
+        if (type == ValueType.FLOAT) {
+            return WasmFloatType.FLOAT32;
+        } else if (type == ValueType.DOUBLE) {
+            return WasmFloatType.FLOAT64;
+        } else {
+            return null;
+        }
+    }
+
+    private static WasmExpression unary(InvocationExpr invocation, WasmIntrinsicManager manager,
+            WasmFloatType type, WasmFloatUnaryOperation operation) {
+        WasmExpression operand = manager.generate(invocation.getArguments().get(0));
+        return new WasmFloatUnary(type, operation, operand);
+    }
+
+    private static WasmExpression binary(InvocationExpr invocation, WasmIntrinsicManager manager,
+            WasmFloatType type, WasmFloatBinaryOperation operation) {
+        WasmExpression first = manager.generate(invocation.getArguments().get(0));
+        WasmExpression second = manager.generate(invocation.getArguments().get(1));
+        return new WasmFloatBinary(type, operation, first, second);
+    }
+}
@@ -16,8 +16,14 @@
 package org.teavm.backend.wasm.intrinsics;
 
 import org.teavm.ast.Expr;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
 import org.teavm.backend.wasm.model.expression.WasmExpression;
 
 public interface WasmIntrinsicManager {
     WasmExpression generate(Expr expr);
+
+    WasmLocal getTemporary(WasmType type);
+
+    void releaseTemporary(WasmLocal local);
 }
@@ -22,6 +22,7 @@ public class WasmConversion extends WasmExpression {
     private WasmType sourceType;
     private WasmType targetType;
     private boolean signed;
+    private boolean reinterpret;
     private WasmExpression operand;
 
     public WasmConversion(WasmType sourceType, WasmType targetType, boolean signed, WasmExpression operand) {
@@ -60,6 +61,18 @@ public class WasmConversion extends WasmExpression {
         this.signed = signed;
     }
 
+    /**
+     * <p>Tells whether the conversion keeps bits of the operand instead of converting its value,
+     * like <code>f32.reinterpret/i32</code>. Only applies to types of the same size.</p>
+     */
+    public boolean isReinterpret() {
+        return reinterpret;
+    }
+
+    public void setReinterpret(boolean reinterpret) {
+        this.reinterpret = reinterpret;
+    }
+
     public WasmExpression getOperand() {
         return operand;
     }
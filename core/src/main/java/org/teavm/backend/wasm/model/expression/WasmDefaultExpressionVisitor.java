@@ -65,6 +65,20 @@ public class WasmDefaultExpressionVisitor implements WasmExpressionVisitor {
     public void visit(WasmUnreachable expression) {
     }
 
+    @Override
+    public void visit(WasmTry expression) {
+        for (WasmExpression part : expression.getBody().getBody()) {
+            part.acceptVisitor(this);
+        }
+        for (WasmExpression part : expression.getCatchBlock().getBody()) {
+            part.acceptVisitor(this);
+        }
+    }
+
+    @Override
+    public void visit(WasmThrow expression) {
+    }
+
     @Override
     public void visit(WasmInt32Constant expression) {
     }
@@ -90,6 +104,11 @@ public class WasmDefaultExpressionVisitor implements WasmExpressionVisitor {
         expression.getValue().acceptVisitor(this);
     }
 
+    @Override
+    public void visit(WasmTeeLocal expression) {
+        expression.getValue().acceptVisitor(this);
+    }
+
     @Override
     public void visit(WasmIntBinary expression) {
         expression.getFirst().acceptVisitor(this);
@@ -157,6 +176,11 @@ public class WasmDefaultExpressionVisitor implements WasmExpressionVisitor {
         expression.getIndex().acceptVisitor(this);
     }
 
+    @Override
+    public void visit(WasmLoadV128 expression) {
+        expression.getIndex().acceptVisitor(this);
+    }
+
     @Override
     public void visit(WasmStoreInt32 expression) {
         expression.getIndex().acceptVisitor(this);
@@ -180,4 +204,36 @@ public class WasmDefaultExpressionVisitor implements WasmExpressionVisitor {
         expression.getIndex().acceptVisitor(this);
         expression.getValue().acceptVisitor(this);
     }
+
+    @Override
+    public void visit(WasmStoreV128 expression) {
+        expression.getIndex().acceptVisitor(this);
+        expression.getValue().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmMemoryGrow expression) {
+        expression.getAmount().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmSimdSplat expression) {
+        expression.getValue().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmSimdBinary expression) {
+        expression.getFirst().acceptVisitor(this);
+        expression.getSecond().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmSimdExtractLane expression) {
+        expression.getVector().acceptVisitor(this);
+    }
+
+    @Override
+    public void visit(WasmSimdPairwiseAdd expression) {
+        expression.getOperand().acceptVisitor(this);
+    }
 }
@@ -30,6 +30,10 @@ public interface WasmExpressionVisitor {
 
     void visit(WasmUnreachable expression);
 
+    void visit(WasmTry expression);
+
+    void visit(WasmThrow expression);
+
     void visit(WasmInt32Constant expression);
 
     void visit(WasmInt64Constant expression);
@@ -42,6 +46,8 @@ public interface WasmExpressionVisitor {
 
     void visit(WasmSetLocal expression);
 
+    void visit(WasmTeeLocal expression);
+
     void visit(WasmIntBinary expression);
 
     void visit(WasmFloatBinary expression);
@@ -66,6 +72,8 @@ public interface WasmExpressionVisitor {
 
     void visit(WasmLoadFloat64 expression);
 
+    void visit(WasmLoadV128 expression);
+
     void visit(WasmStoreInt32 expression);
 
     void visit(WasmStoreInt64 expression);
@@ -73,4 +81,16 @@ public interface WasmExpressionVisitor {
     void visit(WasmStoreFloat32 expression);
 
     void visit(WasmStoreFloat64 expression);
+
+    void visit(WasmStoreV128 expression);
+
+    void visit(WasmMemoryGrow expression);
+
+    void visit(WasmSimdSplat expression);
+
+    void visit(WasmSimdBinary expression);
+
+    void visit(WasmSimdExtractLane expression);
+
+    void visit(WasmSimdPairwiseAdd expression);
 }
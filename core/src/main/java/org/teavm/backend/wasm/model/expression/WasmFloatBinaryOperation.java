@@ -27,5 +27,6 @@ public enum WasmFloatBinaryOperation {
     GT,
     GE,
     MIN,
-    MAX
+    MAX,
+    COPYSIGN
 }
@@ -18,7 +18,6 @@ package org.teavm.backend.wasm.model.expression;
 public enum WasmFloatUnaryOperation {
     ABS,
     NEG,
-    COPYSIGN,
     CEIL,
     FLOOR,
     TRUNC,
@@ -0,0 +1,41 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.model.expression;
+
+import java.util.Objects;
+
+public class WasmMemoryGrow extends WasmExpression {
+    private WasmExpression amount;
+
+    public WasmMemoryGrow(WasmExpression amount) {
+        Objects.requireNonNull(amount);
+        this.amount = amount;
+    }
+
+    public WasmExpression getAmount() {
+        return amount;
+    }
+
+    public void setAmount(WasmExpression amount) {
+        Objects.requireNonNull(amount);
+        this.amount = amount;
+    }
+
+    @Override
+    public void acceptVisitor(WasmExpressionVisitor visitor) {
+        visitor.visit(this);
+    }
+}
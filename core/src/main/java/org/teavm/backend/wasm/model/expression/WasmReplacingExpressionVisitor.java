@@ -89,6 +89,16 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
     public void visit(WasmUnreachable expression) {
     }
 
+    @Override
+    public void visit(WasmTry expression) {
+        replaceExpressions(expression.getBody().getBody());
+        replaceExpressions(expression.getCatchBlock().getBody());
+    }
+
+    @Override
+    public void visit(WasmThrow expression) {
+    }
+
     @Override
     public void visit(WasmInt32Constant expression) {
     }
@@ -112,6 +122,13 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
     @Override
     public void visit(WasmSetLocal expression) {
         expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
+    }
+
+    @Override
+    public void visit(WasmTeeLocal expression) {
+        expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
     }
 
     @Override
@@ -190,6 +207,12 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
         expression.setIndex(mapper.apply(expression.getIndex()));
     }
 
+    @Override
+    public void visit(WasmLoadV128 expression) {
+        expression.getIndex().acceptVisitor(this);
+        expression.setIndex(mapper.apply(expression.getIndex()));
+    }
+
     @Override
     public void visit(WasmStoreInt32 expression) {
         expression.getIndex().acceptVisitor(this);
@@ -221,4 +244,44 @@ public class WasmReplacingExpressionVisitor implements WasmExpressionVisitor {
         expression.getValue().acceptVisitor(this);
         expression.setValue(mapper.apply(expression.getValue()));
     }
+
+    @Override
+    public void visit(WasmStoreV128 expression) {
+        expression.getIndex().acceptVisitor(this);
+        expression.setIndex(mapper.apply(expression.getIndex()));
+        expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
+    }
+
+    @Override
+    public void visit(WasmMemoryGrow expression) {
+        expression.getAmount().acceptVisitor(this);
+        expression.setAmount(mapper.apply(expression.getAmount()));
+    }
+
+    @Override
+    public void visit(WasmSimdSplat expression) {
+        expression.getValue().acceptVisitor(this);
+        expression.setValue(mapper.apply(expression.getValue()));
+    }
+
+    @Override
+    public void visit(WasmSimdBinary expression) {
+        expression.getFirst().acceptVisitor(this);
+        expression.setFirst(mapper.apply(expression.getFirst()));
+        expression.getSecond().acceptVisitor(this);
+        expression.setSecond(mapper.apply(expression.getSecond()));
+    }
+
+    @Override
+    public void visit(WasmSimdExtractLane expression) {
+        expression.getVector().acceptVisitor(this);
+        expression.setVector(mapper.apply(expression.getVector()));
+    }
+
+    @Override
+    public void visit(WasmSimdPairwiseAdd expression) {
+        expression.getOperand().acceptVisitor(this);
+        expression.setOperand(mapper.apply(expression.getOperand()));
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.model.expression;
+
+import java.util.Objects;
+
+/**
+ * <p>Reads a single lane of a <code>v128</code> value. Lanes of <code>i8x16</code> and <code>i16x8</code>
+ * shapes are sign-extended to <code>i32</code>.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class WasmSimdExtractLane extends WasmExpression {
+    private WasmSimdShape shape;
+    private int lane;
+    private WasmExpression vector;
+
+    public WasmSimdExtractLane(WasmSimdShape shape, int lane, WasmExpression vector) {
+        Objects.requireNonNull(shape);
+        Objects.requireNonNull(vector);
+        this.shape = shape;
+        this.lane = lane;
+        this.vector = vector;
+    }
+
+    public WasmSimdShape getShape() {
+        return shape;
+    }
+
+    public void setShape(WasmSimdShape shape) {
+        Objects.requireNonNull(shape);
+        this.shape = shape;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    public void setLane(int lane) {
+        this.lane = lane;
+    }
+
+    public WasmExpression getVector() {
+        return vector;
+    }
+
+    public void setVector(WasmExpression vector) {
+        Objects.requireNonNull(vector);
+        this.vector = vector;
+    }
+
+    @Override
+    public void acceptVisitor(WasmExpressionVisitor visitor) {
+        visitor.visit(this);
+    }
+}
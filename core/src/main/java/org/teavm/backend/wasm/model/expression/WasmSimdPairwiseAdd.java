@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.model.expression;
+
+import java.util.Objects;
+
+/**
+ * <p>Adds adjacent pairs of lanes, producing lanes twice as wide. The shape is the one of the result,
+ * i.e. either <code>i16x8</code> (from <code>i8x16</code>) or <code>i32x4</code> (from <code>i16x8</code>).</p>
+ *
+ * @author Alexey Andreev
+ */
+public class WasmSimdPairwiseAdd extends WasmExpression {
+    private WasmSimdShape shape;
+    private boolean signed;
+    private WasmExpression operand;
+
+    public WasmSimdPairwiseAdd(WasmSimdShape shape, boolean signed, WasmExpression operand) {
+        Objects.requireNonNull(shape);
+        Objects.requireNonNull(operand);
+        this.shape = shape;
+        this.signed = signed;
+        this.operand = operand;
+    }
+
+    public WasmSimdShape getShape() {
+        return shape;
+    }
+
+    public void setShape(WasmSimdShape shape) {
+        Objects.requireNonNull(shape);
+        this.shape = shape;
+    }
+
+    public boolean isSigned() {
+        return signed;
+    }
+
+    public void setSigned(boolean signed) {
+        this.signed = signed;
+    }
+
+    public WasmExpression getOperand() {
+        return operand;
+    }
+
+    public void setOperand(WasmExpression operand) {
+        Objects.requireNonNull(operand);
+        this.operand = operand;
+    }
+
+    @Override
+    public void acceptVisitor(WasmExpressionVisitor visitor) {
+        visitor.visit(this);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmReplacingExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+
+/**
+ * <p>Removes blocks and loops that are never targeted by a branch. Blocks without result type that occur
+ * in a sequence of expressions are spliced into this sequence; a block that consists of a single expression
+ * of block's type is replaced by this expression.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class BlockFlattening {
+    private Set<WasmBlock> targets = new HashSet<>();
+    private int flattenedBlocks;
+
+    public int getFlattenedBlocks() {
+        return flattenedBlocks;
+    }
+
+    public void apply(WasmFunction function) {
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(targetCollector);
+        }
+
+        flatten(function.getBody(), function.getResult() != null);
+        new WasmReplacingExpressionVisitor(this::replaceSingleExpressionBlock).replace(function);
+
+        targets.clear();
+    }
+
+    private void flatten(List<WasmExpression> expressions, boolean producesValue) {
+        for (int i = 0; i < expressions.size(); ++i) {
+            WasmExpression part = expressions.get(i);
+            part.acceptVisitor(flattener);
+            if (part instanceof WasmBlock) {
+                WasmBlock block = (WasmBlock) part;
+                boolean last = i == expressions.size() - 1;
+                if (!targets.contains(block) && block.getType() == null && (!producesValue || !last)) {
+                    expressions.remove(i);
+                    expressions.addAll(i, block.getBody());
+                    i += block.getBody().size() - 1;
+                    ++flattenedBlocks;
+                }
+            }
+        }
+    }
+
+    private WasmExpression replaceSingleExpressionBlock(WasmExpression expression) {
+        if (!(expression instanceof WasmBlock)) {
+            return expression;
+        }
+        WasmBlock block = (WasmBlock) expression;
+        if (targets.contains(block) || block.getType() == null || block.getBody().size() != 1) {
+            return expression;
+        }
+        ++flattenedBlocks;
+        return block.getBody().get(0);
+    }
+
+    private WasmDefaultExpressionVisitor flattener = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBlock expression) {
+            flatten(expression.getBody(), expression.getType() != null);
+        }
+
+        @Override
+        public void visit(WasmConditional expression) {
+            expression.getCondition().acceptVisitor(this);
+            flatten(expression.getThenBlock().getBody(), expression.getType() != null);
+            flatten(expression.getElseBlock().getBody(), expression.getType() != null);
+        }
+
+        @Override
+        public void visit(WasmTry expression) {
+            flatten(expression.getBody().getBody(), expression.getType() != null);
+            flatten(expression.getCatchBlock().getBody(), expression.getType() != null);
+        }
+    };
+
+    private WasmDefaultExpressionVisitor targetCollector = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBranch expression) {
+            super.visit(expression);
+            targets.add(expression.getTarget());
+        }
+
+        @Override
+        public void visit(WasmBreak expression) {
+            super.visit(expression);
+            targets.add(expression.getTarget());
+        }
+
+        @Override
+        public void visit(WasmSwitch expression) {
+            super.visit(expression);
+            targets.addAll(expression.getTargets());
+            targets.add(expression.getDefaultTarget());
+        }
+    };
+}
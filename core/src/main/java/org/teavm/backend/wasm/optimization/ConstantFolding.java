@@ -0,0 +1,325 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloat32Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloat64Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmReplacingExpressionVisitor;
+
+/**
+ * <p>Evaluates integer operations over constants, removes neutral operands (like <code>x + 0</code>)
+ * and replaces conditionals and conditional branches on constant conditions.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class ConstantFolding {
+    private int foldedExpressions;
+
+    public int getFoldedExpressions() {
+        return foldedExpressions;
+    }
+
+    public void apply(WasmFunction function) {
+        new WasmReplacingExpressionVisitor(this::fold).replace(function);
+    }
+
+    private WasmExpression fold(WasmExpression expression) {
+        WasmExpression result;
+        if (expression instanceof WasmIntBinary) {
+            result = foldBinary((WasmIntBinary) expression);
+        } else if (expression instanceof WasmConversion) {
+            result = foldConversion((WasmConversion) expression);
+        } else if (expression instanceof WasmConditional) {
+            result = foldConditional((WasmConditional) expression);
+        } else if (expression instanceof WasmBranch) {
+            result = foldBranch((WasmBranch) expression);
+        } else {
+            result = null;
+        }
+
+        if (result == null) {
+            return expression;
+        }
+        if (result.getLocation() == null) {
+            result.setLocation(expression.getLocation());
+        }
+        ++foldedExpressions;
+        return result;
+    }
+
+    private WasmExpression foldBinary(WasmIntBinary expression) {
+        if (expression.getType() == WasmIntType.INT32) {
+            Integer first = getInt32(expression.getFirst());
+            Integer second = getInt32(expression.getSecond());
+            if (first != null && second != null) {
+                return foldInt32(expression, first, second);
+            }
+            if (second != null && isNeutralRight(expression, second)) {
+                return expression.getFirst();
+            }
+            if (first != null && isNeutralLeft(expression, first)) {
+                return expression.getSecond();
+            }
+        } else {
+            Long first = getInt64(expression.getFirst());
+            Long second = getInt64(expression.getSecond());
+            if (first != null && second != null) {
+                return foldInt64(expression, first, second);
+            }
+            if (second != null && isNeutralRight(expression, second)) {
+                return expression.getFirst();
+            }
+            if (first != null && isNeutralLeft(expression, first)) {
+                return expression.getSecond();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNeutralRight(WasmIntBinary expression, long value) {
+        switch (expression.getOperation()) {
+            case ADD:
+            case SUB:
+            case OR:
+            case XOR:
+            case SHL:
+            case SHR_SIGNED:
+            case SHR_UNSIGNED:
+            case ROTL:
+            case ROTR:
+                return value == 0;
+            case MUL:
+            case DIV_SIGNED:
+            case DIV_UNSIGNED:
+                return value == 1;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isNeutralLeft(WasmIntBinary expression, long value) {
+        switch (expression.getOperation()) {
+            case ADD:
+            case OR:
+            case XOR:
+                return value == 0;
+            case MUL:
+                return value == 1;
+            default:
+                return false;
+        }
+    }
+
+    private static WasmExpression foldInt32(WasmIntBinary expression, int a, int b) {
+        switch (expression.getOperation()) {
+            case ADD:
+                return new WasmInt32Constant(a + b);
+            case SUB:
+                return new WasmInt32Constant(a - b);
+            case MUL:
+                return new WasmInt32Constant(a * b);
+            case DIV_SIGNED:
+                return b != 0 && (a != Integer.MIN_VALUE || b != -1) ? new WasmInt32Constant(a / b) : null;
+            case DIV_UNSIGNED:
+                return b != 0 ? new WasmInt32Constant(Integer.divideUnsigned(a, b)) : null;
+            case REM_SIGNED:
+                return b != 0 ? new WasmInt32Constant(b != -1 ? a % b : 0) : null;
+            case REM_UNSIGNED:
+                return b != 0 ? new WasmInt32Constant(Integer.remainderUnsigned(a, b)) : null;
+            case OR:
+                return new WasmInt32Constant(a | b);
+            case AND:
+                return new WasmInt32Constant(a & b);
+            case XOR:
+                return new WasmInt32Constant(a ^ b);
+            case SHL:
+                return new WasmInt32Constant(a << b);
+            case SHR_SIGNED:
+                return new WasmInt32Constant(a >> b);
+            case SHR_UNSIGNED:
+                return new WasmInt32Constant(a >>> b);
+            case ROTL:
+                return new WasmInt32Constant(Integer.rotateLeft(a, b));
+            case ROTR:
+                return new WasmInt32Constant(Integer.rotateRight(a, b));
+            case EQ:
+                return bool(a == b);
+            case NE:
+                return bool(a != b);
+            case LT_SIGNED:
+                return bool(a < b);
+            case LT_UNSIGNED:
+                return bool(Integer.compareUnsigned(a, b) < 0);
+            case LE_SIGNED:
+                return bool(a <= b);
+            case LE_UNSIGNED:
+                return bool(Integer.compareUnsigned(a, b) <= 0);
+            case GT_SIGNED:
+                return bool(a > b);
+            case GT_UNSIGNED:
+                return bool(Integer.compareUnsigned(a, b) > 0);
+            case GE_SIGNED:
+                return bool(a >= b);
+            case GE_UNSIGNED:
+                return bool(Integer.compareUnsigned(a, b) >= 0);
+            default:
+                return null;
+        }
+    }
+
+    private static WasmExpression foldInt64(WasmIntBinary expression, long a, long b) {
+        switch (expression.getOperation()) {
+            case ADD:
+                return new WasmInt64Constant(a + b);
+            case SUB:
+                return new WasmInt64Constant(a - b);
+            case MUL:
+                return new WasmInt64Constant(a * b);
+            case DIV_SIGNED:
+                return b != 0 && (a != Long.MIN_VALUE || b != -1) ? new WasmInt64Constant(a / b) : null;
+            case DIV_UNSIGNED:
+                return b != 0 ? new WasmInt64Constant(Long.divideUnsigned(a, b)) : null;
+            case REM_SIGNED:
+                return b != 0 ? new WasmInt64Constant(b != -1 ? a % b : 0) : null;
+            case REM_UNSIGNED:
+                return b != 0 ? new WasmInt64Constant(Long.remainderUnsigned(a, b)) : null;
+            case OR:
+                return new WasmInt64Constant(a | b);
+            case AND:
+                return new WasmInt64Constant(a & b);
+            case XOR:
+                return new WasmInt64Constant(a ^ b);
+            case SHL:
+                return new WasmInt64Constant(a << b);
+            case SHR_SIGNED:
+                return new WasmInt64Constant(a >> b);
+            case SHR_UNSIGNED:
+                return new WasmInt64Constant(a >>> b);
+            case ROTL:
+                return new WasmInt64Constant(Long.rotateLeft(a, (int) b));
+            case ROTR:
+                return new WasmInt64Constant(Long.rotateRight(a, (int) b));
+            case EQ:
+                return bool(a == b);
+            case NE:
+                return bool(a != b);
+            case LT_SIGNED:
+                return bool(a < b);
+            case LT_UNSIGNED:
+                return bool(Long.compareUnsigned(a, b) < 0);
+            case LE_SIGNED:
+                return bool(a <= b);
+            case LE_UNSIGNED:
+                return bool(Long.compareUnsigned(a, b) <= 0);
+            case GT_SIGNED:
+                return bool(a > b);
+            case GT_UNSIGNED:
+                return bool(Long.compareUnsigned(a, b) > 0);
+            case GE_SIGNED:
+                return bool(a >= b);
+            case GE_UNSIGNED:
+                return bool(Long.compareUnsigned(a, b) >= 0);
+            default:
+                return null;
+        }
+    }
+
+    private static WasmExpression bool(boolean value) {
+        return new WasmInt32Constant(value ? 1 : 0);
+    }
+
+    private WasmExpression foldConversion(WasmConversion expression) {
+        if (expression.getSourceType() == expression.getTargetType()) {
+            return expression.getOperand();
+        }
+        if (expression.isReinterpret()) {
+            return null;
+        }
+
+        long value;
+        if (expression.getSourceType() == WasmType.INT32) {
+            Integer operand = getInt32(expression.getOperand());
+            if (operand == null) {
+                return null;
+            }
+            value = expression.isSigned() ? operand : operand & 0xFFFFFFFFL;
+        } else if (expression.getSourceType() == WasmType.INT64) {
+            Long operand = getInt64(expression.getOperand());
+            if (operand == null || (!expression.isSigned() && expression.getTargetType() != WasmType.INT32)) {
+                return null;
+            }
+            value = operand;
+        } else {
+            return null;
+        }
+
+        switch (expression.getTargetType()) {
+            case INT32:
+                return new WasmInt32Constant((int) value);
+            case INT64:
+                return new WasmInt64Constant(value);
+            case FLOAT32:
+                return new WasmFloat32Constant(value);
+            case FLOAT64:
+                return new WasmFloat64Constant(value);
+            default:
+                return null;
+        }
+    }
+
+    private WasmExpression foldConditional(WasmConditional expression) {
+        Integer condition = getInt32(expression.getCondition());
+        if (condition == null) {
+            return null;
+        }
+
+        // Branches that leave the conditional target either then or else block, so they remain valid
+        // when the chosen block takes place of the conditional
+        WasmBlock block = condition != 0 ? expression.getThenBlock() : expression.getElseBlock();
+        block.setType(expression.getType());
+        return block;
+    }
+
+    private WasmExpression foldBranch(WasmBranch expression) {
+        Integer condition = getInt32(expression.getCondition());
+        if (condition == null || condition == 0) {
+            return null;
+        }
+        WasmBreak result = new WasmBreak(expression.getTarget());
+        result.setResult(expression.getResult());
+        return result;
+    }
+
+    private static Integer getInt32(WasmExpression expression) {
+        return expression instanceof WasmInt32Constant ? ((WasmInt32Constant) expression).getValue() : null;
+    }
+
+    private static Long getInt64(WasmExpression expression) {
+        return expression instanceof WasmInt64Constant ? ((WasmInt64Constant) expression).getValue() : null;
+    }
+}
@@ -0,0 +1,468 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmFloat32Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloat64Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinary;
+import org.teavm.backend.wasm.model.expression.WasmFloatUnary;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmIndirectCall;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntUnary;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
+import org.teavm.backend.wasm.model.expression.WasmReturn;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinary;
+import org.teavm.backend.wasm.model.expression.WasmSimdExtractLane;
+import org.teavm.backend.wasm.model.expression.WasmSimdPairwiseAdd;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
+import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
+import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
+import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+import org.teavm.backend.wasm.model.expression.WasmUnreachable;
+
+/**
+ * <p>Merges locals of the same type whose live ranges do not overlap, removes unused locals
+ * and renumbers remaining ones so that locals of the same type go together, which makes local
+ * declarations in the binary format shorter.</p>
+ *
+ * <p>Liveness is computed by a backward pass over the structured code. A branch to a block continues
+ * after the block's end, a branch to a loop continues at loop's start, so loop bodies are iterated until
+ * a fixpoint is reached. A local that is live at function's entry relies on being zero-initialized
+ * (or is a parameter), so it is never merged into another local.</p>
+ *
+ * <p>Any instruction in a body of <code>try</code> may transfer control to its <code>catch</code>, so locals
+ * that are live at the beginning of <code>catch</code> are considered live across the whole body.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class LocalCoalescing {
+    private BitSet[] interference;
+    private BitSet used;
+    private Map<WasmBlock, BitSet> targetLiveness = new HashMap<>();
+    private BitSet live = new BitSet();
+    private BitSet catchLiveness;
+    private int removedLocals;
+
+    public int getRemovedLocals() {
+        return removedLocals;
+    }
+
+    public void apply(WasmFunction function) {
+        List<WasmLocal> locals = new ArrayList<>(function.getLocalVariables());
+        int parameterCount = function.getParameters().size();
+        if (locals.size() <= parameterCount) {
+            return;
+        }
+
+        interference = new BitSet[locals.size()];
+        for (int i = 0; i < interference.length; ++i) {
+            interference[i] = new BitSet();
+        }
+        used = new BitSet();
+        live = new BitSet();
+        processBackward(function.getBody());
+        BitSet liveAtEntry = live;
+
+        WasmLocal[] representatives = new WasmLocal[locals.size()];
+        BitSet[] classInterference = new BitSet[locals.size()];
+        List<WasmLocal> kept = new ArrayList<>();
+        for (int i = 0; i < locals.size(); ++i) {
+            WasmLocal local = locals.get(i);
+            if (i >= parameterCount && !used.get(i)) {
+                continue;
+            }
+            if (i >= parameterCount && !liveAtEntry.get(i)) {
+                for (WasmLocal candidate : kept) {
+                    int index = candidate.getIndex();
+                    if (candidate.getType() == local.getType() && !classInterference[index].get(i)) {
+                        representatives[i] = candidate;
+                        classInterference[index].or(interference[i]);
+                        break;
+                    }
+                }
+            }
+            if (representatives[i] == null) {
+                representatives[i] = local;
+                classInterference[i] = (BitSet) interference[i].clone();
+                kept.add(local);
+            }
+        }
+
+        interference = null;
+        used = null;
+        targetLiveness.clear();
+
+        if (kept.size() < locals.size()) {
+            rename(function, representatives);
+            removedLocals += locals.size() - kept.size();
+        }
+        renumber(function, kept.subList(parameterCount, kept.size()));
+    }
+
+    private void rename(WasmFunction function, WasmLocal[] representatives) {
+        WasmDefaultExpressionVisitor renamer = new WasmDefaultExpressionVisitor() {
+            @Override
+            public void visit(WasmGetLocal expression) {
+                expression.setLocal(representatives[expression.getLocal().getIndex()]);
+            }
+
+            @Override
+            public void visit(WasmSetLocal expression) {
+                super.visit(expression);
+                expression.setLocal(representatives[expression.getLocal().getIndex()]);
+            }
+
+            @Override
+            public void visit(WasmTeeLocal expression) {
+                super.visit(expression);
+                expression.setLocal(representatives[expression.getLocal().getIndex()]);
+            }
+        };
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(renamer);
+        }
+    }
+
+    private void renumber(WasmFunction function, List<WasmLocal> locals) {
+        List<WasmLocal> sortedLocals = new ArrayList<>(locals);
+        sortedLocals.sort(Comparator.comparing(WasmLocal::getType));
+        int parameterCount = function.getParameters().size();
+        if (sortedLocals.equals(function.getLocalVariables().subList(parameterCount,
+                function.getLocalVariables().size()))) {
+            return;
+        }
+
+        for (int i = function.getLocalVariables().size() - 1; i >= parameterCount; --i) {
+            function.remove(function.getLocalVariables().get(i));
+        }
+        for (WasmLocal local : sortedLocals) {
+            function.add(local);
+        }
+    }
+
+    private void processBackward(List<WasmExpression> expressions) {
+        for (int i = expressions.size() - 1; i >= 0; --i) {
+            expressions.get(i).acceptVisitor(livenessVisitor);
+            if (catchLiveness != null) {
+                live.or(catchLiveness);
+            }
+        }
+    }
+
+    private void define(WasmLocal local) {
+        int index = local.getIndex();
+        used.set(index);
+        live.clear(index);
+        interference[index].or(live);
+        for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+            interference[i].set(index);
+        }
+    }
+
+    private WasmExpressionVisitor livenessVisitor = new WasmExpressionVisitor() {
+        @Override
+        public void visit(WasmBlock expression) {
+            if (!expression.isLoop()) {
+                targetLiveness.put(expression, (BitSet) live.clone());
+                processBackward(expression.getBody());
+                return;
+            }
+
+            BitSet liveAtExit = live;
+            BitSet liveAtStart = new BitSet();
+            while (true) {
+                targetLiveness.put(expression, liveAtStart);
+                live = (BitSet) liveAtExit.clone();
+                processBackward(expression.getBody());
+                if (live.equals(liveAtStart)) {
+                    break;
+                }
+                liveAtStart = (BitSet) live.clone();
+            }
+        }
+
+        @Override
+        public void visit(WasmBranch expression) {
+            live.or(targetLiveness.get(expression.getTarget()));
+            expression.getCondition().acceptVisitor(this);
+            if (expression.getResult() != null) {
+                expression.getResult().acceptVisitor(this);
+            }
+        }
+
+        @Override
+        public void visit(WasmBreak expression) {
+            live = (BitSet) targetLiveness.get(expression.getTarget()).clone();
+            if (expression.getResult() != null) {
+                expression.getResult().acceptVisitor(this);
+            }
+        }
+
+        @Override
+        public void visit(WasmSwitch expression) {
+            live = (BitSet) targetLiveness.get(expression.getDefaultTarget()).clone();
+            for (WasmBlock target : expression.getTargets()) {
+                live.or(targetLiveness.get(target));
+            }
+            expression.getSelector().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmConditional expression) {
+            BitSet liveAtExit = live;
+            targetLiveness.put(expression.getThenBlock(), liveAtExit);
+            targetLiveness.put(expression.getElseBlock(), liveAtExit);
+
+            live = (BitSet) liveAtExit.clone();
+            processBackward(expression.getThenBlock().getBody());
+            BitSet liveAtThen = live;
+
+            live = (BitSet) liveAtExit.clone();
+            processBackward(expression.getElseBlock().getBody());
+            live.or(liveAtThen);
+
+            expression.getCondition().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmTry expression) {
+            BitSet liveAtExit = live;
+            targetLiveness.put(expression.getBody(), liveAtExit);
+            targetLiveness.put(expression.getCatchBlock(), liveAtExit);
+
+            live = (BitSet) liveAtExit.clone();
+            processBackward(expression.getCatchBlock().getBody());
+            BitSet liveAtCatch = live;
+
+            BitSet oldCatchLiveness = catchLiveness;
+            catchLiveness = liveAtCatch;
+            live = (BitSet) liveAtExit.clone();
+            live.or(liveAtCatch);
+            processBackward(expression.getBody().getBody());
+            catchLiveness = oldCatchLiveness;
+        }
+
+        @Override
+        public void visit(WasmThrow expression) {
+            live = catchLiveness != null ? (BitSet) catchLiveness.clone() : new BitSet();
+        }
+
+        @Override
+        public void visit(WasmReturn expression) {
+            live = new BitSet();
+            if (expression.getValue() != null) {
+                expression.getValue().acceptVisitor(this);
+            }
+        }
+
+        @Override
+        public void visit(WasmUnreachable expression) {
+            live = new BitSet();
+        }
+
+        @Override
+        public void visit(WasmInt32Constant expression) {
+        }
+
+        @Override
+        public void visit(WasmInt64Constant expression) {
+        }
+
+        @Override
+        public void visit(WasmFloat32Constant expression) {
+        }
+
+        @Override
+        public void visit(WasmFloat64Constant expression) {
+        }
+
+        @Override
+        public void visit(WasmGetLocal expression) {
+            int index = expression.getLocal().getIndex();
+            used.set(index);
+            live.set(index);
+        }
+
+        @Override
+        public void visit(WasmSetLocal expression) {
+            define(expression.getLocal());
+            expression.getValue().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmTeeLocal expression) {
+            define(expression.getLocal());
+            expression.getValue().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmIntBinary expression) {
+            expression.getSecond().acceptVisitor(this);
+            expression.getFirst().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmFloatBinary expression) {
+            expression.getSecond().acceptVisitor(this);
+            expression.getFirst().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmIntUnary expression) {
+            expression.getOperand().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmFloatUnary expression) {
+            expression.getOperand().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmConversion expression) {
+            expression.getOperand().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmCall expression) {
+            processBackward(expression.getArguments());
+        }
+
+        @Override
+        public void visit(WasmIndirectCall expression) {
+            expression.getSelector().acceptVisitor(this);
+            processBackward(expression.getArguments());
+        }
+
+        @Override
+        public void visit(WasmDrop expression) {
+            expression.getOperand().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmLoadInt32 expression) {
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmLoadInt64 expression) {
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmLoadFloat32 expression) {
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmLoadFloat64 expression) {
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmLoadV128 expression) {
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmStoreInt32 expression) {
+            expression.getValue().acceptVisitor(this);
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmStoreInt64 expression) {
+            expression.getValue().acceptVisitor(this);
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmStoreFloat32 expression) {
+            expression.getValue().acceptVisitor(this);
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmStoreFloat64 expression) {
+            expression.getValue().acceptVisitor(this);
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmStoreV128 expression) {
+            expression.getValue().acceptVisitor(this);
+            expression.getIndex().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmMemoryGrow expression) {
+            expression.getAmount().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmSimdSplat expression) {
+            expression.getValue().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmSimdBinary expression) {
+            expression.getSecond().acceptVisitor(this);
+            expression.getFirst().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmSimdExtractLane expression) {
+            expression.getVector().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmSimdPairwiseAdd expression) {
+            expression.getOperand().acceptVisitor(this);
+        }
+    };
+}
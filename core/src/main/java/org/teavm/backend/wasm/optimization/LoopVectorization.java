@@ -0,0 +1,836 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloat32Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloat64Constant;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinary;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt32Subtype;
+import org.teavm.backend.wasm.model.expression.WasmInt64Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt64Subtype;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmMemoryAccess;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinary;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmSimdExtractLane;
+import org.teavm.backend.wasm.model.expression.WasmSimdPairwiseAdd;
+import org.teavm.backend.wasm.model.expression.WasmSimdShape;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
+import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
+import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+
+/**
+ * <p>Vectorizes counted loops over primitive arrays, i.e. loops that look like</p>
+ *
+ * <pre>
+ * for (int i = start; i &lt; n; ++i) {
+ *     a[i] = b[i] * k + c[i + 1];
+ *     sum += d[i];
+ * }
+ * </pre>
+ *
+ * <p>The body may only contain stores of array elements at index <code>i</code> and integer reductions
+ * (<code>+=</code>, <code>^=</code>, <code>|=</code>, <code>&amp;=</code>). Stored values and reduced values
+ * may only be composed of lane-wise operations on loop-invariant locals, constants and array elements
+ * at <code>i + c</code>, where <code>c</code> is a non-negative constant. All accessed arrays must have
+ * elements of the same size. Sums of byte and short elements are widened to 32-bit lanes.</p>
+ *
+ * <p>A vector loop that processes 16 bytes per iteration is inserted before the original loop, which
+ * then handles the remaining elements. Lane-wise operations produce the same results as scalar ones,
+ * and only integer reductions are reordered, so the result does not differ from the scalar loop.
+ * Arrays are either the same or do not overlap, so element accesses at the same index do not interfere
+ * across lanes. The only exception is reading ahead after a store, which is not vectorized.</p>
+ *
+ * <p>The pass expects code in the shape produced by the generator, so it should run before
+ * {@link WasmOptimizer}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class LoopVectorization {
+    private WasmFunction function;
+    private int vectorizedLoops;
+
+    private WasmLocal counter;
+    private Set<WasmLocal> modifiedLocals = new HashSet<>();
+    private Map<WasmLocal, Integer> readCount = new HashMap<>();
+    private int elementSize;
+    private boolean stored;
+    private List<WasmExpression> prologue = new ArrayList<>();
+    private Map<String, WasmLocal> splats = new HashMap<>();
+
+    public int getVectorizedLoops() {
+        return vectorizedLoops;
+    }
+
+    public void apply(WasmFunction function) {
+        this.function = function;
+        process(function.getBody());
+        this.function = null;
+    }
+
+    private void process(List<WasmExpression> expressions) {
+        for (int i = 0; i < expressions.size(); ++i) {
+            WasmExpression expression = expressions.get(i);
+            expression.acceptVisitor(nestedLoopFinder);
+            if (expression instanceof WasmBlock && ((WasmBlock) expression).isLoop()) {
+                List<WasmExpression> vectorLoop = vectorize((WasmBlock) expression);
+                if (vectorLoop != null) {
+                    expressions.addAll(i, vectorLoop);
+                    i += vectorLoop.size();
+                    ++vectorizedLoops;
+                }
+            }
+        }
+    }
+
+    private WasmDefaultExpressionVisitor nestedLoopFinder = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBlock expression) {
+            process(expression.getBody());
+        }
+
+        @Override
+        public void visit(WasmConditional expression) {
+            expression.getCondition().acceptVisitor(this);
+            process(expression.getThenBlock().getBody());
+            process(expression.getElseBlock().getBody());
+        }
+    };
+
+    private List<WasmExpression> vectorize(WasmBlock loop) {
+        try {
+            return vectorizeImpl(loop);
+        } finally {
+            counter = null;
+            modifiedLocals.clear();
+            readCount.clear();
+            prologue.clear();
+            splats.clear();
+        }
+    }
+
+    private List<WasmExpression> vectorizeImpl(WasmBlock loop) {
+        // Recognize either loop { exit test; body; i = i + 1; br loop }
+        // or loop { body; i = i + 1; exit test; br loop }
+        List<WasmExpression> body = loop.getBody();
+        if (body.size() < 4 || !isBreakTo(body.get(body.size() - 1), loop)) {
+            return null;
+        }
+        int exitIndex;
+        int incrementIndex;
+        int firstStatement;
+        if (getExitTarget(body.get(body.size() - 2), loop) != null) {
+            exitIndex = body.size() - 2;
+            incrementIndex = body.size() - 3;
+            firstStatement = 0;
+        } else if (getExitTarget(body.get(0), loop) != null) {
+            exitIndex = 0;
+            incrementIndex = body.size() - 2;
+            firstStatement = 1;
+        } else {
+            return null;
+        }
+
+        counter = getIncrementedLocal(body.get(incrementIndex));
+        if (counter == null) {
+            return null;
+        }
+        for (WasmExpression part : body) {
+            part.acceptVisitor(localUsageCollector);
+        }
+        WasmExpression exitCondition = getExitCondition(body.get(exitIndex));
+        WasmBlock exitTarget = getExitTarget(body.get(exitIndex), loop);
+        WasmExpression bound = getBound(exitCondition);
+        if (bound == null) {
+            return null;
+        }
+
+        WasmBlock vectorWrapper = new WasmBlock(false);
+        WasmBlock vectorLoop = new WasmBlock(true);
+        vectorWrapper.getBody().add(vectorLoop);
+        List<WasmExpression> vectorBody = new ArrayList<>();
+        List<WasmExpression> epilogue = new ArrayList<>();
+        elementSize = 0;
+        stored = false;
+        for (int i = firstStatement; i < incrementIndex; ++i) {
+            if (!vectorizeStatement(body.get(i), vectorBody, epilogue)) {
+                return null;
+            }
+        }
+        if (vectorBody.isEmpty()) {
+            return null;
+        }
+        int lanes = 16 / elementSize;
+
+        // The vector loop is only entered when the counter is below the bound, so it never exceeds the bound
+        WasmExpression remaining = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.SUB, clone(bound),
+                new WasmGetLocal(counter));
+        vectorLoop.getBody().add(new WasmBranch(new WasmIntBinary(WasmIntType.INT32,
+                WasmIntBinaryOperation.LT_UNSIGNED, remaining, new WasmInt32Constant(lanes)), vectorWrapper));
+        vectorLoop.getBody().addAll(vectorBody);
+        vectorLoop.getBody().add(new WasmSetLocal(counter, new WasmIntBinary(WasmIntType.INT32,
+                WasmIntBinaryOperation.ADD, new WasmGetLocal(counter), new WasmInt32Constant(lanes))));
+        vectorLoop.getBody().add(new WasmBreak(vectorLoop));
+
+        // The original loop may check the exit condition only after the first iteration, so it is entered
+        // directly when the condition holds initially, and is skipped when the vector loop processed everything
+        WasmBlock entryWrapper = new WasmBlock(false);
+        entryWrapper.getBody().add(new WasmBranch(clone(exitCondition), entryWrapper));
+        entryWrapper.getBody().add(vectorWrapper);
+        entryWrapper.getBody().addAll(epilogue);
+        entryWrapper.getBody().add(new WasmBranch(clone(exitCondition), exitTarget));
+
+        List<WasmExpression> result = new ArrayList<>(prologue);
+        result.add(entryWrapper);
+        return result;
+    }
+
+    private boolean isBreakTo(WasmExpression expression, WasmBlock target) {
+        return expression instanceof WasmBreak && ((WasmBreak) expression).getTarget() == target
+                && ((WasmBreak) expression).getResult() == null;
+    }
+
+    private WasmBlock getExitTarget(WasmExpression expression, WasmBlock loop) {
+        WasmBlock target;
+        if (expression instanceof WasmBranch) {
+            WasmBranch branch = (WasmBranch) expression;
+            if (branch.getResult() != null) {
+                return null;
+            }
+            target = branch.getTarget();
+        } else if (expression instanceof WasmConditional) {
+            WasmConditional conditional = (WasmConditional) expression;
+            List<WasmExpression> thenBody = conditional.getThenBlock().getBody();
+            if (conditional.getType() != null || !conditional.getElseBlock().getBody().isEmpty()
+                    || thenBody.size() != 1 || !(thenBody.get(0) instanceof WasmBreak)) {
+                return null;
+            }
+            WasmBreak exit = (WasmBreak) thenBody.get(0);
+            if (exit.getResult() != null || exit.getTarget() == conditional.getThenBlock()) {
+                return null;
+            }
+            target = exit.getTarget();
+        } else {
+            return null;
+        }
+        return target != loop ? target : null;
+    }
+
+    private WasmExpression getExitCondition(WasmExpression expression) {
+        return expression instanceof WasmBranch
+                ? ((WasmBranch) expression).getCondition()
+                : ((WasmConditional) expression).getCondition();
+    }
+
+    private WasmLocal getIncrementedLocal(WasmExpression expression) {
+        if (!(expression instanceof WasmSetLocal)) {
+            return null;
+        }
+        WasmSetLocal assignment = (WasmSetLocal) expression;
+        WasmLocal local = assignment.getLocal();
+        if (local.getType() != WasmType.INT32 || !(assignment.getValue() instanceof WasmIntBinary)) {
+            return null;
+        }
+        WasmIntBinary value = (WasmIntBinary) assignment.getValue();
+        if (value.getType() != WasmIntType.INT32 || value.getOperation() != WasmIntBinaryOperation.ADD) {
+            return null;
+        }
+        if (isLocal(value.getFirst(), local) && isConstant(value.getSecond(), 1)
+                || isConstant(value.getFirst(), 1) && isLocal(value.getSecond(), local)) {
+            return local;
+        }
+        return null;
+    }
+
+    private WasmExpression getBound(WasmExpression condition) {
+        if (!(condition instanceof WasmIntBinary)) {
+            return null;
+        }
+        WasmIntBinary comparison = (WasmIntBinary) condition;
+        if (comparison.getType() != WasmIntType.INT32) {
+            return null;
+        }
+        WasmExpression bound;
+        if (comparison.getOperation() == WasmIntBinaryOperation.GE_SIGNED && isLocal(comparison.getFirst(), counter)) {
+            bound = comparison.getSecond();
+        } else if (comparison.getOperation() == WasmIntBinaryOperation.LE_SIGNED
+                && isLocal(comparison.getSecond(), counter)) {
+            bound = comparison.getFirst();
+        } else {
+            return null;
+        }
+        if (bound instanceof WasmInt32Constant || isInvariant(bound)) {
+            return bound;
+        }
+        return null;
+    }
+
+    private boolean vectorizeStatement(WasmExpression statement, List<WasmExpression> vectorBody,
+            List<WasmExpression> epilogue) {
+        if (statement instanceof WasmSetLocal) {
+            return vectorizeReduction((WasmSetLocal) statement, vectorBody, epilogue);
+        }
+
+        WasmSimdShape shape;
+        WasmExpression value;
+        int alignment;
+        if (statement instanceof WasmStoreInt32) {
+            WasmStoreInt32 store = (WasmStoreInt32) statement;
+            shape = getShape(store.getConvertTo());
+            value = store.getValue();
+            alignment = store.getAlignment();
+        } else if (statement instanceof WasmStoreInt64) {
+            WasmStoreInt64 store = (WasmStoreInt64) statement;
+            if (store.getConvertTo() != WasmInt64Subtype.INT64) {
+                return false;
+            }
+            shape = WasmSimdShape.INT64X2;
+            value = store.getValue();
+            alignment = store.getAlignment();
+        } else if (statement instanceof WasmStoreFloat32) {
+            WasmStoreFloat32 store = (WasmStoreFloat32) statement;
+            shape = WasmSimdShape.FLOAT32X4;
+            value = store.getValue();
+            alignment = store.getAlignment();
+        } else if (statement instanceof WasmStoreFloat64) {
+            WasmStoreFloat64 store = (WasmStoreFloat64) statement;
+            shape = WasmSimdShape.FLOAT64X2;
+            value = store.getValue();
+            alignment = store.getAlignment();
+        } else {
+            return false;
+        }
+
+        WasmMemoryAccess access = (WasmMemoryAccess) statement;
+        Integer offset = getElementOffset(access.getIndex(), shape);
+        if (offset == null || offset != 0) {
+            return false;
+        }
+        WasmExpression vectorValue = vectorizeValue(value, shape);
+        if (vectorValue == null) {
+            return false;
+        }
+        WasmStoreV128 vectorStore = new WasmStoreV128(alignment, clone(access.getIndex()), vectorValue);
+        vectorStore.setOffset(access.getOffset());
+        vectorStore.setLocation(statement.getLocation());
+        vectorBody.add(vectorStore);
+        stored = true;
+        return true;
+    }
+
+    private boolean vectorizeReduction(WasmSetLocal statement, List<WasmExpression> vectorBody,
+            List<WasmExpression> epilogue) {
+        WasmLocal accumulator = statement.getLocal();
+        if (accumulator == counter || readCount.getOrDefault(accumulator, 0) != 1
+                || !(statement.getValue() instanceof WasmIntBinary)) {
+            return false;
+        }
+        WasmIntBinary reduction = (WasmIntBinary) statement.getValue();
+        WasmExpression value;
+        if (isLocal(reduction.getFirst(), accumulator)) {
+            value = reduction.getSecond();
+        } else if (isLocal(reduction.getSecond(), accumulator)) {
+            value = reduction.getFirst();
+        } else {
+            return false;
+        }
+
+        WasmSimdBinaryOperation operation;
+        WasmExpression identity;
+        switch (reduction.getOperation()) {
+            case ADD:
+                operation = WasmSimdBinaryOperation.ADD;
+                identity = reduction.getType() == WasmIntType.INT32 ? new WasmInt32Constant(0)
+                        : new WasmInt64Constant(0);
+                break;
+            case XOR:
+                operation = WasmSimdBinaryOperation.XOR;
+                identity = reduction.getType() == WasmIntType.INT32 ? new WasmInt32Constant(0)
+                        : new WasmInt64Constant(0);
+                break;
+            case OR:
+                operation = WasmSimdBinaryOperation.OR;
+                identity = reduction.getType() == WasmIntType.INT32 ? new WasmInt32Constant(0)
+                        : new WasmInt64Constant(0);
+                break;
+            case AND:
+                operation = WasmSimdBinaryOperation.AND;
+                identity = reduction.getType() == WasmIntType.INT32 ? new WasmInt32Constant(-1)
+                        : new WasmInt64Constant(-1);
+                break;
+            default:
+                return false;
+        }
+
+        WasmSimdShape shape = reduction.getType() == WasmIntType.INT32 ? WasmSimdShape.INT32X4
+                : WasmSimdShape.INT64X2;
+        WasmExpression vectorValue;
+        WasmSimdShape narrowShape = getExtendedLoadShape(value);
+        if (narrowShape != null && operation == WasmSimdBinaryOperation.ADD && shape == WasmSimdShape.INT32X4) {
+            vectorValue = vectorizeWideningSum(value, narrowShape);
+        } else {
+            vectorValue = vectorizeValue(value, shape);
+        }
+        if (vectorValue == null) {
+            return false;
+        }
+
+        WasmLocal vectorAccumulator = new WasmLocal(WasmType.V128);
+        function.add(vectorAccumulator);
+        prologue.add(new WasmSetLocal(vectorAccumulator, new WasmSimdSplat(shape, identity)));
+        WasmExpression vectorReduction = new WasmSimdBinary(shape, operation, new WasmGetLocal(vectorAccumulator),
+                vectorValue);
+        WasmSetLocal vectorStatement = new WasmSetLocal(vectorAccumulator, vectorReduction);
+        vectorStatement.setLocation(statement.getLocation());
+        vectorBody.add(vectorStatement);
+
+        WasmExpression total = new WasmGetLocal(accumulator);
+        int lanes = shape == WasmSimdShape.INT32X4 ? 4 : 2;
+        for (int i = 0; i < lanes; ++i) {
+            total = new WasmIntBinary(reduction.getType(), reduction.getOperation(), total,
+                    new WasmSimdExtractLane(shape, i, new WasmGetLocal(vectorAccumulator)));
+        }
+        epilogue.add(new WasmSetLocal(accumulator, total));
+        return true;
+    }
+
+    private WasmSimdShape getExtendedLoadShape(WasmExpression value) {
+        if (value instanceof WasmIntBinary) {
+            WasmIntBinary binary = (WasmIntBinary) value;
+            if (binary.getType() != WasmIntType.INT32 || binary.getOperation() != WasmIntBinaryOperation.AND
+                    || !(binary.getFirst() instanceof WasmLoadInt32)) {
+                return null;
+            }
+            WasmSimdShape shape = getExtendedLoadShape(binary.getFirst());
+            return shape != null && isConstant(binary.getSecond(), laneMask(shape)) ? shape : null;
+        }
+        if (!(value instanceof WasmLoadInt32)) {
+            return null;
+        }
+        WasmInt32Subtype type = ((WasmLoadInt32) value).getConvertFrom();
+        return type != WasmInt32Subtype.INT32 ? getShape(type) : null;
+    }
+
+    // Sums of narrow elements are computed in 32-bit lanes by adding adjacent lanes pairwise
+    private WasmExpression vectorizeWideningSum(WasmExpression value, WasmSimdShape shape) {
+        boolean signed = true;
+        if (value instanceof WasmIntBinary) {
+            value = ((WasmIntBinary) value).getFirst();
+            signed = false;
+        }
+        WasmLoadInt32 load = (WasmLoadInt32) value;
+        switch (load.getConvertFrom()) {
+            case UINT8:
+            case UINT16:
+                signed = false;
+                break;
+            default:
+                break;
+        }
+        WasmExpression result = vectorizeLoad(load, shape);
+        if (result == null) {
+            return null;
+        }
+        if (shape == WasmSimdShape.INT8X16) {
+            result = new WasmSimdPairwiseAdd(WasmSimdShape.INT16X8, signed, result);
+            // Sum of two bytes, either signed or unsigned, fits into signed 16-bit lane
+            signed = true;
+        }
+        return new WasmSimdPairwiseAdd(WasmSimdShape.INT32X4, signed, result);
+    }
+
+    private WasmExpression vectorizeValue(WasmExpression value, WasmSimdShape shape) {
+        if (value instanceof WasmLoadInt32 || value instanceof WasmLoadInt64 || value instanceof WasmLoadFloat32
+                || value instanceof WasmLoadFloat64) {
+            return vectorizeLoad(value, shape);
+        }
+        if (value instanceof WasmGetLocal) {
+            WasmLocal local = ((WasmGetLocal) value).getLocal();
+            if (local.getType() != getLaneType(shape) || !isInvariant(value)) {
+                return null;
+            }
+            return splat(shape, value, "local:" + local.getIndex());
+        }
+        if (value instanceof WasmInt32Constant) {
+            return getLaneType(shape) == WasmType.INT32
+                    ? splat(shape, value, "i32:" + ((WasmInt32Constant) value).getValue())
+                    : null;
+        }
+        if (value instanceof WasmInt64Constant) {
+            return getLaneType(shape) == WasmType.INT64
+                    ? splat(shape, value, "i64:" + ((WasmInt64Constant) value).getValue())
+                    : null;
+        }
+        if (value instanceof WasmFloat32Constant) {
+            float constant = ((WasmFloat32Constant) value).getValue();
+            return getLaneType(shape) == WasmType.FLOAT32
+                    ? splat(shape, value, "f32:" + Float.floatToRawIntBits(constant))
+                    : null;
+        }
+        if (value instanceof WasmFloat64Constant) {
+            double constant = ((WasmFloat64Constant) value).getValue();
+            return getLaneType(shape) == WasmType.FLOAT64
+                    ? splat(shape, value, "f64:" + Double.doubleToRawLongBits(constant))
+                    : null;
+        }
+        if (value instanceof WasmIntBinary) {
+            return vectorizeIntBinary((WasmIntBinary) value, shape);
+        }
+        if (value instanceof WasmFloatBinary) {
+            return vectorizeFloatBinary((WasmFloatBinary) value, shape);
+        }
+        return null;
+    }
+
+    private WasmExpression vectorizeIntBinary(WasmIntBinary binary, WasmSimdShape shape) {
+        WasmType laneType = getLaneType(shape);
+        if (laneType != (binary.getType() == WasmIntType.INT32 ? WasmType.INT32 : WasmType.INT64)) {
+            return null;
+        }
+
+        // Narrow lanes are only stored, so sign and zero extensions do not matter
+        if (isNarrow(shape)) {
+            int extensionShift = 32 - laneBits(shape);
+            switch (binary.getOperation()) {
+                case SHR_SIGNED:
+                case SHR_UNSIGNED:
+                    if (isConstant(binary.getSecond(), extensionShift) && binary.getFirst() instanceof WasmIntBinary) {
+                        WasmIntBinary shift = (WasmIntBinary) binary.getFirst();
+                        if (shift.getOperation() == WasmIntBinaryOperation.SHL
+                                && isConstant(shift.getSecond(), extensionShift)) {
+                            return vectorizeValue(shift.getFirst(), shape);
+                        }
+                    }
+                    return null;
+                case AND:
+                    if (isConstant(binary.getSecond(), laneMask(shape))) {
+                        return vectorizeValue(binary.getFirst(), shape);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        WasmSimdBinaryOperation operation;
+        switch (binary.getOperation()) {
+            case ADD:
+                operation = WasmSimdBinaryOperation.ADD;
+                break;
+            case SUB:
+                operation = WasmSimdBinaryOperation.SUB;
+                break;
+            case MUL:
+                if (shape == WasmSimdShape.INT8X16) {
+                    return null;
+                }
+                operation = WasmSimdBinaryOperation.MUL;
+                break;
+            case AND:
+                operation = WasmSimdBinaryOperation.AND;
+                break;
+            case OR:
+                operation = WasmSimdBinaryOperation.OR;
+                break;
+            case XOR:
+                operation = WasmSimdBinaryOperation.XOR;
+                break;
+            default:
+                return null;
+        }
+        WasmExpression first = vectorizeValue(binary.getFirst(), shape);
+        WasmExpression second = first != null ? vectorizeValue(binary.getSecond(), shape) : null;
+        return second != null ? new WasmSimdBinary(shape, operation, first, second) : null;
+    }
+
+    private WasmExpression vectorizeFloatBinary(WasmFloatBinary binary, WasmSimdShape shape) {
+        switch (binary.getType()) {
+            case FLOAT32:
+                if (shape != WasmSimdShape.FLOAT32X4) {
+                    return null;
+                }
+                break;
+            case FLOAT64:
+                if (shape != WasmSimdShape.FLOAT64X2) {
+                    return null;
+                }
+                break;
+        }
+
+        WasmSimdBinaryOperation operation;
+        switch (binary.getOperation()) {
+            case ADD:
+                operation = WasmSimdBinaryOperation.ADD;
+                break;
+            case SUB:
+                operation = WasmSimdBinaryOperation.SUB;
+                break;
+            case MUL:
+                operation = WasmSimdBinaryOperation.MUL;
+                break;
+            case DIV:
+                operation = WasmSimdBinaryOperation.DIV;
+                break;
+            default:
+                return null;
+        }
+        WasmExpression first = vectorizeValue(binary.getFirst(), shape);
+        WasmExpression second = first != null ? vectorizeValue(binary.getSecond(), shape) : null;
+        return second != null ? new WasmSimdBinary(shape, operation, first, second) : null;
+    }
+
+    private WasmExpression vectorizeLoad(WasmExpression load, WasmSimdShape shape) {
+        WasmSimdShape loadShape;
+        int alignment;
+        if (load instanceof WasmLoadInt32) {
+            loadShape = getShape(((WasmLoadInt32) load).getConvertFrom());
+            alignment = ((WasmLoadInt32) load).getAlignment();
+        } else if (load instanceof WasmLoadInt64) {
+            if (((WasmLoadInt64) load).getConvertFrom() != WasmInt64Subtype.INT64) {
+                return null;
+            }
+            loadShape = WasmSimdShape.INT64X2;
+            alignment = ((WasmLoadInt64) load).getAlignment();
+        } else if (load instanceof WasmLoadFloat32) {
+            loadShape = WasmSimdShape.FLOAT32X4;
+            alignment = ((WasmLoadFloat32) load).getAlignment();
+        } else {
+            loadShape = WasmSimdShape.FLOAT64X2;
+            alignment = ((WasmLoadFloat64) load).getAlignment();
+        }
+        if (loadShape != shape) {
+            return null;
+        }
+
+        WasmMemoryAccess access = (WasmMemoryAccess) load;
+        Integer offset = getElementOffset(access.getIndex(), shape);
+        if (offset == null || offset != 0 && stored) {
+            return null;
+        }
+        WasmLoadV128 result = new WasmLoadV128(alignment, clone(access.getIndex()));
+        result.setOffset(access.getOffset());
+        result.setLocation(load.getLocation());
+        return result;
+    }
+
+    private WasmExpression splat(WasmSimdShape shape, WasmExpression value, String key) {
+        WasmLocal local = splats.get(shape + ":" + key);
+        if (local == null) {
+            local = new WasmLocal(WasmType.V128);
+            function.add(local);
+            splats.put(shape + ":" + key, local);
+            prologue.add(new WasmSetLocal(local, new WasmSimdSplat(shape, clone(value))));
+        }
+        return new WasmGetLocal(local);
+    }
+
+    /**
+     * Matches <code>array + base + ((i + c) &lt;&lt; log2(elementSize))</code>, where <code>array</code> is
+     * a loop-invariant local.
+     *
+     * @return <code>c</code> or <code>null</code> if the address does not match.
+     */
+    private Integer getElementOffset(WasmExpression address, WasmSimdShape shape) {
+        int size = 16 / getLaneCount(shape);
+        if (elementSize != 0 && elementSize != size) {
+            return null;
+        }
+        if (!isAddition(address) || !isAddition(((WasmIntBinary) address).getFirst())) {
+            return null;
+        }
+        WasmIntBinary arrayBase = (WasmIntBinary) ((WasmIntBinary) address).getFirst();
+        if (!(arrayBase.getFirst() instanceof WasmGetLocal) || !isInvariant(arrayBase.getFirst())
+                || !(arrayBase.getSecond() instanceof WasmInt32Constant)) {
+            return null;
+        }
+
+        WasmExpression index = ((WasmIntBinary) address).getSecond();
+        if (size > 1) {
+            if (!(index instanceof WasmIntBinary)) {
+                return null;
+            }
+            WasmIntBinary scale = (WasmIntBinary) index;
+            if (scale.getType() != WasmIntType.INT32 || scale.getOperation() != WasmIntBinaryOperation.SHL
+                    || !isConstant(scale.getSecond(), Integer.numberOfTrailingZeros(size))) {
+                return null;
+            }
+            index = scale.getFirst();
+        }
+
+        Integer offset = null;
+        if (isLocal(index, counter)) {
+            offset = 0;
+        } else if (isAddition(index)) {
+            WasmIntBinary sum = (WasmIntBinary) index;
+            if (isLocal(sum.getFirst(), counter) && sum.getSecond() instanceof WasmInt32Constant) {
+                offset = ((WasmInt32Constant) sum.getSecond()).getValue();
+            } else if (isLocal(sum.getSecond(), counter) && sum.getFirst() instanceof WasmInt32Constant) {
+                offset = ((WasmInt32Constant) sum.getFirst()).getValue();
+            }
+        }
+        if (offset == null || offset < 0) {
+            return null;
+        }
+        elementSize = size;
+        return offset;
+    }
+
+    private boolean isAddition(WasmExpression expression) {
+        if (!(expression instanceof WasmIntBinary)) {
+            return false;
+        }
+        WasmIntBinary binary = (WasmIntBinary) expression;
+        return binary.getType() == WasmIntType.INT32 && binary.getOperation() == WasmIntBinaryOperation.ADD;
+    }
+
+    private boolean isLocal(WasmExpression expression, WasmLocal local) {
+        return expression instanceof WasmGetLocal && ((WasmGetLocal) expression).getLocal() == local;
+    }
+
+    private boolean isConstant(WasmExpression expression, int value) {
+        return expression instanceof WasmInt32Constant && ((WasmInt32Constant) expression).getValue() == value;
+    }
+
+    private boolean isInvariant(WasmExpression expression) {
+        return expression instanceof WasmGetLocal && !modifiedLocals.contains(((WasmGetLocal) expression).getLocal());
+    }
+
+    // Only expressions accepted by the matchers above are cloned: locals, constants and integer arithmetic
+    private WasmExpression clone(WasmExpression expression) {
+        if (expression instanceof WasmGetLocal) {
+            return new WasmGetLocal(((WasmGetLocal) expression).getLocal());
+        } else if (expression instanceof WasmInt32Constant) {
+            return new WasmInt32Constant(((WasmInt32Constant) expression).getValue());
+        } else if (expression instanceof WasmInt64Constant) {
+            return new WasmInt64Constant(((WasmInt64Constant) expression).getValue());
+        } else if (expression instanceof WasmFloat32Constant) {
+            return new WasmFloat32Constant(((WasmFloat32Constant) expression).getValue());
+        } else if (expression instanceof WasmFloat64Constant) {
+            return new WasmFloat64Constant(((WasmFloat64Constant) expression).getValue());
+        } else if (expression instanceof WasmIntBinary) {
+            WasmIntBinary binary = (WasmIntBinary) expression;
+            return new WasmIntBinary(binary.getType(), binary.getOperation(), clone(binary.getFirst()),
+                    clone(binary.getSecond()));
+        }
+        throw new IllegalArgumentException("Can't clone " + expression.getClass().getName());
+    }
+
+    private static WasmSimdShape getShape(WasmInt32Subtype type) {
+        switch (type) {
+            case INT8:
+            case UINT8:
+                return WasmSimdShape.INT8X16;
+            case INT16:
+            case UINT16:
+                return WasmSimdShape.INT16X8;
+            case INT32:
+                return WasmSimdShape.INT32X4;
+        }
+        throw new AssertionError(type.toString());
+    }
+
+    private static WasmType getLaneType(WasmSimdShape shape) {
+        switch (shape) {
+            case INT8X16:
+            case INT16X8:
+            case INT32X4:
+                return WasmType.INT32;
+            case INT64X2:
+                return WasmType.INT64;
+            case FLOAT32X4:
+                return WasmType.FLOAT32;
+            case FLOAT64X2:
+                return WasmType.FLOAT64;
+        }
+        throw new AssertionError(shape.toString());
+    }
+
+    private static int getLaneCount(WasmSimdShape shape) {
+        switch (shape) {
+            case INT8X16:
+                return 16;
+            case INT16X8:
+                return 8;
+            case INT32X4:
+            case FLOAT32X4:
+                return 4;
+            case INT64X2:
+            case FLOAT64X2:
+                return 2;
+        }
+        throw new AssertionError(shape.toString());
+    }
+
+    private static boolean isNarrow(WasmSimdShape shape) {
+        return shape == WasmSimdShape.INT8X16 || shape == WasmSimdShape.INT16X8;
+    }
+
+    private static int laneBits(WasmSimdShape shape) {
+        return 128 / getLaneCount(shape);
+    }
+
+    private static int laneMask(WasmSimdShape shape) {
+        return (1 << laneBits(shape)) - 1;
+    }
+
+    private WasmDefaultExpressionVisitor localUsageCollector = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmGetLocal expression) {
+            readCount.merge(expression.getLocal(), 1, Integer::sum);
+        }
+
+        @Override
+        public void visit(WasmSetLocal expression) {
+            super.visit(expression);
+            modifiedLocals.add(expression.getLocal());
+        }
+
+        @Override
+        public void visit(WasmTeeLocal expression) {
+            super.visit(expression);
+            modifiedLocals.add(expression.getLocal());
+        }
+    };
+}
@@ -0,0 +1,306 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmIndirectCall;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
+import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmMemoryAccess;
+import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
+import org.teavm.backend.wasm.model.expression.WasmReplacingExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
+import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+
+/**
+ * <p>Replaces repeated loads from the same address by a local variable. The first load stores its value
+ * into a new local with <code>tee_local</code>, subsequent loads read this local.</p>
+ *
+ * <p>Only straight-line code is considered: loads are reused until the next store, call, memory growth or
+ * assignment of the local the address depends on. Nested blocks and conditionals are processed separately
+ * and invalidate everything known before them.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class RedundantLoadElimination {
+    private Map<LoadKey, Candidate> available = new HashMap<>();
+    private List<Candidate> candidates = new ArrayList<>();
+    private Set<WasmExpression> visitedLoads = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Set<WasmExpression> sharedLoads = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int eliminatedLoads;
+
+    public int getEliminatedLoads() {
+        return eliminatedLoads;
+    }
+
+    public void apply(WasmFunction function) {
+        processRegion(function.getBody());
+
+        Map<WasmExpression, WasmExpression> replacements = new IdentityHashMap<>();
+        for (Candidate candidate : candidates) {
+            if (sharedLoads.contains(candidate.load)) {
+                continue;
+            }
+            candidate.reuses.removeIf(sharedLoads::contains);
+            if (candidate.reuses.isEmpty()) {
+                continue;
+            }
+
+            WasmLocal local = new WasmLocal(candidate.type);
+            function.add(local);
+            WasmTeeLocal tee = new WasmTeeLocal(local, candidate.load);
+            tee.setLocation(candidate.load.getLocation());
+            replacements.put(candidate.load, tee);
+            for (WasmExpression reuse : candidate.reuses) {
+                WasmGetLocal get = new WasmGetLocal(local);
+                get.setLocation(reuse.getLocation());
+                replacements.put(reuse, get);
+            }
+            eliminatedLoads += candidate.reuses.size();
+        }
+
+        if (!replacements.isEmpty()) {
+            new WasmReplacingExpressionVisitor(expr -> replacements.getOrDefault(expr, expr)).replace(function);
+        }
+
+        available.clear();
+        candidates.clear();
+        visitedLoads.clear();
+        sharedLoads.clear();
+    }
+
+    private void processRegion(List<WasmExpression> expressions) {
+        available.clear();
+        for (WasmExpression part : expressions) {
+            part.acceptVisitor(visitor);
+        }
+        available.clear();
+    }
+
+    private void load(WasmExpression load, WasmType type, String kind) {
+        if (!visitedLoads.add(load)) {
+            sharedLoads.add(load);
+            return;
+        }
+
+        WasmMemoryAccess access = (WasmMemoryAccess) load;
+        WasmExpression index = access.getIndex();
+        WasmLocal base = null;
+        int address = 0;
+        if (index instanceof WasmGetLocal) {
+            base = ((WasmGetLocal) index).getLocal();
+        } else if (index instanceof WasmInt32Constant) {
+            address = ((WasmInt32Constant) index).getValue();
+        } else {
+            return;
+        }
+
+        LoadKey key = new LoadKey(kind, base, address, access.getOffset());
+        Candidate candidate = available.get(key);
+        if (candidate == null) {
+            candidate = new Candidate(load, type);
+            candidates.add(candidate);
+            available.put(key, candidate);
+        } else {
+            candidate.reuses.add(load);
+        }
+    }
+
+    private void invalidate(WasmLocal local) {
+        available.keySet().removeIf(key -> key.base == local);
+    }
+
+    private WasmDefaultExpressionVisitor visitor = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBlock expression) {
+            processRegion(expression.getBody());
+        }
+
+        @Override
+        public void visit(WasmConditional expression) {
+            expression.getCondition().acceptVisitor(this);
+            processRegion(expression.getThenBlock().getBody());
+            processRegion(expression.getElseBlock().getBody());
+        }
+
+        @Override
+        public void visit(WasmTry expression) {
+            processRegion(expression.getBody().getBody());
+            processRegion(expression.getCatchBlock().getBody());
+        }
+
+        @Override
+        public void visit(WasmBranch expression) {
+            if (expression.getResult() != null) {
+                expression.getResult().acceptVisitor(this);
+            }
+            expression.getCondition().acceptVisitor(this);
+        }
+
+        @Override
+        public void visit(WasmSetLocal expression) {
+            super.visit(expression);
+            invalidate(expression.getLocal());
+        }
+
+        @Override
+        public void visit(WasmTeeLocal expression) {
+            super.visit(expression);
+            invalidate(expression.getLocal());
+        }
+
+        @Override
+        public void visit(WasmCall expression) {
+            super.visit(expression);
+            available.clear();
+        }
+
+        @Override
+        public void visit(WasmIndirectCall expression) {
+            super.visit(expression);
+            available.clear();
+        }
+
+        @Override
+        public void visit(WasmMemoryGrow expression) {
+            super.visit(expression);
+            available.clear();
+        }
+
+        @Override
+        public void visit(WasmLoadInt32 expression) {
+            super.visit(expression);
+            load(expression, WasmType.INT32, "i32." + expression.getConvertFrom().name());
+        }
+
+        @Override
+        public void visit(WasmLoadInt64 expression) {
+            super.visit(expression);
+            load(expression, WasmType.INT64, "i64." + expression.getConvertFrom().name());
+        }
+
+        @Override
+        public void visit(WasmLoadFloat32 expression) {
+            super.visit(expression);
+            load(expression, WasmType.FLOAT32, "f32");
+        }
+
+        @Override
+        public void visit(WasmLoadFloat64 expression) {
+            super.visit(expression);
+            load(expression, WasmType.FLOAT64, "f64");
+        }
+
+        @Override
+        public void visit(WasmStoreInt32 expression) {
+            super.visit(expression);
+            available.clear();
+        }
+
+        @Override
+        public void visit(WasmStoreInt64 expression) {
+            super.visit(expression);
+            available.clear();
+        }
+
+        @Override
+        public void visit(WasmStoreFloat32 expression) {
+            super.visit(expression);
+            available.clear();
+        }
+
+        @Override
+        public void visit(WasmStoreFloat64 expression) {
+            super.visit(expression);
+            available.clear();
+        }
+
+        @Override
+        public void visit(WasmStoreV128 expression) {
+            super.visit(expression);
+            available.clear();
+        }
+    };
+
+    static class Candidate {
+        final WasmExpression load;
+        final WasmType type;
+        final List<WasmExpression> reuses = new ArrayList<>();
+
+        Candidate(WasmExpression load, WasmType type) {
+            this.load = load;
+            this.type = type;
+        }
+    }
+
+    static class LoadKey {
+        final String kind;
+        final WasmLocal base;
+        final int address;
+        final int offset;
+
+        LoadKey(String kind, WasmLocal base, int address, int offset) {
+            this.kind = kind;
+            this.base = base;
+            this.address = address;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LoadKey)) {
+                return false;
+            }
+            LoadKey other = (LoadKey) obj;
+            return kind.equals(other.kind) && base == other.base && address == other.address
+                    && offset == other.offset;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, System.identityHashCode(base), address, offset);
+        }
+    }
+}
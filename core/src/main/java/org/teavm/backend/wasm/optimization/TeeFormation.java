@@ -0,0 +1,252 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmConversion;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmDrop;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmFloatBinary;
+import org.teavm.backend.wasm.model.expression.WasmFloatUnary;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntUnary;
+import org.teavm.backend.wasm.model.expression.WasmMemoryAccess;
+import org.teavm.backend.wasm.model.expression.WasmReturn;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+
+/**
+ * <p>Merges <code>set_local</code> with the <code>get_local</code> of the same variable that is evaluated
+ * right after it, i.e. is the first operand evaluated by the next expression. The pair becomes
+ * a <code>tee_local</code>, or just the assigned value when the variable is not read anywhere else.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class TeeFormation {
+    private Map<WasmLocal, Integer> readCount = new HashMap<>();
+    private int formedTees;
+    private int removedAssignments;
+
+    public int getFormedTees() {
+        return formedTees;
+    }
+
+    public int getRemovedAssignments() {
+        return removedAssignments;
+    }
+
+    public void apply(WasmFunction function) {
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(readCounter);
+        }
+        process(function.getBody());
+        readCount.clear();
+    }
+
+    private void process(List<WasmExpression> expressions) {
+        for (WasmExpression part : expressions) {
+            part.acceptVisitor(sequenceFinder);
+        }
+
+        for (int i = expressions.size() - 2; i >= 0; --i) {
+            if (!(expressions.get(i) instanceof WasmSetLocal)) {
+                continue;
+            }
+            WasmSetLocal assignment = (WasmSetLocal) expressions.get(i);
+            WasmLocal local = assignment.getLocal();
+
+            WasmExpression replacement;
+            if (readCount.getOrDefault(local, 0) == 1) {
+                replacement = assignment.getValue();
+            } else {
+                replacement = new WasmTeeLocal(local, assignment.getValue());
+                replacement.setLocation(assignment.getLocation());
+            }
+
+            WasmExpression next = replaceFirstOperand(expressions.get(i + 1), local, replacement);
+            if (next == null) {
+                continue;
+            }
+            expressions.set(i + 1, next);
+            expressions.remove(i);
+            if (replacement instanceof WasmTeeLocal) {
+                readCount.merge(local, -1, Integer::sum);
+                ++formedTees;
+            } else {
+                readCount.remove(local);
+                ++removedAssignments;
+            }
+        }
+    }
+
+    /**
+     * Replaces <code>get_local</code> of the given variable with the replacement if this
+     * <code>get_local</code> is the first thing evaluated by the expression.
+     *
+     * @return the expression that should take place of the original one or <code>null</code> if nothing
+     * was replaced.
+     */
+    private WasmExpression replaceFirstOperand(WasmExpression expression, WasmLocal local,
+            WasmExpression replacement) {
+        if (expression instanceof WasmGetLocal) {
+            return ((WasmGetLocal) expression).getLocal() == local ? replacement : null;
+        }
+
+        WasmExpression operand;
+        if (expression instanceof WasmIntBinary) {
+            WasmIntBinary binary = (WasmIntBinary) expression;
+            operand = replaceFirstOperand(binary.getFirst(), local, replacement);
+            if (operand != null) {
+                binary.setFirst(operand);
+            }
+        } else if (expression instanceof WasmFloatBinary) {
+            WasmFloatBinary binary = (WasmFloatBinary) expression;
+            operand = replaceFirstOperand(binary.getFirst(), local, replacement);
+            if (operand != null) {
+                binary.setFirst(operand);
+            }
+        } else if (expression instanceof WasmIntUnary) {
+            WasmIntUnary unary = (WasmIntUnary) expression;
+            operand = replaceFirstOperand(unary.getOperand(), local, replacement);
+            if (operand != null) {
+                unary.setOperand(operand);
+            }
+        } else if (expression instanceof WasmFloatUnary) {
+            WasmFloatUnary unary = (WasmFloatUnary) expression;
+            operand = replaceFirstOperand(unary.getOperand(), local, replacement);
+            if (operand != null) {
+                unary.setOperand(operand);
+            }
+        } else if (expression instanceof WasmConversion) {
+            WasmConversion conversion = (WasmConversion) expression;
+            operand = replaceFirstOperand(conversion.getOperand(), local, replacement);
+            if (operand != null) {
+                conversion.setOperand(operand);
+            }
+        } else if (expression instanceof WasmDrop) {
+            WasmDrop drop = (WasmDrop) expression;
+            operand = replaceFirstOperand(drop.getOperand(), local, replacement);
+            if (operand != null) {
+                drop.setOperand(operand);
+            }
+        } else if (expression instanceof WasmMemoryAccess) {
+            WasmMemoryAccess access = (WasmMemoryAccess) expression;
+            operand = replaceFirstOperand(access.getIndex(), local, replacement);
+            if (operand != null) {
+                access.setIndex(operand);
+            }
+        } else if (expression instanceof WasmSetLocal) {
+            WasmSetLocal assignment = (WasmSetLocal) expression;
+            operand = replaceFirstOperand(assignment.getValue(), local, replacement);
+            if (operand != null) {
+                assignment.setValue(operand);
+            }
+        } else if (expression instanceof WasmTeeLocal) {
+            WasmTeeLocal assignment = (WasmTeeLocal) expression;
+            operand = replaceFirstOperand(assignment.getValue(), local, replacement);
+            if (operand != null) {
+                assignment.setValue(operand);
+            }
+        } else if (expression instanceof WasmCall) {
+            List<WasmExpression> arguments = ((WasmCall) expression).getArguments();
+            operand = !arguments.isEmpty() ? replaceFirstOperand(arguments.get(0), local, replacement) : null;
+            if (operand != null) {
+                arguments.set(0, operand);
+            }
+        } else if (expression instanceof WasmReturn) {
+            WasmReturn ret = (WasmReturn) expression;
+            operand = ret.getValue() != null ? replaceFirstOperand(ret.getValue(), local, replacement) : null;
+            if (operand != null) {
+                ret.setValue(operand);
+            }
+        } else if (expression instanceof WasmBreak) {
+            WasmBreak br = (WasmBreak) expression;
+            operand = br.getResult() != null ? replaceFirstOperand(br.getResult(), local, replacement) : null;
+            if (operand != null) {
+                br.setResult(operand);
+            }
+        } else if (expression instanceof WasmBranch) {
+            WasmBranch branch = (WasmBranch) expression;
+            if (branch.getResult() != null) {
+                operand = replaceFirstOperand(branch.getResult(), local, replacement);
+                if (operand != null) {
+                    branch.setResult(operand);
+                }
+            } else {
+                operand = replaceFirstOperand(branch.getCondition(), local, replacement);
+                if (operand != null) {
+                    branch.setCondition(operand);
+                }
+            }
+        } else if (expression instanceof WasmSwitch) {
+            WasmSwitch switchExpr = (WasmSwitch) expression;
+            operand = replaceFirstOperand(switchExpr.getSelector(), local, replacement);
+            if (operand != null) {
+                switchExpr.setSelector(operand);
+            }
+        } else if (expression instanceof WasmConditional) {
+            WasmConditional conditional = (WasmConditional) expression;
+            operand = replaceFirstOperand(conditional.getCondition(), local, replacement);
+            if (operand != null) {
+                conditional.setCondition(operand);
+            }
+        } else {
+            operand = null;
+        }
+
+        return operand != null ? expression : null;
+    }
+
+    private WasmDefaultExpressionVisitor readCounter = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmGetLocal expression) {
+            readCount.merge(expression.getLocal(), 1, Integer::sum);
+        }
+    };
+
+    private WasmDefaultExpressionVisitor sequenceFinder = new WasmDefaultExpressionVisitor() {
+        @Override
+        public void visit(WasmBlock expression) {
+            process(expression.getBody());
+        }
+
+        @Override
+        public void visit(WasmConditional expression) {
+            expression.getCondition().acceptVisitor(this);
+            process(expression.getThenBlock().getBody());
+            process(expression.getElseBlock().getBody());
+        }
+
+        @Override
+        public void visit(WasmTry expression) {
+            process(expression.getBody().getBody());
+            process(expression.getCatchBlock().getBody());
+        }
+    };
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import org.teavm.model.lowlevel.ShadowStackTransformer;
+
+/**
+ * <p>Describes the effect of {@link WasmOptimizer} on a module: the size of the binary before and after
+ * optimizations and how many times each optimization applied. Also tells how many GC root stores
+ * {@link ShadowStackTransformer} avoided.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class WasmOptimizationReport {
+    private int originalSize;
+    private int optimizedSize;
+    private int vectorizedLoops;
+    private int foldedExpressions;
+    private int flattenedBlocks;
+    private int eliminatedLoads;
+    private int formedTees;
+    private int removedAssignments;
+    private int removedLocals;
+    private int skippedGCCallSites;
+    private int gcRootStores;
+    private int removedGCRootStores;
+
+    public WasmOptimizationReport(int originalSize, int optimizedSize, WasmOptimizer optimizer,
+            ShadowStackTransformer shadowStackTransformer) {
+        this.originalSize = originalSize;
+        this.optimizedSize = optimizedSize;
+        vectorizedLoops = optimizer.getVectorizedLoops();
+        foldedExpressions = optimizer.getFoldedExpressions();
+        flattenedBlocks = optimizer.getFlattenedBlocks();
+        eliminatedLoads = optimizer.getEliminatedLoads();
+        formedTees = optimizer.getFormedTees();
+        removedAssignments = optimizer.getRemovedAssignments();
+        removedLocals = optimizer.getRemovedLocals();
+        skippedGCCallSites = shadowStackTransformer.getSkippedGCCallSites();
+        gcRootStores = shadowStackTransformer.getGCRootStores();
+        removedGCRootStores = shadowStackTransformer.getRemovedGCRootStores();
+    }
+
+    public int getOriginalSize() {
+        return originalSize;
+    }
+
+    public int getOptimizedSize() {
+        return optimizedSize;
+    }
+
+    public int getVectorizedLoops() {
+        return vectorizedLoops;
+    }
+
+    public int getFoldedExpressions() {
+        return foldedExpressions;
+    }
+
+    public int getFlattenedBlocks() {
+        return flattenedBlocks;
+    }
+
+    public int getEliminatedLoads() {
+        return eliminatedLoads;
+    }
+
+    public int getFormedTees() {
+        return formedTees;
+    }
+
+    public int getRemovedAssignments() {
+        return removedAssignments;
+    }
+
+    public int getRemovedLocals() {
+        return removedLocals;
+    }
+
+    public int getSkippedGCCallSites() {
+        return skippedGCCallSites;
+    }
+
+    public int getGCRootStores() {
+        return gcRootStores;
+    }
+
+    public int getRemovedGCRootStores() {
+        return removedGCRootStores;
+    }
+}
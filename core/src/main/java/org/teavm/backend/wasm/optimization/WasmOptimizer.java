@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmModule;
+
+/**
+ * <p>Runs optimizations over WebAssembly code of the whole module. Code that comes from
+ * the generator is folded and flattened first, then memory loads and local assignments are
+ * simplified, and finally locals are coalesced and renumbered.</p>
+ *
+ * <p>When {@link #setVectorizationEnabled(boolean) vectorization} is enabled, loops over arrays are
+ * vectorized before anything else, since {@link LoopVectorization} relies on the shape of generated code.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class WasmOptimizer {
+    private boolean vectorizationEnabled;
+    private LoopVectorization loopVectorization = new LoopVectorization();
+    private ConstantFolding constantFolding = new ConstantFolding();
+    private BlockFlattening blockFlattening = new BlockFlattening();
+    private RedundantLoadElimination redundantLoadElimination = new RedundantLoadElimination();
+    private TeeFormation teeFormation = new TeeFormation();
+    private LocalCoalescing localCoalescing = new LocalCoalescing();
+
+    public boolean isVectorizationEnabled() {
+        return vectorizationEnabled;
+    }
+
+    public void setVectorizationEnabled(boolean vectorizationEnabled) {
+        this.vectorizationEnabled = vectorizationEnabled;
+    }
+
+    public void apply(WasmModule module) {
+        for (WasmFunction function : module.getFunctions().values()) {
+            if (function.getImportName() == null) {
+                apply(function);
+            }
+        }
+    }
+
+    public void apply(WasmFunction function) {
+        if (vectorizationEnabled) {
+            loopVectorization.apply(function);
+        }
+        constantFolding.apply(function);
+        blockFlattening.apply(function);
+        redundantLoadElimination.apply(function);
+        teeFormation.apply(function);
+        localCoalescing.apply(function);
+    }
+
+    public int getVectorizedLoops() {
+        return loopVectorization.getVectorizedLoops();
+    }
+
+    public int getFoldedExpressions() {
+        return constantFolding.getFoldedExpressions();
+    }
+
+    public int getFlattenedBlocks() {
+        return blockFlattening.getFlattenedBlocks();
+    }
+
+    public int getEliminatedLoads() {
+        return redundantLoadElimination.getEliminatedLoads();
+    }
+
+    public int getFormedTees() {
+        return teeFormation.getFormedTees();
+    }
+
+    public int getRemovedAssignments() {
+        return teeFormation.getRemovedAssignments();
+    }
+
+    public int getRemovedLocals() {
+        return localCoalescing.getRemovedLocals();
+    }
+}
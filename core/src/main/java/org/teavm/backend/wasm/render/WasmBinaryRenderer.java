@@ -200,7 +200,7 @@ public class WasmBinaryRenderer {
             section.writeByte(1);
         }
         section.writeLEB(module.getMemorySize());
-        section.writeLEB(module.getMemorySize());
+        section.writeLEB(module.getMaxMemorySize());
         if (version == WasmBinaryVersion.V_0xB) {
             section.writeByte(1);
         }
@@ -41,13 +41,24 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmReturn;
 import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinary;
+import org.teavm.backend.wasm.model.expression.WasmSimdExtractLane;
+import org.teavm.backend.wasm.model.expression.WasmSimdPairwiseAdd;
+import org.teavm.backend.wasm.model.expression.WasmSimdShape;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
 import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
 
 class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
@@ -186,6 +197,20 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
         }
     }
 
+    // Opcodes that the exception handling proposal assigns to try, catch and throw denote branch
+    // instructions in the supported pre-MVP versions, so there is no way to encode them
+    @Override
+    public void visit(WasmTry expression) {
+        throw new IllegalStateException("Exception handling instructions are not supported by binary format "
+                + version);
+    }
+
+    @Override
+    public void visit(WasmThrow expression) {
+        throw new IllegalStateException("Exception handling instructions are not supported by binary format "
+                + version);
+    }
+
     @Override
     public void visit(WasmInt32Constant expression) {
         writer.writeByte(0x10);
@@ -223,6 +248,13 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
         writer.writeLEB(expression.getLocal().getIndex());
     }
 
+    @Override
+    public void visit(WasmTeeLocal expression) {
+        expression.getValue().acceptVisitor(this);
+        writer.writeByte(version == WasmBinaryVersion.V_0xB ? 0x15 : 0x19);
+        writer.writeLEB(expression.getLocal().getIndex());
+    }
+
     @Override
     public void visit(WasmIntBinary expression) {
         expression.getFirst().acceptVisitor(this);
@@ -414,6 +446,9 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
                     case MAX:
                         writer.writeByte(0x7A);
                         break;
+                    case COPYSIGN:
+                        writer.writeByte(0x7D);
+                        break;
                     case EQ:
                         writer.writeByte(0x83);
                         break;
@@ -454,6 +489,9 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
                     case MAX:
                         writer.writeByte(0x8E);
                         break;
+                    case COPYSIGN:
+                        writer.writeByte(0x91);
+                        break;
                     case EQ:
                         writer.writeByte(0x97);
                         break;
@@ -522,9 +560,6 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
                     case NEG:
                         writer.writeByte(0x7C);
                         break;
-                    case COPYSIGN:
-                        writer.writeByte(0x7D);
-                        break;
                     case CEIL:
                         writer.writeByte(0x7E);
                         break;
@@ -550,9 +585,6 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
                     case NEG:
                         writer.writeByte(0x90);
                         break;
-                    case COPYSIGN:
-                        writer.writeByte(0x91);
-                        break;
                     case CEIL:
                         writer.writeByte(0x92);
                         break;
@@ -577,6 +609,24 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
     public void visit(WasmConversion expression) {
         expression.getOperand().acceptVisitor(this);
 
+        if (expression.isReinterpret()) {
+            switch (expression.getSourceType()) {
+                case INT32:
+                    writer.writeByte(0xAD);
+                    break;
+                case INT64:
+                    writer.writeByte(0xB3);
+                    break;
+                case FLOAT32:
+                    writer.writeByte(0xB4);
+                    break;
+                case FLOAT64:
+                    writer.writeByte(0xB5);
+                    break;
+            }
+            return;
+        }
+
         switch (expression.getSourceType()) {
             case INT32:
                 switch (expression.getTargetType()) {
@@ -765,6 +815,14 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
         writer.writeLEB(expression.getOffset());
     }
 
+    @Override
+    public void visit(WasmLoadV128 expression) {
+        expression.getIndex().acceptVisitor(this);
+        writeSimdOpcode(0x00);
+        writer.writeByte(alignment(expression.getAlignment()));
+        writer.writeLEB(expression.getOffset());
+    }
+
     @Override
     public void visit(WasmStoreInt32 expression) {
         expression.getIndex().acceptVisitor(this);
@@ -829,6 +887,151 @@ class WasmBinaryRenderingVisitor implements WasmExpressionVisitor {
         writer.writeLEB(expression.getOffset());
     }
 
+    @Override
+    public void visit(WasmStoreV128 expression) {
+        expression.getIndex().acceptVisitor(this);
+        expression.getValue().acceptVisitor(this);
+        writeSimdOpcode(0x0B);
+        writer.writeByte(alignment(expression.getAlignment()));
+        writer.writeLEB(expression.getOffset());
+    }
+
+    @Override
+    public void visit(WasmMemoryGrow expression) {
+        expression.getAmount().acceptVisitor(this);
+        writer.writeByte(0x39);
+    }
+
+    @Override
+    public void visit(WasmSimdSplat expression) {
+        expression.getValue().acceptVisitor(this);
+        switch (expression.getShape()) {
+            case INT8X16:
+                writeSimdOpcode(0x0F);
+                break;
+            case INT16X8:
+                writeSimdOpcode(0x10);
+                break;
+            case INT32X4:
+                writeSimdOpcode(0x11);
+                break;
+            case INT64X2:
+                writeSimdOpcode(0x12);
+                break;
+            case FLOAT32X4:
+                writeSimdOpcode(0x13);
+                break;
+            case FLOAT64X2:
+                writeSimdOpcode(0x14);
+                break;
+        }
+    }
+
+    @Override
+    public void visit(WasmSimdBinary expression) {
+        expression.getFirst().acceptVisitor(this);
+        expression.getSecond().acceptVisitor(this);
+        switch (expression.getOperation()) {
+            case AND:
+                writeSimdOpcode(0x4E);
+                return;
+            case OR:
+                writeSimdOpcode(0x50);
+                return;
+            case XOR:
+                writeSimdOpcode(0x51);
+                return;
+            default:
+                break;
+        }
+
+        int base;
+        switch (expression.getShape()) {
+            case INT8X16:
+                base = 0x6E;
+                break;
+            case INT16X8:
+                base = 0x8E;
+                break;
+            case INT32X4:
+                base = 0xAE;
+                break;
+            case INT64X2:
+                base = 0xCE;
+                break;
+            case FLOAT32X4:
+                base = 0xE4;
+                break;
+            case FLOAT64X2:
+                base = 0xF0;
+                break;
+            default:
+                throw new AssertionError(expression.getShape().toString());
+        }
+        boolean floating = expression.getShape() == WasmSimdShape.FLOAT32X4
+                || expression.getShape() == WasmSimdShape.FLOAT64X2;
+        switch (expression.getOperation()) {
+            case ADD:
+                writeSimdOpcode(base);
+                break;
+            case SUB:
+                writeSimdOpcode(floating ? base + 1 : base + 3);
+                break;
+            case MUL:
+                if (expression.getShape() == WasmSimdShape.INT8X16) {
+                    throw new IllegalArgumentException("i8x16.mul is not supported");
+                }
+                writeSimdOpcode(floating ? base + 2 : base + 7);
+                break;
+            case DIV:
+                if (!floating) {
+                    throw new IllegalArgumentException("Integer SIMD division is not supported");
+                }
+                writeSimdOpcode(base + 3);
+                break;
+            default:
+                throw new AssertionError(expression.getOperation().toString());
+        }
+    }
+
+    @Override
+    public void visit(WasmSimdExtractLane expression) {
+        expression.getVector().acceptVisitor(this);
+        switch (expression.getShape()) {
+            case INT8X16:
+                writeSimdOpcode(0x15);
+                break;
+            case INT16X8:
+                writeSimdOpcode(0x18);
+                break;
+            case INT32X4:
+                writeSimdOpcode(0x1B);
+                break;
+            case INT64X2:
+                writeSimdOpcode(0x1D);
+                break;
+            case FLOAT32X4:
+                writeSimdOpcode(0x1F);
+                break;
+            case FLOAT64X2:
+                writeSimdOpcode(0x21);
+                break;
+        }
+        writer.writeByte(expression.getLane());
+    }
+
+    @Override
+    public void visit(WasmSimdPairwiseAdd expression) {
+        expression.getOperand().acceptVisitor(this);
+        int opcode = expression.getShape() == WasmSimdShape.INT16X8 ? 0x7C : 0x7E;
+        writeSimdOpcode(expression.isSigned() ? opcode : opcode + 1);
+    }
+
+    private void writeSimdOpcode(int opcode) {
+        writer.writeByte(0xFD);
+        writer.writeLEB(opcode);
+    }
+
     private int alignment(int value) {
         return 31 - Integer.numberOfLeadingZeros(Math.max(1, value));
     }
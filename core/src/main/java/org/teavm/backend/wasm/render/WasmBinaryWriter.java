@@ -45,6 +45,9 @@ public class WasmBinaryWriter {
             case FLOAT64:
                 writeByte(4);
                 break;
+            case V128:
+                writeByte(0x7B);
+                break;
         }
     }
 
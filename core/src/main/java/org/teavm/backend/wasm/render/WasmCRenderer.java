@@ -16,12 +16,22 @@
 package org.teavm.backend.wasm.render;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.teavm.backend.wasm.model.WasmFunction;
 import org.teavm.backend.wasm.model.WasmLocal;
 import org.teavm.backend.wasm.model.WasmMemorySegment;
 import org.teavm.backend.wasm.model.WasmModule;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
 import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.model.TextLocation;
 
 public class WasmCRenderer {
@@ -66,14 +76,26 @@ public class WasmCRenderer {
 
     public void render(WasmModule module) {
         line("#include <inttypes.h>");
+        line("#include <math.h>");
         line("#include <string.h>");
         line("#include <stdlib.h>");
         line("#include <assert.h>");
+        boolean exceptionHandlingUsed = WasmExceptionHandlingDetector.isUsed(module);
+        if (exceptionHandlingUsed) {
+            line("#include <setjmp.h>");
+        }
         line("");
 
+        if (usesSimd(module)) {
+            renderSimdSupport();
+        }
+        if (exceptionHandlingUsed) {
+            renderExceptionHandlingSupport();
+        }
         renderFunctionDeclarations(module);
         line("static int8_t *wasm_heap;");
         line("static int32_t wasm_heap_size;");
+        renderHeapGrow(module);
         renderFunctionTable(module);
 
         for (WasmFunction function : module.getFunctions().values()) {
@@ -102,7 +124,7 @@ public class WasmCRenderer {
 
     private void renderHeap(WasmModule module) {
         line("wasm_heap_size = " + 65536 * module.getMemorySize() + ";");
-        line("wasm_heap = malloc(" + 65536 * module.getMemorySize() + ");");
+        line("wasm_heap = malloc(" + 65536L * module.getMaxMemorySize() + ");");
         for (WasmMemorySegment segment : module.getSegments()) {
             line("memcpy(wasm_heap + " + segment.getOffset() + ",");
             indent();
@@ -126,6 +148,127 @@ public class WasmCRenderer {
         }
     }
 
+    // Memory is reserved for the maximum size at startup, since generated code may keep pointers into
+    // the heap while calling a function that grows it
+    private void renderHeapGrow(WasmModule module) {
+        line("static int32_t wasm_heap_grow(int32_t pages) {");
+        indent();
+        line("int32_t result = wasm_heap_size / 65536;");
+        line("if (pages < 0 || result + pages > " + module.getMaxMemorySize() + ") {");
+        indent();
+        line("return -1;");
+        outdent();
+        line("}");
+        line("wasm_heap_size += pages * 65536;");
+        line("return result;");
+        outdent();
+        line("}");
+    }
+
+    private void renderExceptionHandlingSupport() {
+        line("static jmp_buf *wasm_exception_handler;");
+        line("static void wasm_throw() {");
+        indent();
+        line("if (wasm_exception_handler == NULL) {");
+        indent();
+        line("abort();");
+        outdent();
+        line("}");
+        line("longjmp(*wasm_exception_handler, 1);");
+        outdent();
+        line("}");
+        line("");
+    }
+
+    private boolean usesSimd(WasmModule module) {
+        boolean[] result = new boolean[1];
+        WasmDefaultExpressionVisitor detector = new WasmDefaultExpressionVisitor() {
+            @Override
+            public void visit(WasmLoadV128 expression) {
+                result[0] = true;
+            }
+
+            @Override
+            public void visit(WasmStoreV128 expression) {
+                result[0] = true;
+            }
+
+            @Override
+            public void visit(WasmSimdSplat expression) {
+                result[0] = true;
+            }
+        };
+        for (WasmFunction function : module.getFunctions().values()) {
+            if (function.getLocalVariables().stream().anyMatch(local -> local.getType() == WasmType.V128)
+                    || function.getResult() == WasmType.V128) {
+                return true;
+            }
+            for (WasmExpression part : function.getBody()) {
+                part.acceptVisitor(detector);
+            }
+        }
+        return result[0];
+    }
+
+    // v128 values are represented by GCC/Clang vector extensions. Lane operations cast to the vector type
+    // of the corresponding shape, which reinterprets the bits.
+    private void renderSimdSupport() {
+        String[][] shapes = { { "i8x16", "int8_t" }, { "i16x8", "int16_t" }, { "i32x4", "int32_t" },
+                { "i64x2", "int64_t" }, { "f32x4", "float" }, { "f64x2", "double" } };
+        for (String[] shape : shapes) {
+            line("typedef " + shape[1] + " wasm_" + shape[0] + " __attribute__((vector_size(16)));");
+        }
+        line("typedef wasm_i32x4 wasm_v128;");
+        line("");
+
+        line("static inline wasm_v128 wasm_v128_load(void *address) {");
+        indent();
+        line("wasm_v128 result;");
+        line("memcpy(&result, address, 16);");
+        line("return result;");
+        outdent();
+        line("}");
+        line("static inline void wasm_v128_store(void *address, wasm_v128 value) {");
+        indent();
+        line("memcpy(address, &value, 16);");
+        outdent();
+        line("}");
+
+        for (String[] shape : shapes) {
+            String laneType = shape[1];
+            String argumentType = laneType.startsWith("int8") || laneType.startsWith("int16") ? "int32_t" : laneType;
+            line("static inline wasm_v128 wasm_" + shape[0] + "_splat(" + argumentType + " value) {");
+            indent();
+            line("wasm_" + shape[0] + " result = { 0 };");
+            line("return (wasm_v128) (result + (" + laneType + ") value);");
+            outdent();
+            line("}");
+        }
+
+        String[][] pairwise = { { "i16x8", "i8x16", "int16_t", "int8_t", "uint8_t", "8" },
+                { "i32x4", "i16x8", "int32_t", "int16_t", "uint16_t", "4" } };
+        for (String[] kind : pairwise) {
+            for (String suffix : new String[] { "s", "u" }) {
+                String laneType = suffix.equals("s") ? kind[3] : kind[4];
+                line("static inline wasm_v128 wasm_" + kind[0] + "_extadd_pairwise_" + kind[1] + "_" + suffix
+                        + "(wasm_v128 value) {");
+                indent();
+                line("wasm_" + kind[1] + " source = (wasm_" + kind[1] + ") value;");
+                line("wasm_" + kind[0] + " result;");
+                line("for (int i = 0; i < " + kind[5] + "; ++i) {");
+                indent();
+                line("result[i] = (" + kind[2] + ") ((" + laneType + ") source[2 * i] + (" + laneType
+                        + ") source[2 * i + 1]);");
+                outdent();
+                line("}");
+                line("return (wasm_v128) result;");
+                outdent();
+                line("}");
+            }
+        }
+        line("");
+    }
+
     private void renderFunctionTable(WasmModule module) {
         line("static void *wasm_table[] = {");
         if (!module.getFunctionTable().isEmpty()) {
@@ -151,6 +294,7 @@ public class WasmCRenderer {
         WasmCRenderingVisitor visitor = new WasmCRenderingVisitor(function.getResult(),
                 function.getLocalVariables().size(), function.getModule());
         visitor.setMemoryAccessChecked(memoryAccessChecked);
+        Set<WasmLocal> volatileLocals = getLocalsModifiedInTry(function);
 
         StringBuilder declaration = new StringBuilder();
         renderFunctionModifiers(declaration, function);
@@ -160,8 +304,11 @@ public class WasmCRenderer {
             if (i > 0) {
                 declaration.append(", ");
             }
-            declaration.append(WasmCRenderingVisitor.mapType(function.getParameters().get(i)));
             WasmLocal var = function.getLocalVariables().get(i);
+            if (volatileLocals.contains(var)) {
+                declaration.append("volatile ");
+            }
+            declaration.append(WasmCRenderingVisitor.mapType(function.getParameters().get(i)));
             declaration.append(' ').append(visitor.getVariableName(var));
         }
         declaration.append(") {");
@@ -171,7 +318,9 @@ public class WasmCRenderer {
         List<WasmLocal> variables = function.getLocalVariables().subList(function.getParameters().size(),
                 function.getLocalVariables().size());
         for (WasmLocal variable : variables) {
-            line(WasmCRenderingVisitor.mapType(variable.getType()) + " " + visitor.getVariableName(variable) + ";");
+            String modifier = volatileLocals.contains(variable) ? "volatile " : "";
+            line(modifier + WasmCRenderingVisitor.mapType(variable.getType()) + " "
+                    + visitor.getVariableName(variable) + ";");
         }
 
         List<WasmExpression> body = function.getBody();
@@ -200,6 +349,47 @@ public class WasmCRenderer {
         line("");
     }
 
+    // Locals that are modified between setjmp and longjmp have indeterminate values after longjmp
+    // unless they are volatile
+    private Set<WasmLocal> getLocalsModifiedInTry(WasmFunction function) {
+        Set<WasmLocal> result = new HashSet<>();
+        WasmDefaultExpressionVisitor collector = new WasmDefaultExpressionVisitor() {
+            private int tryDepth;
+
+            @Override
+            public void visit(WasmTry expression) {
+                ++tryDepth;
+                for (WasmExpression part : expression.getBody().getBody()) {
+                    part.acceptVisitor(this);
+                }
+                --tryDepth;
+                for (WasmExpression part : expression.getCatchBlock().getBody()) {
+                    part.acceptVisitor(this);
+                }
+            }
+
+            @Override
+            public void visit(WasmSetLocal expression) {
+                super.visit(expression);
+                if (tryDepth > 0) {
+                    result.add(expression.getLocal());
+                }
+            }
+
+            @Override
+            public void visit(WasmTeeLocal expression) {
+                super.visit(expression);
+                if (tryDepth > 0) {
+                    result.add(expression.getLocal());
+                }
+            }
+        };
+        for (WasmExpression part : function.getBody()) {
+            part.acceptVisitor(collector);
+        }
+        return result;
+    }
+
     private String functionDeclaration(WasmFunction function) {
         StringBuilder sb = new StringBuilder();
         renderFunctionModifiers(sb, function);
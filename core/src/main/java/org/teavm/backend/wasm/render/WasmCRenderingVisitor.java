@@ -51,13 +51,24 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmReturn;
 import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinary;
+import org.teavm.backend.wasm.model.expression.WasmSimdExtractLane;
+import org.teavm.backend.wasm.model.expression.WasmSimdPairwiseAdd;
+import org.teavm.backend.wasm.model.expression.WasmSimdShape;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
 import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
 import org.teavm.model.TextLocation;
 
@@ -67,6 +78,8 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
     private WasmType requiredType;
     private int temporaryIndex;
     private int blockIndex;
+    private int tryIndex;
+    private List<String> savedExceptionHandlers = new ArrayList<>();
     private WasmType functionType;
     private WasmModule module;
     private String[] localVariableNames;
@@ -100,6 +113,7 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         BlockInfo info = new BlockInfo();
         info.type = requiredType;
         info.index = blockInfoMap.size();
+        info.tryDepth = savedExceptionHandlers.size();
         blockInfoMap.put(expression, info);
 
         List<WasmExpression> body = expression.getBody();
@@ -183,11 +197,24 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
             lines.add(new CSingleLine(targetInfo.temporaryVariable + " = " + value.getText() + ";",
                     result.getLocation()));
         }
+        String restore = restoreExceptionHandler(targetInfo.tryDepth);
+        if (restore != null) {
+            lines.add(new CSingleLine(restore, location));
+        }
         lines.add(new CSingleLine("goto " + getLabel(targetInfo) + ";", location));
 
         return lines;
     }
 
+    // A branch that leaves body of a try must undo what the try did to the chain of handlers,
+    // depth is the number of enclosing trys at the target
+    private String restoreExceptionHandler(int depth) {
+        if (depth >= savedExceptionHandlers.size()) {
+            return null;
+        }
+        return "wasm_exception_handler = " + savedExceptionHandlers.get(depth) + ";";
+    }
+
     private String getLabel(BlockInfo blockInfo) {
         if (blockInfo.label == null) {
             blockInfo.label = "block_" + blockIndex++;
@@ -208,17 +235,23 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         result.getLines().add(switchBlock);
         for (int i = 0; i < expression.getTargets().size(); ++i) {
             BlockInfo targetInfo = blockInfoMap.get(expression.getTargets().get(i));
-            switchBlock.getLines().add(new CSingleLine("case " + i + ": goto " + getLabel(targetInfo) + ";"));
+            switchBlock.getLines().add(new CSingleLine("case " + i + ": " + generateSwitchJump(targetInfo)));
         }
 
         BlockInfo defaultTargetInfo = blockInfoMap.get(expression.getDefaultTarget());
-        switchBlock.getLines().add(new CSingleLine("default: goto " + getLabel(defaultTargetInfo) + ";"));
+        switchBlock.getLines().add(new CSingleLine("default: " + generateSwitchJump(defaultTargetInfo)));
 
         result.getLines().add(new CSingleLine("}"));
 
         value = result;
     }
 
+    private String generateSwitchJump(BlockInfo targetInfo) {
+        String jump = "goto " + getLabel(targetInfo) + ";";
+        String restore = restoreExceptionHandler(targetInfo.tryDepth);
+        return restore != null ? restore + " " + jump : jump;
+    }
+
     @Override
     public void visit(WasmConditional expression) {
         WasmType type = requiredType;
@@ -277,12 +310,24 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
     @Override
     public void visit(WasmReturn expression) {
         CExpression result = new CExpression();
+        String restore = restoreExceptionHandler(0);
         if (expression.getValue() != null) {
             requiredType = functionType;
             expression.getValue().acceptVisitor(this);
             result.getLines().addAll(value.getLines());
-            result.addLine("return " + value.getText() + ";", expression.getLocation());
+            if (restore != null) {
+                String temporary = "tmp_" + temporaryIndex++;
+                result.getLines().add(declareVariable(temporary, functionType));
+                result.addLine(temporary + " = " + value.getText() + ";");
+                result.addLine(restore);
+                result.addLine("return " + temporary + ";", expression.getLocation());
+            } else {
+                result.addLine("return " + value.getText() + ";", expression.getLocation());
+            }
         } else {
+            if (restore != null) {
+                result.addLine(restore);
+            }
             result.addLine("return;", expression.getLocation());
         }
 
@@ -296,6 +341,64 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         value = result;
     }
 
+    // Exceptions are implemented with setjmp/longjmp. Each try pushes its jmp_buf onto the chain
+    // of handlers and pops it when control leaves the body, a throw jumps to the innermost handler
+    @Override
+    public void visit(WasmTry expression) {
+        WasmType type = requiredType;
+        int index = tryIndex++;
+        String savedHandler = "exception_handler_" + index;
+        String buffer = "exception_buffer_" + index;
+
+        savedExceptionHandlers.add(savedHandler);
+        requiredType = type;
+        expression.getBody().acceptVisitor(this);
+        CExpression bodyExpression = value;
+        savedExceptionHandlers.remove(savedExceptionHandlers.size() - 1);
+
+        requiredType = type;
+        expression.getCatchBlock().acceptVisitor(this);
+        CExpression catchExpression = value;
+
+        CExpression result = new CExpression();
+        String temporary = null;
+        if (type != null) {
+            temporary = "tmp_" + temporaryIndex++;
+            result.setText(temporary);
+            result.getLines().add(declareVariable(temporary, type));
+        }
+        result.addLine("jmp_buf *" + savedHandler + " = wasm_exception_handler;", expression.getLocation());
+        result.addLine("jmp_buf " + buffer + ";");
+        result.addLine("wasm_exception_handler = &" + buffer + ";");
+        result.addLine("if (!setjmp(" + buffer + ")) {");
+
+        CBlock bodyBlock = new CBlock(bodyExpression.getLines());
+        if (temporary != null) {
+            bodyBlock.getLines().add(new CSingleLine(temporary + " = " + bodyExpression.getText() + ";"));
+        }
+        bodyBlock.getLines().add(new CSingleLine("wasm_exception_handler = " + savedHandler + ";"));
+        result.getLines().add(bodyBlock);
+
+        result.addLine("} else {");
+        CBlock catchBlock = new CBlock();
+        catchBlock.getLines().add(new CSingleLine("wasm_exception_handler = " + savedHandler + ";"));
+        catchBlock.getLines().addAll(catchExpression.getLines());
+        if (temporary != null) {
+            catchBlock.getLines().add(new CSingleLine(temporary + " = " + catchExpression.getText() + ";"));
+        }
+        result.getLines().add(catchBlock);
+        result.addLine("}");
+
+        value = result;
+    }
+
+    @Override
+    public void visit(WasmThrow expression) {
+        CExpression result = new CExpression();
+        result.addLine("wasm_throw();", expression.getLocation());
+        value = result;
+    }
+
     @Override
     public void visit(WasmInt32Constant expression) {
         value = CExpression.relocatable("INT32_C(" + String.valueOf(expression.getValue()) + ")");
@@ -334,6 +437,23 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         value = result;
     }
 
+    @Override
+    public void visit(WasmTeeLocal expression) {
+        WasmType type = requiredType;
+        CExpression result = new CExpression();
+        requiredType = expression.getLocal().getType();
+        expression.getValue().acceptVisitor(this);
+        result.getLines().addAll(value.getLines());
+
+        String name = getVariableName(expression.getLocal());
+        result.addLine(name + " = " + value.getText() + ";", expression.getLocation());
+        if (type != null) {
+            result.setText(name);
+        }
+
+        value = result;
+    }
+
     @Override
     public void visit(WasmIntBinary expression) {
         WasmType type = requiredType;
@@ -515,6 +635,11 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
                     result.setText(function + "(" + firstOp + ", " + secondOp + ")");
                     break;
                 }
+                case COPYSIGN: {
+                    String function = expression.getType() == WasmFloatType.FLOAT32 ? "copysignf" : "copysign";
+                    result.setText(function + "(" + firstOp + ", " + secondOp + ")");
+                    break;
+                }
             }
             result.setRelocatable(first.isRelocatable() && second.isRelocatable());
         }
@@ -606,11 +731,6 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
                 case NEG:
                     result.setText("(-" + operand.getText() + ")");
                     break;
-                case COPYSIGN: {
-                    String functionName = expression.getType() == WasmFloatType.FLOAT32 ? "copysignf" : "copysign";
-                    result.setText(functionName + "(" + operand.getText() + ")");
-                    break;
-                }
             }
             result.setRelocatable(operand.isRelocatable());
         }
@@ -627,7 +747,17 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         CExpression operand = value;
 
         result.getLines().addAll(operand.getLines());
-        if (type != null && expression.getSourceType() != expression.getTargetType()) {
+        if (type != null && expression.isReinterpret()) {
+            String sourceField = expression.getSourceType() == WasmType.INT32
+                    || expression.getSourceType() == WasmType.INT64 ? "i" : "f";
+            String targetField = sourceField.equals("i") ? "f" : "i";
+            String unionType = expression.getSourceType() == WasmType.INT32
+                    || expression.getSourceType() == WasmType.FLOAT32
+                    ? "union { int32_t i; float f; }"
+                    : "union { int64_t i; double f; }";
+            result.setText("((" + unionType + ") { ." + sourceField + " = " + operand.getText() + " })."
+                    + targetField);
+        } else if (type != null && expression.getSourceType() != expression.getTargetType()) {
             switch (expression.getTargetType()) {
                 case INT32:
                     if (expression.isSigned()) {
@@ -879,6 +1009,25 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         value = result;
     }
 
+    @Override
+    public void visit(WasmLoadV128 expression) {
+        CExpression result = new CExpression();
+        WasmType type = requiredType;
+
+        requiredType = WasmType.INT32;
+        expression.getIndex().acceptVisitor(this);
+        CExpression index = checkAddress(value);
+        if (type == null) {
+            value = index;
+            return;
+        }
+
+        result.getLines().addAll(index.getLines());
+        result.setText("wasm_v128_load(&wasm_heap[" + index.getText() + " + " + expression.getOffset() + "])");
+
+        value = result;
+    }
+
     @Override
     public void visit(WasmStoreInt32 expression) {
         CExpression result = new CExpression();
@@ -1010,6 +1159,182 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         value = result;
     }
 
+    @Override
+    public void visit(WasmStoreV128 expression) {
+        CExpression result = new CExpression();
+
+        requiredType = WasmType.INT32;
+        expression.getIndex().acceptVisitor(this);
+        CExpression index = checkAddress(value);
+
+        requiredType = WasmType.V128;
+        expression.getValue().acceptVisitor(this);
+        CExpression valueToStore = value;
+
+        result.getLines().addAll(index.getLines());
+        result.getLines().addAll(valueToStore.getLines());
+
+        result.addLine("wasm_v128_store(&wasm_heap[" + index.getText() + " + " + expression.getOffset() + "], "
+                + valueToStore.getText() + ");", expression.getLocation());
+
+        value = result;
+    }
+
+    @Override
+    public void visit(WasmMemoryGrow expression) {
+        CExpression result = new CExpression();
+        WasmType type = requiredType;
+
+        requiredType = WasmType.INT32;
+        expression.getAmount().acceptVisitor(this);
+        result.getLines().addAll(value.getLines());
+        result.setText("wasm_heap_grow(" + value.getText() + ")");
+
+        if (type == null) {
+            result.addLine(result.getText() + ";", expression.getLocation());
+            result.setText(null);
+        }
+        value = result;
+    }
+
+    @Override
+    public void visit(WasmSimdSplat expression) {
+        WasmType type = requiredType;
+        CExpression result = new CExpression();
+
+        requiredType = laneType(expression.getShape());
+        expression.getValue().acceptVisitor(this);
+        result.getLines().addAll(value.getLines());
+        if (type != null) {
+            result.setText("wasm_" + shapeName(expression.getShape()) + "_splat(" + value.getText() + ")");
+        }
+
+        value = result;
+    }
+
+    @Override
+    public void visit(WasmSimdBinary expression) {
+        WasmType type = requiredType;
+        CExpression result = new CExpression();
+
+        requiredType = WasmType.V128;
+        expression.getFirst().acceptVisitor(this);
+        CExpression first = value;
+
+        requiredType = WasmType.V128;
+        expression.getSecond().acceptVisitor(this);
+        CExpression second = value;
+
+        result.getLines().addAll(first.getLines());
+        if (type == null) {
+            result.getLines().addAll(second.getLines());
+        } else {
+            if (!second.getLines().isEmpty()) {
+                first = cacheIfNeeded(WasmType.V128, first, result);
+                result.getLines().addAll(second.getLines());
+            }
+
+            String op;
+            switch (expression.getOperation()) {
+                case ADD:
+                    op = " + ";
+                    break;
+                case SUB:
+                    op = " - ";
+                    break;
+                case MUL:
+                    op = " * ";
+                    break;
+                case DIV:
+                    op = " / ";
+                    break;
+                case AND:
+                    op = " & ";
+                    break;
+                case OR:
+                    op = " | ";
+                    break;
+                case XOR:
+                    op = " ^ ";
+                    break;
+                default:
+                    throw new AssertionError(expression.getOperation().toString());
+            }
+            String vectorType = "wasm_" + shapeName(expression.getShape());
+            result.setText("((wasm_v128) ((" + vectorType + ") " + first.getText() + op
+                    + "(" + vectorType + ") " + second.getText() + "))");
+        }
+
+        value = result;
+    }
+
+    @Override
+    public void visit(WasmSimdExtractLane expression) {
+        WasmType type = requiredType;
+        CExpression result = new CExpression();
+
+        requiredType = WasmType.V128;
+        expression.getVector().acceptVisitor(this);
+        result.getLines().addAll(value.getLines());
+        if (type != null) {
+            result.setText("((wasm_" + shapeName(expression.getShape()) + ") " + value.getText() + ")["
+                    + expression.getLane() + "]");
+        }
+
+        value = result;
+    }
+
+    @Override
+    public void visit(WasmSimdPairwiseAdd expression) {
+        WasmType type = requiredType;
+        CExpression result = new CExpression();
+
+        requiredType = WasmType.V128;
+        expression.getOperand().acceptVisitor(this);
+        result.getLines().addAll(value.getLines());
+        if (type != null) {
+            String source = expression.getShape() == WasmSimdShape.INT16X8 ? "i8x16" : "i16x8";
+            result.setText("wasm_" + shapeName(expression.getShape()) + "_extadd_pairwise_" + source
+                    + (expression.isSigned() ? "_s" : "_u") + "(" + value.getText() + ")");
+        }
+
+        value = result;
+    }
+
+    private static String shapeName(WasmSimdShape shape) {
+        switch (shape) {
+            case INT8X16:
+                return "i8x16";
+            case INT16X8:
+                return "i16x8";
+            case INT32X4:
+                return "i32x4";
+            case INT64X2:
+                return "i64x2";
+            case FLOAT32X4:
+                return "f32x4";
+            case FLOAT64X2:
+                return "f64x2";
+        }
+        throw new AssertionError(shape.toString());
+    }
+
+    private static WasmType laneType(WasmSimdShape shape) {
+        switch (shape) {
+            case INT8X16:
+            case INT16X8:
+            case INT32X4:
+                return WasmType.INT32;
+            case INT64X2:
+                return WasmType.INT64;
+            case FLOAT32X4:
+                return WasmType.FLOAT32;
+            case FLOAT64X2:
+                return WasmType.FLOAT64;
+        }
+        throw new AssertionError(shape.toString());
+    }
+
     private CExpression checkAddress(CExpression index) {
         if (!memoryAccessChecked) {
             return index;
@@ -1024,7 +1349,7 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         } else {
             var = index.getText();
         }
-        checked.addLine("assert(" + var + " < " + module.getMemorySize() * 65536 + ");");
+        checked.addLine("assert(" + var + " < wasm_heap_size);");
         checked.setText(var);
         checked.setRelocatable(index.isRelocatable());
 
@@ -1048,6 +1373,8 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
                 return "float";
             case FLOAT64:
                 return "double";
+            case V128:
+                return "wasm_v128";
         }
         throw new AssertionError(type.toString());
     }
@@ -1077,6 +1404,7 @@ class WasmCRenderingVisitor implements WasmExpressionVisitor {
         String label;
         String temporaryVariable;
         WasmType type;
+        int tryDepth;
     }
 
     String getVariableName(WasmLocal local) {
@@ -0,0 +1,50 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.render;
+
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmModule;
+import org.teavm.backend.wasm.model.expression.WasmDefaultExpressionVisitor;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+
+class WasmExceptionHandlingDetector extends WasmDefaultExpressionVisitor {
+    private boolean used;
+
+    static boolean isUsed(WasmModule module) {
+        WasmExceptionHandlingDetector detector = new WasmExceptionHandlingDetector();
+        for (WasmFunction function : module.getFunctions().values()) {
+            for (WasmExpression part : function.getBody()) {
+                part.acceptVisitor(detector);
+            }
+            if (detector.used) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void visit(WasmTry expression) {
+        used = true;
+    }
+
+    @Override
+    public void visit(WasmThrow expression) {
+        used = true;
+    }
+}
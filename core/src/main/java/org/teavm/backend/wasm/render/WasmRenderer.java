@@ -57,6 +57,9 @@ public class WasmRenderer {
         visitor.open().append("module");
         renderMemory(module);
         renderTypes(module);
+        if (WasmExceptionHandlingDetector.isUsed(module)) {
+            visitor.lf().open().append("tag $" + WasmRenderingVisitor.EXCEPTION_TAG).close().lf();
+        }
 
         for (WasmFunction function : module.getFunctions().values()) {
             if (function.getImportName() == null) {
@@ -85,7 +88,7 @@ public class WasmRenderer {
 
     public void renderMemory(WasmModule module) {
         visitor.lf();
-        visitor.open().append("memory " + module.getMemorySize());
+        visitor.open().append("memory " + module.getMemorySize() + " " + module.getMaxMemorySize());
         for (WasmMemorySegment segment : module.getSegments()) {
             visitor.lf().open().append("segment " + segment.getOffset());
             visitor.indent();
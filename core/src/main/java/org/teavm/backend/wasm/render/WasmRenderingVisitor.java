@@ -52,16 +52,29 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmReturn;
 import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinary;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmSimdExtractLane;
+import org.teavm.backend.wasm.model.expression.WasmSimdPairwiseAdd;
+import org.teavm.backend.wasm.model.expression.WasmSimdShape;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
 import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
 
 class WasmRenderingVisitor implements WasmExpressionVisitor {
+    static final String EXCEPTION_TAG = "exception";
     private Set<String> usedIdentifiers = new HashSet<>();
     StringBuilder sb = new StringBuilder();
     private Map<WasmBlock, String> blockIdentifiers = new HashMap<>();
@@ -196,6 +209,33 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
         close();
     }
 
+    @Override
+    public void visit(WasmTry expression) {
+        String id = getIdentifier("@block");
+        blockIdentifiers.put(expression.getBody(), id);
+        blockIdentifiers.put(expression.getCatchBlock(), id);
+        open().append("try $" + id);
+
+        lf().open().append("do");
+        for (WasmExpression part : expression.getBody().getBody()) {
+            line(part);
+        }
+        close();
+
+        lf().open().append("catch $" + EXCEPTION_TAG);
+        for (WasmExpression part : expression.getCatchBlock().getBody()) {
+            line(part);
+        }
+        close();
+
+        close();
+    }
+
+    @Override
+    public void visit(WasmThrow expression) {
+        open().append("throw $" + EXCEPTION_TAG).close();
+    }
+
     @Override
     public void visit(WasmReturn expression) {
         open().append("return");
@@ -240,6 +280,11 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
         open().append("set_local " + asString(expression.getLocal())).line(expression.getValue()).close();
     }
 
+    @Override
+    public void visit(WasmTeeLocal expression) {
+        open().append("tee_local " + asString(expression.getLocal())).line(expression.getValue()).close();
+    }
+
     String asString(WasmLocal local) {
         return String.valueOf(local.getIndex());
     }
@@ -332,6 +377,10 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
                 break;
         }
 
+        if (expression.isReinterpret()) {
+            name = "reinterpret";
+        }
+
         if (name == null) {
             append(expression.getOperand());
         } else {
@@ -462,6 +511,17 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
         close();
     }
 
+    @Override
+    public void visit(WasmLoadV128 expression) {
+        open().append("v128.load");
+        if (expression.getOffset() > 0) {
+            append(" offset=" + expression.getOffset());
+        }
+        append(" align=" + expression.getAlignment());
+        line(expression.getIndex());
+        close();
+    }
+
     @Override
     public void visit(WasmStoreInt32 expression) {
         open();
@@ -540,6 +600,74 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
         close();
     }
 
+    @Override
+    public void visit(WasmStoreV128 expression) {
+        open().append("v128.store");
+        if (expression.getOffset() > 0) {
+            append(" offset=" + expression.getOffset());
+        }
+        append(" align=" + expression.getAlignment());
+        line(expression.getIndex());
+        line(expression.getValue());
+        close();
+    }
+
+    @Override
+    public void visit(WasmMemoryGrow expression) {
+        open().append("grow_memory");
+        line(expression.getAmount());
+        close();
+    }
+
+    @Override
+    public void visit(WasmSimdSplat expression) {
+        open().append(shape(expression.getShape()) + ".splat");
+        line(expression.getValue());
+        close();
+    }
+
+    @Override
+    public void visit(WasmSimdBinary expression) {
+        switch (expression.getOperation()) {
+            case AND:
+            case OR:
+            case XOR:
+                open().append("v128." + operation(expression.getOperation()));
+                break;
+            default:
+                open().append(shape(expression.getShape()) + "." + operation(expression.getOperation()));
+                break;
+        }
+        line(expression.getFirst());
+        line(expression.getSecond());
+        close();
+    }
+
+    @Override
+    public void visit(WasmSimdExtractLane expression) {
+        open().append(shape(expression.getShape()) + ".extract_lane");
+        switch (expression.getShape()) {
+            case INT8X16:
+            case INT16X8:
+                append("_s");
+                break;
+            default:
+                break;
+        }
+        append(" " + expression.getLane());
+        line(expression.getVector());
+        close();
+    }
+
+    @Override
+    public void visit(WasmSimdPairwiseAdd expression) {
+        String source = expression.getShape() == WasmSimdShape.INT16X8 ? "i8x16" : "i16x8";
+        open().append(shape(expression.getShape()) + ".extadd_pairwise_" + source
+                + (expression.isSigned() ? "_s" : "_u"));
+        line(expression.getOperand());
+        close();
+    }
+
     private String getIdentifier(String suggested) {
         if (usedIdentifiers.add(suggested)) {
             return suggested;
@@ -564,10 +692,30 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
                 return "f32";
             case FLOAT64:
                 return "f64";
+            case V128:
+                return "v128";
         }
         throw new AssertionError(type.toString());
     }
 
+    private String shape(WasmSimdShape shape) {
+        switch (shape) {
+            case INT8X16:
+                return "i8x16";
+            case INT16X8:
+                return "i16x8";
+            case INT32X4:
+                return "i32x4";
+            case INT64X2:
+                return "i64x2";
+            case FLOAT32X4:
+                return "f32x4";
+            case FLOAT64X2:
+                return "f64x2";
+        }
+        throw new AssertionError(shape.toString());
+    }
+
     private String type(WasmIntType type) {
         switch (type) {
             case INT32:
@@ -682,6 +830,28 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
                 return "min";
             case MAX:
                 return "max";
+            case COPYSIGN:
+                return "copysign";
+        }
+        throw new AssertionError(operation.toString());
+    }
+
+    private String operation(WasmSimdBinaryOperation operation) {
+        switch (operation) {
+            case ADD:
+                return "add";
+            case SUB:
+                return "sub";
+            case MUL:
+                return "mul";
+            case DIV:
+                return "div";
+            case AND:
+                return "and";
+            case OR:
+                return "or";
+            case XOR:
+                return "xor";
         }
         throw new AssertionError(operation.toString());
     }
@@ -692,8 +862,6 @@ class WasmRenderingVisitor implements WasmExpressionVisitor {
                 return "abs";
             case NEG:
                 return "neg";
-            case COPYSIGN:
-                break;
             case CEIL:
                 return "ceil";
             case FLOOR:
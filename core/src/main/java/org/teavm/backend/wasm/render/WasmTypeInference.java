@@ -42,13 +42,23 @@ import org.teavm.backend.wasm.model.expression.WasmLoadFloat32;
 import org.teavm.backend.wasm.model.expression.WasmLoadFloat64;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
 import org.teavm.backend.wasm.model.expression.WasmLoadInt64;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmMemoryGrow;
 import org.teavm.backend.wasm.model.expression.WasmReturn;
 import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinary;
+import org.teavm.backend.wasm.model.expression.WasmSimdExtractLane;
+import org.teavm.backend.wasm.model.expression.WasmSimdPairwiseAdd;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat32;
 import org.teavm.backend.wasm.model.expression.WasmStoreFloat64;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
 import org.teavm.backend.wasm.model.expression.WasmStoreInt64;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
 import org.teavm.backend.wasm.model.expression.WasmSwitch;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
 import org.teavm.backend.wasm.model.expression.WasmUnreachable;
 
 public class WasmTypeInference implements WasmExpressionVisitor {
@@ -98,6 +108,16 @@ public class WasmTypeInference implements WasmExpressionVisitor {
         result = null;
     }
 
+    @Override
+    public void visit(WasmTry expression) {
+        result = expression.getType();
+    }
+
+    @Override
+    public void visit(WasmThrow expression) {
+        result = null;
+    }
+
     @Override
     public void visit(WasmInt32Constant expression) {
         result = WasmType.INT32;
@@ -128,6 +148,11 @@ public class WasmTypeInference implements WasmExpressionVisitor {
         result = null;
     }
 
+    @Override
+    public void visit(WasmTeeLocal expression) {
+        result = expression.getLocal().getType();
+    }
+
     @Override
     public void visit(WasmIntBinary expression) {
         result = map(expression.getType());
@@ -189,6 +214,11 @@ public class WasmTypeInference implements WasmExpressionVisitor {
         result = WasmType.FLOAT64;
     }
 
+    @Override
+    public void visit(WasmLoadV128 expression) {
+        result = WasmType.V128;
+    }
+
     @Override
     public void visit(WasmStoreInt32 expression) {
         result = null;
@@ -209,6 +239,51 @@ public class WasmTypeInference implements WasmExpressionVisitor {
         result = null;
     }
 
+    @Override
+    public void visit(WasmStoreV128 expression) {
+        result = null;
+    }
+
+    @Override
+    public void visit(WasmMemoryGrow expression) {
+        result = WasmType.INT32;
+    }
+
+    @Override
+    public void visit(WasmSimdSplat expression) {
+        result = WasmType.V128;
+    }
+
+    @Override
+    public void visit(WasmSimdBinary expression) {
+        result = WasmType.V128;
+    }
+
+    @Override
+    public void visit(WasmSimdExtractLane expression) {
+        switch (expression.getShape()) {
+            case INT8X16:
+            case INT16X8:
+            case INT32X4:
+                result = WasmType.INT32;
+                break;
+            case INT64X2:
+                result = WasmType.INT64;
+                break;
+            case FLOAT32X4:
+                result = WasmType.FLOAT32;
+                break;
+            case FLOAT64X2:
+                result = WasmType.FLOAT64;
+                break;
+        }
+    }
+
+    @Override
+    public void visit(WasmSimdPairwiseAdd expression) {
+        result = WasmType.V128;
+    }
+
     private static WasmType map(WasmIntType type) {
         switch (type) {
             case INT32:
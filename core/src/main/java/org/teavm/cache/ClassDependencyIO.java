@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import org.teavm.parsing.ClassDateProvider;
+
+/**
+ * <p>Reads and writes the list of classes a cache entry was built from. Each class is stored together
+ * with digest of its content. An entry is considered valid when every class is not newer than the entry
+ * file. If some class is newer, but its digest has not changed, the entry is still valid, and the entry
+ * file is touched, so that next time the cheaper date check succeeds. Caches that keep many entries in
+ * one file use {@link #check(DataInput, Date, ClassDateProvider)} and update the date on their own.</p>
+ */
+final class ClassDependencyIO {
+    private static final int FORMAT_MARKER = 0x7EA0C001;
+
+    private ClassDependencyIO() {
+    }
+
+    static void write(DataOutput output, Collection<String> classNames, ClassDateProvider classDateProvider)
+            throws IOException {
+        output.writeInt(FORMAT_MARKER);
+        output.writeShort(classNames.size());
+        for (String className : classNames) {
+            output.writeUTF(className);
+            byte[] hash = classDateProvider.getContentHash(className);
+            if (hash != null) {
+                output.writeByte(hash.length);
+                output.write(hash);
+            } else {
+                output.writeByte(0);
+            }
+        }
+    }
+
+    static boolean isUpToDate(DataInput input, File file, ClassDateProvider classDateProvider)
+            throws IOException {
+        switch (check(input, new Date(file.lastModified()), classDateProvider)) {
+            case UP_TO_DATE:
+                return true;
+            case SAME_CONTENT:
+                file.setLastModified(System.currentTimeMillis());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static Status check(DataInput input, Date date, ClassDateProvider classDateProvider) throws IOException {
+        if (input.readInt() != FORMAT_MARKER) {
+            return Status.STALE;
+        }
+        Status status = Status.UP_TO_DATE;
+        int count = input.readShort();
+        for (int i = 0; i < count; ++i) {
+            String className = input.readUTF();
+            byte[] hash = new byte[input.readUnsignedByte()];
+            input.readFully(hash);
+
+            Date classDate = classDateProvider.getModificationDate(className);
+            if (classDate != null && !classDate.after(date)) {
+                continue;
+            }
+            byte[] actualHash = classDateProvider.getContentHash(className);
+            if (hash.length == 0 || actualHash == null || !Arrays.equals(hash, actualHash)) {
+                return Status.STALE;
+            }
+            status = Status.SAME_CONTENT;
+        }
+        return status;
+    }
+
+    enum Status {
+        UP_TO_DATE,
+        SAME_CONTENT,
+        STALE
+    }
+}
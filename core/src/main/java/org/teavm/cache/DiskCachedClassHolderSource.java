@@ -48,14 +48,13 @@ public class DiskCachedClassHolderSource implements ClassHolderSource {
             cache.put(name, item);
             File classFile = new File(directory, name.replace('.', '/') + ".teavm-cls");
             if (classFile.exists()) {
-                Date classDate = classDateProvider.getModificationDate(name);
-                if (classDate != null && classDate.before(new Date(classFile.lastModified()))) {
-                    try (InputStream input = new BufferedInputStream(new FileInputStream(classFile))) {
+                try (InputStream input = new BufferedInputStream(new FileInputStream(classFile))) {
+                    if (ClassDependencyIO.isUpToDate(new DataInputStream(input), classFile, classDateProvider)) {
                         item.cls = readClass(input, name);
-                    } catch (IOException e) {
-                        // We could not access cache file, so let's parse class file
-                        item.cls = null;
                     }
+                } catch (IOException e) {
+                    // We could not access cache file, so let's parse class file
+                    item.cls = null;
                 }
             }
             if (item.cls == null) {
@@ -77,6 +76,8 @@ public class DiskCachedClassHolderSource implements ClassHolderSource {
                 File classFile = new File(directory, className.replace('.', '/') + ".teavm-cls");
                 classFile.getParentFile().mkdirs();
                 try (OutputStream output = new BufferedOutputStream(new FileOutputStream(classFile))) {
+                    ClassDependencyIO.write(new DataOutputStream(output), Collections.singleton(className),
+                            classDateProvider);
                     writeClass(output, item.cls);
                 }
             }
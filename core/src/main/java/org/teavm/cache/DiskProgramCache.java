@@ -16,25 +16,47 @@
 package org.teavm.cache;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import org.teavm.model.*;
 import org.teavm.model.instructions.*;
 import org.teavm.parsing.ClassDateProvider;
 
 /**
+ * <p>Keeps optimized programs in a single data file. The file contains serialized programs one after another,
+ * followed by index that maps methods to ranges of the file. The file is memory-mapped, and only
+ * requested programs get deserialized. On {@link #flush()} a data file of the next generation is written,
+ * valid programs of the previous generation are copied as is. A mapped file is never overwritten:
+ * a small pointer file names the current generation, and only the pointer file gets replaced.
+ * Previous generations are deleted when they are no longer mapped.</p>
  *
  * @author Alexey Andreev
  */
 public class DiskProgramCache implements ProgramCache {
+    private static final int FORMAT_MARKER = 0x7EA0CA01;
+    private static final int POINTER_MARKER = 0x7EA0CA02;
+    private static final String DATA_PREFIX = "programs.";
+    private static final String DATA_SUFFIX = ".teavm-opt";
     private File directory;
+    private File file;
     private ProgramIO programIO;
     private Map<MethodReference, Item> cache = new HashMap<>();
-    private Set<MethodReference> newMethods = new HashSet<>();
+    private Set<MethodReference> newMethods = new LinkedHashSet<>();
     private ClassDateProvider classDateProvider;
+    private Map<MethodReference, Entry> index;
+    private ByteBuffer data;
+    private long generation;
+    private Date dataDate;
+    private boolean indexChanged;
 
     public DiskProgramCache(File directory, SymbolTable symbolTable, SymbolTable fileTable,
             ClassDateProvider classDateProvider) {
         this.directory = directory;
+        file = new File(directory, "programs.teavm-opt");
         programIO = new ProgramIO(symbolTable, fileTable);
         this.classDateProvider = classDateProvider;
     }
@@ -45,31 +67,38 @@ public class DiskProgramCache implements ProgramCache {
         if (item == null) {
             item = new Item();
             cache.put(method, item);
-            File file = getMethodFile(method);
-            if (file.exists()) {
-                try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
-                    DataInput input = new DataInputStream(stream);
-                    int depCount = input.readShort();
-                    boolean dependenciesChanged = false;
-                    for (int i = 0; i < depCount; ++i) {
-                        String depClass = input.readUTF();
-                        Date depDate = classDateProvider.getModificationDate(depClass);
-                        if (depDate == null || depDate.after(new Date(file.lastModified()))) {
-                            dependenciesChanged = true;
-                            break;
-                        }
-                    }
-                    if (!dependenciesChanged) {
-                        item.program = programIO.read(stream);
-                    }
-                } catch (IOException e) {
-                    // we could not read program, just leave it empty
-                }
+            Entry entry = getIndex().get(method);
+            if (entry != null) {
+                item.program = readProgram(method, entry);
             }
         }
         return item.program;
     }
 
+    private Program readProgram(MethodReference method, Entry entry) {
+        try {
+            InputStream stream = new ByteBufferInputStream(entry.slice(data));
+            switch (ClassDependencyIO.check(new DataInputStream(stream), dataDate, classDateProvider)) {
+                case STALE:
+                    index.remove(method);
+                    indexChanged = true;
+                    return null;
+                case SAME_CONTENT:
+                    indexChanged = true;
+                    break;
+                default:
+                    break;
+            }
+            entry.checked = true;
+            return programIO.read(stream);
+        } catch (IOException e) {
+            // we could not read program, just leave it empty
+            index.remove(method);
+            indexChanged = true;
+            return null;
+        }
+    }
+
     @Override
     public void store(MethodReference method, Program program) {
         Item item = new Item();
@@ -79,38 +108,214 @@ public class DiskProgramCache implements ProgramCache {
     }
 
     public void flush() throws IOException {
-        for (MethodReference method : newMethods) {
-            File file = getMethodFile(method);
-            ProgramDependencyAnalyzer analyzer = new ProgramDependencyAnalyzer();
-            analyzer.dependencies.add(method.getClassName());
-            Program program = cache.get(method).program;
-            for (int i = 0; i < program.basicBlockCount(); ++i) {
-                BasicBlock block = program.basicBlockAt(i);
-                for (Instruction insn : block.getInstructions()) {
-                    insn.acceptVisitor(analyzer);
+        if (newMethods.isEmpty() && !indexChanged) {
+            return;
+        }
+
+        Map<MethodReference, Entry> oldIndex = getIndex();
+        Map<MethodReference, Entry> newIndex = new LinkedHashMap<>();
+        directory.mkdirs();
+        long newGeneration = generation + 1;
+        File dataFile = getDataFile(newGeneration);
+        while (dataFile.exists() && !dataFile.delete()) {
+            dataFile = getDataFile(++newGeneration);
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(dataFile)))) {
+            for (MethodReference method : newMethods) {
+                int offset = output.size();
+                writeProgram(output, method, cache.get(method).program);
+                newIndex.put(method, new Entry(offset, output.size() - offset));
+            }
+            byte[] buffer = new byte[1024];
+            for (Map.Entry<MethodReference, Entry> indexEntry : oldIndex.entrySet()) {
+                MethodReference method = indexEntry.getKey();
+                Entry entry = indexEntry.getValue();
+                if (newIndex.containsKey(method) || !entry.checked && !isValid(entry)) {
+                    continue;
                 }
+                int offset = output.size();
+                ByteBuffer source = entry.slice(data);
+                while (source.hasRemaining()) {
+                    int chunkSize = Math.min(buffer.length, source.remaining());
+                    source.get(buffer, 0, chunkSize);
+                    output.write(buffer, 0, chunkSize);
+                }
+                newIndex.put(method, new Entry(offset, entry.length));
+            }
+
+            int indexOffset = output.size();
+            output.writeInt(newIndex.size());
+            for (Map.Entry<MethodReference, Entry> indexEntry : newIndex.entrySet()) {
+                output.writeUTF(indexEntry.getKey().toString());
+                output.writeInt(indexEntry.getValue().offset);
+                output.writeInt(indexEntry.getValue().length);
             }
-            file.getParentFile().mkdirs();
-            try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
-                DataOutput output = new DataOutputStream(stream);
-                output.writeShort(analyzer.dependencies.size());
-                for (String dep : analyzer.dependencies) {
-                    output.writeUTF(dep);
+            output.writeInt(indexOffset);
+            output.writeInt(FORMAT_MARKER);
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(tmpFile))) {
+            output.writeInt(POINTER_MARKER);
+            output.writeLong(newGeneration);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        index = null;
+        data = null;
+        generation = newGeneration;
+        newMethods.clear();
+        indexChanged = false;
+        deleteOldGenerations(dataFile);
+    }
+
+    private File getDataFile(long generation) {
+        return new File(directory, DATA_PREFIX + generation + DATA_SUFFIX);
+    }
+
+    private void deleteOldGenerations(File currentFile) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File oldFile : files) {
+            String name = oldFile.getName();
+            if (!oldFile.equals(currentFile) && name.startsWith(DATA_PREFIX) && name.endsWith(DATA_SUFFIX)
+                    && !oldFile.equals(file)) {
+                // a generation that is still mapped by some reader can't be deleted on some platforms,
+                // it will be deleted by one of the next flushes
+                oldFile.delete();
+            }
+        }
+    }
+
+    private void writeProgram(DataOutputStream output, MethodReference method, Program program) throws IOException {
+        ProgramDependencyAnalyzer analyzer = new ProgramDependencyAnalyzer();
+        analyzer.dependencies.add(method.getClassName());
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Instruction insn : block.getInstructions()) {
+                insn.acceptVisitor(analyzer);
+            }
+        }
+        ClassDependencyIO.write(output, analyzer.dependencies, classDateProvider);
+        programIO.write(program, output);
+    }
+
+    private boolean isValid(Entry entry) {
+        try {
+            DataInput input = new DataInputStream(new ByteBufferInputStream(entry.slice(data)));
+            return ClassDependencyIO.check(input, dataDate, classDateProvider) != ClassDependencyIO.Status.STALE;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Map<MethodReference, Entry> getIndex() {
+        if (index == null) {
+            index = new HashMap<>();
+            if (file.exists()) {
+                try {
+                    readIndex();
+                } catch (IOException e) {
+                    // cache file is broken, so programs will be rebuilt
+                    index.clear();
+                    indexChanged = true;
                 }
-                programIO.write(program, stream);
             }
         }
+        return index;
     }
 
-    private File getMethodFile(MethodReference method) {
-        File dir = new File(directory, method.getClassName().replace('.', '/'));
-        return new File(dir, FileNameEncoder.encodeFileName(method.getDescriptor().toString()) + ".teavm-opt");
+    private void readIndex() throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (input.readInt() != POINTER_MARKER) {
+                throw new IOException("Wrong format of program cache");
+            }
+            generation = input.readLong();
+        }
+        File dataFile = getDataFile(generation);
+        try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        dataDate = new Date(dataFile.lastModified());
+        int end = data.limit() - 8;
+        if (end < 0 || data.getInt(end + 4) != FORMAT_MARKER) {
+            throw new IOException("Wrong format of program cache");
+        }
+        int indexOffset = data.getInt(end);
+        if (indexOffset < 0 || indexOffset > end) {
+            throw new IOException("Wrong format of program cache");
+        }
+        DataInput input = new DataInputStream(new ByteBufferInputStream(
+                new Entry(indexOffset, end - indexOffset).slice(data)));
+        int count = input.readInt();
+        for (int i = 0; i < count; ++i) {
+            MethodReference method = MethodReference.parseIfPossible(input.readUTF());
+            Entry entry = new Entry(input.readInt(), input.readInt());
+            if (entry.offset < 0 || entry.length < 0 || entry.offset + entry.length > indexOffset) {
+                throw new IOException("Wrong format of program cache");
+            }
+            if (method != null) {
+                index.put(method, entry);
+            }
+        }
     }
 
     static class Item {
         Program program;
     }
 
+    static class Entry {
+        final int offset;
+        final int length;
+        boolean checked;
+
+        Entry(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        ByteBuffer slice(ByteBuffer data) {
+            ByteBuffer result = data.duplicate();
+            result.limit(offset + length);
+            result.position(offset);
+            return result.slice();
+        }
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+        private ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
     static class ProgramDependencyAnalyzer implements InstructionVisitor {
         Set<String> dependencies = new HashSet<>();
         @Override public void visit(GetFieldInstruction insn) {
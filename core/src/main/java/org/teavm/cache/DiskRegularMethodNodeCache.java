@@ -25,7 +25,6 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -66,7 +65,7 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
             if (file.exists()) {
                 try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
                     DataInput input = new DataInputStream(stream);
-                    if (!checkIfDependenciesChanged(input, file)) {
+                    if (ClassDependencyIO.isUpToDate(input, file, classDateProvider)) {
                         item.node = astIO.read(input, methodReference);
                     }
                 } catch (IOException e) {
@@ -95,7 +94,7 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
             if (file.exists()) {
                 try (InputStream stream = new BufferedInputStream(new FileInputStream(file))) {
                     DataInput input = new DataInputStream(stream);
-                    if (!checkIfDependenciesChanged(input, file)) {
+                    if (ClassDependencyIO.isUpToDate(input, file, classDateProvider)) {
                         item.node = astIO.readAsync(input, methodReference);
                     }
                 } catch (IOException e) {
@@ -106,18 +105,6 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
         return item.node;
     }
 
-    private boolean checkIfDependenciesChanged(DataInput input, File file) throws IOException {
-        int depCount = input.readShort();
-        for (int i = 0; i < depCount; ++i) {
-            String depClass = input.readUTF();
-            Date depDate = classDateProvider.getModificationDate(depClass);
-            if (depDate == null || depDate.after(new Date(file.lastModified()))) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     @Override
     public void storeAsync(MethodReference methodReference, AsyncMethodNode node) {
         AsyncItem item = new AsyncItem();
@@ -134,10 +121,7 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
             node.getBody().acceptVisitor(analyzer);
             analyzer.dependencies.add(method.getClassName());
             try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
-                output.writeShort(analyzer.dependencies.size());
-                for (String dependency : analyzer.dependencies) {
-                    output.writeUTF(dependency);
-                }
+                ClassDependencyIO.write(output, analyzer.dependencies, classDateProvider);
                 astIO.write(output, node);
             }
         }
@@ -150,10 +134,7 @@ public class DiskRegularMethodNodeCache implements MethodNodeCache {
             }
             analyzer.dependencies.add(method.getClassName());
             try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
-                output.writeShort(analyzer.dependencies.size());
-                for (String dependency : analyzer.dependencies) {
-                    output.writeUTF(dependency);
-                }
+                ClassDependencyIO.write(output, analyzer.dependencies, classDateProvider);
                 astIO.writeAsync(output, node);
             }
         }
@@ -585,7 +585,7 @@ public class ProgramIO {
             try {
                 output.writeByte(41);
                 output.writeShort(insn.getReceiver() != null ? insn.getReceiver().getIndex() : -1);
-                output.writeShort(insn.getInstance().getIndex());
+                output.writeShort(insn.getInstance() != null ? insn.getInstance().getIndex() : -1);
                 output.writeInt(symbolTable.lookup(insn.getMethod().toString()));
                 for (int i = 0; i < insn.getArguments().size(); ++i) {
                     output.writeShort(insn.getArguments().get(i).getIndex());
@@ -693,8 +693,8 @@ public class ProgramIO {
                     output.writeInt(symbolTable.lookup(handle.getValueType().toString()));
                     break;
                 default:
-                    output.writeInt(symbolTable.lookup(new MethodDescriptor(handle.getName(),
-                            handle.signature()).toString()));
+                    output.writeInt(symbolTable.lookup(handle.getName()));
+                    output.writeInt(symbolTable.lookup(ValueType.methodTypeToString(handle.signature())));
                     break;
             }
         }
@@ -1066,7 +1066,8 @@ public class ProgramIO {
                 InvokeDynamicInstruction insn = new InvokeDynamicInstruction();
                 short receiver = input.readShort();
                 insn.setReceiver(receiver >= 0 ? program.variableAt(receiver) : null);
-                insn.setInstance(program.variableAt(input.readShort()));
+                short instance = input.readShort();
+                insn.setInstance(instance >= 0 ? program.variableAt(instance) : null);
                 insn.setMethod(MethodDescriptor.parse(symbolTable.at(input.readInt())));
                 int argsCount = insn.getMethod().parameterCount();
                 for (int i = 0; i < argsCount; ++i) {
@@ -18,12 +18,19 @@ package org.teavm.dependency;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.objectweb.asm.tree.ClassNode;
 import org.teavm.callgraph.CallGraph;
 import org.teavm.callgraph.DefaultCallGraph;
@@ -68,6 +75,11 @@ public class DependencyChecker implements DependencyInfo {
     private List<DependencyListener> listeners = new ArrayList<>();
     private ServiceRepository services;
     private Queue<Runnable> tasks = new ArrayDeque<>();
+    private int propagationThreads = 1;
+    private List<Runnable> pendingConcurrentTasks = new ArrayList<>();
+    private ForkJoinPool propagationPool;
+    private AtomicInteger runningConcurrentTasks = new AtomicInteger();
+    private AtomicReference<Throwable> concurrentTaskError = new AtomicReference<>();
     List<DependencyType> types = new ArrayList<>();
     private Map<String, DependencyType> typeMap = new HashMap<>();
     private DependencyCheckerInterruptor interruptor;
@@ -75,7 +87,7 @@ public class DependencyChecker implements DependencyInfo {
     private Diagnostics diagnostics;
     DefaultCallGraph callGraph = new DefaultCallGraph();
     private DependencyAgent agent;
-    List<DependencyNode> nodes = new ArrayList<>();
+    List<DependencyNode> nodes = Collections.synchronizedList(new ArrayList<>());
     Map<MethodReference, BootstrapMethodSubstitutor> bootstrapMethodSubstitutors = new HashMap<>();
     private boolean completing;
 
@@ -123,6 +135,32 @@ public class DependencyChecker implements DependencyInfo {
         return interrupted;
     }
 
+    public int getPropagationThreads() {
+        return propagationThreads;
+    }
+
+    /**
+     * <p>Sets number of threads that propagate types between nodes. When more than one thread is specified,
+     * propagation along unfiltered node-to-node connections runs in a fork-join pool, while the rest of
+     * analysis (building method graphs, notifying listeners and plugins, filtered propagation)
+     * still runs in the calling thread. These two kinds of work never run simultaneously.</p>
+     *
+     * <p>Sets of reachable classes, methods and fields do not depend on number of threads,
+     * however, they can be discovered in different order.</p>
+     *
+     * @param propagationThreads number of threads, 1 means that all work is done in the calling thread.
+     */
+    public void setPropagationThreads(int propagationThreads) {
+        if (propagationThreads < 1) {
+            throw new IllegalArgumentException("Number of propagation threads must be positive: "
+                    + propagationThreads);
+        }
+        this.propagationThreads = propagationThreads;
+        Queue<Runnable> newTasks = propagationThreads > 1 ? new ConcurrentLinkedQueue<>() : new ArrayDeque<>();
+        newTasks.addAll(tasks);
+        tasks = newTasks;
+    }
+
     public DependencyType getType(String name) {
         DependencyType type = typeMap.get(name);
         if (type == null) {
@@ -236,15 +274,51 @@ public class DependencyChecker implements DependencyInfo {
     }
 
     void schedulePropagation(DependencyConsumer consumer, DependencyType type) {
-        tasks.add(() -> consumer.consume(type));
+        Runnable task = () -> consumer.consume(type);
+        if (canPropagateConcurrently(consumer)) {
+            scheduleConcurrently(task);
+        } else {
+            tasks.add(task);
+        }
     }
 
     void schedulePropagation(DependencyConsumer consumer, DependencyType[] types) {
-        tasks.add(() -> {
+        Runnable task = () -> {
             for (DependencyType type : types) {
                 consumer.consume(type);
             }
-        });
+        };
+        if (canPropagateConcurrently(consumer)) {
+            scheduleConcurrently(task);
+        } else {
+            tasks.add(task);
+        }
+    }
+
+    private boolean canPropagateConcurrently(DependencyConsumer consumer) {
+        return propagationThreads > 1 && consumer instanceof DependencyNodeToNodeTransition
+                && ((DependencyNodeToNodeTransition) consumer).filter == null;
+    }
+
+    private void scheduleConcurrently(Runnable task) {
+        if (propagationPool != null && ForkJoinTask.getPool() == propagationPool) {
+            runningConcurrentTasks.incrementAndGet();
+            ForkJoinTask.adapt(() -> runConcurrently(task)).fork();
+        } else {
+            pendingConcurrentTasks.add(task);
+        }
+    }
+
+    private void runConcurrently(Runnable task) {
+        try {
+            if (concurrentTaskError.get() == null) {
+                task.run();
+            }
+        } catch (Throwable e) {
+            concurrentTaskError.compareAndSet(null, e);
+        } finally {
+            runningConcurrentTasks.decrementAndGet();
+        }
     }
 
     private Set<String> classesAddedByRoot = new HashSet<>();
@@ -494,16 +568,55 @@ public class DependencyChecker implements DependencyInfo {
         if (interrupted) {
             return;
         }
-        int index = 0;
-        while (!tasks.isEmpty()) {
-            tasks.poll().run();
-            if (++index == 100) {
-                if (interruptor != null && !interruptor.shouldContinue()) {
-                    interrupted = true;
-                    break;
+        try {
+            int index = 0;
+            while (true) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    if (pendingConcurrentTasks.isEmpty()) {
+                        break;
+                    }
+                    propagateConcurrently();
+                    continue;
+                }
+                task.run();
+                if (++index == 100) {
+                    if (interruptor != null && !interruptor.shouldContinue()) {
+                        interrupted = true;
+                        break;
+                    }
+                    index = 0;
                 }
-                index = 0;
             }
+        } finally {
+            if (propagationPool != null) {
+                propagationPool.shutdownNow();
+                propagationPool = null;
+            }
+        }
+    }
+
+    private void propagateConcurrently() {
+        if (propagationPool == null) {
+            propagationPool = new ForkJoinPool(propagationThreads);
+        }
+        List<Runnable> tasksToRun = new ArrayList<>(pendingConcurrentTasks);
+        pendingConcurrentTasks.clear();
+        runningConcurrentTasks.addAndGet(tasksToRun.size());
+        for (Runnable task : tasksToRun) {
+            propagationPool.execute(() -> runConcurrently(task));
+        }
+        while (runningConcurrentTasks.get() > 0) {
+            propagationPool.awaitQuiescence(1, TimeUnit.SECONDS);
+        }
+
+        Throwable error = concurrentTaskError.getAndSet(null);
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw new RuntimeException(error);
         }
     }
 
@@ -56,6 +56,7 @@ import org.teavm.model.instructions.InstructionReader;
 import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.NullConstantInstruction;
 import org.teavm.model.util.ListingBuilder;
+import org.teavm.model.util.ProgramUtils;
 
 class DependencyGraphBuilder {
     private DependencyChecker dependencyChecker;
@@ -229,6 +230,7 @@ class DependencyGraphBuilder {
                 List<Instruction> splitInstructionsBackup = new ArrayList<>(splitInstructions);
                 splitInstructions.clear();
                 splitBlock.getInstructions().addAll(splitInstructionsBackup);
+                splitBlock.getTryCatchBlocks().addAll(ProgramUtils.copyTryCatches(block, program));
 
                 for (int k = 0; k < program.basicBlockCount() - 1; ++k) {
                     BasicBlock replaceBlock = program.basicBlockAt(k);
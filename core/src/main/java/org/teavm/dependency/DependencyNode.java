@@ -18,6 +18,11 @@ package org.teavm.dependency;
 import java.util.*;
 import org.teavm.model.MethodReference;
 
+/**
+ * <p>A node of the data flow graph built by {@link DependencyChecker}. All methods that read or modify
+ * type set, consumers or connections synchronize on the node, so that propagation can be performed
+ * from several threads, see {@link DependencyChecker#setPropagationThreads(int)}.</p>
+ */
 public class DependencyNode implements ValueDependencyInfo {
     private DependencyChecker dependencyChecker;
     private List<DependencyConsumer> followers;
@@ -83,7 +88,7 @@ public class DependencyNode implements ValueDependencyInfo {
         return false;
     }
 
-    public void propagate(DependencyType type) {
+    public synchronized void propagate(DependencyType type) {
         if (type.getDependencyChecker() != dependencyChecker) {
             throw new IllegalArgumentException("The given type does not belong to the same dependency checker");
         }
@@ -102,7 +107,7 @@ public class DependencyNode implements ValueDependencyInfo {
         }
     }
 
-    public void propagate(DependencyType[] newTypes) {
+    public synchronized void propagate(DependencyType[] newTypes) {
         DependencyType[] types = new DependencyType[newTypes.length];
         int j = 0;
         for (int i = 0; i < newTypes.length; ++i) {
@@ -130,7 +135,7 @@ public class DependencyNode implements ValueDependencyInfo {
         }
     }
 
-    public void addConsumer(DependencyConsumer consumer) {
+    public synchronized void addConsumer(DependencyConsumer consumer) {
         if (followers == null) {
             followers = new ArrayList<>();
         }
@@ -153,7 +158,7 @@ public class DependencyNode implements ValueDependencyInfo {
         }
     }
 
-    public void connect(DependencyNode node, DependencyTypeFilter filter) {
+    public synchronized void connect(DependencyNode node, DependencyTypeFilter filter) {
         if (this == node) {
             return;
         }
@@ -184,7 +189,7 @@ public class DependencyNode implements ValueDependencyInfo {
     }
 
     @Override
-    public DependencyNode getArrayItem() {
+    public synchronized DependencyNode getArrayItem() {
         if (arrayItemNode == null) {
             arrayItemNode = new DependencyNode(dependencyChecker, degree + 1);
             dependencyChecker.nodes.add(arrayItemNode);
@@ -196,7 +201,7 @@ public class DependencyNode implements ValueDependencyInfo {
         return arrayItemNode;
     }
 
-    public DependencyNode getClassValueNode() {
+    public synchronized DependencyNode getClassValueNode() {
         if (classValueNode == null) {
             classValueNode = new DependencyNode(dependencyChecker, degree);
             dependencyChecker.nodes.add(classValueNode);
@@ -209,11 +214,15 @@ public class DependencyNode implements ValueDependencyInfo {
     }
 
     @Override
-    public boolean hasArrayType() {
-        return arrayItemNode != null && (arrayItemNode.types != null || arrayItemNode.smallTypes != null);
+    public synchronized boolean hasArrayType() {
+        return arrayItemNode != null && arrayItemNode.hasAnyType();
+    }
+
+    private synchronized boolean hasAnyType() {
+        return types != null || smallTypes != null;
     }
 
-    public boolean hasType(DependencyType type) {
+    public synchronized boolean hasType(DependencyType type) {
         if (smallTypes != null) {
             for (int i = 0; i < smallTypes.length; ++i) {
                 if (smallTypes[i] == type.index) {
@@ -231,7 +240,7 @@ public class DependencyNode implements ValueDependencyInfo {
     }
 
     @Override
-    public String[] getTypes() {
+    public synchronized String[] getTypes() {
         if (smallTypes != null) {
             String[] result = new String[smallTypes.length];
             for (int i = 0; i < result.length; ++i) {
@@ -18,7 +18,7 @@ package org.teavm.dependency;
 class DependencyNodeToNodeTransition implements DependencyConsumer {
     private DependencyNode source;
     DependencyNode destination;
-    private DependencyTypeFilter filter;
+    DependencyTypeFilter filter;
 
     public DependencyNodeToNodeTransition(DependencyNode source, DependencyNode destination,
             DependencyTypeFilter filter) {
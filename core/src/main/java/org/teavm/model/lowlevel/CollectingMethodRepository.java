@@ -0,0 +1,191 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.lowlevel;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import org.teavm.callgraph.CallGraph;
+import org.teavm.callgraph.CallGraphNode;
+import org.teavm.callgraph.CallSite;
+import org.teavm.dependency.DependencyInfo;
+import org.teavm.interop.DelegateTo;
+import org.teavm.model.BasicBlockReader;
+import org.teavm.model.ClassReader;
+import org.teavm.model.ClassReaderSource;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.ProgramReader;
+import org.teavm.model.ValueType;
+import org.teavm.model.VariableReader;
+import org.teavm.model.instructions.AbstractInstructionReader;
+import org.teavm.runtime.GC;
+
+/**
+ * <p>Tells which methods may trigger garbage collection, so that live references need to be stored
+ * in shadow stack only before calls to these methods. Method may trigger garbage collection when it allocates
+ * objects, initializes classes, throws exceptions, calls {@link GC#collectGarbage(int)} or calls another
+ * method that may trigger garbage collection, according to {@link CallGraph call graph} of dependency
+ * analysis.</p>
+ *
+ * <p>Native methods are supposed to be either imported or replaced by intrinsics that never call back
+ * managed code, except for methods that are {@link DelegateTo delegated} to other methods.
+ * Static methods and constructors of classes with static initializers are always considered to trigger
+ * garbage collection, since call to initializer is added to them after dependency analysis.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class CollectingMethodRepository {
+    private static final MethodDescriptor CLINIT = new MethodDescriptor("<clinit>", void.class);
+    private DependencyInfo dependencyInfo;
+    private ClassReaderSource classSource;
+    private Set<MethodReference> reachableMethods;
+    private Set<MethodReference> collectingMethods;
+    private Set<MethodReference> collectingFamilyMethods;
+
+    public CollectingMethodRepository(DependencyInfo dependencyInfo) {
+        this.dependencyInfo = dependencyInfo;
+    }
+
+    /**
+     * <p>Checks whether a call to the given method may trigger garbage collection.</p>
+     *
+     * @param method referenced method.
+     * @param virtual whether the method is called virtually, so that any of the overriding methods can run.
+     * @return <code>false</code> if it's proven that the call never triggers garbage collection.
+     */
+    public boolean isCollecting(MethodReference method, boolean virtual) {
+        if (collectingMethods == null) {
+            find();
+        }
+        MethodReader reader = classSource.resolve(method);
+        if (reader == null) {
+            return true;
+        }
+        MethodReference resolved = reader.getReference();
+        if (!reachableMethods.contains(resolved)) {
+            return true;
+        }
+        return virtual ? collectingFamilyMethods.contains(resolved) : collectingMethods.contains(resolved);
+    }
+
+    private void find() {
+        classSource = dependencyInfo.getClassSource();
+        reachableMethods = new HashSet<>(dependencyInfo.getReachableMethods());
+        collectingMethods = new HashSet<>();
+        collectingFamilyMethods = new HashSet<>();
+
+        Queue<MethodReference> queue = new ArrayDeque<>();
+        for (MethodReference method : reachableMethods) {
+            if (isCollectingItself(method)) {
+                queue.add(method);
+            }
+        }
+
+        CallGraph callGraph = dependencyInfo.getCallGraph();
+        while (!queue.isEmpty()) {
+            MethodReference method = queue.remove();
+            if (!collectingMethods.add(method)) {
+                continue;
+            }
+            addToFamily(method);
+            CallGraphNode node = callGraph.getNode(method);
+            for (CallSite callSite : node.getCallerCallSites()) {
+                queue.add(callSite.getCaller().getMethod());
+            }
+        }
+    }
+
+    private boolean isCollectingItself(MethodReference methodRef) {
+        if (methodRef.getClassName().equals(GC.class.getName()) && methodRef.getName().equals("collectGarbage")) {
+            return true;
+        }
+        ClassReader cls = classSource.get(methodRef.getClassName());
+        MethodReader method = cls != null ? cls.getMethod(methodRef.getDescriptor()) : null;
+        if (method == null) {
+            return true;
+        }
+        if (!methodRef.getName().equals("<clinit>") && cls.getMethod(CLINIT) != null
+                && (method.hasModifier(ElementModifier.STATIC) || methodRef.getName().equals("<init>"))) {
+            return true;
+        }
+
+        ProgramReader program = method.getProgram();
+        if (program == null) {
+            return method.hasModifier(ElementModifier.NATIVE)
+                    && method.getAnnotations().get(DelegateTo.class.getName()) != null;
+        }
+        CollectingInstructionReader insnReader = new CollectingInstructionReader();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlockReader block = program.basicBlockAt(i);
+            block.readAllInstructions(insnReader);
+            if (insnReader.collecting) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addToFamily(MethodReference methodRef) {
+        collectingFamilyMethods.add(methodRef);
+        if (methodRef.getName().equals("<init>") || methodRef.getName().equals("<clinit>")) {
+            return;
+        }
+        classSource.getAncestors(methodRef.getClassName())
+                .map(cls -> cls.getMethod(methodRef.getDescriptor()))
+                .filter(method -> method != null && !method.hasModifier(ElementModifier.STATIC))
+                .forEach(method -> collectingFamilyMethods.add(method.getReference()));
+    }
+
+    static class CollectingInstructionReader extends AbstractInstructionReader {
+        boolean collecting;
+
+        @Override
+        public void create(VariableReader receiver, String type) {
+            collecting = true;
+        }
+
+        @Override
+        public void createArray(VariableReader receiver, ValueType itemType, VariableReader size) {
+            collecting = true;
+        }
+
+        @Override
+        public void createArray(VariableReader receiver, ValueType itemType,
+                List<? extends VariableReader> dimensions) {
+            collecting = true;
+        }
+
+        @Override
+        public void cloneArray(VariableReader receiver, VariableReader array) {
+            collecting = true;
+        }
+
+        @Override
+        public void initClass(String className) {
+            collecting = true;
+        }
+
+        @Override
+        public void raise(VariableReader exception) {
+            collecting = true;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.util.List;
 import org.teavm.common.DominatorTree;
 import org.teavm.common.Graph;
 import org.teavm.common.GraphUtils;
+import org.teavm.interop.Address;
 import org.teavm.model.BasicBlock;
 import org.teavm.model.Incoming;
 import org.teavm.model.Instruction;
@@ -58,6 +59,7 @@ import org.teavm.runtime.ShadowStack;
 
 public class ExceptionHandlingShadowStackContributor {
     private ManagedMethodRepository managedMethodRepository;
+    private boolean nativeExceptions;
     private List<CallSiteDescriptor> callSites;
     private BasicBlock defaultExceptionHandler;
     private MethodReference method;
@@ -69,7 +71,25 @@ public class ExceptionHandlingShadowStackContributor {
 
     public ExceptionHandlingShadowStackContributor(ManagedMethodRepository managedMethodRepository,
             List<CallSiteDescriptor> callSites, MethodReference method, Program program) {
+        this(managedMethodRepository, false, callSites, method, program);
+    }
+
+    /**
+     * <p>Creates contributor that either checks for exception after every call or relies on native
+     * exceptions of the target.</p>
+     *
+     * <p>In the latter case exceptions are thrown with {@link ExceptionHandling#throwNativeException(Throwable)},
+     * calls that are not protected by exception handlers are left intact, since native exceptions propagate
+     * through them by themselves. Calls within protected blocks are still registered as call sites
+     * and followed by dispatch on handler id, but the id is set only by the code that catches native
+     * exception thrown by the call, which must call {@link ExceptionHandling#findExceptionHandler(Address)}
+     * for the current stack frame. When there is no appropriate handler, the method rethrows the exception
+     * by {@link ExceptionHandling#unwind()}.</p>
+     */
+    public ExceptionHandlingShadowStackContributor(ManagedMethodRepository managedMethodRepository,
+            boolean nativeExceptions, List<CallSiteDescriptor> callSites, MethodReference method, Program program) {
         this.managedMethodRepository = managedMethodRepository;
+        this.nativeExceptions = nativeExceptions;
         this.callSites = callSites;
         this.method = method;
         this.program = program;
@@ -153,14 +173,18 @@ public class ExceptionHandlingShadowStackContributor {
             if (isCallInstruction(insn)) {
                 BasicBlock next;
                 boolean last = false;
+                if (nativeExceptions && block.getTryCatchBlocks().isEmpty()) {
+                    if (insn instanceof RaiseInstruction) {
+                        instructions.set(i, createRaise((RaiseInstruction) insn));
+                        ExitInstruction exit = new ExitInstruction();
+                        exit.setValueToReturn(createReturnValueInstructions(instructions));
+                        instructions.add(exit);
+                        break;
+                    }
+                    continue;
+                }
                 if (insn instanceof RaiseInstruction) {
-                    InvokeInstruction raise = new InvokeInstruction();
-                    raise.setMethod(new MethodReference(ExceptionHandling.class, "throwException", Throwable.class,
-                            void.class));
-                    raise.setType(InvocationType.SPECIAL);
-                    raise.getArguments().add(((RaiseInstruction) insn).getException());
-                    raise.setLocation(insn.getLocation());
-                    instructions.set(i, raise);
+                    instructions.set(i, createRaise((RaiseInstruction) insn));
                     next = null;
                 } else if (i < instructions.size() - 1 && instructions.get(i + 1) instanceof JumpInstruction) {
                     next = ((JumpInstruction) instructions.get(i + 1)).getTarget();
@@ -208,6 +232,16 @@ public class ExceptionHandlingShadowStackContributor {
         return block.getIndex();
     }
 
+    private InvokeInstruction createRaise(RaiseInstruction insn) {
+        InvokeInstruction raise = new InvokeInstruction();
+        String methodName = nativeExceptions ? "throwNativeException" : "throwException";
+        raise.setMethod(new MethodReference(ExceptionHandling.class, methodName, Throwable.class, void.class));
+        raise.setType(InvocationType.SPECIAL);
+        raise.getArguments().add(insn.getException());
+        raise.setLocation(insn.getLocation());
+        return raise;
+    }
+
     private boolean isCallInstruction(Instruction insn) {
         if (insn instanceof InitClassInstruction || insn instanceof ConstructInstruction
                 || insn instanceof ConstructArrayInstruction || insn instanceof ConstructMultiArrayInstruction
@@ -323,6 +357,12 @@ public class ExceptionHandlingShadowStackContributor {
     private BasicBlock getDefaultExceptionHandler() {
         if (defaultExceptionHandler == null) {
             defaultExceptionHandler = program.createBasicBlock();
+            if (nativeExceptions) {
+                InvokeInstruction rethrow = new InvokeInstruction();
+                rethrow.setMethod(new MethodReference(ExceptionHandling.class, "unwind", void.class));
+                rethrow.setType(InvocationType.SPECIAL);
+                defaultExceptionHandler.getInstructions().add(rethrow);
+            }
             Variable result = createReturnValueInstructions(defaultExceptionHandler.getInstructions());
             ExitInstruction exit = new ExitInstruction();
             exit.setValueToReturn(result);
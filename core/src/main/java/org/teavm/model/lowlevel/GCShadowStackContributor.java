@@ -23,9 +23,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.Function;
 import org.teavm.common.DominatorTree;
 import org.teavm.common.Graph;
 import org.teavm.common.GraphBuilder;
@@ -38,6 +39,7 @@ import org.teavm.model.MethodReference;
 import org.teavm.model.Phi;
 import org.teavm.model.Program;
 import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
 import org.teavm.model.instructions.CloneArrayInstruction;
 import org.teavm.model.instructions.ConstructArrayInstruction;
 import org.teavm.model.instructions.ConstructInstruction;
@@ -49,6 +51,7 @@ import org.teavm.model.instructions.InvokeInstruction;
 import org.teavm.model.instructions.RaiseInstruction;
 import org.teavm.model.util.DefinitionExtractor;
 import org.teavm.model.util.GraphColorer;
+import org.teavm.model.util.InstructionVariableMapper;
 import org.teavm.model.util.LivenessAnalyzer;
 import org.teavm.model.util.ProgramUtils;
 import org.teavm.model.util.TypeInferer;
@@ -58,12 +61,54 @@ import org.teavm.runtime.ShadowStack;
 
 public class GCShadowStackContributor {
     private ManagedMethodRepository managedMethodRepository;
+    private CollectingMethodRepository collectingMethodRepository;
+    private Map<Instruction, BitSet> callSiteLiveOuts = new HashMap<>();
+    private int[] variableSlots;
+    private int[] copyClasses;
+    private int skippedCallSites;
+    private int liveReferences;
+    private int gcRootStores;
 
     public GCShadowStackContributor(ManagedMethodRepository managedMethodRepository) {
+        this(managedMethodRepository, null);
+    }
+
+    /**
+     * <p>Creates contributor that stores live references only before calls that may trigger garbage
+     * collection, as reported by the given repository. When repository is <code>null</code>, every call to
+     * managed method is supposed to trigger garbage collection.</p>
+     */
+    public GCShadowStackContributor(ManagedMethodRepository managedMethodRepository,
+            CollectingMethodRepository collectingMethodRepository) {
         this.managedMethodRepository = managedMethodRepository;
+        this.collectingMethodRepository = collectingMethodRepository;
+    }
+
+    /**
+     * <p>Gets number of calls to managed methods that are proven to never trigger garbage collection,
+     * so live references are not stored before them.</p>
+     */
+    public int getSkippedCallSites() {
+        return skippedCallSites;
+    }
+
+    /**
+     * <p>Gets number of instructions that store or remove GC roots in shadow stack.</p>
+     */
+    public int getGCRootStores() {
+        return gcRootStores;
+    }
+
+    /**
+     * <p>Gets number of stores saved in comparison to storing every live reference before every call.</p>
+     */
+    public int getRemovedGCRootStores() {
+        return liveReferences - gcRootStores;
     }
 
     public int contribute(Program program, MethodReader method) {
+        callSiteLiveOuts.clear();
+        copyClasses = findCopyClasses(program);
         List<IntObjectMap<BitSet>> liveInInformation = findCallSiteLiveIns(program, method);
 
         Graph interferenceGraph = buildInterferenceGraph(liveInInformation, program);
@@ -73,50 +118,68 @@ public class GCShadowStackContributor {
         new GraphColorer().colorize(interferenceGraph, colors);
 
         int usedColors = 0;
+        int[] slots = new int[colors.length];
+        Arrays.fill(slots, -1);
         for (int var = 0; var < colors.length; ++var) {
             if (spilled[var]) {
-                usedColors = Math.max(usedColors, colors[var]);
-                colors[var]--;
+                int color = colors[copyClasses[var]];
+                usedColors = Math.max(usedColors, color);
+                slots[var] = color - 1;
             }
         }
         if (usedColors == 0) {
+            callSiteLiveOuts.clear();
             return 0;
         }
-
-        // If a variable is spilled to stack, then phi which input this variable also spilled to stack
-        // If all of phi inputs are spilled to stack, then we don't need to insert spilling instruction
-        // for this phi.
-        List<Set<Phi>> destinationPhis = getDestinationPhis(program);
-        int[] inputCount = getInputCount(program);
-        boolean[] autoSpilled = new boolean[spilled.length];
-        for (int i = 0; i < spilled.length; ++i) {
-            findAutoSpilledPhis(spilled, destinationPhis, inputCount, autoSpilled, i);
-        }
+        variableSlots = slots;
 
         List<IntObjectMap<int[]>> liveInStores = reduceGCRootStores(program, usedColors, liveInInformation,
-                colors, autoSpilled);
+                slots);
         putLiveInGCRoots(program, liveInStores);
 
         return usedColors;
     }
 
-    private void findAutoSpilledPhis(boolean[] spilled, List<Set<Phi>> destinationPhis, int[] inputCount,
-            boolean[] autoSpilled, int i) {
-        if (spilled[i]) {
-            Set<Phi> phis = destinationPhis.get(i);
-            if (phis != null) {
-                for (Phi phi : destinationPhis.get(i)) {
-                    int destination = phi.getReceiver().getIndex();
-                    autoSpilled[destination] = --inputCount[destination] == 0;
-                    if (!spilled[destination]) {
-                        spilled[destination] = true;
-                        if (i > destination) {
-                            findAutoSpilledPhis(spilled, destinationPhis, inputCount, autoSpilled, destination);
-                        }
-                    }
+    /*
+     * Variables that are copies of each other hold the same reference wherever they are live, since program
+     * is in SSA form, so they share a single slot, which is stored only once.
+     */
+    private static int[] findCopyClasses(Program program) {
+        int[] classes = new int[program.variableCount()];
+        for (int i = 0; i < classes.length; ++i) {
+            classes[i] = i;
+        }
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof AssignInstruction) {
+                    AssignInstruction assign = (AssignInstruction) insn;
+                    int receiver = findCopyClass(classes, assign.getReceiver().getIndex());
+                    int assignee = findCopyClass(classes, assign.getAssignee().getIndex());
+                    classes[receiver] = assignee;
                 }
             }
         }
+        for (int i = 0; i < classes.length; ++i) {
+            classes[i] = findCopyClass(classes, i);
+        }
+        return classes;
+    }
+
+    private static int findCopyClass(int[] classes, int variable) {
+        while (classes[variable] != variable) {
+            classes[variable] = classes[classes[variable]];
+            variable = classes[variable];
+        }
+        return variable;
+    }
+
+    private boolean isCollecting(Instruction insn) {
+        if (collectingMethodRepository == null || !(insn instanceof InvokeInstruction)) {
+            return true;
+        }
+        InvokeInstruction invoke = (InvokeInstruction) insn;
+        return collectingMethodRepository.isCollecting(invoke.getMethod(),
+                invoke.getType() == InvocationType.VIRTUAL);
     }
 
     private List<IntObjectMap<BitSet>> findCallSiteLiveIns(Program program, MethodReader method) {
@@ -142,11 +205,13 @@ public class GCShadowStackContributor {
                 Instruction insn = block.getInstructions().get(j);
                 insn.acceptVisitor(defExtractor);
                 insn.acceptVisitor(useExtractor);
+                BitSet liveOut = (BitSet) currentLiveOut.clone();
                 for (Variable usedVar : useExtractor.getUsedVariables()) {
                     currentLiveOut.set(usedVar.getIndex());
                 }
                 for (Variable definedVar : defExtractor.getDefinedVariables()) {
                     currentLiveOut.clear(definedVar.getIndex());
+                    liveOut.clear(definedVar.getIndex());
                 }
                 if (insn instanceof InvokeInstruction || insn instanceof InitClassInstruction
                         || insn instanceof ConstructInstruction || insn instanceof ConstructArrayInstruction
@@ -163,8 +228,19 @@ public class GCShadowStackContributor {
                             csLiveIn.clear(v);
                         }
                     }
-                    csLiveIn.clear(0, method.parameterCount() + 1);
+                    liveReferences += csLiveIn.cardinality();
+                    if (!isCollecting(insn)) {
+                        skippedCallSites++;
+                        continue;
+                    }
                     blockLiveIn.put(j, csLiveIn);
+
+                    if (!(insn instanceof RaiseInstruction)) {
+                        liveOut.and(csLiveIn);
+                        if (!liveOut.isEmpty()) {
+                            callSiteLiveOuts.put(insn, liveOut);
+                        }
+                    }
                 }
             }
             if (block.getExceptionVariable() != null) {
@@ -180,8 +256,12 @@ public class GCShadowStackContributor {
         for (IntObjectMap<BitSet> blockLiveIn : liveInInformation) {
             for (ObjectCursor<BitSet> callSiteLiveIn : blockLiveIn.values()) {
                 BitSet liveVarsSet = callSiteLiveIn.value;
-                IntArrayList liveVars = new IntArrayList();
+                BitSet liveClasses = new BitSet();
                 for (int i = liveVarsSet.nextSetBit(0); i >= 0; i = liveVarsSet.nextSetBit(i + 1)) {
+                    liveClasses.set(copyClasses[i]);
+                }
+                IntArrayList liveVars = new IntArrayList();
+                for (int i = liveClasses.nextSetBit(0); i >= 0; i = liveClasses.nextSetBit(i + 1)) {
                     liveVars.add(i);
                 }
                 int[] liveVarArray = liveVars.toArray();
@@ -209,42 +289,8 @@ public class GCShadowStackContributor {
         return affectedVariables;
     }
 
-    private List<Set<Phi>> getDestinationPhis(Program program) {
-        List<Set<Phi>> destinationPhis = new ArrayList<>();
-        destinationPhis.addAll(Collections.nCopies(program.variableCount(), null));
-
-        for (int i = 0; i < program.basicBlockCount(); ++i) {
-            BasicBlock block = program.basicBlockAt(i);
-            for (Phi phi : block.getPhis()) {
-                for (Incoming incoming : phi.getIncomings()) {
-                    Set<Phi> phis = destinationPhis.get(incoming.getValue().getIndex());
-                    if (phis == null) {
-                        phis = new HashSet<>();
-                        destinationPhis.set(incoming.getValue().getIndex(), phis);
-                    }
-                    phis.add(phi);
-                }
-            }
-        }
-
-        return destinationPhis;
-    }
-
-    private int[] getInputCount(Program program) {
-        int[] inputCount = new int[program.variableCount()];
-
-        for (int i = 0; i < program.basicBlockCount(); ++i) {
-            BasicBlock block = program.basicBlockAt(i);
-            for (Phi phi : block.getPhis()) {
-                inputCount[phi.getReceiver().getIndex()] = phi.getIncomings().size();
-            }
-        }
-
-        return inputCount;
-    }
-
     private List<IntObjectMap<int[]>> reduceGCRootStores(Program program, int usedColors,
-            List<IntObjectMap<BitSet>> liveInInformation, int[] colors, boolean[] autoSpilled) {
+            List<IntObjectMap<BitSet>> liveInInformation, int[] slots) {
         class Step {
             private final int node;
             private final int[] slotStates = new int[usedColors];
@@ -265,14 +311,13 @@ public class GCShadowStackContributor {
         Step[] stack = new Step[program.basicBlockCount() * 2];
         int head = 0;
         Step start = new Step(0);
-        Arrays.fill(start.slotStates, usedColors);
+        Arrays.fill(start.slotStates, -3);
         stack[head++] = start;
 
         while (head > 0) {
             Step step = stack[--head];
 
-            int[] previousStates = step.slotStates;
-            int[] states = previousStates.clone();
+            int[] states = step.slotStates.clone();
 
             IntObjectMap<BitSet> callSites = liveInInformation.get(step.node);
             IntObjectMap<int[]> updatesByCallSite = slotsToUpdate.get(step.node);
@@ -280,19 +325,26 @@ public class GCShadowStackContributor {
             Arrays.sort(callSiteLocations);
             for (int callSiteLocation : callSiteLocations) {
                 BitSet liveIns = callSites.get(callSiteLocation);
+                int[] updates = new int[usedColors];
+                Arrays.fill(updates, -2);
+                BitSet liveClasses = new BitSet();
                 for (int liveVar = liveIns.nextSetBit(0); liveVar >= 0; liveVar = liveIns.nextSetBit(liveVar + 1)) {
-                    int slot = colors[liveVar];
-                    states[slot] = liveVar;
+                    int slot = slots[liveVar];
+                    int copyClass = copyClasses[liveVar];
+                    liveClasses.set(copyClass);
+                    if (states[slot] != copyClass) {
+                        states[slot] = copyClass;
+                        updates[slot] = liveVar;
+                    }
                 }
                 for (int slot = 0; slot < states.length; ++slot) {
-                    if (states[slot] >= 0 && !liveIns.get(states[slot])) {
+                    if (states[slot] >= 0 && !liveClasses.get(states[slot])) {
                         states[slot] = -1;
+                        updates[slot] = -1;
                     }
                 }
 
-                updatesByCallSite.put(callSiteLocation, compareStates(previousStates, states, autoSpilled));
-                previousStates = states;
-                states = states.clone();
+                updatesByCallSite.put(callSiteLocation, updates);
             }
 
             for (int succ : domGraph.outgoingEdges(step.node)) {
@@ -305,25 +357,6 @@ public class GCShadowStackContributor {
         return slotsToUpdate;
     }
 
-    private static int[] compareStates(int[] oldStates, int[] newStates, boolean[] autoSpilled) {
-        int[] comparison = new int[oldStates.length];
-        Arrays.fill(comparison, -2);
-
-        for (int i = 0; i < oldStates.length; ++i) {
-            if (oldStates[i] != newStates[i]) {
-                comparison[i] = newStates[i];
-            }
-        }
-
-        for (int i = 0; i < newStates.length; ++i) {
-            if (newStates[i] >= 0 && autoSpilled[newStates[i]]) {
-                comparison[i] = -2;
-            }
-        }
-
-        return comparison;
-    }
-
     private void putLiveInGCRoots(Program program, List<IntObjectMap<int[]>> updateInformation) {
         for (int i = 0; i < program.basicBlockCount(); ++i) {
             BasicBlock block = program.basicBlockAt(i);
@@ -370,11 +403,208 @@ public class GCShadowStackContributor {
                         void.class));
             }
             instructionsToAdd.add(registerInvocation);
+            gcRootStores++;
         }
 
         instructions.addAll(index, instructionsToAdd);
     }
 
+    /**
+     * <p>Reloads references that stay alive across call sites from the shadow stack, since GC may move objects
+     * and update stack roots while the call is in progress. Should be applied after all other transformations
+     * that split basic blocks, since reloads are inserted right after call instructions found by
+     * {@link #contribute(Program, MethodReader)}.</p>
+     */
+    public void reloadGCRoots(Program program) {
+        if (callSiteLiveOuts.isEmpty()) {
+            return;
+        }
+
+        int variableCount = program.variableCount();
+        Map<Instruction, Variable> reloads = new HashMap<>();
+        List<IntArrayList> reloadPlaces = new ArrayList<>(Collections.nCopies(variableCount, null));
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction callInstruction = instructions.get(j);
+                BitSet liveOut = callSiteLiveOuts.get(callInstruction);
+                if (liveOut == null) {
+                    continue;
+                }
+
+                List<Instruction> instructionsToAdd = new ArrayList<>();
+                for (int var = liveOut.nextSetBit(0); var >= 0; var = liveOut.nextSetBit(var + 1)) {
+                    Variable slotVar = program.createVariable();
+                    IntegerConstantInstruction slotConstant = new IntegerConstantInstruction();
+                    slotConstant.setReceiver(slotVar);
+                    slotConstant.setConstant(variableSlots[var]);
+                    slotConstant.setLocation(callInstruction.getLocation());
+                    instructionsToAdd.add(slotConstant);
+
+                    Variable original = program.variableAt(var);
+                    Variable reloaded = program.createVariable();
+                    reloaded.setDebugName(original.getDebugName());
+                    InvokeInstruction reloadInvocation = new InvokeInstruction();
+                    reloadInvocation.setLocation(callInstruction.getLocation());
+                    reloadInvocation.setType(InvocationType.SPECIAL);
+                    reloadInvocation.setMethod(new MethodReference(ShadowStack.class, "getGCRoot", int.class,
+                            Object.class));
+                    reloadInvocation.getArguments().add(slotVar);
+                    reloadInvocation.setReceiver(reloaded);
+                    instructionsToAdd.add(reloadInvocation);
+                    reloads.put(reloadInvocation, original);
+
+                    IntArrayList places = reloadPlaces.get(var);
+                    if (places == null) {
+                        places = new IntArrayList();
+                        reloadPlaces.set(var, places);
+                    }
+                    places.add(i);
+                }
+
+                instructions.addAll(j + 1, instructionsToAdd);
+                j += instructionsToAdd.size();
+            }
+        }
+        callSiteLiveOuts.clear();
+
+        renameReloadedVariables(program, variableCount, reloads, reloadPlaces);
+    }
+
+    private void renameReloadedVariables(Program program, int variableCount, Map<Instruction, Variable> reloads,
+            List<IntArrayList> reloadPlaces) {
+        Graph cfg = ProgramUtils.buildControlFlowGraph(program);
+        DominatorTree dom = GraphUtils.buildDominatorTree(cfg);
+        Graph domGraph = GraphUtils.buildDominatorGraph(dom, cfg.size());
+        int[][] frontiers = GraphUtils.findDominanceFrontiers(cfg, dom);
+        LivenessAnalyzer liveness = new LivenessAnalyzer();
+        liveness.analyze(program);
+        BasicBlock[] definitionPlaces = ProgramUtils.getVariableDefinitionPlaces(program);
+
+        List<List<Phi>> newPhis = new ArrayList<>();
+        List<IntArrayList> newPhiVariables = new ArrayList<>();
+        for (int i = 0; i < cfg.size(); ++i) {
+            newPhis.add(new ArrayList<>());
+            newPhiVariables.add(new IntArrayList());
+        }
+
+        int[] visited = new int[cfg.size()];
+        int[] phiPlaced = new int[cfg.size()];
+        int[] worklist = new int[cfg.size()];
+        for (int var = 0; var < variableCount; ++var) {
+            IntArrayList places = reloadPlaces.get(var);
+            if (places == null) {
+                continue;
+            }
+            Variable original = program.variableAt(var);
+            int stamp = var + 1;
+
+            int head = 0;
+            BasicBlock definitionPlace = definitionPlaces[var];
+            int definitionBlock = definitionPlace != null ? definitionPlace.getIndex() : 0;
+            visited[definitionBlock] = stamp;
+            worklist[head++] = definitionBlock;
+            for (int i = 0; i < places.size(); ++i) {
+                int place = places.get(i);
+                if (visited[place] != stamp) {
+                    visited[place] = stamp;
+                    worklist[head++] = place;
+                }
+            }
+
+            while (head > 0) {
+                int[] blockFrontiers = frontiers[worklist[--head]];
+                if (blockFrontiers == null) {
+                    continue;
+                }
+                for (int frontier : blockFrontiers) {
+                    if (phiPlaced[frontier] == stamp || !liveness.liveIn(frontier, var)) {
+                        continue;
+                    }
+                    phiPlaced[frontier] = stamp;
+                    Phi phi = new Phi();
+                    Variable receiver = program.createVariable();
+                    receiver.setDebugName(original.getDebugName());
+                    phi.setReceiver(receiver);
+                    newPhis.get(frontier).add(phi);
+                    newPhiVariables.get(frontier).add(var);
+                    if (visited[frontier] != stamp) {
+                        visited[frontier] = stamp;
+                        worklist[head++] = frontier;
+                    }
+                }
+            }
+        }
+
+        class Step {
+            private final int node;
+            private final Variable[] variables;
+            private Step(int node, Variable[] variables) {
+                this.node = node;
+                this.variables = variables;
+            }
+        }
+
+        Step[] stack = new Step[cfg.size()];
+        int head = 0;
+        for (int i = 0; i < cfg.size(); ++i) {
+            if (domGraph.incomingEdgesCount(i) == 0) {
+                stack[head++] = new Step(i, new Variable[variableCount]);
+            }
+        }
+
+        while (head > 0) {
+            Step step = stack[--head];
+            Variable[] variables = step.variables;
+            Function<Variable, Variable> mapping = var -> var.getIndex() < variableCount
+                    && variables[var.getIndex()] != null ? variables[var.getIndex()] : var;
+            InstructionVariableMapper mapper = new InstructionVariableMapper(mapping);
+
+            BasicBlock block = program.basicBlockAt(step.node);
+            List<Phi> blockPhis = newPhis.get(step.node);
+            IntArrayList blockPhiVariables = newPhiVariables.get(step.node);
+            for (int i = 0; i < blockPhis.size(); ++i) {
+                variables[blockPhiVariables.get(i)] = blockPhis.get(i).getReceiver();
+            }
+
+            for (Instruction insn : block.getInstructions()) {
+                Variable reloadedVar = reloads.get(insn);
+                if (reloadedVar != null) {
+                    variables[reloadedVar.getIndex()] = ((InvokeInstruction) insn).getReceiver();
+                } else {
+                    insn.acceptVisitor(mapper);
+                }
+            }
+
+            for (int successor : cfg.outgoingEdges(step.node)) {
+                for (Phi phi : program.basicBlockAt(successor).getPhis()) {
+                    for (Incoming incoming : phi.getIncomings()) {
+                        if (incoming.getSource() == block) {
+                            incoming.setValue(mapping.apply(incoming.getValue()));
+                        }
+                    }
+                }
+                List<Phi> successorPhis = newPhis.get(successor);
+                IntArrayList successorPhiVariables = newPhiVariables.get(successor);
+                for (int i = 0; i < successorPhis.size(); ++i) {
+                    Incoming incoming = new Incoming();
+                    incoming.setSource(block);
+                    incoming.setValue(mapping.apply(program.variableAt(successorPhiVariables.get(i))));
+                    successorPhis.get(i).getIncomings().add(incoming);
+                }
+            }
+
+            for (int child : domGraph.outgoingEdges(step.node)) {
+                stack[head++] = new Step(child, variables.clone());
+            }
+        }
+
+        for (int i = 0; i < cfg.size(); ++i) {
+            program.basicBlockAt(i).getPhis().addAll(newPhis.get(i));
+        }
+    }
+
     private boolean isReference(TypeInferer typeInferer, int var) {
         VariableType liveType = typeInferer.typeOf(var);
         switch (liveType) {
@@ -36,25 +36,54 @@ import org.teavm.runtime.ShadowStack;
 public class ShadowStackTransformer {
     private ManagedMethodRepository managedMethodRepository;
     private GCShadowStackContributor gcContributor;
+    private boolean nativeExceptions;
     private List<CallSiteDescriptor> callSites = new ArrayList<>();
 
     public ShadowStackTransformer(ClassReaderSource classSource) {
+        this(classSource, false);
+    }
+
+    public ShadowStackTransformer(ClassReaderSource classSource, boolean nativeExceptions) {
+        this(classSource, null, nativeExceptions);
+    }
+
+    /**
+     * <p>Creates transformer that stores GC roots only before calls that may trigger garbage collection,
+     * according to the given repository, which may be <code>null</code>. Methods that never keep references
+     * across such calls and don't need call sites for exception handling get no shadow stack frame.</p>
+     */
+    public ShadowStackTransformer(ClassReaderSource classSource,
+            CollectingMethodRepository collectingMethodRepository, boolean nativeExceptions) {
         managedMethodRepository = new ManagedMethodRepository(classSource);
-        gcContributor = new GCShadowStackContributor(managedMethodRepository);
+        gcContributor = new GCShadowStackContributor(managedMethodRepository, collectingMethodRepository);
+        this.nativeExceptions = nativeExceptions;
     }
 
     public List<CallSiteDescriptor> getCallSites() {
         return callSites;
     }
 
+    public int getSkippedGCCallSites() {
+        return gcContributor.getSkippedCallSites();
+    }
+
+    public int getGCRootStores() {
+        return gcContributor.getGCRootStores();
+    }
+
+    public int getRemovedGCRootStores() {
+        return gcContributor.getRemovedGCRootStores();
+    }
+
     public void apply(Program program, MethodReader method) {
         if (!managedMethodRepository.isManaged(method.getReference())) {
             return;
         }
 
         int shadowStackSize = gcContributor.contribute(program, method);
-        boolean exceptions = new ExceptionHandlingShadowStackContributor(managedMethodRepository, callSites,
-                method.getReference(), program).contribute();
+        boolean exceptions = new ExceptionHandlingShadowStackContributor(managedMethodRepository, nativeExceptions,
+                callSites, method.getReference(), program).contribute();
+        gcContributor.reloadGCRoots(program);
 
         if (shadowStackSize > 0 || exceptions) {
             addStackAllocation(program, shadowStackSize);
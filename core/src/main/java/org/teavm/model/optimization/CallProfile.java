@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.instructions.InvokeInstruction;
+
+/**
+ * <p>Call site counts and receiver classes recorded by a build instrumented with
+ * {@link CallProfileInstrumentation}. Used by {@link Inlining} to inline hot call sites more aggressively and
+ * by {@link Devirtualization} to guard call sites that were monomorphic in the profile.</p>
+ *
+ * <p>A call site is identified by the method that contains it and by index of the invocation among all
+ * invocations of the method, as returned by {@link #getCallSites(Program)} right after linking. Both the
+ * instrumented build and the build that consumes the profile enumerate call sites at that point, so indexes
+ * match as long as the code did not change. Before optimizations run, {@link #bind(MethodHolder)} attaches
+ * profiles to invocation instructions, and optimizations that copy instructions carry the profiles over
+ * with {@link #copyBindings(BasicBlock, BasicBlock)}.</p>
+ *
+ * <p>The profile is a text file, each line describes a call site:</p>
+ *
+ * <pre>
+ * &lt;method reference&gt; &lt;index&gt; &lt;count&gt; [&lt;receiver class&gt;:&lt;count&gt; ...] [*:&lt;count&gt;]
+ * </pre>
+ *
+ * <p>where <code>*</code> counts receivers of classes that were not tracked. Empty lines and lines starting
+ * with <code>#</code> are ignored, lines for the same call site are summed up, so that profiles of several
+ * runs can be concatenated.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class CallProfile {
+    private static final long MIN_HOT_COUNT = 1000;
+    private static final long HOT_FRACTION = 1000;
+    private Map<MethodReference, Map<Integer, CallSiteProfile>> methods = new LinkedHashMap<>();
+    private Map<Instruction, CallSiteProfile> bindings = new IdentityHashMap<>();
+    private long maxCount;
+
+    public CallSiteProfile get(MethodReference method, int index) {
+        Map<Integer, CallSiteProfile> callSites = methods.get(method);
+        return callSites != null ? callSites.get(index) : null;
+    }
+
+    public boolean contains(MethodReference method) {
+        return methods.containsKey(method);
+    }
+
+    public CallSiteProfile add(MethodReference method, int index, long count) {
+        CallSiteProfile callSite = methods.computeIfAbsent(method, k -> new HashMap<>())
+                .computeIfAbsent(index, k -> new CallSiteProfile());
+        callSite.addCount(count);
+        maxCount = Math.max(maxCount, callSite.getCount());
+        return callSite;
+    }
+
+    /**
+     * Tells whether a call site is among the hottest ones, i.e. was called at least a thousandth as many times
+     * as the hottest call site of the profile.
+     */
+    public boolean isHot(CallSiteProfile callSite) {
+        return callSite != null && callSite.getCount() >= MIN_HOT_COUNT
+                && callSite.getCount() * HOT_FRACTION >= maxCount;
+    }
+
+    public static List<InvokeInstruction> getCallSites(Program program) {
+        List<InvokeInstruction> callSites = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof InvokeInstruction) {
+                    callSites.add((InvokeInstruction) insn);
+                }
+            }
+        }
+        return callSites;
+    }
+
+    public void bind(MethodHolder method) {
+        Map<Integer, CallSiteProfile> callSites = methods.get(method.getReference());
+        if (callSites == null || method.getProgram() == null) {
+            return;
+        }
+        List<InvokeInstruction> instructions = getCallSites(method.getProgram());
+        for (int i = 0; i < instructions.size(); ++i) {
+            CallSiteProfile callSite = callSites.get(i);
+            if (callSite != null) {
+                bindings.put(instructions.get(i), callSite);
+            }
+        }
+    }
+
+    public CallSiteProfile get(Instruction instruction) {
+        return bindings.get(instruction);
+    }
+
+    public void bind(Instruction instruction, CallSiteProfile callSite) {
+        if (callSite != null) {
+            bindings.put(instruction, callSite);
+        }
+    }
+
+    public void copyBindings(Program from, Program to) {
+        for (int i = 0; i < from.basicBlockCount(); ++i) {
+            copyBindings(from.basicBlockAt(i), to.basicBlockAt(i));
+        }
+    }
+
+    public void copyBindings(BasicBlock from, BasicBlock to) {
+        List<Instruction> source = from.getInstructions();
+        List<Instruction> target = to.getInstructions();
+        for (int i = 0; i < source.size(); ++i) {
+            CallSiteProfile callSite = bindings.get(source.get(i));
+            if (callSite != null) {
+                bindings.put(target.get(i), callSite);
+            }
+        }
+    }
+
+    public static CallProfile read(Reader reader) throws IOException {
+        CallProfile profile = new CallProfile();
+        BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        while (true) {
+            String line = lines.readLine();
+            if (line == null) {
+                break;
+            }
+            ++lineNumber;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                profile.parseLine(line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Wrong call profile at line " + lineNumber + ": " + line, e);
+            }
+        }
+        return profile;
+    }
+
+    private void parseLine(String line) {
+        String[] parts = line.split("\\s+");
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Method, index and count expected");
+        }
+        MethodReference method = MethodReference.parse(parts[0]);
+        CallSiteProfile callSite = add(method, Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        for (int i = 3; i < parts.length; ++i) {
+            int separator = parts[i].lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Receiver class and count expected: " + parts[i]);
+            }
+            String className = parts[i].substring(0, separator);
+            long count = Long.parseLong(parts[i].substring(separator + 1));
+            if (className.equals("*")) {
+                callSite.addOtherReceivers(count);
+            } else {
+                callSite.addReceiver(className, count);
+            }
+        }
+    }
+
+    public void write(Writer writer) throws IOException {
+        for (Map.Entry<MethodReference, Map<Integer, CallSiteProfile>> method : methods.entrySet()) {
+            for (Map.Entry<Integer, CallSiteProfile> entry : method.getValue().entrySet()) {
+                CallSiteProfile callSite = entry.getValue();
+                writer.append(method.getKey().toString()).append(' ').append(String.valueOf(entry.getKey()))
+                        .append(' ').append(String.valueOf(callSite.getCount()));
+                for (Map.Entry<String, Long> receiver : callSite.getReceiverTypes().entrySet()) {
+                    writer.append(' ').append(receiver.getKey()).append(':')
+                            .append(String.valueOf(receiver.getValue()));
+                }
+                if (callSite.getOtherReceiverCount() > 0) {
+                    writer.append(" *:").append(String.valueOf(callSite.getOtherReceiverCount()));
+                }
+                writer.append('\n');
+            }
+        }
+        writer.flush();
+    }
+}
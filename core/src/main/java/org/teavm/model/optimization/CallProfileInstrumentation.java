@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.List;
+import org.teavm.interop.Unmanaged;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.runtime.CallProfileRecorder;
+
+/**
+ * <p>Inserts a call to {@link CallProfileRecorder#record(int, String, Object)} before every call site, so that
+ * the compiled program collects {@link CallProfile}. Must be applied right after linking, before any
+ * optimization changes call sites, since call sites are identified as described in {@link CallProfile}.</p>
+ *
+ * <p>The recorder must be reachable, so {@link #RECORD_METHOD} and {@link #DUMP_METHOD} should be added
+ * to dependency analysis before the build. Unmanaged code is not instrumented.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class CallProfileInstrumentation {
+    public static final MethodReference RECORD_METHOD = new MethodReference(CallProfileRecorder.class,
+            "record", int.class, String.class, Object.class, void.class);
+    public static final MethodReference DUMP_METHOD = new MethodReference(CallProfileRecorder.class,
+            "dump", void.class);
+    private int siteCount;
+
+    public void apply(ClassHolder cls) {
+        if (cls.getName().equals(CallProfileRecorder.class.getName())
+                || cls.getAnnotations().get(Unmanaged.class.getName()) != null) {
+            return;
+        }
+        for (MethodHolder method : cls.getMethods()) {
+            if (method.getProgram() != null && method.getAnnotations().get(Unmanaged.class.getName()) == null) {
+                apply(method.getReference(), method.getProgram());
+            }
+        }
+    }
+
+    private void apply(MethodReference methodRef, Program program) {
+        List<InvokeInstruction> callSites = CallProfile.getCallSites(program);
+        for (int i = 0; i < callSites.size(); ++i) {
+            InvokeInstruction invoke = callSites.get(i);
+            BasicBlock block = invoke.getBasicBlock();
+            List<Instruction> instructions = block.getInstructions();
+            int position = instructions.indexOf(invoke);
+
+            IntegerConstantInstruction site = new IntegerConstantInstruction();
+            site.setConstant(siteCount++);
+            site.setReceiver(program.createVariable());
+            StringConstantInstruction name = new StringConstantInstruction();
+            name.setConstant(methodRef + " " + i);
+            name.setReceiver(program.createVariable());
+
+            InvokeInstruction record = new InvokeInstruction();
+            record.setType(InvocationType.SPECIAL);
+            record.setMethod(RECORD_METHOD);
+            record.getArguments().add(site.getReceiver());
+            record.getArguments().add(name.getReceiver());
+            Variable receiver = invoke.getType() == InvocationType.VIRTUAL ? invoke.getInstance() : null;
+            if (receiver == null) {
+                NullConstantInstruction nullConstant = new NullConstantInstruction();
+                receiver = program.createVariable();
+                nullConstant.setReceiver(receiver);
+                nullConstant.setLocation(invoke.getLocation());
+                instructions.add(position++, nullConstant);
+            }
+            record.getArguments().add(receiver);
+
+            site.setLocation(invoke.getLocation());
+            name.setLocation(invoke.getLocation());
+            record.setLocation(invoke.getLocation());
+            instructions.add(position++, site);
+            instructions.add(position++, name);
+            instructions.add(position, record);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>What an instrumented build observed at a single call site: how many times the call was made and
+ * of which classes receivers of the call were. Only a few distinct receiver classes are tracked per call site,
+ * the remaining receivers are counted together by {@link #getOtherReceiverCount()}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class CallSiteProfile {
+    private long count;
+    private Map<String, Long> receiverTypes = new LinkedHashMap<>();
+    private long otherReceiverCount;
+
+    public long getCount() {
+        return count;
+    }
+
+    public Map<String, Long> getReceiverTypes() {
+        return Collections.unmodifiableMap(receiverTypes);
+    }
+
+    public long getOtherReceiverCount() {
+        return otherReceiverCount;
+    }
+
+    /**
+     * Gets the only class of receivers observed at this call site.
+     *
+     * @return name of the class or <code>null</code>, if the call site is not virtual, was never reached
+     * or was reached with receivers of different classes.
+     */
+    public String getMonomorphicReceiver() {
+        if (receiverTypes.size() != 1 || otherReceiverCount > 0) {
+            return null;
+        }
+        return receiverTypes.keySet().iterator().next();
+    }
+
+    void addCount(long count) {
+        this.count += count;
+    }
+
+    void addReceiver(String className, long count) {
+        receiverTypes.merge(className, count, Long::sum);
+    }
+
+    void addOtherReceivers(long count) {
+        otherReceiverCount += count;
+    }
+}
@@ -24,7 +24,10 @@ import org.teavm.common.DominatorTree;
 import org.teavm.common.Graph;
 import org.teavm.common.GraphUtils;
 import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassReader;
+import org.teavm.model.ClassReaderSource;
 import org.teavm.model.Instruction;
+import org.teavm.model.MethodDescriptor;
 import org.teavm.model.MethodReader;
 import org.teavm.model.Program;
 import org.teavm.model.instructions.EmptyInstruction;
@@ -33,6 +36,20 @@ import org.teavm.model.instructions.InvokeInstruction;
 import org.teavm.model.util.ProgramUtils;
 
 public class ClassInitElimination implements MethodOptimization {
+    private static final MethodDescriptor CLINIT = new MethodDescriptor("<clinit>", void.class);
+    private ClassReaderSource classSource;
+
+    public ClassInitElimination() {
+    }
+
+    /**
+     * @param classSource used to learn which classes have no static initializers, e.g. after
+     * {@link StaticInitializerEvaluation}, so that their initialization is dropped everywhere.
+     */
+    public ClassInitElimination(ClassReaderSource classSource) {
+        this.classSource = classSource;
+    }
+
     @Override
     public boolean optimize(MethodReader method, Program program) {
         Graph cfg = ProgramUtils.buildControlFlowGraph(program);
@@ -54,7 +71,8 @@ public class ClassInitElimination implements MethodOptimization {
                 Instruction insn = instructions.get(i);
                 if (insn instanceof InitClassInstruction) {
                     InitClassInstruction initClass = (InitClassInstruction) insn;
-                    if (!step.initializedClasses.add(initClass.getClassName())) {
+                    if (!step.initializedClasses.add(initClass.getClassName())
+                            || !hasInitializer(initClass.getClassName())) {
                         EmptyInstruction empty = new EmptyInstruction();
                         empty.setLocation(initClass.getLocation());
                         instructions.set(i, empty);
@@ -77,6 +95,14 @@ public class ClassInitElimination implements MethodOptimization {
         return false;
     }
 
+    private boolean hasInitializer(String className) {
+        if (classSource == null) {
+            return true;
+        }
+        ClassReader cls = classSource.get(className);
+        return cls == null || cls.getMethod(CLINIT) != null;
+    }
+
     class Step {
         int node;
         Set<String> initializedClasses = new HashSet<>();
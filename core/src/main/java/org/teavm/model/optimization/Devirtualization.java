@@ -15,28 +15,55 @@
  */
 package org.teavm.model.optimization;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.teavm.dependency.DependencyInfo;
 import org.teavm.dependency.MethodDependencyInfo;
 import org.teavm.dependency.ValueDependencyInfo;
 import org.teavm.model.*;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
 import org.teavm.model.instructions.InvocationType;
 import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.IsInstanceInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.util.InstructionTransitionExtractor;
 
 /**
+ * <p>Replaces virtual calls by direct calls where dependency analysis proves that there is only one
+ * implementation of the called method.</p>
+ *
+ * <p>When {@link #setProfile(CallProfile) call profile} is given, virtual calls with several possible
+ * implementations, that were hot and always had receivers of the same class <code>C</code> in the profile,
+ * are guarded: if the receiver is instance of <code>C</code>, the implementation of <code>C</code> is called
+ * directly, otherwise the original virtual call is made. This is done only if all subclasses of <code>C</code>
+ * that can reach the call site inherit the same implementation, so the guarded call is correct whatever
+ * the profile says.</p>
  *
  * @author Alexey Andreev
  */
 public class Devirtualization {
     private DependencyInfo dependency;
     private ClassReaderSource classSource;
+    private CallProfile profile;
+    private Set<Instruction> guardedInvocations = new HashSet<>();
 
     public Devirtualization(DependencyInfo dependency, ClassReaderSource classSource) {
         this.dependency = dependency;
         this.classSource = classSource;
     }
 
+    public CallProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(CallProfile profile) {
+        this.profile = profile;
+    }
+
     public void apply(MethodHolder method) {
         MethodDependencyInfo methodDep = dependency.getMethod(method.getReference());
         if (methodDep == null) {
@@ -45,7 +72,9 @@ public class Devirtualization {
         Program program = method.getProgram();
         for (int i = 0; i < program.basicBlockCount(); ++i) {
             BasicBlock block = program.basicBlockAt(i);
-            for (Instruction insn : block.getInstructions()) {
+            List<Instruction> instructions = block.getInstructions();
+            for (int j = 0; j < instructions.size(); ++j) {
+                Instruction insn = instructions.get(j);
                 if (!(insn instanceof InvokeInstruction)) {
                     continue;
                 }
@@ -59,11 +88,128 @@ public class Devirtualization {
                 if (implementations.size() == 1) {
                     invoke.setType(InvocationType.SPECIAL);
                     invoke.setMethod(implementations.iterator().next());
+                } else if (implementations.size() > 1 && profile != null && block.getTryCatchBlocks().isEmpty()
+                        && !guardedInvocations.contains(invoke)) {
+                    String receiverClass = getProfiledReceiver(invoke, var.getTypes());
+                    if (receiverClass != null) {
+                        MethodDependencyInfo implementation = dependency.getMethodImplementation(
+                                new MethodReference(receiverClass, invoke.getMethod().getDescriptor()));
+                        guard(program, invoke, receiverClass, implementation.getReference());
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private String getProfiledReceiver(InvokeInstruction invoke, String[] classNames) {
+        CallSiteProfile callSite = profile.get(invoke);
+        if (!profile.isHot(callSite)) {
+            return null;
+        }
+        String receiverClass = callSite.getMonomorphicReceiver();
+        if (receiverClass == null || !Arrays.asList(classNames).contains(receiverClass)) {
+            return null;
+        }
+        MethodDependencyInfo implementation = dependency.getMethodImplementation(new MethodReference(
+                receiverClass, invoke.getMethod().getDescriptor()));
+        if (implementation == null) {
+            return null;
+        }
+        for (String className : classNames) {
+            if (className.startsWith("[") || !classSource.isSuperType(receiverClass, className).orElse(false)) {
+                continue;
+            }
+            MethodDependencyInfo subclassImplementation = dependency.getMethodImplementation(new MethodReference(
+                    className, invoke.getMethod().getDescriptor()));
+            if (subclassImplementation == null
+                    || !subclassImplementation.getReference().equals(implementation.getReference())) {
+                return null;
+            }
+        }
+        return receiverClass;
+    }
+
+    private void guard(Program program, InvokeInstruction invoke, String receiverClass,
+            MethodReference implementation) {
+        BasicBlock block = invoke.getBasicBlock();
+        List<Instruction> instructions = block.getInstructions();
+        int index = instructions.indexOf(invoke);
+        BasicBlock directBlock = program.createBasicBlock();
+        BasicBlock virtualBlock = program.createBasicBlock();
+        BasicBlock joinBlock = program.createBasicBlock();
+
+        List<Instruction> tail = instructions.subList(index + 1, instructions.size());
+        List<Instruction> instructionsToMove = new ArrayList<>(tail);
+        tail.clear();
+        instructions.remove(index);
+        joinBlock.getInstructions().addAll(instructionsToMove);
+
+        IsInstanceInstruction isInstance = new IsInstanceInstruction();
+        isInstance.setValue(invoke.getInstance());
+        isInstance.setType(ValueType.object(receiverClass));
+        isInstance.setReceiver(program.createVariable());
+        isInstance.setLocation(invoke.getLocation());
+        instructions.add(isInstance);
+        BranchingInstruction branch = new BranchingInstruction(BranchingCondition.NOT_EQUAL);
+        branch.setOperand(isInstance.getReceiver());
+        branch.setConsequent(directBlock);
+        branch.setAlternative(virtualBlock);
+        branch.setLocation(invoke.getLocation());
+        instructions.add(branch);
+
+        InvokeInstruction directInvoke = new InvokeInstruction();
+        directInvoke.setType(InvocationType.SPECIAL);
+        directInvoke.setMethod(implementation);
+        directInvoke.setInstance(invoke.getInstance());
+        directInvoke.getArguments().addAll(invoke.getArguments());
+        directInvoke.setLocation(invoke.getLocation());
+        profile.bind(directInvoke, profile.get(invoke));
+        guardedInvocations.add(invoke);
+        directBlock.getInstructions().add(directInvoke);
+        virtualBlock.getInstructions().add(invoke);
+        addJump(directBlock, joinBlock, invoke);
+        addJump(virtualBlock, joinBlock, invoke);
+
+        if (invoke.getReceiver() != null) {
+            Phi phi = new Phi();
+            phi.setReceiver(invoke.getReceiver());
+            directInvoke.setReceiver(program.createVariable());
+            invoke.setReceiver(program.createVariable());
+            phi.getIncomings().add(createIncoming(directBlock, directInvoke.getReceiver()));
+            phi.getIncomings().add(createIncoming(virtualBlock, invoke.getReceiver()));
+            joinBlock.getPhis().add(phi);
+        }
+
+        InstructionTransitionExtractor transitionExtractor = new InstructionTransitionExtractor();
+        joinBlock.getLastInstruction().acceptVisitor(transitionExtractor);
+        if (transitionExtractor.getTargets() != null) {
+            for (BasicBlock successor : transitionExtractor.getTargets()) {
+                for (Phi phi : successor.getPhis()) {
+                    for (Incoming incoming : phi.getIncomings()) {
+                        if (incoming.getSource() == block) {
+                            incoming.setSource(joinBlock);
+                        }
+                    }
                 }
             }
         }
     }
 
+    private void addJump(BasicBlock source, BasicBlock target, Instruction original) {
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(target);
+        jump.setLocation(original.getLocation());
+        source.getInstructions().add(jump);
+    }
+
+    private Incoming createIncoming(BasicBlock source, Variable value) {
+        Incoming incoming = new Incoming();
+        incoming.setSource(source);
+        incoming.setValue(value);
+        return incoming;
+    }
+
     private Set<MethodReference> getImplementations(String[] classNames, MethodReference ref) {
         Set<MethodReference> methods = new HashSet<>();
         for (String className : classNames) {
@@ -46,7 +46,21 @@ import org.teavm.model.util.ProgramUtils;
 
 public class Inlining {
     private static final int DEFAULT_THRESHOLD = 15;
+    private static final int HOT_THRESHOLD = 45;
     private static final int MAX_DEPTH = 5;
+    private CallProfile profile;
+
+    public CallProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Sets call profile. Call sites that are {@link CallProfile#isHot(CallSiteProfile) hot} in the profile
+     * are inlined even if callee is several times larger than the usual threshold.
+     */
+    public void setProfile(CallProfile profile) {
+        this.profile = profile;
+    }
 
     public void apply(Program program, ClassReaderSource classSource) {
         List<PlanEntry> plan = buildPlan(program, classSource, 0);
@@ -96,6 +110,9 @@ public class Inlining {
             BasicBlock blockToInline = inlineProgram.basicBlockAt(i);
             BasicBlock inlineBlock = program.basicBlockAt(firstInlineBlock.getIndex() + i);
             ProgramUtils.copyBasicBlock(blockToInline, inlineBlock);
+            if (profile != null) {
+                profile.copyBindings(blockToInline, inlineBlock);
+            }
         }
 
         BasicBlockMapper blockMapper = new BasicBlockMapper(index -> index + firstInlineBlock.getIndex());
@@ -197,9 +214,15 @@ public class Inlining {
                 if (ownComplexity < DEFAULT_THRESHOLD) {
                     complexityThreshold += DEFAULT_THRESHOLD;
                 }
+                if (profile != null && profile.isHot(profile.get(invoke))) {
+                    complexityThreshold += HOT_THRESHOLD;
+                }
                 if (getComplexity(invokedProgram) > complexityThreshold) {
                     continue;
                 }
+                if (profile != null && invokedMethod.getProgram() instanceof Program) {
+                    profile.copyBindings((Program) invokedMethod.getProgram(), invokedProgram);
+                }
 
                 PlanEntry entry = new PlanEntry();
                 entry.targetBlock = i;
@@ -0,0 +1,546 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.IntSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.common.DominatorTree;
+import org.teavm.common.Graph;
+import org.teavm.common.GraphUtils;
+import org.teavm.common.Loop;
+import org.teavm.common.LoopGraph;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ArrayLengthInstruction;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.ConstructArrayInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.UnwrapArrayInstruction;
+import org.teavm.model.util.BasicBlockMapper;
+import org.teavm.model.util.InstructionCopyReader;
+import org.teavm.model.util.PhiUpdater;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Fully unrolls small loops with constant trip count. A loop is unrolled when:</p>
+ *
+ * <ul>
+ *   <li>it is entered from a single block and has a single back edge;</li>
+ *   <li>it has a single exit edge, which goes from a block that is executed exactly once per iteration;</li>
+ *   <li>the exit condition compares a constant with an induction variable, i.e. a variable that starts
+ *   with a constant and is changed by a constant on each iteration;</li>
+ *   <li>it has no exception handlers;</li>
+ *   <li>it is small enough and makes few enough iterations, so that the code grows by a bounded amount.</li>
+ * </ul>
+ *
+ * <p>The number of iterations is found by evaluating the exit condition with Java integer arithmetic.
+ * Then the loop is copied once per iteration, the back edge of each copy goes to the next copy and the exit
+ * condition of each copy is replaced by a jump. Copies share variables with the original loop, so SSA
+ * form is restored by {@link PhiUpdater}. Induction variables become constants after global value numbering.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class LoopUnrolling implements MethodOptimization {
+    private static final int MAX_ITERATIONS = 8;
+    private static final int MAX_LOOP_SIZE = 40;
+    private static final int MAX_UNROLLED_SIZE = 160;
+
+    private Program program;
+    private Graph cfg;
+    private LoopGraph loopGraph;
+    private DominatorTree dom;
+    private Instruction[] definitions;
+    private Integer[] constants;
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        this.program = program;
+        cfg = ProgramUtils.buildControlFlowGraph(program);
+        loopGraph = new LoopGraph(cfg);
+        dom = GraphUtils.buildDominatorTree(cfg);
+        findDefinitions();
+
+        boolean unrolled = false;
+        for (LoopInfo loop : getLoops()) {
+            if (loop.analyze()) {
+                loop.unroll();
+                unrolled = true;
+                break;
+            }
+        }
+
+        if (unrolled) {
+            new UnreachableBasicBlockEliminator().optimize(program);
+            Variable[] inputs = new Variable[method.parameterCount() + 1];
+            for (int i = 0; i < inputs.length; ++i) {
+                inputs[i] = program.variableAt(i);
+            }
+            new PhiUpdater().updatePhis(program, inputs);
+            new UnusedVariableElimination().optimize(method, program);
+        }
+
+        this.program = null;
+        cfg = null;
+        loopGraph = null;
+        dom = null;
+        definitions = null;
+        constants = null;
+        return unrolled;
+    }
+
+    private void findDefinitions() {
+        definitions = new Instruction[program.variableCount()];
+        constants = new Integer[program.variableCount()];
+        Variable[] arrayOrigins = new Variable[program.variableCount()];
+        List<ArrayLengthInstruction> lengths = new ArrayList<>();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof IntegerConstantInstruction) {
+                    IntegerConstantInstruction constant = (IntegerConstantInstruction) insn;
+                    constants[constant.getReceiver().getIndex()] = constant.getConstant();
+                } else if (insn instanceof BinaryInstruction) {
+                    definitions[((BinaryInstruction) insn).getReceiver().getIndex()] = insn;
+                } else if (insn instanceof ConstructArrayInstruction) {
+                    ConstructArrayInstruction construct = (ConstructArrayInstruction) insn;
+                    arrayOrigins[construct.getReceiver().getIndex()] = construct.getSize();
+                } else if (insn instanceof UnwrapArrayInstruction) {
+                    UnwrapArrayInstruction unwrap = (UnwrapArrayInstruction) insn;
+                    arrayOrigins[unwrap.getReceiver().getIndex()] = arrayOrigins[unwrap.getArray().getIndex()];
+                } else if (insn instanceof ArrayLengthInstruction) {
+                    lengths.add((ArrayLengthInstruction) insn);
+                }
+            }
+        }
+
+        // length of array created with constant size is constant as well
+        for (ArrayLengthInstruction length : lengths) {
+            Variable size = arrayOrigins[length.getArray().getIndex()];
+            if (size != null && constants[size.getIndex()] != null) {
+                constants[length.getReceiver().getIndex()] = constants[size.getIndex()];
+            }
+        }
+
+        // phis left by loop inversion often just forward a constant
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                for (Phi phi : program.basicBlockAt(i).getPhis()) {
+                    if (constants[phi.getReceiver().getIndex()] == null) {
+                        Integer value = getPhiConstant(phi);
+                        if (value != null) {
+                            constants[phi.getReceiver().getIndex()] = value;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        } while (changed);
+    }
+
+    private Integer getPhiConstant(Phi phi) {
+        Integer result = null;
+        for (Incoming incoming : phi.getIncomings()) {
+            Integer value = constants[incoming.getValue().getIndex()];
+            if (value == null || (result != null && !result.equals(value))) {
+                return null;
+            }
+            result = value;
+        }
+        return result;
+    }
+
+    /**
+     * Gets loops ordered so that inner loops go before outer ones.
+     */
+    private List<LoopInfo> getLoops() {
+        Map<Loop, LoopInfo> loops = new HashMap<>();
+        List<LoopInfo> result = new ArrayList<>();
+        for (int node = 0; node < cfg.size(); ++node) {
+            for (Loop loop = loopGraph.loopAt(node); loop != null; loop = loop.getParent()) {
+                LoopInfo info = loops.get(loop);
+                if (info == null) {
+                    info = new LoopInfo(loop);
+                    loops.put(loop, info);
+                    result.add(info);
+                }
+                info.nodes.add(node);
+            }
+        }
+        result.sort((a, b) -> Integer.compare(a.nodes.size(), b.nodes.size()));
+        return result;
+    }
+
+    private class LoopInfo {
+        final Loop loop;
+        final int head;
+        final IntSet nodes = new IntOpenHashSet();
+        int[] sortedNodes;
+        int entry = -1;
+        int tail = -1;
+        int exitSource = -1;
+        int exit;
+        int stay;
+        int iterations;
+
+        LoopInfo(Loop loop) {
+            this.loop = loop;
+            head = loop.getHead();
+        }
+
+        boolean analyze() {
+            sortedNodes = nodes.toArray();
+            Arrays.sort(sortedNodes);
+            return findEdges() && computeIterations() && isSmall();
+        }
+
+        private boolean findEdges() {
+            for (int predecessor : cfg.incomingEdges(head)) {
+                if (nodes.contains(predecessor)) {
+                    if (tail >= 0) {
+                        return false;
+                    }
+                    tail = predecessor;
+                } else {
+                    if (entry >= 0) {
+                        return false;
+                    }
+                    entry = predecessor;
+                }
+            }
+            if (tail < 0 || entry < 0) {
+                return false;
+            }
+
+            for (int node : sortedNodes) {
+                BasicBlock block = program.basicBlockAt(node);
+                if (!block.getTryCatchBlocks().isEmpty()) {
+                    return false;
+                }
+                if (node != head) {
+                    for (Phi phi : block.getPhis()) {
+                        for (Incoming incoming : phi.getIncomings()) {
+                            if (!nodes.contains(incoming.getSource().getIndex())) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+                for (int successor : cfg.outgoingEdges(node)) {
+                    if (!nodes.contains(successor)) {
+                        if (exitSource >= 0) {
+                            return false;
+                        }
+                        exitSource = node;
+                        exit = successor;
+                    }
+                }
+            }
+
+            return exitSource >= 0 && loopGraph.loopAt(exitSource) == loop && dom.dominates(exitSource, tail);
+        }
+
+        private boolean computeIterations() {
+            Condition condition = getCondition(program.basicBlockAt(exitSource).getLastInstruction());
+            if (condition == null || condition.consequent == condition.alternative) {
+                return false;
+            }
+            boolean stayWhenSatisfied = condition.consequent != exit;
+            stay = stayWhenSatisfied ? condition.consequent : condition.alternative;
+
+            Phi inductionVariable = null;
+            boolean next = false;
+            int limit = 0;
+            boolean inductionFirst = true;
+            for (Phi phi : program.basicBlockAt(head).getPhis()) {
+                Variable nextValue = getIncoming(phi, tail);
+                for (int i = 0; i < 2; ++i) {
+                    Variable operand = condition.operands[i];
+                    Integer other = condition.getConstant(1 - i);
+                    if (operand == null || other == null) {
+                        continue;
+                    }
+                    if (operand == phi.getReceiver() || operand == nextValue) {
+                        inductionVariable = phi;
+                        next = operand != phi.getReceiver();
+                        limit = other;
+                        inductionFirst = i == 0;
+                    }
+                }
+            }
+            if (inductionVariable == null) {
+                return false;
+            }
+
+            Variable initial = getIncoming(inductionVariable, entry);
+            Variable nextValue = getIncoming(inductionVariable, tail);
+            if (initial == null || nextValue == null || constants[initial.getIndex()] == null) {
+                return false;
+            }
+            Integer step = getStep(inductionVariable.getReceiver(), nextValue);
+            if (step == null) {
+                return false;
+            }
+
+            int value = constants[initial.getIndex()];
+            for (int i = 0; i < MAX_ITERATIONS; ++i) {
+                int tested = next ? value + step : value;
+                boolean satisfied = inductionFirst
+                        ? condition.evaluate(tested, limit)
+                        : condition.evaluate(limit, tested);
+                if (satisfied != stayWhenSatisfied) {
+                    iterations = i + 1;
+                    return true;
+                }
+                value += step;
+            }
+            return false;
+        }
+
+        private Variable getIncoming(Phi phi, int source) {
+            for (Incoming incoming : phi.getIncomings()) {
+                if (incoming.getSource().getIndex() == source) {
+                    return incoming.getValue();
+                }
+            }
+            return null;
+        }
+
+        private Integer getStep(Variable inductionVariable, Variable nextValue) {
+            Instruction definition = definitions[nextValue.getIndex()];
+            if (!(definition instanceof BinaryInstruction)) {
+                return null;
+            }
+            BinaryInstruction binary = (BinaryInstruction) definition;
+            if (binary.getOperandType() != NumericOperandType.INT) {
+                return null;
+            }
+            Integer first = constants[binary.getFirstOperand().getIndex()];
+            Integer second = constants[binary.getSecondOperand().getIndex()];
+            switch (binary.getOperation()) {
+                case ADD:
+                    if (binary.getFirstOperand() == inductionVariable && second != null) {
+                        return second;
+                    } else if (binary.getSecondOperand() == inductionVariable && first != null) {
+                        return first;
+                    }
+                    return null;
+                case SUBTRACT:
+                    return binary.getFirstOperand() == inductionVariable && second != null ? -second : null;
+                default:
+                    return null;
+            }
+        }
+
+        private boolean isSmall() {
+            int size = 0;
+            for (int node : sortedNodes) {
+                for (Instruction insn : program.basicBlockAt(node).getInstructions()) {
+                    if (!(insn instanceof EmptyInstruction)) {
+                        ++size;
+                    }
+                }
+            }
+            return size <= MAX_LOOP_SIZE && size * (iterations - 1) <= MAX_UNROLLED_SIZE;
+        }
+
+        void unroll() {
+            int[][] copies = new int[iterations][];
+            copies[0] = new int[program.basicBlockCount()];
+            for (int i = 0; i < copies[0].length; ++i) {
+                copies[0][i] = i;
+            }
+            for (int i = 1; i < iterations; ++i) {
+                copies[i] = copies[0].clone();
+                for (int node : sortedNodes) {
+                    copies[i][node] = program.createBasicBlock().getIndex();
+                }
+                copyLoop(copies[i], copies[i - 1]);
+            }
+
+            BasicBlock originalHead = program.basicBlockAt(head);
+            for (Phi phi : originalHead.getPhis()) {
+                List<Incoming> incomings = phi.getIncomings();
+                for (int i = 0; i < incomings.size(); ++i) {
+                    if (incomings.get(i).getSource().getIndex() == tail) {
+                        incomings.remove(i--);
+                    }
+                }
+            }
+
+            for (int i = 0; i < iterations; ++i) {
+                int[] copy = copies[i];
+                int nextHead = i + 1 < iterations ? copies[i + 1][head] : copy[head];
+                BasicBlock tailBlock = program.basicBlockAt(copy[tail]);
+                tailBlock.getLastInstruction().acceptVisitor(new BasicBlockMapper(
+                        block -> block == copy[head] ? nextHead : block));
+
+                BasicBlock exitSourceBlock = program.basicBlockAt(copy[exitSource]);
+                int target;
+                if (i + 1 < iterations) {
+                    target = stay == head ? nextHead : copy[stay];
+                } else {
+                    target = exit;
+                }
+                Instruction last = exitSourceBlock.getLastInstruction();
+                JumpInstruction jump = new JumpInstruction();
+                jump.setTarget(program.basicBlockAt(target));
+                jump.setLocation(last.getLocation());
+                exitSourceBlock.getInstructions().set(exitSourceBlock.getInstructions().size() - 1, jump);
+            }
+
+            int lastExitSource = copies[iterations - 1][exitSource];
+            for (Phi phi : program.basicBlockAt(exit).getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    if (incoming.getSource().getIndex() == exitSource) {
+                        incoming.setSource(program.basicBlockAt(lastExitSource));
+                    }
+                }
+            }
+        }
+
+        private void copyLoop(int[] copy, int[] previousCopy) {
+            BasicBlockMapper blockMapper = new BasicBlockMapper(block -> copy[block]);
+            InstructionCopyReader copier = new InstructionCopyReader(program);
+            for (int node : sortedNodes) {
+                BasicBlock sourceBlock = program.basicBlockAt(node);
+                BasicBlock targetBlock = program.basicBlockAt(copy[node]);
+
+                copier.resetLocation();
+                for (int i = 0; i < sourceBlock.instructionCount(); ++i) {
+                    sourceBlock.readInstruction(i, copier);
+                    Instruction insn = copier.getCopy();
+                    insn.acceptVisitor(blockMapper);
+                    targetBlock.getInstructions().add(insn);
+                }
+
+                for (Phi phi : sourceBlock.getPhis()) {
+                    Phi phiCopy = new Phi();
+                    phiCopy.setReceiver(phi.getReceiver());
+                    for (Incoming incoming : phi.getIncomings()) {
+                        int source = incoming.getSource().getIndex();
+                        if (node == head && source != tail) {
+                            continue;
+                        }
+                        Incoming incomingCopy = new Incoming();
+                        incomingCopy.setSource(program.basicBlockAt(node == head ? previousCopy[tail] : copy[source]));
+                        incomingCopy.setValue(incoming.getValue());
+                        phiCopy.getIncomings().add(incomingCopy);
+                    }
+                    targetBlock.getPhis().add(phiCopy);
+                }
+            }
+        }
+    }
+
+    private Condition getCondition(Instruction insn) {
+        Condition result = new Condition();
+        if (insn instanceof BranchingInstruction) {
+            BranchingInstruction branching = (BranchingInstruction) insn;
+            if (branching.getCondition() == BranchingCondition.NULL
+                    || branching.getCondition() == BranchingCondition.NOT_NULL) {
+                return null;
+            }
+            result.condition = branching.getCondition();
+            result.consequent = branching.getConsequent().getIndex();
+            result.alternative = branching.getAlternative().getIndex();
+            Instruction definition = definitions[branching.getOperand().getIndex()];
+            if (definition instanceof BinaryInstruction
+                    && ((BinaryInstruction) definition).getOperation() == BinaryOperation.COMPARE) {
+                BinaryInstruction comparison = (BinaryInstruction) definition;
+                if (comparison.getOperandType() != NumericOperandType.INT) {
+                    return null;
+                }
+                result.operands[0] = comparison.getFirstOperand();
+                result.operands[1] = comparison.getSecondOperand();
+            } else {
+                result.operands[0] = branching.getOperand();
+                result.zeroSecondOperand = true;
+            }
+        } else if (insn instanceof BinaryBranchingInstruction) {
+            BinaryBranchingInstruction branching = (BinaryBranchingInstruction) insn;
+            switch (branching.getCondition()) {
+                case EQUAL:
+                    result.condition = BranchingCondition.EQUAL;
+                    break;
+                case NOT_EQUAL:
+                    result.condition = BranchingCondition.NOT_EQUAL;
+                    break;
+                default:
+                    return null;
+            }
+            result.consequent = branching.getConsequent().getIndex();
+            result.alternative = branching.getAlternative().getIndex();
+            result.operands[0] = branching.getFirstOperand();
+            result.operands[1] = branching.getSecondOperand();
+        } else {
+            return null;
+        }
+        return result;
+    }
+
+    private class Condition {
+        final Variable[] operands = new Variable[2];
+        boolean zeroSecondOperand;
+        BranchingCondition condition;
+        int consequent;
+        int alternative;
+
+        Integer getConstant(int index) {
+            if (index == 1 && zeroSecondOperand) {
+                return 0;
+            }
+            return operands[index] != null ? constants[operands[index].getIndex()] : null;
+        }
+
+        boolean evaluate(int first, int second) {
+            int comparison = Integer.compare(first, second);
+            switch (condition) {
+                case EQUAL:
+                    return comparison == 0;
+                case NOT_EQUAL:
+                    return comparison != 0;
+                case LESS:
+                    return comparison < 0;
+                case LESS_OR_EQUAL:
+                    return comparison <= 0;
+                case GREATER:
+                    return comparison > 0;
+                case GREATER_OR_EQUAL:
+                    return comparison >= 0;
+                default:
+                    return false;
+            }
+        }
+    }
+}
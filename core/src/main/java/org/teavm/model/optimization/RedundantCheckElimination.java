@@ -0,0 +1,725 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.common.Graph;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchBlock;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.ArrayLengthInstruction;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryBranchingCondition;
+import org.teavm.model.instructions.BinaryBranchingInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.BranchingInstruction;
+import org.teavm.model.instructions.ClassConstantInstruction;
+import org.teavm.model.instructions.CloneArrayInstruction;
+import org.teavm.model.instructions.ConstructArrayInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.ConstructMultiArrayInstruction;
+import org.teavm.model.instructions.GetElementInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.PutElementInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.instructions.StringConstantInstruction;
+import org.teavm.model.instructions.UnwrapArrayInstruction;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Removes null checks and index range checks that are proven to pass. A check is either a
+ * {@link NullCheckInstruction}, or a branch on comparison of an integer with zero or with another integer,
+ * or a branch on comparison with <code>null</code>. Index checks like
+ * <code>if (index &lt; 0 || index &gt;= array.length) throw ...</code> appear in the class library and in
+ * user code, and after inlining they usually land in loops that already keep the index in range.</p>
+ *
+ * <p>The analysis is a forward data flow over the control flow graph, which computes facts that hold
+ * on entry to each basic block: which values are not null, which integers are non-negative, and which pairs of
+ * integers are known to be strictly ordered. Facts are produced by allocations, by dereferences and by
+ * branches, and are carried through phis when they hold on all incoming edges. Thus a loop counter that starts
+ * at zero, is incremented by one and is compared with <code>array.length</code> is known to stay within bounds
+ * of the array. All lengths of the same array are treated as the same value.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class RedundantCheckElimination implements MethodOptimization {
+    private static final int LESS = 1;
+    private static final int EQUAL = 2;
+    private static final int GREATER = 4;
+    private static final int ANY = LESS | EQUAL | GREATER;
+
+    private final Map<MethodReference, Integer> statistics;
+    private Program program;
+    private int[] canonical;
+    private Instruction[] definitions;
+    private Integer[] constants;
+    private boolean[] nullConstants;
+    private BitSet nonNegativeValues;
+    private Graph cfg;
+    private Facts[] entryFacts;
+    private Facts[] exitFacts;
+
+    public RedundantCheckElimination() {
+        this(null);
+    }
+
+    /**
+     * @param statistics if not null, the number of checks removed from each method is added to this map,
+     * which should be thread-safe when methods are optimized concurrently.
+     */
+    public RedundantCheckElimination(Map<MethodReference, Integer> statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        this.program = program;
+        prepare();
+        cfg = ProgramUtils.buildControlFlowGraph(program);
+        computeFacts(method);
+
+        int removed = 0;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            if (entryFacts[i] != null) {
+                removed += removeChecks(program.basicBlockAt(i), entryFacts[i].copy());
+            }
+        }
+
+        if (removed > 0 && statistics != null) {
+            statistics.merge(method.getReference(), removed, Integer::sum);
+        }
+        this.program = null;
+        cfg = null;
+        canonical = null;
+        definitions = null;
+        constants = null;
+        nullConstants = null;
+        nonNegativeValues = null;
+        entryFacts = null;
+        exitFacts = null;
+        return removed > 0;
+    }
+
+    private void prepare() {
+        int count = program.variableCount();
+        definitions = new Instruction[count];
+        constants = new Integer[count];
+        nullConstants = new boolean[count];
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                Variable receiver = getReceiver(insn);
+                if (receiver != null) {
+                    definitions[receiver.getIndex()] = insn;
+                }
+                if (insn instanceof IntegerConstantInstruction) {
+                    IntegerConstantInstruction constInsn = (IntegerConstantInstruction) insn;
+                    constants[constInsn.getReceiver().getIndex()] = constInsn.getConstant();
+                } else if (insn instanceof NullConstantInstruction) {
+                    nullConstants[((NullConstantInstruction) insn).getReceiver().getIndex()] = true;
+                }
+            }
+        }
+
+        canonical = new int[count];
+        for (int i = 0; i < count; ++i) {
+            canonical[i] = -1;
+        }
+        Map<Integer, Integer> lengths = new HashMap<>();
+        for (int i = 0; i < count; ++i) {
+            canonicalize(i, lengths);
+        }
+
+        nonNegativeValues = new BitSet();
+        for (int i = 0; i < count; ++i) {
+            if (isNonNegativeByDefinition(i)) {
+                nonNegativeValues.set(canonical[i]);
+            }
+        }
+    }
+
+    private int canonicalize(int variable, Map<Integer, Integer> lengths) {
+        if (canonical[variable] >= 0) {
+            return canonical[variable];
+        }
+        canonical[variable] = variable;
+        Instruction definition = definitions[variable];
+        int result = variable;
+        if (definition instanceof AssignInstruction) {
+            result = canonicalize(((AssignInstruction) definition).getAssignee().getIndex(), lengths);
+        } else if (definition instanceof NullCheckInstruction) {
+            result = canonicalize(((NullCheckInstruction) definition).getValue().getIndex(), lengths);
+        } else if (definition instanceof ArrayLengthInstruction) {
+            int array = canonicalize(((ArrayLengthInstruction) definition).getArray().getIndex(), lengths);
+            result = lengths.computeIfAbsent(array, k -> variable);
+        }
+        canonical[variable] = result;
+        return result;
+    }
+
+    private boolean isNonNegativeByDefinition(int variable) {
+        if (constants[variable] != null) {
+            return constants[variable] >= 0;
+        }
+        Instruction definition = definitions[variable];
+        if (definition instanceof ArrayLengthInstruction) {
+            return true;
+        }
+        if (definition instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) definition;
+            if (binary.getOperandType() != NumericOperandType.INT) {
+                return false;
+            }
+            Integer first = constants[binary.getFirstOperand().getIndex()];
+            Integer second = constants[binary.getSecondOperand().getIndex()];
+            switch (binary.getOperation()) {
+                case AND:
+                    return first != null && first >= 0 || second != null && second >= 0;
+                case SHIFT_RIGHT_UNSIGNED:
+                    return second != null && (second & 31) != 0;
+                default:
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private void computeFacts(MethodReader method) {
+        int blockCount = program.basicBlockCount();
+        entryFacts = new Facts[blockCount];
+        exitFacts = new Facts[blockCount];
+
+        Facts initial = new Facts();
+        if (!method.hasModifier(ElementModifier.STATIC)) {
+            initial.nonNull.set(canonical[0]);
+        }
+        entryFacts[0] = initial;
+        exitFacts[0] = transfer(program.basicBlockAt(0), initial.copy());
+
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = 1; i < blockCount; ++i) {
+                Facts facts = computeEntryFacts(program.basicBlockAt(i));
+                if (facts == null || facts.equals(entryFacts[i])) {
+                    continue;
+                }
+                entryFacts[i] = facts;
+                exitFacts[i] = transfer(program.basicBlockAt(i), facts.copy());
+                changed = true;
+            }
+        } while (changed);
+    }
+
+    private Facts computeEntryFacts(BasicBlock block) {
+        Facts result = null;
+        for (int predecessor : cfg.incomingEdges(block.getIndex())) {
+            Facts facts = edgeFacts(program.basicBlockAt(predecessor), block);
+            if (facts == null) {
+                continue;
+            }
+            if (result == null) {
+                result = facts;
+            } else {
+                result.retain(facts);
+            }
+        }
+        if (result == null) {
+            return null;
+        }
+
+        for (Phi phi : block.getPhis()) {
+            addPhiFacts(phi, block, result);
+        }
+        return result;
+    }
+
+    private void addPhiFacts(Phi phi, BasicBlock block, Facts target) {
+        boolean nonNull = true;
+        boolean nonNegative = true;
+        Set<Integer> upperBounds = null;
+        for (Incoming incoming : phi.getIncomings()) {
+            Facts facts = edgeFacts(incoming.getSource(), block);
+            if (facts == null) {
+                continue;
+            }
+            int value = canonical[incoming.getValue().getIndex()];
+            nonNull &= facts.isNonNull(value);
+            nonNegative &= isNonNegative(facts, value);
+            Set<Integer> bounds = facts.upperBounds(value);
+            if (upperBounds == null) {
+                upperBounds = bounds;
+            } else {
+                upperBounds.retainAll(bounds);
+            }
+        }
+
+        int receiver = canonical[phi.getReceiver().getIndex()];
+        if (nonNull) {
+            target.nonNull.set(receiver);
+        }
+        if (nonNegative) {
+            target.nonNegative.set(receiver);
+        }
+        if (upperBounds != null) {
+            for (int bound : upperBounds) {
+                target.addLess(receiver, bound);
+            }
+        }
+    }
+
+    private Facts edgeFacts(BasicBlock source, BasicBlock target) {
+        if (exitFacts[source.getIndex()] == null) {
+            return null;
+        }
+        for (TryCatchBlock tryCatch : source.getTryCatchBlocks()) {
+            if (tryCatch.getHandler() == target) {
+                return entryFacts[source.getIndex()].copy();
+            }
+        }
+
+        Facts facts = exitFacts[source.getIndex()].copy();
+        Instruction last = source.getLastInstruction();
+        if (last instanceof BranchingInstruction) {
+            BranchingInstruction branching = (BranchingInstruction) last;
+            if (branching.getConsequent() != branching.getAlternative()) {
+                addConditionFacts(branching, branching.getConsequent() == target, facts);
+            }
+        } else if (last instanceof BinaryBranchingInstruction) {
+            BinaryBranchingInstruction branching = (BinaryBranchingInstruction) last;
+            if (branching.getConsequent() != branching.getAlternative()) {
+                addConditionFacts(branching, branching.getConsequent() == target, facts);
+            }
+        }
+        return facts;
+    }
+
+    private void addConditionFacts(BranchingInstruction branching, boolean satisfied, Facts facts) {
+        int operand = branching.getOperand().getIndex();
+        BranchingCondition condition = branching.getCondition();
+        switch (condition) {
+            case NULL:
+            case NOT_NULL:
+                if (satisfied == (condition == BranchingCondition.NOT_NULL)) {
+                    facts.nonNull.set(canonical[operand]);
+                }
+                return;
+            default:
+                break;
+        }
+
+        int relation = satisfiedRelation(condition);
+        if (!satisfied) {
+            relation = ANY & ~relation;
+        }
+        BinaryInstruction comparison = getComparison(operand);
+        if (comparison != null) {
+            addRelationFacts(canonical[comparison.getFirstOperand().getIndex()],
+                    canonical[comparison.getSecondOperand().getIndex()], relation, facts);
+        } else if ((relation & LESS) == 0) {
+            facts.nonNegative.set(canonical[operand]);
+        }
+    }
+
+    private void addConditionFacts(BinaryBranchingInstruction branching, boolean satisfied, Facts facts) {
+        int first = branching.getFirstOperand().getIndex();
+        int second = branching.getSecondOperand().getIndex();
+        boolean notEqual;
+        switch (branching.getCondition()) {
+            case REFERENCE_EQUAL:
+                notEqual = !satisfied;
+                break;
+            case REFERENCE_NOT_EQUAL:
+                notEqual = satisfied;
+                break;
+            default:
+                return;
+        }
+        if (notEqual) {
+            if (nullConstants[first]) {
+                facts.nonNull.set(canonical[second]);
+            } else if (nullConstants[second]) {
+                facts.nonNull.set(canonical[first]);
+            }
+        }
+    }
+
+    private void addRelationFacts(int first, int second, int relation, Facts facts) {
+        switch (relation) {
+            case LESS:
+                facts.addLess(first, second);
+                break;
+            case GREATER:
+                facts.addLess(second, first);
+                if (isNonNegative(facts, second) || constants[second] != null && constants[second] >= -1) {
+                    facts.nonNegative.set(first);
+                }
+                break;
+            case GREATER | EQUAL:
+                if (isNonNegative(facts, second)) {
+                    facts.nonNegative.set(first);
+                }
+                break;
+            case LESS | EQUAL:
+                if (isNonNegative(facts, first)) {
+                    facts.nonNegative.set(second);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Facts transfer(BasicBlock block, Facts facts) {
+        for (Instruction insn : block.getInstructions()) {
+            transfer(insn, facts);
+        }
+        return facts;
+    }
+
+    private void transfer(Instruction insn, Facts facts) {
+        if (insn instanceof ConstructInstruction || insn instanceof ConstructArrayInstruction
+                || insn instanceof ConstructMultiArrayInstruction || insn instanceof StringConstantInstruction
+                || insn instanceof ClassConstantInstruction) {
+            facts.nonNull.set(canonical[getReceiver(insn).getIndex()]);
+        } else if (insn instanceof NullCheckInstruction) {
+            markNonNull(((NullCheckInstruction) insn).getValue(), facts);
+        } else if (insn instanceof CloneArrayInstruction) {
+            CloneArrayInstruction clone = (CloneArrayInstruction) insn;
+            markNonNull(clone.getArray(), facts);
+            markNonNull(clone.getReceiver(), facts);
+        } else if (insn instanceof ArrayLengthInstruction) {
+            markNonNull(((ArrayLengthInstruction) insn).getArray(), facts);
+        } else if (insn instanceof UnwrapArrayInstruction) {
+            UnwrapArrayInstruction unwrap = (UnwrapArrayInstruction) insn;
+            markNonNull(unwrap.getArray(), facts);
+            markNonNull(unwrap.getReceiver(), facts);
+        } else if (insn instanceof GetElementInstruction) {
+            markNonNull(((GetElementInstruction) insn).getArray(), facts);
+        } else if (insn instanceof PutElementInstruction) {
+            markNonNull(((PutElementInstruction) insn).getArray(), facts);
+        } else if (insn instanceof GetFieldInstruction) {
+            markNonNull(((GetFieldInstruction) insn).getInstance(), facts);
+        } else if (insn instanceof PutFieldInstruction) {
+            markNonNull(((PutFieldInstruction) insn).getInstance(), facts);
+        } else if (insn instanceof InvokeInstruction) {
+            markNonNull(((InvokeInstruction) insn).getInstance(), facts);
+        } else if (insn instanceof BinaryInstruction) {
+            transferIncrement((BinaryInstruction) insn, facts);
+        }
+    }
+
+    private void markNonNull(Variable variable, Facts facts) {
+        if (variable != null) {
+            facts.nonNull.set(canonical[variable.getIndex()]);
+        }
+    }
+
+    private void transferIncrement(BinaryInstruction insn, Facts facts) {
+        if (insn.getOperation() != BinaryOperation.ADD || insn.getOperandType() != NumericOperandType.INT) {
+            return;
+        }
+        int first = insn.getFirstOperand().getIndex();
+        int second = insn.getSecondOperand().getIndex();
+        int value;
+        if (constants[second] != null && constants[second] == 1) {
+            value = canonical[first];
+        } else if (constants[first] != null && constants[first] == 1) {
+            value = canonical[second];
+        } else {
+            return;
+        }
+
+        // value < bound <= Integer.MAX_VALUE, therefore value + 1 does not overflow
+        if (isNonNegative(facts, value) && !facts.upperBounds(value).isEmpty()) {
+            facts.nonNegative.set(canonical[insn.getReceiver().getIndex()]);
+        }
+    }
+
+    private int removeChecks(BasicBlock block, Facts facts) {
+        int removed = 0;
+        List<Instruction> instructions = block.getInstructions();
+        for (int i = 0; i < instructions.size(); ++i) {
+            Instruction insn = instructions.get(i);
+            if (insn instanceof NullCheckInstruction) {
+                NullCheckInstruction nullCheck = (NullCheckInstruction) insn;
+                if (facts.isNonNull(canonical[nullCheck.getValue().getIndex()])) {
+                    AssignInstruction assign = new AssignInstruction();
+                    assign.setAssignee(nullCheck.getValue());
+                    assign.setReceiver(nullCheck.getReceiver());
+                    assign.setLocation(nullCheck.getLocation());
+                    instructions.set(i, assign);
+                    ++removed;
+                }
+            }
+            transfer(insn, facts);
+        }
+
+        Instruction last = block.getLastInstruction();
+        BasicBlock target = null;
+        BasicBlock otherTarget = null;
+        if (last instanceof BranchingInstruction) {
+            BranchingInstruction branching = (BranchingInstruction) last;
+            Boolean result = evaluate(branching, facts);
+            if (result != null) {
+                target = result ? branching.getConsequent() : branching.getAlternative();
+                otherTarget = result ? branching.getAlternative() : branching.getConsequent();
+            }
+        } else if (last instanceof BinaryBranchingInstruction) {
+            BinaryBranchingInstruction branching = (BinaryBranchingInstruction) last;
+            Boolean result = evaluate(branching, facts);
+            if (result != null) {
+                target = result ? branching.getConsequent() : branching.getAlternative();
+                otherTarget = result ? branching.getAlternative() : branching.getConsequent();
+            }
+        }
+        if (target != null && target != otherTarget) {
+            JumpInstruction jump = new JumpInstruction();
+            jump.setTarget(target);
+            jump.setLocation(last.getLocation());
+            instructions.set(instructions.size() - 1, jump);
+            otherTarget.removeIncomingsFrom(block);
+            ++removed;
+        }
+        return removed;
+    }
+
+    private Boolean evaluate(BranchingInstruction branching, Facts facts) {
+        int operand = branching.getOperand().getIndex();
+        BranchingCondition condition = branching.getCondition();
+        switch (condition) {
+            case NULL:
+            case NOT_NULL:
+                if (facts.isNonNull(canonical[operand])) {
+                    return condition == BranchingCondition.NOT_NULL;
+                }
+                return null;
+            default:
+                break;
+        }
+
+        BinaryInstruction comparison = getComparison(operand);
+        int relation = comparison != null
+                ? compare(facts, canonical[comparison.getFirstOperand().getIndex()],
+                        canonical[comparison.getSecondOperand().getIndex()])
+                : compareWithZero(facts, canonical[operand]);
+        return evaluate(relation, satisfiedRelation(condition));
+    }
+
+    private Boolean evaluate(BinaryBranchingInstruction branching, Facts facts) {
+        int first = branching.getFirstOperand().getIndex();
+        int second = branching.getSecondOperand().getIndex();
+        BinaryBranchingCondition condition = branching.getCondition();
+        switch (condition) {
+            case EQUAL:
+            case NOT_EQUAL: {
+                int relation = compare(facts, canonical[first], canonical[second]);
+                return evaluate(relation, condition == BinaryBranchingCondition.EQUAL ? EQUAL : LESS | GREATER);
+            }
+            case REFERENCE_EQUAL:
+            case REFERENCE_NOT_EQUAL:
+                if (nullConstants[first] && facts.isNonNull(canonical[second])
+                        || nullConstants[second] && facts.isNonNull(canonical[first])) {
+                    return condition == BinaryBranchingCondition.REFERENCE_NOT_EQUAL;
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static Boolean evaluate(int relation, int satisfied) {
+        if ((relation & ~satisfied) == 0) {
+            return true;
+        } else if ((relation & satisfied) == 0) {
+            return false;
+        }
+        return null;
+    }
+
+    private int compare(Facts facts, int first, int second) {
+        if (first == second) {
+            return EQUAL;
+        }
+        if (facts.isLess(first, second)) {
+            return LESS;
+        }
+        if (facts.isLess(second, first)) {
+            return GREATER;
+        }
+        Integer a = constants[first];
+        Integer b = constants[second];
+        if (a != null && b != null) {
+            return Integer.compare(a, b) < 0 ? LESS : a.equals(b) ? EQUAL : GREATER;
+        }
+        if (b != null && isNonNegative(facts, first)) {
+            return b < 0 ? GREATER : b == 0 ? GREATER | EQUAL : ANY;
+        }
+        if (a != null && isNonNegative(facts, second)) {
+            return a < 0 ? LESS : a == 0 ? LESS | EQUAL : ANY;
+        }
+        return ANY;
+    }
+
+    private int compareWithZero(Facts facts, int value) {
+        Integer constant = constants[value];
+        if (constant != null) {
+            return constant < 0 ? LESS : constant == 0 ? EQUAL : GREATER;
+        }
+        return isNonNegative(facts, value) ? GREATER | EQUAL : ANY;
+    }
+
+    private boolean isNonNegative(Facts facts, int value) {
+        return nonNegativeValues.get(value) || facts.nonNegative.get(value);
+    }
+
+    private BinaryInstruction getComparison(int variable) {
+        Instruction definition = definitions[variable];
+        if (definition instanceof BinaryInstruction) {
+            BinaryInstruction binary = (BinaryInstruction) definition;
+            if (binary.getOperation() == BinaryOperation.COMPARE
+                    && binary.getOperandType() == NumericOperandType.INT) {
+                return binary;
+            }
+        }
+        return null;
+    }
+
+    private static int satisfiedRelation(BranchingCondition condition) {
+        switch (condition) {
+            case EQUAL:
+                return EQUAL;
+            case NOT_EQUAL:
+                return LESS | GREATER;
+            case LESS:
+                return LESS;
+            case LESS_OR_EQUAL:
+                return LESS | EQUAL;
+            case GREATER:
+                return GREATER;
+            case GREATER_OR_EQUAL:
+                return GREATER | EQUAL;
+            default:
+                return ANY;
+        }
+    }
+
+    private static Variable getReceiver(Instruction insn) {
+        if (insn instanceof ConstructInstruction) {
+            return ((ConstructInstruction) insn).getReceiver();
+        } else if (insn instanceof ConstructArrayInstruction) {
+            return ((ConstructArrayInstruction) insn).getReceiver();
+        } else if (insn instanceof ConstructMultiArrayInstruction) {
+            return ((ConstructMultiArrayInstruction) insn).getReceiver();
+        } else if (insn instanceof StringConstantInstruction) {
+            return ((StringConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof ClassConstantInstruction) {
+            return ((ClassConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof IntegerConstantInstruction) {
+            return ((IntegerConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof NullConstantInstruction) {
+            return ((NullConstantInstruction) insn).getReceiver();
+        } else if (insn instanceof AssignInstruction) {
+            return ((AssignInstruction) insn).getReceiver();
+        } else if (insn instanceof NullCheckInstruction) {
+            return ((NullCheckInstruction) insn).getReceiver();
+        } else if (insn instanceof ArrayLengthInstruction) {
+            return ((ArrayLengthInstruction) insn).getReceiver();
+        } else if (insn instanceof BinaryInstruction) {
+            return ((BinaryInstruction) insn).getReceiver();
+        }
+        return null;
+    }
+
+    static class Facts {
+        final BitSet nonNull = new BitSet();
+        final BitSet nonNegative = new BitSet();
+        final Set<Long> less = new HashSet<>();
+
+        boolean isNonNull(int value) {
+            return nonNull.get(value);
+        }
+
+        void addLess(int first, int second) {
+            less.add(pair(first, second));
+        }
+
+        boolean isLess(int first, int second) {
+            return less.contains(pair(first, second));
+        }
+
+        Set<Integer> upperBounds(int value) {
+            Set<Integer> result = new HashSet<>();
+            for (long pair : less) {
+                if ((int) (pair >>> 32) == value) {
+                    result.add((int) pair);
+                }
+            }
+            return result;
+        }
+
+        void retain(Facts other) {
+            nonNull.and(other.nonNull);
+            nonNegative.and(other.nonNegative);
+            less.retainAll(other.less);
+        }
+
+        Facts copy() {
+            Facts copy = new Facts();
+            copy.nonNull.or(nonNull);
+            copy.nonNegative.or(nonNegative);
+            copy.less.addAll(less);
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Facts)) {
+                return false;
+            }
+            Facts other = (Facts) obj;
+            return nonNull.equals(other.nonNull) && nonNegative.equals(other.nonNegative) && less.equals(other.less);
+        }
+
+        @Override
+        public int hashCode() {
+            return nonNull.hashCode() * 31 + less.hashCode();
+        }
+
+        private static long pair(int first, int second) {
+            return ((long) first << 32) | (second & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.FieldReference;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.TryCatchBlock;
+import org.teavm.model.TryCatchJoint;
+import org.teavm.model.ValueType;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.ConstructInstruction;
+import org.teavm.model.instructions.DoubleConstantInstruction;
+import org.teavm.model.instructions.EmptyInstruction;
+import org.teavm.model.instructions.FloatConstantInstruction;
+import org.teavm.model.instructions.GetFieldInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.LongConstantInstruction;
+import org.teavm.model.instructions.NullCheckInstruction;
+import org.teavm.model.instructions.NullConstantInstruction;
+import org.teavm.model.instructions.PutFieldInstruction;
+import org.teavm.model.util.PhiUpdater;
+import org.teavm.model.util.UsageExtractor;
+
+/**
+ * <p>Replaces objects that never escape the method by their fields. An object created by
+ * {@link ConstructInstruction} does not escape if it is only used to read and write its own fields,
+ * to call <code>Object.&lt;init&gt;</code>, and is copied only by assignments and null checks. Usually such
+ * objects appear after constructors and small methods of iterators, lambdas and value holders are inlined.</p>
+ *
+ * <p>Each field of a replaced object becomes a variable, which is set to the default value where the object
+ * is created, is assigned on field writes and is read on field reads. Then SSA form is restored by
+ * {@link PhiUpdater}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class ScalarReplacement implements MethodOptimization {
+    private static final MethodReference OBJECT_INIT = new MethodReference(Object.class, "<init>", void.class);
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        Candidate[] owners = findCandidates(program);
+        boolean replaced = false;
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            replaced |= replace(program, program.basicBlockAt(i), owners);
+        }
+        if (!replaced) {
+            return false;
+        }
+
+        Variable[] inputs = new Variable[method.parameterCount() + 1];
+        for (int i = 0; i < inputs.length; ++i) {
+            inputs[i] = program.variableAt(i);
+        }
+        new PhiUpdater().updatePhis(program, inputs);
+        new UnusedVariableElimination().optimize(method, program);
+        return true;
+    }
+
+    private Candidate[] findCandidates(Program program) {
+        Candidate[] owners = new Candidate[program.variableCount()];
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof ConstructInstruction) {
+                    owners[((ConstructInstruction) insn).getReceiver().getIndex()] = new Candidate();
+                }
+            }
+        }
+
+        boolean changed;
+        do {
+            changed = false;
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                    Variable source = getCopySource(insn);
+                    if (source == null || owners[source.getIndex()] == null) {
+                        continue;
+                    }
+                    int receiver = getCopyReceiver(insn).getIndex();
+                    if (owners[receiver] == null) {
+                        owners[receiver] = owners[source.getIndex()];
+                        changed = true;
+                    }
+                }
+            }
+        } while (changed);
+
+        UsageExtractor usageExtractor = new UsageExtractor();
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            BasicBlock block = program.basicBlockAt(i);
+            for (Phi phi : block.getPhis()) {
+                for (Incoming incoming : phi.getIncomings()) {
+                    markEscaping(owners, incoming.getValue());
+                }
+                markEscaping(owners, phi.getReceiver());
+            }
+            for (TryCatchBlock tryCatch : block.getTryCatchBlocks()) {
+                for (TryCatchJoint joint : tryCatch.getJoints()) {
+                    for (Variable sourceVar : joint.getSourceVariables()) {
+                        markEscaping(owners, sourceVar);
+                    }
+                    markEscaping(owners, joint.getReceiver());
+                }
+            }
+            for (Instruction insn : block.getInstructions()) {
+                if (insn instanceof GetFieldInstruction) {
+                    GetFieldInstruction getField = (GetFieldInstruction) insn;
+                    if (getField.getInstance() != null) {
+                        Candidate owner = owners[getField.getInstance().getIndex()];
+                        if (owner != null) {
+                            owner.addField(getField.getField(), getField.getFieldType());
+                        }
+                    }
+                    continue;
+                } else if (insn instanceof PutFieldInstruction) {
+                    PutFieldInstruction putField = (PutFieldInstruction) insn;
+                    if (putField.getInstance() != null) {
+                        Candidate owner = owners[putField.getInstance().getIndex()];
+                        if (owner != null) {
+                            owner.addField(putField.getField(), putField.getFieldType());
+                        }
+                    }
+                    markEscaping(owners, putField.getValue());
+                    continue;
+                } else if (getCopySource(insn) != null || isObjectInit(insn, owners)) {
+                    continue;
+                }
+                insn.acceptVisitor(usageExtractor);
+                for (Variable var : usageExtractor.getUsedVariables()) {
+                    markEscaping(owners, var);
+                }
+            }
+        }
+
+        for (int i = 0; i < owners.length; ++i) {
+            if (owners[i] != null && (owners[i].escaping || owners[i].hasUnknownFieldType)) {
+                owners[i] = null;
+            }
+        }
+        return owners;
+    }
+
+    private void markEscaping(Candidate[] owners, Variable var) {
+        Candidate owner = owners[var.getIndex()];
+        if (owner != null) {
+            owner.escaping = true;
+        }
+    }
+
+    private boolean isObjectInit(Instruction insn, Candidate[] owners) {
+        if (!(insn instanceof InvokeInstruction)) {
+            return false;
+        }
+        InvokeInstruction invoke = (InvokeInstruction) insn;
+        return invoke.getType() == InvocationType.SPECIAL && invoke.getMethod().equals(OBJECT_INIT)
+                && invoke.getInstance() != null && owners[invoke.getInstance().getIndex()] != null;
+    }
+
+    private static Variable getCopySource(Instruction insn) {
+        if (insn instanceof AssignInstruction) {
+            return ((AssignInstruction) insn).getAssignee();
+        } else if (insn instanceof NullCheckInstruction) {
+            return ((NullCheckInstruction) insn).getValue();
+        }
+        return null;
+    }
+
+    private static Variable getCopyReceiver(Instruction insn) {
+        if (insn instanceof AssignInstruction) {
+            return ((AssignInstruction) insn).getReceiver();
+        } else {
+            return ((NullCheckInstruction) insn).getReceiver();
+        }
+    }
+
+    private boolean replace(Program program, BasicBlock block, Candidate[] owners) {
+        boolean replaced = false;
+        List<Instruction> instructions = block.getInstructions();
+        for (int i = 0; i < instructions.size(); ++i) {
+            Instruction insn = instructions.get(i);
+            if (insn instanceof ConstructInstruction) {
+                Candidate owner = owners[((ConstructInstruction) insn).getReceiver().getIndex()];
+                if (owner == null) {
+                    continue;
+                }
+                List<Instruction> initializers = new ArrayList<>();
+                for (Map.Entry<FieldReference, ValueType> field : owner.fieldTypes.entrySet()) {
+                    Instruction initializer = createDefaultValue(field.getValue(),
+                            owner.getFieldVariable(program, field.getKey()));
+                    initializer.setLocation(insn.getLocation());
+                    initializers.add(initializer);
+                }
+                instructions.set(i, empty(insn));
+                instructions.addAll(i + 1, initializers);
+                i += initializers.size();
+                replaced = true;
+            } else if (insn instanceof GetFieldInstruction) {
+                GetFieldInstruction getField = (GetFieldInstruction) insn;
+                Candidate owner = getField.getInstance() != null ? owners[getField.getInstance().getIndex()] : null;
+                if (owner != null) {
+                    AssignInstruction assign = new AssignInstruction();
+                    assign.setAssignee(owner.getFieldVariable(program, getField.getField()));
+                    assign.setReceiver(getField.getReceiver());
+                    assign.setLocation(insn.getLocation());
+                    instructions.set(i, assign);
+                }
+            } else if (insn instanceof PutFieldInstruction) {
+                PutFieldInstruction putField = (PutFieldInstruction) insn;
+                Candidate owner = putField.getInstance() != null ? owners[putField.getInstance().getIndex()] : null;
+                if (owner != null) {
+                    AssignInstruction assign = new AssignInstruction();
+                    assign.setAssignee(putField.getValue());
+                    assign.setReceiver(owner.getFieldVariable(program, putField.getField()));
+                    assign.setLocation(insn.getLocation());
+                    instructions.set(i, assign);
+                }
+            } else if (getCopySource(insn) != null) {
+                if (owners[getCopySource(insn).getIndex()] != null) {
+                    instructions.set(i, empty(insn));
+                }
+            } else if (isObjectInit(insn, owners)) {
+                instructions.set(i, empty(insn));
+            }
+        }
+        return replaced;
+    }
+
+    private static Instruction empty(Instruction insn) {
+        EmptyInstruction empty = new EmptyInstruction();
+        empty.setLocation(insn.getLocation());
+        return empty;
+    }
+
+    private static Instruction createDefaultValue(ValueType type, Variable receiver) {
+        if (type instanceof ValueType.Primitive) {
+            switch (((ValueType.Primitive) type).getKind()) {
+                case LONG: {
+                    LongConstantInstruction insn = new LongConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                case FLOAT: {
+                    FloatConstantInstruction insn = new FloatConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                case DOUBLE: {
+                    DoubleConstantInstruction insn = new DoubleConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+                default: {
+                    IntegerConstantInstruction insn = new IntegerConstantInstruction();
+                    insn.setReceiver(receiver);
+                    return insn;
+                }
+            }
+        }
+        NullConstantInstruction insn = new NullConstantInstruction();
+        insn.setReceiver(receiver);
+        return insn;
+    }
+
+    private static class Candidate {
+        boolean escaping;
+        boolean hasUnknownFieldType;
+        final Map<FieldReference, ValueType> fieldTypes = new LinkedHashMap<>();
+        final Map<FieldReference, Variable> fieldVariables = new LinkedHashMap<>();
+
+        void addField(FieldReference field, ValueType type) {
+            if (type == null) {
+                hasUnknownFieldType = true;
+            } else {
+                fieldTypes.put(field, type);
+            }
+        }
+
+        Variable getFieldVariable(Program program, FieldReference field) {
+            return fieldVariables.computeIfAbsent(field, f -> program.createVariable());
+        }
+    }
+}
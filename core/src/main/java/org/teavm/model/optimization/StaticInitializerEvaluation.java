@@ -0,0 +1,765 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.teavm.model.BasicBlockReader;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.ElementModifier;
+import org.teavm.model.FieldHolder;
+import org.teavm.model.FieldReference;
+import org.teavm.model.IncomingReader;
+import org.teavm.model.MethodDescriptor;
+import org.teavm.model.MethodHandle;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.PhiReader;
+import org.teavm.model.ProgramReader;
+import org.teavm.model.RuntimeConstant;
+import org.teavm.model.TextLocation;
+import org.teavm.model.ValueType;
+import org.teavm.model.VariableReader;
+import org.teavm.model.instructions.ArrayElementType;
+import org.teavm.model.instructions.BinaryBranchingCondition;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.BranchingCondition;
+import org.teavm.model.instructions.CastIntegerDirection;
+import org.teavm.model.instructions.InstructionReader;
+import org.teavm.model.instructions.IntegerSubtype;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.instructions.SwitchTableEntryReader;
+
+/**
+ * <p>Runs static initializers at build time. A <code>&lt;clinit&gt;</code> qualifies when it only computes
+ * values of primitives, strings and primitive arrays, touches no static fields but those of its own class
+ * and calls no methods but static methods of its own class. Qualifying initializers are replaced by
+ * initial values of fields and removed, so that backends neither emit them nor guard accesses to the class,
+ * and {@link ClassInitElimination} drops initialization of the class from method bodies.</p>
+ *
+ * <p>Initializers are interpreted in a sandbox instead of {@link org.teavm.model.Interpreter}, which runs
+ * field accesses and invocations against JVM classes, i.e. against the compiler's own class library.
+ * Evaluation is abandoned as soon as the initializer does anything else, throws, runs for too long
+ * or allocates too much.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class StaticInitializerEvaluation {
+    private static final MethodDescriptor CLINIT = new MethodDescriptor("<clinit>", void.class);
+    private static final int MAX_STEPS = 100000;
+    private static final int MAX_CALL_DEPTH = 8;
+    private static final int MAX_ARRAY_ELEMENTS = 4096;
+    private final boolean objectValuesSupported;
+
+    /**
+     * @param objectValuesSupported whether the backend can emit strings and primitive arrays as initial
+     * values of fields. When it can not, only initializers that produce primitive values are evaluated.
+     */
+    public StaticInitializerEvaluation(boolean objectValuesSupported) {
+        this.objectValuesSupported = objectValuesSupported;
+    }
+
+    public boolean apply(ClassHolder cls) {
+        MethodHolder clinit = cls.getMethod(CLINIT);
+        if (clinit == null || clinit.getProgram() == null) {
+            return false;
+        }
+
+        Map<String, Object> fieldValues = new HashMap<>();
+        for (FieldHolder field : cls.getFields()) {
+            if (field.hasModifier(ElementModifier.STATIC)) {
+                Object value = field.getInitialValue();
+                fieldValues.put(field.getName(), value != null ? value : getDefaultValue(field.getType()));
+            }
+        }
+
+        Evaluator evaluator = new Evaluator(cls, fieldValues);
+        try {
+            evaluator.execute(clinit.getProgram(), new Object[1], 0);
+        } catch (RuntimeException e) {
+            return false;
+        }
+
+        Set<Object> arrays = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FieldHolder field : cls.getFields()) {
+            if (!field.hasModifier(ElementModifier.STATIC)) {
+                continue;
+            }
+            Object value = fieldValues.get(field.getName());
+            if (value != null && value.getClass().isArray()) {
+                if (!objectValuesSupported || !arrays.add(value)) {
+                    return false;
+                }
+            } else if (value instanceof String && value != field.getInitialValue() && !objectValuesSupported) {
+                return false;
+            }
+        }
+
+        for (FieldHolder field : cls.getFields()) {
+            if (field.hasModifier(ElementModifier.STATIC)) {
+                field.setInitialValue(fieldValues.get(field.getName()));
+            }
+        }
+        cls.removeMethod(clinit);
+        return true;
+    }
+
+    private static Object getDefaultValue(ValueType type) {
+        if (type instanceof ValueType.Primitive) {
+            switch (((ValueType.Primitive) type).getKind()) {
+                case LONG:
+                    return 0L;
+                case FLOAT:
+                    return 0F;
+                case DOUBLE:
+                    return 0.0;
+                default:
+                    return 0;
+            }
+        }
+        return null;
+    }
+
+    private static class EvaluationException extends RuntimeException {
+        private static final long serialVersionUID = 957656576018585331L;
+
+        EvaluationException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Evaluator implements InstructionReader {
+        private ClassHolder cls;
+        private Map<String, Object> fieldValues;
+        private int steps;
+        private int allocatedElements;
+        private BasicBlockReader currentBlock;
+        private List<List<IncomingReader>> outgoings;
+        private Object[] variables;
+        private Object result;
+        private boolean exited;
+        private boolean jumped;
+        private int depth;
+
+        Evaluator(ClassHolder cls, Map<String, Object> fieldValues) {
+            this.cls = cls;
+            this.fieldValues = fieldValues;
+        }
+
+        Object execute(ProgramReader program, Object[] parameters, int depth) {
+            if (depth > MAX_CALL_DEPTH) {
+                throw new EvaluationException("Call stack is too deep");
+            }
+            BasicBlockReader savedBlock = currentBlock;
+            List<List<IncomingReader>> savedOutgoings = outgoings;
+            Object[] savedVariables = variables;
+            int savedDepth = this.depth;
+
+            variables = new Object[program.variableCount()];
+            System.arraycopy(parameters, 0, variables, 0, parameters.length);
+            currentBlock = program.basicBlockAt(0);
+            this.depth = depth;
+            exited = false;
+            result = null;
+
+            outgoings = new ArrayList<>();
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                outgoings.add(new ArrayList<>());
+            }
+            for (int i = 0; i < program.basicBlockCount(); ++i) {
+                BasicBlockReader block = program.basicBlockAt(i);
+                for (PhiReader phi : block.readPhis()) {
+                    for (IncomingReader incoming : phi.readIncomings()) {
+                        outgoings.get(incoming.getSource().getIndex()).add(incoming);
+                    }
+                }
+            }
+
+            while (!exited) {
+                BasicBlockReader block = currentBlock;
+                jumped = false;
+                for (int i = 0; i < block.instructionCount() && !jumped && !exited; ++i) {
+                    if (++steps > MAX_STEPS) {
+                        throw new EvaluationException("Too many steps");
+                    }
+                    block.readInstruction(i, this);
+                }
+                if (!jumped && !exited) {
+                    throw new EvaluationException("Basic block has no terminating instruction");
+                }
+            }
+
+            Object returnValue = result;
+            currentBlock = savedBlock;
+            outgoings = savedOutgoings;
+            variables = savedVariables;
+            this.depth = savedDepth;
+            exited = false;
+            jumped = false;
+            return returnValue;
+        }
+
+        private Object get(VariableReader variable) {
+            return variables[variable.getIndex()];
+        }
+
+        private int getInt(VariableReader variable) {
+            return (Integer) variables[variable.getIndex()];
+        }
+
+        private void set(VariableReader variable, Object value) {
+            variables[variable.getIndex()] = value;
+        }
+
+        @Override
+        public void location(TextLocation location) {
+        }
+
+        @Override
+        public void nop() {
+        }
+
+        @Override
+        public void classConstant(VariableReader receiver, ValueType cst) {
+            throw new EvaluationException("Class constants are not supported");
+        }
+
+        @Override
+        public void nullConstant(VariableReader receiver) {
+            set(receiver, null);
+        }
+
+        @Override
+        public void integerConstant(VariableReader receiver, int cst) {
+            set(receiver, cst);
+        }
+
+        @Override
+        public void longConstant(VariableReader receiver, long cst) {
+            set(receiver, cst);
+        }
+
+        @Override
+        public void floatConstant(VariableReader receiver, float cst) {
+            set(receiver, cst);
+        }
+
+        @Override
+        public void doubleConstant(VariableReader receiver, double cst) {
+            set(receiver, cst);
+        }
+
+        @Override
+        public void stringConstant(VariableReader receiver, String cst) {
+            set(receiver, cst.intern());
+        }
+
+        @Override
+        public void binary(BinaryOperation op, VariableReader receiver, VariableReader first, VariableReader second,
+                NumericOperandType type) {
+            switch (type) {
+                case INT:
+                    set(receiver, binary(op, getInt(first), getInt(second)));
+                    break;
+                case LONG:
+                    set(receiver, binary(op, (Long) get(first), ((Number) get(second)).longValue()));
+                    break;
+                case FLOAT:
+                    set(receiver, binary(op, (Float) get(first), (float) (Float) get(second)));
+                    break;
+                case DOUBLE:
+                    set(receiver, binary(op, (Double) get(first), (double) (Double) get(second)));
+                    break;
+            }
+        }
+
+        private Object binary(BinaryOperation op, int a, int b) {
+            switch (op) {
+                case ADD:
+                    return a + b;
+                case SUBTRACT:
+                    return a - b;
+                case MULTIPLY:
+                    return a * b;
+                case DIVIDE:
+                    return a / b;
+                case MODULO:
+                    return a % b;
+                case COMPARE:
+                    return Integer.compare(a, b);
+                case AND:
+                    return a & b;
+                case OR:
+                    return a | b;
+                case XOR:
+                    return a ^ b;
+                case SHIFT_LEFT:
+                    return a << b;
+                case SHIFT_RIGHT:
+                    return a >> b;
+                case SHIFT_RIGHT_UNSIGNED:
+                    return a >>> b;
+            }
+            throw new EvaluationException("Unknown operation: " + op);
+        }
+
+        private Object binary(BinaryOperation op, long a, long b) {
+            switch (op) {
+                case ADD:
+                    return a + b;
+                case SUBTRACT:
+                    return a - b;
+                case MULTIPLY:
+                    return a * b;
+                case DIVIDE:
+                    return a / b;
+                case MODULO:
+                    return a % b;
+                case COMPARE:
+                    return Long.compare(a, b);
+                case AND:
+                    return a & b;
+                case OR:
+                    return a | b;
+                case XOR:
+                    return a ^ b;
+                case SHIFT_LEFT:
+                    return a << b;
+                case SHIFT_RIGHT:
+                    return a >> b;
+                case SHIFT_RIGHT_UNSIGNED:
+                    return a >>> b;
+            }
+            throw new EvaluationException("Unknown operation: " + op);
+        }
+
+        private Object binary(BinaryOperation op, float a, float b) {
+            switch (op) {
+                case ADD:
+                    return a + b;
+                case SUBTRACT:
+                    return a - b;
+                case MULTIPLY:
+                    return a * b;
+                case DIVIDE:
+                    return a / b;
+                case MODULO:
+                    return a % b;
+                case COMPARE:
+                    return a > b ? 1 : a < b ? -1 : 0;
+                default:
+                    break;
+            }
+            throw new EvaluationException("Unknown operation: " + op);
+        }
+
+        private Object binary(BinaryOperation op, double a, double b) {
+            switch (op) {
+                case ADD:
+                    return a + b;
+                case SUBTRACT:
+                    return a - b;
+                case MULTIPLY:
+                    return a * b;
+                case DIVIDE:
+                    return a / b;
+                case MODULO:
+                    return a % b;
+                case COMPARE:
+                    return a > b ? 1 : a < b ? -1 : 0;
+                default:
+                    break;
+            }
+            throw new EvaluationException("Unknown operation: " + op);
+        }
+
+        @Override
+        public void negate(VariableReader receiver, VariableReader operand, NumericOperandType type) {
+            switch (type) {
+                case INT:
+                    set(receiver, -getInt(operand));
+                    break;
+                case LONG:
+                    set(receiver, -(Long) get(operand));
+                    break;
+                case FLOAT:
+                    set(receiver, -(Float) get(operand));
+                    break;
+                case DOUBLE:
+                    set(receiver, -(Double) get(operand));
+                    break;
+            }
+        }
+
+        @Override
+        public void assign(VariableReader receiver, VariableReader assignee) {
+            set(receiver, get(assignee));
+        }
+
+        @Override
+        public void cast(VariableReader receiver, VariableReader value, ValueType targetType) {
+            Object object = get(value);
+            if (object != null && !isInstance(object, targetType)) {
+                throw new EvaluationException("Can't cast value to " + targetType);
+            }
+            set(receiver, object);
+        }
+
+        @Override
+        public void cast(VariableReader receiver, VariableReader value, NumericOperandType sourceType,
+                NumericOperandType targetType) {
+            Number number = (Number) get(value);
+            Object result;
+            switch (targetType) {
+                case INT:
+                    result = number.intValue();
+                    break;
+                case LONG:
+                    result = number.longValue();
+                    break;
+                case FLOAT:
+                    result = number.floatValue();
+                    break;
+                case DOUBLE:
+                    result = number.doubleValue();
+                    break;
+                default:
+                    throw new EvaluationException("Can't cast " + sourceType + " to " + targetType);
+            }
+            set(receiver, result);
+        }
+
+        @Override
+        public void cast(VariableReader receiver, VariableReader value, IntegerSubtype type,
+                CastIntegerDirection direction) {
+            int a = getInt(value);
+            switch (type) {
+                case BYTE:
+                    set(receiver, (int) (byte) a);
+                    break;
+                case SHORT:
+                    set(receiver, (int) (short) a);
+                    break;
+                case CHARACTER:
+                    set(receiver, (int) (char) a);
+                    break;
+            }
+        }
+
+        @Override
+        public void jumpIf(BranchingCondition cond, VariableReader operand, BasicBlockReader consequent,
+                BasicBlockReader alternative) {
+            Object a = get(operand);
+            boolean c;
+            switch (cond) {
+                case EQUAL:
+                    c = (Integer) a == 0;
+                    break;
+                case NOT_EQUAL:
+                    c = (Integer) a != 0;
+                    break;
+                case LESS:
+                    c = (Integer) a < 0;
+                    break;
+                case LESS_OR_EQUAL:
+                    c = (Integer) a <= 0;
+                    break;
+                case GREATER:
+                    c = (Integer) a > 0;
+                    break;
+                case GREATER_OR_EQUAL:
+                    c = (Integer) a >= 0;
+                    break;
+                case NULL:
+                    c = a == null;
+                    break;
+                case NOT_NULL:
+                    c = a != null;
+                    break;
+                default:
+                    throw new EvaluationException("Unknown condition: " + cond);
+            }
+            jump(c ? consequent : alternative);
+        }
+
+        @Override
+        public void jumpIf(BinaryBranchingCondition cond, VariableReader first, VariableReader second,
+                BasicBlockReader consequent, BasicBlockReader alternative) {
+            Object a = get(first);
+            Object b = get(second);
+            boolean c;
+            switch (cond) {
+                case EQUAL:
+                    c = ((Integer) a).intValue() == (Integer) b;
+                    break;
+                case NOT_EQUAL:
+                    c = ((Integer) a).intValue() != (Integer) b;
+                    break;
+                case REFERENCE_EQUAL:
+                    c = a == b;
+                    break;
+                case REFERENCE_NOT_EQUAL:
+                    c = a != b;
+                    break;
+                default:
+                    throw new EvaluationException("Unknown condition: " + cond);
+            }
+            jump(c ? consequent : alternative);
+        }
+
+        @Override
+        public void jump(BasicBlockReader target) {
+            Object[] newVariables = variables.clone();
+            for (IncomingReader outgoing : outgoings.get(currentBlock.getIndex())) {
+                if (outgoing.getPhi().getBasicBlock() == target) {
+                    newVariables[outgoing.getPhi().getReceiver().getIndex()] = get(outgoing.getValue());
+                }
+            }
+            variables = newVariables;
+            currentBlock = target;
+            jumped = true;
+        }
+
+        @Override
+        public void choose(VariableReader condition, List<? extends SwitchTableEntryReader> table,
+                BasicBlockReader defaultTarget) {
+            int value = getInt(condition);
+            for (SwitchTableEntryReader entry : table) {
+                if (value == entry.getCondition()) {
+                    jump(entry.getTarget());
+                    return;
+                }
+            }
+            jump(defaultTarget);
+        }
+
+        @Override
+        public void exit(VariableReader valueToReturn) {
+            result = valueToReturn != null ? get(valueToReturn) : null;
+            exited = true;
+        }
+
+        @Override
+        public void raise(VariableReader exception) {
+            throw new EvaluationException("Initializer throws exception");
+        }
+
+        @Override
+        public void createArray(VariableReader receiver, ValueType itemType, VariableReader size) {
+            int length = getInt(size);
+            allocatedElements += Math.max(length, 0);
+            if (allocatedElements > MAX_ARRAY_ELEMENTS) {
+                throw new EvaluationException("Too many array elements allocated");
+            }
+            set(receiver, Array.newInstance(primitiveClass(itemType), length));
+        }
+
+        @Override
+        public void createArray(VariableReader receiver, ValueType itemType,
+                List<? extends VariableReader> dimensions) {
+            throw new EvaluationException("Multidimensional arrays are not supported");
+        }
+
+        @Override
+        public void create(VariableReader receiver, String type) {
+            throw new EvaluationException("Object creation is not supported");
+        }
+
+        @Override
+        public void getField(VariableReader receiver, VariableReader instance, FieldReference field,
+                ValueType fieldType) {
+            checkField(instance, field);
+            set(receiver, fieldValues.get(field.getFieldName()));
+        }
+
+        @Override
+        public void putField(VariableReader instance, FieldReference field, VariableReader value,
+                ValueType fieldType) {
+            checkField(instance, field);
+            fieldValues.put(field.getFieldName(), get(value));
+        }
+
+        private void checkField(VariableReader instance, FieldReference field) {
+            if (instance != null || !field.getClassName().equals(cls.getName())
+                    || !fieldValues.containsKey(field.getFieldName())) {
+                throw new EvaluationException("Access to field " + field + " is not supported");
+            }
+        }
+
+        @Override
+        public void arrayLength(VariableReader receiver, VariableReader array) {
+            set(receiver, Array.getLength(get(array)));
+        }
+
+        @Override
+        public void cloneArray(VariableReader receiver, VariableReader array) {
+            Object source = get(array);
+            int length = Array.getLength(source);
+            allocatedElements += length;
+            if (allocatedElements > MAX_ARRAY_ELEMENTS) {
+                throw new EvaluationException("Too many array elements allocated");
+            }
+            Object copy = Array.newInstance(source.getClass().getComponentType(), length);
+            System.arraycopy(source, 0, copy, 0, length);
+            set(receiver, copy);
+        }
+
+        @Override
+        public void unwrapArray(VariableReader receiver, VariableReader array, ArrayElementType elementType) {
+            set(receiver, get(array));
+        }
+
+        @Override
+        public void getElement(VariableReader receiver, VariableReader array, VariableReader index,
+                ArrayElementType type) {
+            Object value = Array.get(get(array), getInt(index));
+            if (value instanceof Boolean) {
+                value = (Boolean) value ? 1 : 0;
+            } else if (value instanceof Character) {
+                value = (int) (Character) value;
+            } else if (value instanceof Byte || value instanceof Short) {
+                value = ((Number) value).intValue();
+            }
+            set(receiver, value);
+        }
+
+        @Override
+        public void putElement(VariableReader array, VariableReader index, VariableReader value,
+                ArrayElementType type) {
+            Object target = get(array);
+            int indexValue = getInt(index);
+            Object element = get(value);
+            Class<?> componentType = target.getClass().getComponentType();
+            if (componentType == boolean.class) {
+                Array.setBoolean(target, indexValue, (Integer) element != 0);
+            } else if (componentType == byte.class) {
+                Array.setByte(target, indexValue, (byte) (int) (Integer) element);
+            } else if (componentType == short.class) {
+                Array.setShort(target, indexValue, (short) (int) (Integer) element);
+            } else if (componentType == char.class) {
+                Array.setChar(target, indexValue, (char) (int) (Integer) element);
+            } else {
+                Array.set(target, indexValue, element);
+            }
+        }
+
+        @Override
+        public void invoke(VariableReader receiver, VariableReader instance, MethodReference method,
+                List<? extends VariableReader> arguments, InvocationType type) {
+            if (instance != null || !method.getClassName().equals(cls.getName())) {
+                throw new EvaluationException("Call to method " + method + " is not supported");
+            }
+            MethodHolder callee = cls.getMethod(method.getDescriptor());
+            if (callee == null || callee.getProgram() == null || !callee.hasModifier(ElementModifier.STATIC)
+                    || callee.hasModifier(ElementModifier.SYNCHRONIZED)) {
+                throw new EvaluationException("Call to method " + method + " is not supported");
+            }
+            Object[] parameters = new Object[arguments.size() + 1];
+            for (int i = 0; i < arguments.size(); ++i) {
+                parameters[i + 1] = get(arguments.get(i));
+            }
+            Object returnValue = execute(callee.getProgram(), parameters, depth + 1);
+            if (receiver != null) {
+                set(receiver, returnValue);
+            }
+        }
+
+        @Override
+        public void invokeDynamic(VariableReader receiver, VariableReader instance, MethodDescriptor method,
+                List<? extends VariableReader> arguments, MethodHandle bootstrapMethod,
+                List<RuntimeConstant> bootstrapArguments) {
+            throw new EvaluationException("InvokeDynamic is not supported");
+        }
+
+        @Override
+        public void isInstance(VariableReader receiver, VariableReader value, ValueType type) {
+            Object object = get(value);
+            set(receiver, object != null && isInstance(object, type) ? 1 : 0);
+        }
+
+        private boolean isInstance(Object object, ValueType type) {
+            if (type instanceof ValueType.Array) {
+                ValueType itemType = ((ValueType.Array) type).getItemType();
+                return itemType instanceof ValueType.Primitive
+                        && object.getClass().getComponentType() == primitiveClass(itemType);
+            } else if (type instanceof ValueType.Object) {
+                String className = ((ValueType.Object) type).getClassName();
+                if (object instanceof String) {
+                    return className.equals("java.lang.String") || className.equals("java.lang.Object");
+                }
+                return className.equals("java.lang.Object");
+            }
+            return false;
+        }
+
+        @Override
+        public void initClass(String className) {
+            if (!className.equals(cls.getName())) {
+                throw new EvaluationException("Initialization of class " + className + " is not supported");
+            }
+        }
+
+        @Override
+        public void nullCheck(VariableReader receiver, VariableReader value) {
+            Object object = get(value);
+            if (object == null) {
+                throw new EvaluationException("Initializer throws NullPointerException");
+            }
+            set(receiver, object);
+        }
+
+        @Override
+        public void monitorEnter(VariableReader objectRef) {
+            throw new EvaluationException("Monitors are not supported");
+        }
+
+        @Override
+        public void monitorExit(VariableReader objectRef) {
+            throw new EvaluationException("Monitors are not supported");
+        }
+
+        private static Class<?> primitiveClass(ValueType type) {
+            if (type instanceof ValueType.Primitive) {
+                switch (((ValueType.Primitive) type).getKind()) {
+                    case BOOLEAN:
+                        return boolean.class;
+                    case BYTE:
+                        return byte.class;
+                    case SHORT:
+                        return short.class;
+                    case CHARACTER:
+                        return char.class;
+                    case INTEGER:
+                        return int.class;
+                    case LONG:
+                        return long.class;
+                    case FLOAT:
+                        return float.class;
+                    case DOUBLE:
+                        return double.class;
+                }
+            }
+            throw new EvaluationException("Arrays of " + type + " are not supported");
+        }
+    }
+}
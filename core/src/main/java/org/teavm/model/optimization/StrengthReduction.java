@@ -0,0 +1,270 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import com.carrotsearch.hppc.IntOpenHashSet;
+import com.carrotsearch.hppc.IntSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.teavm.common.Graph;
+import org.teavm.common.Loop;
+import org.teavm.common.LoopGraph;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.Incoming;
+import org.teavm.model.Instruction;
+import org.teavm.model.MethodReader;
+import org.teavm.model.Phi;
+import org.teavm.model.Program;
+import org.teavm.model.Variable;
+import org.teavm.model.instructions.AssignInstruction;
+import org.teavm.model.instructions.BinaryInstruction;
+import org.teavm.model.instructions.BinaryOperation;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.NumericOperandType;
+import org.teavm.model.util.ProgramUtils;
+
+/**
+ * <p>Replaces multiplications of induction variables by constants with additions. An induction variable
+ * is a phi in loop header that has a single input from outside of the loop, and all its inputs from back
+ * edges are the same value <code>i + c</code>, where <code>c</code> is a constant. For every expression
+ * <code>i * k</code> inside the loop, where <code>k</code> is a constant, a new induction variable is
+ * introduced, which starts with <code>init * k</code> and grows by <code>c * k</code>, so the expression
+ * becomes a copy of this variable. Both are equal in the 32-bit integer arithmetic, even when overflow occurs.</p>
+ *
+ * <p>At most {@link #MAX_VARIABLES_PER_LOOP} new variables are introduced per loop, since each of them takes
+ * a phi and an addition.</p>
+ *
+ * @author Alexey Andreev
+ */
+public class StrengthReduction implements MethodOptimization {
+    private static final int MAX_VARIABLES_PER_LOOP = 4;
+
+    private Program program;
+    private Instruction[] definitions;
+    private Integer[] constants;
+
+    @Override
+    public boolean optimize(MethodReader method, Program program) {
+        this.program = program;
+        findDefinitions();
+        Graph cfg = ProgramUtils.buildControlFlowGraph(program);
+        LoopGraph loopGraph = new LoopGraph(cfg);
+
+        Map<Loop, IntSet> loops = new HashMap<>();
+        for (int node = 0; node < cfg.size(); ++node) {
+            for (Loop loop = loopGraph.loopAt(node); loop != null; loop = loop.getParent()) {
+                loops.computeIfAbsent(loop, k -> new IntOpenHashSet()).add(node);
+            }
+        }
+
+        boolean changed = false;
+        for (Map.Entry<Loop, IntSet> entry : loops.entrySet()) {
+            changed |= reduce(entry.getKey().getHead(), entry.getValue(), cfg);
+        }
+
+        this.program = null;
+        definitions = null;
+        constants = null;
+        return changed;
+    }
+
+    private void findDefinitions() {
+        definitions = new Instruction[program.variableCount()];
+        constants = new Integer[program.variableCount()];
+        for (int i = 0; i < program.basicBlockCount(); ++i) {
+            for (Instruction insn : program.basicBlockAt(i).getInstructions()) {
+                if (insn instanceof IntegerConstantInstruction) {
+                    IntegerConstantInstruction constant = (IntegerConstantInstruction) insn;
+                    constants[constant.getReceiver().getIndex()] = constant.getConstant();
+                } else if (insn instanceof BinaryInstruction) {
+                    definitions[((BinaryInstruction) insn).getReceiver().getIndex()] = insn;
+                }
+            }
+        }
+    }
+
+    private boolean reduce(int head, IntSet nodes, Graph cfg) {
+        BasicBlock entry = null;
+        List<BasicBlock> tails = new ArrayList<>();
+        for (int predecessor : cfg.incomingEdges(head)) {
+            if (nodes.contains(predecessor)) {
+                tails.add(program.basicBlockAt(predecessor));
+            } else if (entry == null) {
+                entry = program.basicBlockAt(predecessor);
+            } else {
+                return false;
+            }
+        }
+        if (entry == null || tails.isEmpty()) {
+            return false;
+        }
+
+        Map<Variable, InductionVariable> inductionVariables = new HashMap<>();
+        for (Phi phi : program.basicBlockAt(head).getPhis()) {
+            InductionVariable inductionVariable = getInductionVariable(phi, entry, tails);
+            if (inductionVariable != null) {
+                inductionVariables.put(phi.getReceiver(), inductionVariable);
+            }
+        }
+        if (inductionVariables.isEmpty()) {
+            return false;
+        }
+
+        Map<String, Variable> reduced = new HashMap<>();
+        for (int node : nodes.toArray()) {
+            List<Instruction> instructions = program.basicBlockAt(node).getInstructions();
+            for (int i = 0; i < instructions.size(); ++i) {
+                if (!(instructions.get(i) instanceof BinaryInstruction)) {
+                    continue;
+                }
+                BinaryInstruction multiplication = (BinaryInstruction) instructions.get(i);
+                if (multiplication.getOperation() != BinaryOperation.MULTIPLY
+                        || multiplication.getOperandType() != NumericOperandType.INT) {
+                    continue;
+                }
+
+                InductionVariable inductionVariable = inductionVariables.get(multiplication.getFirstOperand());
+                Integer factor = getConstant(multiplication.getSecondOperand());
+                if (inductionVariable == null || factor == null) {
+                    inductionVariable = inductionVariables.get(multiplication.getSecondOperand());
+                    factor = getConstant(multiplication.getFirstOperand());
+                }
+                if (inductionVariable == null || factor == null || factor == 0 || factor == 1) {
+                    continue;
+                }
+
+                String key = inductionVariable.phi.getReceiver().getIndex() + "*" + factor;
+                Variable replacement = reduced.get(key);
+                if (replacement == null) {
+                    if (reduced.size() >= MAX_VARIABLES_PER_LOOP) {
+                        continue;
+                    }
+                    replacement = introduce(inductionVariable, factor, entry, tails);
+                    reduced.put(key, replacement);
+                }
+
+                AssignInstruction assign = new AssignInstruction();
+                assign.setAssignee(replacement);
+                assign.setReceiver(multiplication.getReceiver());
+                assign.setLocation(multiplication.getLocation());
+                instructions.set(i, assign);
+            }
+        }
+
+        return !reduced.isEmpty();
+    }
+
+    private InductionVariable getInductionVariable(Phi phi, BasicBlock entry, List<BasicBlock> tails) {
+        Variable initial = null;
+        Variable next = null;
+        for (Incoming incoming : phi.getIncomings()) {
+            if (incoming.getSource() == entry) {
+                initial = incoming.getValue();
+            } else if (tails.contains(incoming.getSource())) {
+                if (next != null && next != incoming.getValue()) {
+                    return null;
+                }
+                next = incoming.getValue();
+            }
+        }
+        if (initial == null || next == null || next.getIndex() >= definitions.length
+                || !(definitions[next.getIndex()] instanceof BinaryInstruction)) {
+            return null;
+        }
+
+        BinaryInstruction increment = (BinaryInstruction) definitions[next.getIndex()];
+        if (increment.getOperation() != BinaryOperation.ADD || increment.getOperandType() != NumericOperandType.INT) {
+            return null;
+        }
+        Integer step = null;
+        if (increment.getFirstOperand() == phi.getReceiver()) {
+            step = getConstant(increment.getSecondOperand());
+        } else if (increment.getSecondOperand() == phi.getReceiver()) {
+            step = getConstant(increment.getFirstOperand());
+        }
+        if (step == null) {
+            return null;
+        }
+
+        InductionVariable result = new InductionVariable();
+        result.phi = phi;
+        result.initial = initial;
+        result.increment = increment;
+        result.step = step;
+        return result;
+    }
+
+    private Variable introduce(InductionVariable inductionVariable, int factor, BasicBlock entry,
+            List<BasicBlock> tails) {
+        Variable factorVar = program.createVariable();
+        Variable initial = program.createVariable();
+        IntegerConstantInstruction factorConstant = new IntegerConstantInstruction();
+        factorConstant.setConstant(factor);
+        factorConstant.setReceiver(factorVar);
+        BinaryInstruction initialValue = new BinaryInstruction(BinaryOperation.MULTIPLY, NumericOperandType.INT);
+        initialValue.setFirstOperand(inductionVariable.initial);
+        initialValue.setSecondOperand(factorVar);
+        initialValue.setReceiver(initial);
+        List<Instruction> entryInstructions = entry.getInstructions();
+        entryInstructions.add(entryInstructions.size() - 1, factorConstant);
+        entryInstructions.add(entryInstructions.size() - 1, initialValue);
+
+        Variable current = program.createVariable();
+        Variable stepVar = program.createVariable();
+        Variable next = program.createVariable();
+        IntegerConstantInstruction stepConstant = new IntegerConstantInstruction();
+        stepConstant.setConstant(inductionVariable.step * factor);
+        stepConstant.setReceiver(stepVar);
+        BinaryInstruction nextValue = new BinaryInstruction(BinaryOperation.ADD, NumericOperandType.INT);
+        nextValue.setFirstOperand(current);
+        nextValue.setSecondOperand(stepVar);
+        nextValue.setReceiver(next);
+        List<Instruction> incrementInstructions = inductionVariable.increment.getBasicBlock().getInstructions();
+        int incrementIndex = incrementInstructions.indexOf(inductionVariable.increment);
+        incrementInstructions.add(incrementIndex + 1, stepConstant);
+        incrementInstructions.add(incrementIndex + 2, nextValue);
+
+        Phi phi = new Phi();
+        phi.setReceiver(current);
+        Incoming entryIncoming = new Incoming();
+        entryIncoming.setSource(entry);
+        entryIncoming.setValue(initial);
+        phi.getIncomings().add(entryIncoming);
+        for (BasicBlock tail : tails) {
+            Incoming tailIncoming = new Incoming();
+            tailIncoming.setSource(tail);
+            tailIncoming.setValue(next);
+            phi.getIncomings().add(tailIncoming);
+        }
+        inductionVariable.phi.getBasicBlock().getPhis().add(phi);
+
+        return current;
+    }
+
+    private Integer getConstant(Variable variable) {
+        // variables introduced by this pass are not constants
+        return variable.getIndex() < constants.length ? constants[variable.getIndex()] : null;
+    }
+
+    static class InductionVariable {
+        Phi phi;
+        Variable initial;
+        BinaryInstruction increment;
+        int step;
+    }
+}
@@ -60,6 +60,10 @@ public class AsyncProgramSplitter {
             }
             BasicBlock sourceBlock = program.basicBlockAt(step.source);
             step.targetPart.originalBlocks[step.source] = step.source;
+            if (sourceBlock.getExceptionVariable() != null) {
+                targetBlock.setExceptionVariable(targetBlock.getProgram().variableAt(
+                        sourceBlock.getExceptionVariable().getIndex()));
+            }
             int last = 0;
             for (int i = 0; i < sourceBlock.getInstructions().size(); ++i) {
                 Instruction insn = sourceBlock.getInstructions().get(i);
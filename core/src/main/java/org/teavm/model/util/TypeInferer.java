@@ -135,6 +135,45 @@ public class TypeInferer {
         return VariableType.OBJECT;
     }
 
+    VariableType convert(ArrayElementType type) {
+        switch (type) {
+            case CHAR:
+            case BYTE:
+            case SHORT:
+            case INT:
+                return VariableType.INT;
+            case LONG:
+                return VariableType.LONG;
+            case FLOAT:
+                return VariableType.FLOAT;
+            case DOUBLE:
+                return VariableType.DOUBLE;
+            default:
+                return VariableType.OBJECT;
+        }
+    }
+
+    VariableType convertArray(ArrayElementType type) {
+        switch (type) {
+            case CHAR:
+                return VariableType.CHAR_ARRAY;
+            case BYTE:
+                return VariableType.BYTE_ARRAY;
+            case SHORT:
+                return VariableType.SHORT_ARRAY;
+            case INT:
+                return VariableType.INT_ARRAY;
+            case LONG:
+                return VariableType.LONG_ARRAY;
+            case FLOAT:
+                return VariableType.FLOAT_ARRAY;
+            case DOUBLE:
+                return VariableType.DOUBLE_ARRAY;
+            default:
+                return VariableType.OBJECT_ARRAY;
+        }
+    }
+
     VariableType convertFromArray(VariableType type) {
         switch (type) {
             case BYTE_ARRAY:
@@ -194,7 +233,11 @@ public class TypeInferer {
     InstructionReader reader = new AbstractInstructionReader() {
         @Override
         public void unwrapArray(VariableReader receiver, VariableReader array, ArrayElementType elementType) {
-            builder.addEdge(array.getIndex(), receiver.getIndex());
+            if (elementType != ArrayElementType.OBJECT) {
+                types[receiver.getIndex()] = convertArray(elementType);
+            } else {
+                builder.addEdge(array.getIndex(), receiver.getIndex());
+            }
         }
 
         @Override
@@ -258,7 +301,11 @@ public class TypeInferer {
         @Override
         public void getElement(VariableReader receiver, VariableReader array, VariableReader index,
                 ArrayElementType type) {
-            arrayElemBuilder.addEdge(array.getIndex(), receiver.getIndex());
+            if (type != ArrayElementType.OBJECT) {
+                types[receiver.getIndex()] = convert(type);
+            } else {
+                arrayElemBuilder.addEdge(array.getIndex(), receiver.getIndex());
+            }
         }
 
         @Override
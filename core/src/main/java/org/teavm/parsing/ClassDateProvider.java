@@ -23,4 +23,15 @@ import java.util.Date;
  */
 public interface ClassDateProvider {
     Date getModificationDate(String className);
+
+    /**
+     * Gets digest of the class file content. Caches use it to validate their entries when
+     * modification date of a class changed, but its content did not (for example, after full rebuild).
+     *
+     * @param className name of the class.
+     * @return digest of the class file or {@code null}, if the provider is unable to compute digest.
+     */
+    default byte[] getContentHash(String className) {
+        return null;
+    }
 }
@@ -52,7 +52,12 @@ public class ClassRefsRenamer implements InstructionVisitor {
             if (method.getAnnotations().get(Remove.class.getName()) != null) {
                 continue;
             }
-            renamedCls.addMethod(rename(method));
+            MethodHolder renamedMethod = rename(method);
+            if (renamedMethod.hasModifier(ElementModifier.BRIDGE)
+                    && renamedCls.getMethod(renamedMethod.getDescriptor()) != null) {
+                continue;
+            }
+            renamedCls.addMethod(renamedMethod);
         }
         for (FieldHolder field : cls.getFields().toArray(new FieldHolder[0])) {
             renamedCls.addField(ModelUtils.copyField(field));
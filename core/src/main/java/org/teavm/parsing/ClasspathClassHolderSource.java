@@ -46,4 +46,9 @@ public class ClasspathClassHolderSource implements ClassHolderSource, ClassDateP
     public Date getModificationDate(String className) {
         return classPathMapper.getModificationDate(className);
     }
+
+    @Override
+    public byte[] getContentHash(String className) {
+        return classPathMapper.getContentHash(className);
+    }
 }
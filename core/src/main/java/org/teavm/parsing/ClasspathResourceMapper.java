@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import org.teavm.common.CachedMapper;
 import org.teavm.common.Mapper;
@@ -37,6 +39,7 @@ public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, Cla
     private ClassRefsRenamer renamer;
     private ClassLoader classLoader;
     private Map<String, ModificationDate> modificationDates = new HashMap<>();
+    private Map<String, ContentHash> contentHashes = new HashMap<>();
 
     private static class Transformation {
         String packageName;
@@ -139,6 +142,21 @@ public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, Cla
     }
 
     private Date calculateModificationDate(String className) {
+        return calculateForOriginalClass(className, this::getOriginalModificationDate);
+    }
+
+    @Override
+    public byte[] getContentHash(String className) {
+        ContentHash hash = contentHashes.get(className);
+        if (hash == null) {
+            hash = new ContentHash();
+            contentHashes.put(className, hash);
+            hash.hash = calculateForOriginalClass(className, this::getOriginalContentHash);
+        }
+        return hash.hash;
+    }
+
+    private <T> T calculateForOriginalClass(String className, Mapper<String, T> calculation) {
         int dotIndex = className.lastIndexOf('.');
         String packageName;
         String simpleName;
@@ -152,13 +170,34 @@ public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, Cla
         for (Transformation transformation : transformations) {
             if (packageName.startsWith(transformation.packageName)) {
                 String fullName = transformation.packagePrefix + packageName + transformation.classPrefix + simpleName;
-                Date date = getOriginalModificationDate(fullName);
-                if (date != null) {
-                    return date;
+                T result = calculation.map(fullName);
+                if (result != null) {
+                    return result;
+                }
+            }
+        }
+        return calculation.map(className);
+    }
+
+    private byte[] getOriginalContentHash(String className) {
+        try (InputStream input = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
+            if (input == null) {
+                return null;
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[4096];
+            while (true) {
+                int bytesRead = input.read(buffer);
+                if (bytesRead < 0) {
+                    break;
                 }
+                digest.update(buffer, 0, bytesRead);
             }
+            return digest.digest();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // If we can't read class file, we just report that class should be reparsed
+            return null;
         }
-        return getOriginalModificationDate(className);
     }
 
     private Date getOriginalModificationDate(String className) {
@@ -187,4 +226,8 @@ public class ClasspathResourceMapper implements Mapper<String, ClassHolder>, Cla
     static class ModificationDate {
         Date date;
     }
+
+    static class ContentHash {
+        byte[] hash;
+    }
 }
@@ -51,12 +51,12 @@ public final class Allocator {
         int size = dimensions.getInt();
         RuntimeArray array = allocateArray(tag, dimensions.getInt()).toStructure();
         if (dimensionCount > 1) {
-            Address arrayData = Structure.add(RuntimeArray.class, array, 1).toAddress();
-            arrayData = Address.align(arrayData, Address.sizeOf());
             for (int i = 0; i < size; ++i) {
                 RuntimeArray innerArray = allocateMultiArray(tag.itemType, dimensions.add(4), dimensionCount - 1);
-                arrayData.putAddress(innerArray.toAddress());
-                arrayData = arrayData.add(Address.sizeOf());
+                // GC may move the array, so the address of its data should not be kept across allocations
+                Address arrayData = Structure.add(RuntimeArray.class, array, 1).toAddress();
+                arrayData = Address.align(arrayData, Address.sizeOf());
+                arrayData.add(i * Address.sizeOf()).putAddress(innerArray.toAddress());
             }
         }
         return array;
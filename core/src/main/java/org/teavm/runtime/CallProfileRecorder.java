@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.runtime;
+
+/**
+ * <p>Collects call profile of a program compiled with call profile instrumentation, see
+ * {@link org.teavm.model.optimization.CallProfileInstrumentation}. Every instrumented call site calls
+ * {@link #record(int, String, Object)} right before the call. {@link #dump()} prints the collected profile
+ * to the standard output in the format read by {@link org.teavm.model.optimization.CallProfile}.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class CallProfileRecorder {
+    private static final int RECEIVER_SLOTS = 4;
+    private static boolean recording;
+    private static String[] names;
+    private static int[] counts;
+    private static Class<?>[] receivers;
+    private static int[] receiverCounts;
+    private static int[] otherCounts;
+
+    private CallProfileRecorder() {
+    }
+
+    public static void record(int site, String name, Object receiver) {
+        if (recording) {
+            return;
+        }
+        recording = true;
+        try {
+            ensureCapacity(site + 1);
+            names[site] = name;
+            counts[site] = increment(counts[site]);
+            if (receiver != null) {
+                recordReceiver(site, receiver.getClass());
+            }
+        } finally {
+            recording = false;
+        }
+    }
+
+    private static void recordReceiver(int site, Class<?> receiverClass) {
+        int base = site * RECEIVER_SLOTS;
+        for (int i = 0; i < RECEIVER_SLOTS; ++i) {
+            if (receivers[base + i] == null) {
+                receivers[base + i] = receiverClass;
+            }
+            if (receivers[base + i] == receiverClass) {
+                receiverCounts[base + i] = increment(receiverCounts[base + i]);
+                return;
+            }
+        }
+        otherCounts[site] = increment(otherCounts[site]);
+    }
+
+    private static int increment(int count) {
+        return count < Integer.MAX_VALUE ? count + 1 : count;
+    }
+
+    private static void ensureCapacity(int size) {
+        if (names != null && names.length >= size) {
+            return;
+        }
+        int capacity = Math.max(size, names != null ? names.length * 2 : 256);
+        String[] newNames = new String[capacity];
+        int[] newCounts = new int[capacity];
+        Class<?>[] newReceivers = new Class<?>[capacity * RECEIVER_SLOTS];
+        int[] newReceiverCounts = new int[capacity * RECEIVER_SLOTS];
+        int[] newOtherCounts = new int[capacity];
+        if (names != null) {
+            System.arraycopy(names, 0, newNames, 0, names.length);
+            System.arraycopy(counts, 0, newCounts, 0, counts.length);
+            System.arraycopy(receivers, 0, newReceivers, 0, receivers.length);
+            System.arraycopy(receiverCounts, 0, newReceiverCounts, 0, receiverCounts.length);
+            System.arraycopy(otherCounts, 0, newOtherCounts, 0, otherCounts.length);
+        }
+        names = newNames;
+        counts = newCounts;
+        receivers = newReceivers;
+        receiverCounts = newReceiverCounts;
+        otherCounts = newOtherCounts;
+    }
+
+    public static void dump() {
+        if (names == null) {
+            return;
+        }
+        boolean wasRecording = recording;
+        recording = true;
+        try {
+            System.out.println("# TeaVM call profile");
+            for (int site = 0; site < names.length; ++site) {
+                if (names[site] == null) {
+                    continue;
+                }
+                StringBuilder sb = new StringBuilder();
+                sb.append(names[site]).append(' ').append(counts[site]);
+                int base = site * RECEIVER_SLOTS;
+                for (int i = 0; i < RECEIVER_SLOTS && receivers[base + i] != null; ++i) {
+                    sb.append(' ').append(receivers[base + i].getName()).append(':').append(receiverCounts[base + i]);
+                }
+                if (otherCounts[site] > 0) {
+                    sb.append(" *:").append(otherCounts[site]);
+                }
+                System.out.println(sb.toString());
+            }
+        } finally {
+            recording = wasRecording;
+        }
+    }
+}
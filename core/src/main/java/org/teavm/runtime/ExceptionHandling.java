@@ -41,27 +41,37 @@ public final class ExceptionHandling {
     public static void throwException(Throwable exception) {
         thrownException = exception;
 
-        RuntimeObject exceptionPtr = Address.ofObject(exception).toStructure();
-        RuntimeClass exceptionClass = RuntimeClass.getClass(exceptionPtr);
-        IsSupertypeFunction isExceptionSupertype = exceptionClass.isSupertypeOf;
-
         Address stackFrame = ShadowStack.getStackTop();
-        stackLoop: while (stackFrame != null) {
-            int callSiteId = ShadowStack.getCallSiteId(stackFrame);
-            CallSite callSite = findCallSiteById(callSiteId);
-            ExceptionHandler handler = callSite.firstHandler;
+        while (stackFrame != null && !findExceptionHandler(stackFrame)) {
+            stackFrame = ShadowStack.getNextStackFrame(stackFrame);
+        }
+    }
 
-            for (int i = 0; i < callSite.handlerCount; ++i) {
-                if (handler.exceptionClass == null || isExceptionSupertype.apply(handler.exceptionClass)) {
-                    ShadowStack.setExceptionHandlerId(stackFrame, handler.id);
-                    break stackLoop;
-                }
+    public static void throwNativeException(Throwable exception) {
+        thrownException = exception;
+        unwind();
+    }
 
-                handler = Structure.add(ExceptionHandler.class, handler, 1);
+    public static native void unwind();
+
+    public static boolean findExceptionHandler(Address stackFrame) {
+        RuntimeObject exceptionPtr = Address.ofObject(thrownException).toStructure();
+        RuntimeClass exceptionClass = RuntimeClass.getClass(exceptionPtr);
+
+        int callSiteId = ShadowStack.getCallSiteId(stackFrame);
+        CallSite callSite = findCallSiteById(callSiteId);
+        ExceptionHandler handler = callSite.firstHandler;
+
+        for (int i = 0; i < callSite.handlerCount; ++i) {
+            if (handler.exceptionClass == null || handler.exceptionClass.isSupertypeOf.apply(exceptionClass)) {
+                ShadowStack.setExceptionHandlerId(stackFrame, handler.id);
+                return true;
             }
 
-            ShadowStack.setExceptionHandlerId(stackFrame, callSiteId - 1);
-            stackFrame = ShadowStack.getNextStackFrame(stackFrame);
+            handler = Structure.add(ExceptionHandler.class, handler, 1);
         }
+
+        ShadowStack.setExceptionHandlerId(stackFrame, callSiteId - 1);
+        return false;
     }
 }
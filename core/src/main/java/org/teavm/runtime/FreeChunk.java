@@ -17,4 +17,5 @@ package org.teavm.runtime;
 
 class FreeChunk extends RuntimeObject {
     int size;
+    FreeChunk next;
 }
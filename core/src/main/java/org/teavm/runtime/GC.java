@@ -30,38 +30,78 @@ public final class GC {
     static FreeChunk currentChunk;
     static FreeChunkHolder currentChunkPointer;
     static int freeChunks;
-    static int freeMemory = (int) availableBytes();
+    static int freeMemory;
+    static boolean compactionRequested;
+    static int sizeClassFreeMemory;
+    static int memorySize;
+    static int heapSize;
+    static Address storageAddress;
+    static int storageSize;
+    static Address markBits;
+
+    private static final int COMPACTION_CHUNK_THRESHOLD = 4096;
+    private static final int BLOCK_SIZE = 256;
+    private static final int SIZE_CLASS_LIMIT = 256;
+    private static final int SIZE_CLASS_COUNT = (SIZE_CLASS_LIMIT >> 2) + 1;
 
-    static native Address gcStorageAddress();
+    private static native Address heapAddress();
 
-    static native int gcStorageSize();
+    private static native int initialMemorySize();
 
-    private static native Address heapAddress();
+    private static native int growMemory(int pages);
 
     private static native Region regionsAddress();
 
     private static native int regionMaxCount();
 
-    public static native long availableBytes();
-
     private static native int regionSize();
 
+    public static long availableBytes() {
+        return heapSize;
+    }
+
+    static Address gcStorageAddress() {
+        return storageAddress;
+    }
+
+    static int gcStorageSize() {
+        return storageSize;
+    }
+
+    private static Address markBitsAddress() {
+        return markBits;
+    }
+
     public static int getFreeMemory() {
         return freeMemory;
     }
 
     static {
+        memorySize = initialMemorySize();
+        layoutHeap();
+        freeMemory = heapSize;
         currentChunk = heapAddress().toStructure();
         currentChunk.classReference = 0;
-        currentChunk.size = (int) availableBytes();
+        currentChunk.size = heapSize;
         currentChunkLimit = currentChunk.toAddress().add(currentChunk.size);
-        currentChunkPointer = gcStorageAddress().toStructure();
+        currentChunkPointer = freeChunkStorage();
         currentChunkPointer.value = currentChunk;
         freeChunks = 1;
+        Allocator.fillZero(sizeClassesAddress(), SIZE_CLASS_COUNT * Address.sizeOf());
         getAvailableChunkIfPossible(0);
     }
 
     public static RuntimeObject alloc(int size) {
+        if (size <= SIZE_CLASS_LIMIT) {
+            Address sizeClass = sizeClassesAddress().add(size);
+            FreeChunk chunk = sizeClass.getAddress().toStructure();
+            if (chunk != null) {
+                sizeClass.putAddress(chunk.next.toAddress());
+                freeMemory -= size;
+                return chunk;
+            }
+        }
+
         FreeChunk current = currentChunk;
         Address next = currentChunk.toAddress().add(size);
         if (!next.add(Structure.sizeOf(FreeChunk.class)).isLessThan(currentChunkLimit)) {
@@ -85,7 +125,85 @@ public final class GC {
             return;
         }
         collectGarbage(size);
-        getAvailableChunkIfPossible(size);
+        if (freeMemory < heapSize / 2) {
+            // Collections would happen too often, so it's time to grow
+            growHeap(size);
+        }
+        if (getAvailableChunkIfPossible(size)) {
+            return;
+        }
+        compactionRequested = true;
+        collectGarbage(size);
+        if (getAvailableChunkIfPossible(size)) {
+            return;
+        }
+        if (growHeap(size)) {
+            getAvailableChunkIfPossible(size);
+        }
+    }
+
+    // Heap is followed by GC storage, which takes 1/64 of heap size, and by mark bits, which take 1/32
+    // of heap size plus 8 bytes
+    private static void layoutHeap() {
+        long space = memorySize - heapAddress().toInt() - 8;
+        heapSize = (int) (space * 64 / 67) >> 9 << 9;
+        storageAddress = heapAddress().add(heapSize);
+        storageSize = heapSize >> 6;
+        markBits = storageAddress.add(storageSize);
+    }
+
+    // Should be called right after collection, when none of the free chunks is used by allocator.
+    // New memory becomes a free chunk at the end of the heap, GC storage and mark bits move to the end
+    // of the new memory.
+    private static boolean growHeap(int size) {
+        int minPages = (int) (((long) size + 1024) * 67 / 64 >> 16) + 1;
+        int pages = memorySize >> 17;
+        if (pages < minPages) {
+            pages = minPages;
+        }
+        if (growMemory(pages) < 0) {
+            pages = minPages;
+            if (growMemory(pages) < 0) {
+                return false;
+            }
+        }
+
+        int oldHeapSize = heapSize;
+        Address oldStorage = storageAddress;
+        Address oldChunks = currentChunkPointer.toAddress();
+        memorySize += pages << 16;
+        layoutHeap();
+
+        // Old and new storage may overlap, so size class heads, which come first, are copied last
+        int chunkCount = freeChunks;
+        Address target = freeChunkStorage().toAddress();
+        copyWords(oldChunks, target.add(Address.sizeOf()), chunkCount);
+        copyWords(oldStorage, sizeClassesAddress(), SIZE_CLASS_COUNT);
+
+        FreeChunk chunk = heapAddress().add(oldHeapSize).toStructure();
+        chunk.classReference = 0;
+        chunk.size = heapSize - oldHeapSize;
+        currentChunkPointer = target.toStructure();
+        currentChunkPointer.value = chunk;
+        currentChunk = chunk;
+        currentChunkLimit = chunk.toAddress().add(chunk.size);
+        freeChunks = chunkCount + 1;
+        freeMemory += chunk.size;
+        return true;
+    }
+
+    private static void copyWords(Address source, Address target, int count) {
+        if (target.isLessThan(source)) {
+            moveWords(source, target, count);
+            return;
+        }
+        source = source.add(count << 2);
+        target = target.add(count << 2);
+        while (count-- > 0) {
+            source = source.add(-4);
+            target = target.add(-4);
+            target.putInt(source.getInt());
+        }
     }
 
     private static boolean getAvailableChunkIfPossible(int size) {
@@ -96,8 +214,8 @@ public final class GC {
             if (currentChunk.toAddress().add(size + Structure.sizeOf(FreeChunk.class)).isLessThan(currentChunkLimit)) {
                 break;
             }
-            if (--freeChunks == 0) {
-                return false;
+            if (freeChunks == 0 || --freeChunks == 0) {
+                return getSizeClassChunk(size);
             }
             freeMemory -= currentChunk.size;
             currentChunkPointer = Structure.add(FreeChunkHolder.class, currentChunkPointer, 1);
@@ -107,19 +225,42 @@ public final class GC {
         return true;
     }
 
+    // When large chunks are exhausted, small chunks of other sizes are used for bump allocation,
+    // starting from the largest ones
+    private static boolean getSizeClassChunk(int size) {
+        int minSize = size + Structure.sizeOf(FreeChunk.class);
+        for (int chunkSize = SIZE_CLASS_LIMIT; chunkSize > minSize; chunkSize -= 4) {
+            Address sizeClass = sizeClassesAddress().add(chunkSize);
+            FreeChunk chunk = sizeClass.getAddress().toStructure();
+            if (chunk != null) {
+                sizeClass.putAddress(chunk.next.toAddress());
+                currentChunk = chunk;
+                currentChunkLimit = chunk.toAddress().add(chunkSize);
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static boolean collectGarbage(int size) {
         mark();
-        sweep();
+        if (compactionRequested) {
+            compactionRequested = false;
+            compact();
+        } else {
+            sweep();
+        }
         updateFreeMemory();
         return true;
     }
 
     private static void mark() {
         Allocator.fillZero(regionsAddress().toAddress(), regionMaxCount() * Structure.sizeOf(Region.class));
+        Allocator.fillZero(markBitsAddress(), markBitsSize());
 
         Address staticRoots = Mutator.getStaticGCRoots();
         int staticCount = staticRoots.getInt();
-        staticRoots.add(8);
+        staticRoots = staticRoots.add(8);
         while (staticCount-- > 0) {
             RuntimeObject object = staticRoots.getAddress().getAddress().toStructure();
             if (object != null) {
@@ -141,70 +282,118 @@ public final class GC {
     }
 
     private static void mark(RuntimeObject object) {
-        if (object == null || isMarked(object)) {
+        if (object == null || !isHeapAddress(object.toAddress()) || isMarked(object)) {
             return;
         }
 
         MarkQueue.init();
         MarkQueue.enqueue(object);
+        processMarkQueue();
+        while (MarkQueue.hasOverflow()) {
+            rescanMarkedObjects();
+        }
+    }
+
+    private static void processMarkQueue() {
         while (!MarkQueue.isEmpty()) {
-            object = MarkQueue.dequeue();
+            RuntimeObject object = MarkQueue.dequeue();
+            if ((object.toAddress().toInt() & 1) != 0) {
+                RuntimeArray array = object.toAddress().add(-1).toStructure();
+                enqueueArrayItems(array, MarkQueue.dequeueIndex());
+                continue;
+            }
             if (isMarked(object)) {
                 continue;
             }
             object.classReference |= RuntimeObject.GC_MARKED;
 
             long offset = object.toAddress().toLong() - heapAddress().toLong();
-            Region region = Structure.add(Region.class, regionsAddress(), (int) (offset /  regionSize()));
+            Region region = Structure.add(Region.class, regionsAddress(), (int) (offset / regionSize()));
             short relativeOffset = (short) (offset % regionSize() + 1);
             if (region.start == 0 || region.start > relativeOffset) {
                 region.start = relativeOffset;
             }
+            markLiveWords((int) (offset >> 2), objectSize(object) >> 2);
 
-            RuntimeClass cls = RuntimeClass.getClass(object);
-            if (cls.itemType == null) {
-                while (cls != null) {
-                    Address layout = cls.layout;
-                    if (layout != null) {
-                        short fieldCount = layout.getShort();
-                        while (fieldCount-- > 0) {
-                            layout = layout.add(2);
-                            int fieldOffset = layout.getShort();
-                            RuntimeObject reference = object.toAddress().add(fieldOffset).getAddress().toStructure();
-                            if (reference != null && !isMarked(reference)) {
-                                MarkQueue.enqueue(reference);
-                            }
-                        }
-                    }
-                    cls = cls.parent;
-                }
-            } else {
-                if ((cls.itemType.flags & RuntimeClass.PRIMITIVE) == 0) {
-                    RuntimeArray array = (RuntimeArray) object;
-                    Address base = Address.align(array.toAddress().add(RuntimeArray.class, 1), 4);
-                    for (int i = 0; i < array.size; ++i) {
-                        RuntimeObject reference = base.getAddress().toStructure();
+            enqueueReferences(object);
+        }
+    }
+
+    private static void enqueueReferences(RuntimeObject object) {
+        RuntimeClass cls = RuntimeClass.getClass(object);
+        if (cls.itemType == null) {
+            while (cls != null) {
+                Address layout = cls.layout;
+                if (layout != null) {
+                    short fieldCount = layout.getShort();
+                    while (fieldCount-- > 0) {
+                        layout = layout.add(2);
+                        int fieldOffset = layout.getShort();
+                        RuntimeObject reference = object.toAddress().add(fieldOffset).getAddress().toStructure();
                         if (reference != null && !isMarked(reference)) {
                             MarkQueue.enqueue(reference);
                         }
-                        base = base.add(4);
                     }
                 }
+                cls = cls.parent;
+            }
+        } else {
+            if ((cls.itemType.flags & RuntimeClass.PRIMITIVE) == 0) {
+                enqueueArrayItems((RuntimeArray) object, 0);
+            }
+        }
+    }
+
+    // Large arrays may not fit into mark queue, so we put as many items as possible, followed by
+    // the array itself and index of the first remaining item. Array address is tagged by the lowest bit.
+    private static void enqueueArrayItems(RuntimeArray array, int index) {
+        Address base = Address.align(array.toAddress().add(RuntimeArray.class, 1), 4).add(index * 4);
+        int available = MarkQueue.available() - 2;
+        while (index < array.size) {
+            RuntimeObject reference = base.getAddress().toStructure();
+            if (reference != null && !isMarked(reference)) {
+                if (available-- <= 0) {
+                    MarkQueue.enqueue(array.toAddress().add(1).toStructure());
+                    MarkQueue.enqueueIndex(index);
+                    return;
+                }
+                MarkQueue.enqueue(reference);
             }
+            base = base.add(4);
+            index++;
+        }
+    }
+
+    // When mark queue overflows, some objects get lost. They are still referenced by marked objects,
+    // so we find them by walking the heap.
+    private static void rescanMarkedObjects() {
+        MarkQueue.init();
+        RuntimeObject object = heapAddress().toStructure();
+        Address limit = heapAddress().add(heapSize);
+        while (object.toAddress().isLessThan(limit)) {
+            if (isMarked(object)) {
+                enqueueReferences(object);
+                processMarkQueue();
+            }
+            object = object.toAddress().add(objectSize(object)).toStructure();
         }
     }
 
     private static void sweep() {
-        FreeChunkHolder freeChunkPtr = gcStorageAddress().toStructure();
+        FreeChunkHolder freeChunkPtr = freeChunkStorage();
+        int freeChunkLimit = freeChunkStorageSize() / Structure.sizeOf(FreeChunkHolder.class);
         freeChunks = 0;
+        int smallChunks = 0;
+        Address sizeClasses = sizeClassesAddress();
+        Allocator.fillZero(sizeClasses, SIZE_CLASS_COUNT * Address.sizeOf());
+        sizeClassFreeMemory = 0;
 
         RuntimeObject object = heapAddress().toStructure();
         FreeChunk lastFreeSpace = null;
-        long heapSize = availableBytes();
         long reclaimedSpace = 0;
         long maxFreeChunk = 0;
         int currentRegionIndex = 0;
-        int regionsCount = (int) ((heapSize - 1) / regionSize()) + 1;
+        int regionsCount = (heapSize - 1) / regionSize() + 1;
         Address currentRegionEnd = object.toAddress().add(regionSize());
         Address limit = heapAddress().add(heapSize);
 
@@ -237,18 +426,33 @@ public final class GC {
                             }
                             currentRegion = Structure.add(Region.class, regionsAddress(), currentRegionIndex);
                         } while (currentRegion.start == 0);
+
+                        // Regions without marked objects contain only garbage, continue from the first live object
+                        currentRegionEnd = heapAddress().add((currentRegionIndex + 1) * regionSize());
+                        object = heapAddress().add(currentRegionIndex * regionSize() + currentRegion.start - 1)
+                                .toStructure();
+                        continue;
                     }
-                    currentRegionEnd = currentRegion.toAddress().add(regionSize());
+                    currentRegionEnd = heapAddress().add((currentRegionIndex + 1) * regionSize());
                 }
             } else {
                 if (lastFreeSpace != null) {
+                    lastFreeSpace.classReference = 0;
                     lastFreeSpace.size = (int) (object.toAddress().toLong() - lastFreeSpace.toAddress().toLong());
-                    freeChunkPtr.value = lastFreeSpace;
-                    freeChunkPtr = Structure.add(FreeChunkHolder.class, freeChunkPtr, 1);
-                    freeChunks++;
-                    reclaimedSpace += lastFreeSpace.size;
-                    if (maxFreeChunk < lastFreeSpace.size) {
-                        maxFreeChunk = lastFreeSpace.size;
+                    if (lastFreeSpace.size <= SIZE_CLASS_LIMIT) {
+                        addToSizeClass(sizeClasses, lastFreeSpace);
+                        smallChunks++;
+                    } else if (freeChunks < freeChunkLimit) {
+                        freeChunkPtr.value = lastFreeSpace;
+                        freeChunkPtr = Structure.add(FreeChunkHolder.class, freeChunkPtr, 1);
+                        freeChunks++;
+                        reclaimedSpace += lastFreeSpace.size;
+                        if (maxFreeChunk < lastFreeSpace.size) {
+                            maxFreeChunk = lastFreeSpace.size;
+                        }
+                    } else {
+                        // The chunk can't be reused until the heap gets compacted
+                        compactionRequested = true;
                     }
                     lastFreeSpace = null;
                 }
@@ -260,24 +464,235 @@ public final class GC {
 
         if (lastFreeSpace != null) {
             int freeSize = (int) (object.toAddress().toLong() - lastFreeSpace.toAddress().toLong());
+            lastFreeSpace.classReference = 0;
             lastFreeSpace.size = freeSize;
-            freeChunkPtr.value = lastFreeSpace;
-            freeChunkPtr = Structure.add(FreeChunkHolder.class, freeChunkPtr, 1);
-            freeChunks++;
-            reclaimedSpace += freeSize;
-            if (maxFreeChunk < freeSize) {
-                maxFreeChunk = freeSize;
+            if (freeSize <= SIZE_CLASS_LIMIT) {
+                addToSizeClass(sizeClasses, lastFreeSpace);
+                smallChunks++;
+            } else if (freeChunks < freeChunkLimit) {
+                freeChunkPtr.value = lastFreeSpace;
+                freeChunkPtr = Structure.add(FreeChunkHolder.class, freeChunkPtr, 1);
+                freeChunks++;
+                reclaimedSpace += freeSize;
+                if (maxFreeChunk < freeSize) {
+                    maxFreeChunk = freeSize;
+                }
+            } else {
+                compactionRequested = true;
             }
         }
 
-        currentChunkPointer = gcStorageAddress().toStructure();
+        reclaimedSpace += sizeClassFreeMemory;
+        if (freeChunks + smallChunks > COMPACTION_CHUNK_THRESHOLD && maxFreeChunk < reclaimedSpace / 4) {
+            compactionRequested = true;
+        }
+
+        currentChunkPointer = freeChunkStorage();
+        if (freeChunks == 0) {
+            currentChunk = limit.toStructure();
+            currentChunkLimit = limit;
+            return;
+        }
         sortFreeChunks(0, freeChunks - 1);
         currentChunk = currentChunkPointer.value;
         currentChunkLimit = currentChunk.toAddress().add(currentChunk.size);
     }
 
+    // Slides live objects to the beginning of the heap. New address of an object is computed from mark bits:
+    // for each block of BLOCK_SIZE bytes we store the number of live bytes before this block, and within block
+    // we count marked words that precede the object.
+    private static void compact() {
+        Address heap = heapAddress();
+        Address limit = heap.add(availableBytes());
+        int wordCount = (int) (availableBytes() >> 2);
+
+        Address blockOffset = gcStorageAddress();
+        Address bits = markBitsAddress();
+        int liveBytes = 0;
+        for (int i = 0; i < wordCount; i += BLOCK_SIZE >> 2) {
+            blockOffset.putInt(liveBytes);
+            blockOffset = blockOffset.add(4);
+            liveBytes += (bitCount(bits.getInt()) + bitCount(bits.add(4).getInt())) << 2;
+            bits = bits.add(8);
+        }
+
+        Address staticRoots = Mutator.getStaticGCRoots();
+        int staticCount = staticRoots.getInt();
+        staticRoots = staticRoots.add(8);
+        while (staticCount-- > 0) {
+            Address root = staticRoots.getAddress();
+            root.putAddress(forward(root.getAddress()));
+            staticRoots = staticRoots.add(Address.sizeOf());
+        }
+
+        for (Address stackRoots = ShadowStack.getStackTop(); stackRoots != null;
+             stackRoots = ShadowStack.getNextStackFrame(stackRoots)) {
+            int count = ShadowStack.getStackRootCount(stackRoots);
+            Address stackRootsPtr = ShadowStack.getStackRootPointer(stackRoots);
+            while (count-- > 0) {
+                stackRootsPtr.putAddress(forward(stackRootsPtr.getAddress()));
+                stackRootsPtr = stackRootsPtr.add(Address.sizeOf());
+            }
+        }
+
+        int word = nextLiveWord(0, wordCount);
+        while (word < wordCount) {
+            RuntimeObject object = heap.add(word << 2).toStructure();
+            updateReferences(object);
+            word = nextLiveWord(word + (objectSize(object) >> 2), wordCount);
+        }
+
+        Address target = heap;
+        word = nextLiveWord(0, wordCount);
+        while (word < wordCount) {
+            Address source = heap.add(word << 2);
+            RuntimeObject object = source.toStructure();
+            int size = objectSize(object);
+            object.classReference &= ~RuntimeObject.GC_MARKED;
+            if (source != target) {
+                moveWords(source, target, size >> 2);
+            }
+            target = target.add(size);
+            word = nextLiveWord(word + (size >> 2), wordCount);
+        }
+
+        Allocator.fillZero(sizeClassesAddress(), SIZE_CLASS_COUNT * Address.sizeOf());
+        sizeClassFreeMemory = 0;
+        currentChunkPointer = freeChunkStorage();
+        currentChunk = target.toStructure();
+        currentChunkLimit = limit;
+        int freeSize = (int) (limit.toLong() - target.toLong());
+        if (freeSize >= 8) {
+            // keep the tail walkable for sweep, even if it is too small to allocate from
+            currentChunk.classReference = 0;
+            currentChunk.size = freeSize;
+        }
+        if (freeSize < Structure.sizeOf(FreeChunk.class)) {
+            freeChunks = 0;
+            return;
+        }
+        currentChunkPointer.value = currentChunk;
+        freeChunks = 1;
+    }
+
+    private static void addToSizeClass(Address sizeClasses, FreeChunk chunk) {
+        if (chunk.size < Structure.sizeOf(FreeChunk.class)) {
+            return;
+        }
+        Address sizeClass = sizeClasses.add(chunk.size);
+        chunk.next = sizeClass.getAddress().toStructure();
+        sizeClass.putAddress(chunk.toAddress());
+        sizeClassFreeMemory += chunk.size;
+    }
+
+    private static Address sizeClassesAddress() {
+        return gcStorageAddress();
+    }
+
+    private static FreeChunkHolder freeChunkStorage() {
+        return gcStorageAddress().add(SIZE_CLASS_COUNT * Address.sizeOf()).toStructure();
+    }
+
+    private static int freeChunkStorageSize() {
+        return gcStorageSize() - SIZE_CLASS_COUNT * Address.sizeOf();
+    }
+
+    private static void updateReferences(RuntimeObject object) {
+        RuntimeClass cls = RuntimeClass.getClass(object);
+        if (cls.itemType == null) {
+            while (cls != null) {
+                Address layout = cls.layout;
+                if (layout != null) {
+                    short fieldCount = layout.getShort();
+                    while (fieldCount-- > 0) {
+                        layout = layout.add(2);
+                        Address field = object.toAddress().add(layout.getShort());
+                        field.putAddress(forward(field.getAddress()));
+                    }
+                }
+                cls = cls.parent;
+            }
+        } else if ((cls.itemType.flags & RuntimeClass.PRIMITIVE) == 0) {
+            RuntimeArray array = (RuntimeArray) object;
+            Address item = Address.align(array.toAddress().add(RuntimeArray.class, 1), 4);
+            for (int i = 0; i < array.size; ++i) {
+                item.putAddress(forward(item.getAddress()));
+                item = item.add(4);
+            }
+        }
+    }
+
+    private static Address forward(Address address) {
+        if (!isHeapAddress(address)) {
+            return address;
+        }
+        long offset = address.toLong() - heapAddress().toLong();
+        int word = (int) (offset >> 2);
+        int block = word >>> 6;
+        int bitIndex = word & 63;
+        Address bits = markBitsAddress().add(block << 3);
+        int liveWords;
+        if (bitIndex < 32) {
+            liveWords = bitCount(bits.getInt() & ((1 << bitIndex) - 1));
+        } else {
+            liveWords = bitCount(bits.getInt()) + bitCount(bits.add(4).getInt() & ((1 << (bitIndex - 32)) - 1));
+        }
+        int blockOffset = gcStorageAddress().add(block << 2).getInt();
+        return heapAddress().add(blockOffset + (liveWords << 2));
+    }
+
+    private static void markLiveWords(int word, int count) {
+        Address bits = markBitsAddress();
+        while (count > 0) {
+            int bitIndex = word & 31;
+            int chunk = count < 32 - bitIndex ? count : 32 - bitIndex;
+            int mask = chunk == 32 ? -1 : ((1 << chunk) - 1) << bitIndex;
+            Address ptr = bits.add((word >>> 5) << 2);
+            ptr.putInt(ptr.getInt() | mask);
+            word += chunk;
+            count -= chunk;
+        }
+    }
+
+    private static int nextLiveWord(int word, int wordCount) {
+        if (word >= wordCount) {
+            return wordCount;
+        }
+        int index = word >>> 5;
+        int intCount = (wordCount + 31) >>> 5;
+        Address bits = markBitsAddress().add(index << 2);
+        int value = bits.getInt() & (-1 << (word & 31));
+        while (value == 0) {
+            if (++index >= intCount) {
+                return wordCount;
+            }
+            bits = bits.add(4);
+            value = bits.getInt();
+        }
+        return (index << 5) + bitCount((value & -value) - 1);
+    }
+
+    private static void moveWords(Address source, Address target, int count) {
+        while (count-- > 0) {
+            target.putInt(source.getInt());
+            source = source.add(4);
+            target = target.add(4);
+        }
+    }
+
+    private static int markBitsSize() {
+        return (int) ((availableBytes() / BLOCK_SIZE + 1) * 8);
+    }
+
+    private static int bitCount(int i) {
+        i = i - ((i >>> 1) & 0x55555555);
+        i = (i & 0x33333333) + ((i >>> 2) & 0x33333333);
+        i = (i + (i >>> 4)) & 0x0F0F0F0F;
+        return (i * 0x01010101) >>> 24;
+    }
+
     private static void updateFreeMemory() {
-        freeMemory = 0;
+        freeMemory = sizeClassFreeMemory;
         FreeChunkHolder freeChunkPtr = currentChunkPointer;
         for (int i = 0; i < freeChunks; ++i) {
             freeMemory += freeChunkPtr.value.size;
@@ -348,6 +763,11 @@ public final class GC {
         }
     }
 
+    private static boolean isHeapAddress(Address address) {
+        long offset = address.toLong() - heapAddress().toLong();
+        return offset >= 0 && offset < availableBytes();
+    }
+
     private static boolean isMarked(RuntimeObject object) {
         return (object.classReference & RuntimeObject.GC_MARKED) != 0;
     }
@@ -24,18 +24,30 @@ final class MarkQueue {
     private static int head;
     private static int tail;
     private static int limit;
+    private static boolean overflow;
 
     static void init() {
         head = 0;
         tail = 0;
         limit = GC.gcStorageSize() / Address.sizeOf();
+        overflow = false;
     }
 
     static void enqueue(RuntimeObject object) {
-        GC.gcStorageAddress().add(Address.sizeOf() * tail).putAddress(object.toAddress());
-        if (++tail >= limit) {
-            tail = 0;
+        int next = tail + 1;
+        if (next >= limit) {
+            next = 0;
+        }
+        if (next == head) {
+            overflow = true;
+            return;
         }
+        GC.gcStorageAddress().add(Address.sizeOf() * tail).putAddress(object.toAddress());
+        tail = next;
+    }
+
+    static void enqueueIndex(int index) {
+        enqueue(Address.fromInt(index).toStructure());
     }
 
     static RuntimeObject dequeue() {
@@ -46,7 +58,23 @@ final class MarkQueue {
         return result.toStructure();
     }
 
+    static int dequeueIndex() {
+        return dequeue().toAddress().toInt();
+    }
+
+    static int available() {
+        int size = tail - head;
+        if (size < 0) {
+            size += limit;
+        }
+        return limit - 1 - size;
+    }
+
     static boolean isEmpty() {
         return head == tail;
     }
+
+    static boolean hasOverflow() {
+        return overflow;
+    }
 }
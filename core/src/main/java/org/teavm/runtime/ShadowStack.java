@@ -31,6 +31,8 @@ public final class ShadowStack {
 
     public static native void removeGCRoot(int index);
 
+    public static native Object getGCRoot(int index);
+
     public static native void releaseStack(int size);
 
     public static native Address getStackTop();
@@ -26,6 +26,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 import org.teavm.cache.NoCache;
 import org.teavm.common.ServiceRepository;
@@ -50,6 +53,8 @@ import org.teavm.model.MutableClassHolderSource;
 import org.teavm.model.Program;
 import org.teavm.model.ProgramCache;
 import org.teavm.model.optimization.ArrayUnwrapMotion;
+import org.teavm.model.optimization.CallProfile;
+import org.teavm.model.optimization.CallProfileInstrumentation;
 import org.teavm.model.optimization.ClassInitElimination;
 import org.teavm.model.optimization.ConstantConditionElimination;
 import org.teavm.model.optimization.Devirtualization;
@@ -57,8 +62,13 @@ import org.teavm.model.optimization.GlobalValueNumbering;
 import org.teavm.model.optimization.Inlining;
 import org.teavm.model.optimization.LoopInvariantMotion;
 import org.teavm.model.optimization.LoopInversion;
+import org.teavm.model.optimization.LoopUnrolling;
 import org.teavm.model.optimization.MethodOptimization;
+import org.teavm.model.optimization.RedundantCheckElimination;
 import org.teavm.model.optimization.RedundantJumpElimination;
+import org.teavm.model.optimization.ScalarReplacement;
+import org.teavm.model.optimization.StaticInitializerEvaluation;
+import org.teavm.model.optimization.StrengthReduction;
 import org.teavm.model.optimization.UnreachableBasicBlockElimination;
 import org.teavm.model.optimization.UnusedVariableElimination;
 import org.teavm.model.util.ListingBuilder;
@@ -113,8 +123,14 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     private ProgramCache programCache;
     private boolean incremental;
     private TeaVMOptimizationLevel optimizationLevel = TeaVMOptimizationLevel.SIMPLE;
+    private boolean callProfileInstrumentation;
+    private CallProfile callProfile;
+    private CallProfile boundCallProfile;
+    private boolean removedChecksReported;
+    private final Map<MethodReference, Integer> removedChecks = new ConcurrentHashMap<>();
+    private final int optimizationThreads;
     private TeaVMProgressListener progressListener;
-    private boolean cancelled;
+    private volatile boolean cancelled;
     private ListableClassHolderSource writtenClasses;
     private TeaVMTarget target;
     private Map<Class<?>, TeaVMHostExtension> extensions = new HashMap<>();
@@ -123,7 +139,9 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         target = builder.target;
         classSource = builder.classSource;
         classLoader = builder.classLoader;
+        optimizationThreads = builder.optimizationThreads;
         dependencyChecker = new DependencyChecker(this.classSource, classLoader, this, diagnostics);
+        dependencyChecker.setPropagationThreads(builder.dependencyAnalysisThreads);
         progressListener = new TeaVMProgressListener() {
             @Override public TeaVMProgressFeedback progressReached(int progress) {
                 return TeaVMProgressFeedback.CONTINUE;
@@ -198,6 +216,12 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         return incremental;
     }
 
+    /**
+     * <p>Switches to incremental mode. In this mode parsed classes, optimized programs and method ASTs
+     * are taken from caches, whose entries are validated by modification date and content digest of classes
+     * they were built from. Dependency analysis is not cached: it runs from scratch on every build, since
+     * dependency graph holds callbacks of plugins and targets that can't be persisted.</p>
+     */
     public void setIncremental(boolean incremental) {
         this.incremental = incremental;
     }
@@ -210,6 +234,69 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         this.optimizationLevel = optimizationLevel;
     }
 
+    public boolean isCallProfileInstrumentation() {
+        return callProfileInstrumentation;
+    }
+
+    /**
+     * <p>Makes the generated code collect {@link CallProfile call profile}. The profile is printed to the standard
+     * output by an entry point named <code>dumpCallProfile</code>, which should be called when the program has
+     * done its typical work. The printed profile can then be passed to {@link #setCallProfile(CallProfile)}
+     * when building the same program again. Call profile is neither collected nor used by incremental
+     * builds.</p>
+     */
+    public void setCallProfileInstrumentation(boolean callProfileInstrumentation) {
+        this.callProfileInstrumentation = callProfileInstrumentation;
+    }
+
+    public CallProfile getCallProfile() {
+        return callProfile;
+    }
+
+    /**
+     * <p>Specifies call profile collected by a build with {@link #setCallProfileInstrumentation(boolean)
+     * call profile instrumentation}. With {@link TeaVMOptimizationLevel#ADVANCED ADVANCED} optimization
+     * level and higher, virtual calls that were hot and monomorphic in the profile are guarded by a
+     * type check and called directly. With {@link TeaVMOptimizationLevel#FULL FULL} level, hot call
+     * sites are inlined more aggressively.</p>
+     */
+    public void setCallProfile(CallProfile callProfile) {
+        this.callProfile = callProfile;
+    }
+
+    public boolean isRemovedChecksReported() {
+        return removedChecksReported;
+    }
+
+    /**
+     * <p>Makes TeaVM count null checks and index range checks removed by {@link RedundantCheckElimination}
+     * in each method. Checks are removed with {@link TeaVMOptimizationLevel#ADVANCED ADVANCED} optimization
+     * level and higher. The counts are available via {@link #getRemovedChecks()} after the build.</p>
+     */
+    public void setRemovedChecksReported(boolean removedChecksReported) {
+        this.removedChecksReported = removedChecksReported;
+    }
+
+    /**
+     * Gets the number of checks removed from each method, which is only collected when
+     * {@link #setRemovedChecksReported(boolean)} is on. Methods taken from program cache are not counted.
+     *
+     * @return map from method to the number of removed checks, methods without removed checks are absent.
+     */
+    public Map<MethodReference, Integer> getRemovedChecks() {
+        return Collections.unmodifiableMap(removedChecks);
+    }
+
+    /**
+     * Gets the number of threads used to optimize methods. This is exactly what was passed to
+     * {@link TeaVMBuilder#setOptimizationThreads(int)}.
+     *
+     * @return number of optimization threads, 1 means that methods are optimized sequentially.
+     */
+    public int getOptimizationThreads() {
+        return optimizationThreads;
+    }
+
     public TeaVMProgressListener getProgressListener() {
         return progressListener;
     }
@@ -342,6 +429,12 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
 
         dependencyChecker.setInterruptor(() -> progressListener.progressReached(0) == TeaVMProgressFeedback.CONTINUE);
         target.contributeDependencies(dependencyChecker);
+        if (callProfileInstrumentation && !incremental) {
+            entryPoint("dumpCallProfile", CallProfileInstrumentation.DUMP_METHOD);
+            linkMethod(CallProfileInstrumentation.RECORD_METHOD)
+                    .withValue(2, "java.lang.String")
+                    .withValue(3, "java.lang.Object");
+        }
         dependencyChecker.processDependencies();
         if (wasCancelled() || !diagnostics.getSevereProblems().isEmpty()) {
             return;
@@ -359,9 +452,19 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         }
 
         // Optimize and allocate registers
-        reportPhase(TeaVMPhase.OPTIMIZATION, 1);
+        reportPhase(TeaVMPhase.OPTIMIZATION, classSet.getClassNames().size());
 
         if (!incremental) {
+            evaluateStaticInitializers(classSet);
+            if (wasCancelled()) {
+                return;
+            }
+
+            applyCallProfile(classSet);
+            if (wasCancelled()) {
+                return;
+            }
+
             devirtualize(classSet, dependencyChecker);
             if (wasCancelled()) {
                 return;
@@ -416,11 +519,48 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         }
     }
 
+    private void reportProgress(int progress) {
+        if (progressListener.progressReached(progress) == TeaVMProgressFeedback.CANCEL) {
+            cancelled = true;
+        }
+    }
+
+    private void evaluateStaticInitializers(ListableClassHolderSource classes) {
+        if (optimizationLevel == TeaVMOptimizationLevel.SIMPLE) {
+            return;
+        }
+        StaticInitializerEvaluation evaluation = new StaticInitializerEvaluation(
+                target.supportsObjectInitialValues());
+        for (String className : classes.getClassNames()) {
+            evaluation.apply(classes.get(className));
+            if (wasCancelled()) {
+                return;
+            }
+        }
+    }
+
+    private void applyCallProfile(ListableClassHolderSource classes) {
+        if (callProfileInstrumentation) {
+            CallProfileInstrumentation instrumentation = new CallProfileInstrumentation();
+            for (String className : classes.getClassNames()) {
+                instrumentation.apply(classes.get(className));
+            }
+        } else if (callProfile != null && optimizationLevel != TeaVMOptimizationLevel.SIMPLE) {
+            for (String className : classes.getClassNames()) {
+                for (MethodHolder method : classes.get(className).getMethods()) {
+                    callProfile.bind(method);
+                }
+            }
+            boundCallProfile = callProfile;
+        }
+    }
+
     private void devirtualize(ListableClassHolderSource classes, DependencyInfo dependency) {
         if (wasCancelled()) {
             return;
         }
         Devirtualization devirtualization = new Devirtualization(dependency, classes);
+        devirtualization.setProfile(boundCallProfile);
         for (String className : classes.getClassNames()) {
             ClassHolder cls = classes.get(className);
             for (final MethodHolder method : cls.getMethods()) {
@@ -439,6 +579,7 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
             return;
         }
         Inlining inlining = new Inlining();
+        inlining.setProfile(boundCallProfile);
         for (String className : classes.getClassNames()) {
             ClassHolder cls = classes.get(className);
             for (MethodHolder method : cls.getMethods()) {
@@ -454,55 +595,160 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
     }
 
     private void optimize(ListableClassHolderSource classSource) {
+        if (optimizationThreads > 1) {
+            optimizeConcurrently(classSource);
+            return;
+        }
+
+        int index = 0;
         for (String className : classSource.getClassNames()) {
             ClassHolder cls = classSource.get(className);
             for (MethodHolder method : cls.getMethods()) {
                 processMethod(method, classSource);
             }
+            reportProgress(++index);
             if (wasCancelled()) {
                 return;
             }
         }
     }
 
+    /**
+     * Runs method optimizations and register allocation in a fork-join pool.
+     * {@link TeaVMTarget#afterOptimizations} is neither required to be thread-safe nor independent
+     * of method order, so it is called from the current thread in the same order as in sequential mode.
+     * That way the output does not depend on number of threads.
+     */
+    private void optimizeConcurrently(ListableClassHolderSource classSource) {
+        ForkJoinPool pool = new ForkJoinPool(optimizationThreads);
+        try {
+            List<List<PendingMethod>> pendingClasses = new ArrayList<>();
+            for (String className : classSource.getClassNames()) {
+                ClassHolder cls = classSource.get(className);
+                List<PendingMethod> pendingMethods = new ArrayList<>();
+                for (MethodHolder method : cls.getMethods()) {
+                    if (method.getProgram() == null) {
+                        continue;
+                    }
+                    PendingMethod pending = new PendingMethod(method);
+                    pending.optimization = pool.submit(() -> {
+                        if (wasCancelled()) {
+                            return null;
+                        }
+                        Program program = getCachedProgram(method);
+                        if (program != null) {
+                            pending.cached = true;
+                            return program;
+                        }
+                        return optimizeProgram(method);
+                    });
+                    pendingMethods.add(pending);
+                }
+                pendingClasses.add(pendingMethods);
+            }
+
+            int index = 0;
+            for (List<PendingMethod> pendingMethods : pendingClasses) {
+                for (PendingMethod pending : pendingMethods) {
+                    Program program = pending.optimization.join();
+                    if (wasCancelled()) {
+                        return;
+                    }
+                    if (!pending.cached) {
+                        if (program.basicBlockCount() > 0) {
+                            target.afterOptimizations(program, pending.method, classSource);
+                        }
+                        pending.finalization = pool.submit(() -> completeOptimization(pending.method, program));
+                    }
+                }
+                reportProgress(++index);
+                if (wasCancelled()) {
+                    return;
+                }
+            }
+
+            for (List<PendingMethod> pendingMethods : pendingClasses) {
+                for (PendingMethod pending : pendingMethods) {
+                    if (pending.finalization != null) {
+                        pending.finalization.join();
+                    }
+                    pending.method.setProgram(pending.optimization.join());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static class PendingMethod {
+        final MethodHolder method;
+        ForkJoinTask<Program> optimization;
+        ForkJoinTask<?> finalization;
+        boolean cached;
+
+        PendingMethod(MethodHolder method) {
+            this.method = method;
+        }
+    }
+
     private void processMethod(MethodHolder method, ListableClassReaderSource classSource) {
         if (method.getProgram() == null) {
             return;
         }
 
-        boolean noCache = method.getAnnotations().get(NoCache.class.getName()) != null;
-        Program optimizedProgram = incremental && !noCache && programCache != null
-                ? programCache.get(method.getReference()) : null;
+        Program optimizedProgram = getCachedProgram(method);
         if (optimizedProgram == null) {
-            optimizedProgram = ProgramUtils.copy(method.getProgram());
+            optimizedProgram = optimizeProgram(method);
             if (optimizedProgram.basicBlockCount() > 0) {
-                boolean changed;
-                do {
-                    changed = false;
-                    for (MethodOptimization optimization : getOptimizations()) {
-                        try {
-                            changed |= optimization.optimize(method, optimizedProgram);
-                        } catch (Exception | AssertionError e) {
-                            ListingBuilder listingBuilder = new ListingBuilder();
-                            String listing = listingBuilder.buildListing(optimizedProgram, "");
-                            System.err.println("Error optimizing program for method " + method.getReference()
-                                    + ":\n" + listing);
-                            throw new RuntimeException(e);
-                        }
-                    }
-                } while (changed);
-
                 target.afterOptimizations(optimizedProgram, method, classSource);
-                if (target.requiresRegisterAllocation()) {
-                    RegisterAllocator allocator = new RegisterAllocator();
-                    allocator.allocateRegisters(method, optimizedProgram);
-                }
             }
-            if (incremental && programCache != null) {
+            completeOptimization(method, optimizedProgram);
+        }
+        method.setProgram(optimizedProgram);
+    }
+
+    private Program getCachedProgram(MethodHolder method) {
+        boolean noCache = method.getAnnotations().get(NoCache.class.getName()) != null;
+        if (!incremental || noCache || programCache == null) {
+            return null;
+        }
+        synchronized (programCache) {
+            return programCache.get(method.getReference());
+        }
+    }
+
+    private Program optimizeProgram(MethodHolder method) {
+        Program optimizedProgram = ProgramUtils.copy(method.getProgram());
+        if (optimizedProgram.basicBlockCount() > 0) {
+            boolean changed;
+            do {
+                changed = false;
+                for (MethodOptimization optimization : getOptimizations()) {
+                    try {
+                        changed |= optimization.optimize(method, optimizedProgram);
+                    } catch (Exception | AssertionError e) {
+                        ListingBuilder listingBuilder = new ListingBuilder();
+                        String listing = listingBuilder.buildListing(optimizedProgram, "");
+                        System.err.println("Error optimizing program for method " + method.getReference()
+                                + ":\n" + listing);
+                        throw new RuntimeException(e);
+                    }
+                }
+            } while (changed);
+        }
+        return optimizedProgram;
+    }
+
+    private void completeOptimization(MethodHolder method, Program optimizedProgram) {
+        if (optimizedProgram.basicBlockCount() > 0 && target.requiresRegisterAllocation()) {
+            RegisterAllocator allocator = new RegisterAllocator();
+            allocator.allocateRegisters(method, optimizedProgram);
+        }
+        if (incremental && programCache != null) {
+            synchronized (programCache) {
                 programCache.store(method.getReference(), optimizedProgram);
             }
         }
-        method.setProgram(optimizedProgram);
     }
 
     private List<MethodOptimization> getOptimizations() {
@@ -512,14 +758,20 @@ public class TeaVM implements TeaVMHost, ServiceRepository {
         if (optimizationLevel.ordinal() >= TeaVMOptimizationLevel.ADVANCED.ordinal()) {
             optimizations.add(new LoopInversion());
             optimizations.add(new LoopInvariantMotion());
+            optimizations.add(new ScalarReplacement());
+            if (optimizationLevel == TeaVMOptimizationLevel.FULL) {
+                optimizations.add(new LoopUnrolling());
+                optimizations.add(new StrengthReduction());
+            }
         }
         optimizations.add(new GlobalValueNumbering(optimizationLevel == TeaVMOptimizationLevel.SIMPLE));
         if (optimizationLevel.ordinal() >= TeaVMOptimizationLevel.ADVANCED.ordinal()) {
             optimizations.add(new ConstantConditionElimination());
+            optimizations.add(new RedundantCheckElimination(removedChecksReported ? removedChecks : null));
             optimizations.add(new RedundantJumpElimination());
             optimizations.add(new UnusedVariableElimination());
         }
-        optimizations.add(new ClassInitElimination());
+        optimizations.add(new ClassInitElimination(!incremental ? writtenClasses : null));
         optimizations.add(new UnreachableBasicBlockElimination());
         return optimizations;
     }
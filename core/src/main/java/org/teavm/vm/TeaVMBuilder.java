@@ -22,6 +22,8 @@ public class TeaVMBuilder {
     TeaVMTarget target;
     ClassHolderSource classSource;
     ClassLoader classLoader;
+    int optimizationThreads = 1;
+    int dependencyAnalysisThreads = 1;
 
     public TeaVMBuilder(TeaVMTarget target) {
         this.target = target;
@@ -47,6 +49,32 @@ public class TeaVMBuilder {
         return this;
     }
 
+    public int getOptimizationThreads() {
+        return optimizationThreads;
+    }
+
+    public TeaVMBuilder setOptimizationThreads(int optimizationThreads) {
+        if (optimizationThreads < 1) {
+            throw new IllegalArgumentException("Number of optimization threads must be positive: "
+                    + optimizationThreads);
+        }
+        this.optimizationThreads = optimizationThreads;
+        return this;
+    }
+
+    public int getDependencyAnalysisThreads() {
+        return dependencyAnalysisThreads;
+    }
+
+    public TeaVMBuilder setDependencyAnalysisThreads(int dependencyAnalysisThreads) {
+        if (dependencyAnalysisThreads < 1) {
+            throw new IllegalArgumentException("Number of dependency analysis threads must be positive: "
+                    + dependencyAnalysisThreads);
+        }
+        this.dependencyAnalysisThreads = dependencyAnalysisThreads;
+        return this;
+    }
+
     public TeaVM build() {
         return new TeaVM(this);
     }
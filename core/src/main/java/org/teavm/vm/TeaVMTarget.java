@@ -37,6 +37,8 @@ public interface TeaVMTarget {
 
     boolean requiresRegisterAllocation();
 
+    boolean supportsObjectInitialValues();
+
     void contributeDependencies(DependencyChecker dependencyChecker);
 
     void afterOptimizations(Program program, MethodReader method, ListableClassReaderSource classSource);
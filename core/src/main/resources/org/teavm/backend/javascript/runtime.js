@@ -34,13 +34,33 @@ function $rt_isAssignable(from, to) {
     if (from === to) {
         return true;
     }
-    var supertypes = from.$meta.supertypes;
+    var supertypeSet = from.$meta.supertypeSet;
+    if (supertypeSet === null) {
+        supertypeSet = $rt_supertypeSet(from);
+    }
+    return supertypeSet[to.$meta.id] === true;
+}
+function $rt_supertypeSet(cls) {
+    var result = {};
+    result[cls.$meta.id] = true;
+    var supertypes = cls.$meta.supertypes;
     for (var i = 0; i < supertypes.length; i = (i + 1) | 0) {
-        if ($rt_isAssignable(supertypes[i], to)) {
-            return true;
+        var supertype = supertypes[i];
+        var supertypeSet = supertype.$meta.supertypeSet;
+        if (supertypeSet === null) {
+            supertypeSet = $rt_supertypeSet(supertype);
+        }
+        for (var id in supertypeSet) {
+            result[id] = true;
         }
     }
-    return false;
+    cls.$meta.supertypeSet = result;
+    return result;
+}
+var $rt_lastClassId = 0;
+function $rt_nextClassId() {
+    $rt_lastClassId = ($rt_lastClassId + 1) | 0;
+    return $rt_lastClassId;
 }
 function $rt_createArray(cls, sz) {
     var data = new Array(sz);
@@ -118,6 +138,16 @@ if (typeof 'ArrayBuffer' !== 'undefined') {
     $rt_createDoubleArray = function(sz) { return $rt_createNumericArray($rt_doublecls(), sz); };
     $rt_createCharArray = function(sz) { return $rt_createNumericArray($rt_charcls(), sz); }
 }
+function $rt_charsToString(chars, offset, count) {
+    var result = "";
+    var end = offset + count;
+    while (offset < end) {
+        var chunkEnd = Math.min(end, offset + 8192);
+        result += String.fromCharCode.apply(null, chars.subarray(offset, chunkEnd));
+        offset = chunkEnd;
+    }
+    return result;
+}
 function $rt_arraycls(cls) {
     var result = cls.$array;
     if (result === null) {
@@ -140,7 +170,7 @@ function $rt_arraycls(cls) {
         };
         var name = "[" + cls.$meta.binaryName;
         arraycls.$meta = { item : cls, supertypes : [$rt_objcls()], primitive : false, superclass : $rt_objcls(),
-                name : name, binaryName : name, enum : false };
+                name : name, binaryName : name, enum : false, id : $rt_nextClassId(), supertypeSet : null };
         arraycls.classObject = null;
         arraycls.$array = null;
         result = arraycls;
@@ -154,7 +184,9 @@ function $rt_createcls() {
         classObject : null,
         $meta : {
             supertypes : [],
-            superclass : null
+            superclass : null,
+            id : $rt_nextClassId(),
+            supertypeSet : null
         }
     };
 }
@@ -377,24 +409,7 @@ function $rt_putStderr(ch) {
 function $rt_metadata(data) {
     for (var i = 0; i < data.length; i += 8) {
         var cls = data[i];
-        cls.$meta = {};
-        var m = cls.$meta;
-        m.name = data[i + 1];
-        m.binaryName = "L" + m.name + ";";
-        var superclass = data[i + 2];
-        m.superclass = superclass !== 0 ? superclass : null;
-        m.supertypes = data[i + 3];
-        if (m.superclass) {
-            m.supertypes.push(m.superclass);
-            cls.prototype = new m.superclass();
-        } else {
-            cls.prototype = {};
-        }
-        var flags = data[i + 4];
-        m.enum = (flags & 1) != 0;
-        m.primitive = false;
-        m.item = null;
-        cls.prototype.constructor = cls;
+        $rt_initClassMetadata(cls, data[i + 1], data[i + 2], data[i + 3], data[i + 4], data[i + 7]);
         cls.classObject = null;
         var clinit = data[i + 5];
         cls.$clinit = clinit !== 0 ? clinit : function() {};
@@ -414,21 +429,79 @@ function $rt_metadata(data) {
             })(cls, names[j]);
         }
 
-        var virtualMethods = data[i + 7];
-        for (j = 0; j < virtualMethods.length; j += 2) {
-            var name = virtualMethods[j];
-            var func = virtualMethods[j + 1];
-            if (typeof name === 'string') {
-                name = [name];
-            }
-            for (var k = 0; k < name.length; ++k) {
-                cls.prototype[name[k]] = func;
-            }
-        }
+        cls.$array = null;
+    }
+}
+function $rt_initClassMetadata(cls, name, superclass, supertypes, flags, virtualMethods) {
+    cls.$meta = {};
+    var m = cls.$meta;
+    m.name = name;
+    m.binaryName = "L" + m.name + ";";
+    m.superclass = superclass !== 0 ? superclass : null;
+    m.supertypes = supertypes;
+    m.id = $rt_nextClassId();
+    m.supertypeSet = null;
+    if (m.superclass) {
+        m.supertypes.push(m.superclass);
+        cls.prototype = new m.superclass();
+    } else {
+        cls.prototype = {};
+    }
+    m.enum = (flags & 1) != 0;
+    m.primitive = false;
+    m.item = null;
+    cls.prototype.constructor = cls;
 
+    for (var j = 0; j < virtualMethods.length; j += 2) {
+        var methodName = virtualMethods[j];
+        var func = virtualMethods[j + 1];
+        if (typeof methodName === 'string') {
+            methodName = [methodName];
+        }
+        for (var k = 0; k < methodName.length; ++k) {
+            cls.prototype[methodName[k]] = func;
+        }
+    }
+}
+var $rt_lazyMetadataProperty = {
+    get: function() {
+        $rt_materializeClass(this);
+        return this.$meta;
+    },
+    configurable: true
+};
+function $rt_emptyClinit() {
+}
+function $rt_lazyMetadata(data) {
+    for (var i = 0; i < data.length; i += 3) {
+        var cls = data[i];
+        var clinit = data[i + 1];
+        cls.$lazyMetadata = data[i + 2];
+        Object.defineProperty(cls, "$meta", $rt_lazyMetadataProperty);
+        cls.$clinit = clinit !== 0 ? clinit : $rt_emptyClinit;
+        cls.classObject = null;
         cls.$array = null;
     }
 }
+function $rt_materializeClass(cls) {
+    var data = cls.$lazyMetadata;
+    if (!data) {
+        return;
+    }
+    cls.$lazyMetadata = null;
+    delete cls.$meta;
+    data = data();
+    $rt_initClassMetadata(cls, data[0], data[1], data[2], data[3], data[4]);
+}
+function $rt_lazyConstruct(cls) {
+    $rt_materializeClass(cls);
+    return new cls();
+}
+function $rt_lazyClinit(cls) {
+    var clinit = cls.$clinit;
+    cls.$clinit = $rt_emptyClinit;
+    clinit();
+}
 function $rt_threadStarter(f) {
     return function() {
         var args = Array.prototype.slice.apply(arguments);
@@ -557,7 +630,7 @@ function $dbg_repr(obj) {
     return obj.toString ? obj.toString() : "";
 }
 function $dbg_class(obj) {
-    if (obj instanceof Long) {
+    if (obj instanceof Long || typeof obj === "bigint") {
         return "long";
     }
     var cls = obj.constructor;
@@ -618,7 +691,11 @@ function Long_fromInt(val) {
     return val >= 0 ? new Long(val, 0) : new Long(val, -1);
 }
 function Long_fromNumber(val) {
-    if (val >= 0) {
+    if (val >= 9223372036854775807) {
+        return new Long(-1, 0x7FFFFFFF);
+    } else if (val <= -9223372036854775808) {
+        return new Long(0, 0x80000000 | 0);
+    } else if (val >= 0) {
         return new Long(val | 0, (val / 0x100000000) | 0);
     } else {
         return Long_neg(new Long(-val | 0, (-val / 0x100000000) | 0));
@@ -754,6 +831,9 @@ function Long_sub(a, b) {
     var hihi = (a_hihi - b_hihi + (hilo >> 16)) | 0;
     return new Long((lolo & 0xFFFF) | ((lohi & 0xFFFF) << 16), (hilo & 0xFFFF) | ((hihi & 0xFFFF) << 16));
 }
+function Long_hashCode(a) {
+    return a.hi ^ a.lo;
+}
 function Long_compare(a, b) {
     var r = a.hi - b.hi;
     if (r !== 0) {
@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmBreak;
+import org.teavm.backend.wasm.model.expression.WasmCall;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt32Subtype;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
+import org.teavm.backend.wasm.model.expression.WasmLoadV128;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmSimdBinary;
+import org.teavm.backend.wasm.model.expression.WasmSimdPairwiseAdd;
+import org.teavm.backend.wasm.model.expression.WasmSimdShape;
+import org.teavm.backend.wasm.model.expression.WasmSimdSplat;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
+import org.teavm.backend.wasm.model.expression.WasmStoreV128;
+
+public class LoopVectorizationTest {
+    private WasmFunction function = new WasmFunction("f");
+    private WasmLocal counter = local(WasmType.INT32);
+    private WasmLocal bound = local(WasmType.INT32);
+    private WasmBlock wrapper = new WasmBlock(false);
+    private WasmBlock loop = new WasmBlock(true);
+
+    @Test
+    public void vectorizesElementwiseOperation() {
+        WasmLocal a = local(WasmType.INT32);
+        WasmLocal b = local(WasmType.INT32);
+        WasmLocal c = local(WasmType.INT32);
+        buildLoop(store(c, 0, add(load(a, 0), load(b, 0))));
+
+        LoopVectorization vectorization = new LoopVectorization();
+        vectorization.apply(function);
+
+        assertEquals(1, vectorization.getVectorizedLoops());
+        List<WasmExpression> vectorBody = getVectorLoop().getBody();
+        WasmStoreV128 store = (WasmStoreV128) vectorBody.get(1);
+        WasmSimdBinary sum = (WasmSimdBinary) store.getValue();
+        assertSame(WasmSimdShape.INT32X4, sum.getShape());
+        assertTrue(sum.getFirst() instanceof WasmLoadV128);
+        assertTrue(sum.getSecond() instanceof WasmLoadV128);
+        WasmIntBinary step = (WasmIntBinary) ((WasmSetLocal) vectorBody.get(2)).getValue();
+        assertEquals(4, ((WasmInt32Constant) step.getSecond()).getValue());
+        assertSame(loop, wrapper.getBody().get(wrapper.getBody().size() - 1));
+    }
+
+    @Test
+    public void hoistsSplatOfInvariant() {
+        WasmLocal a = local(WasmType.INT32);
+        WasmLocal k = local(WasmType.INT32);
+        buildLoop(store(a, 0, mul(load(a, 0), new WasmGetLocal(k))));
+
+        new LoopVectorization().apply(function);
+
+        WasmSetLocal splat = (WasmSetLocal) wrapper.getBody().get(0);
+        assertSame(WasmType.V128, splat.getLocal().getType());
+        assertTrue(splat.getValue() instanceof WasmSimdSplat);
+        WasmSimdBinary product = (WasmSimdBinary) ((WasmStoreV128) getVectorLoop().getBody().get(1)).getValue();
+        assertSame(splat.getLocal(), ((WasmGetLocal) product.getSecond()).getLocal());
+    }
+
+    @Test
+    public void widensSumOfBytes() {
+        WasmLocal a = local(WasmType.INT32);
+        WasmLocal sum = local(WasmType.INT32);
+        WasmLoadInt32 element = new WasmLoadInt32(1, add(add(new WasmGetLocal(a), constant(12)),
+                new WasmGetLocal(counter)), WasmInt32Subtype.INT8);
+        buildLoop(new WasmSetLocal(sum, add(new WasmGetLocal(sum), element)));
+
+        LoopVectorization vectorization = new LoopVectorization();
+        vectorization.apply(function);
+
+        assertEquals(1, vectorization.getVectorizedLoops());
+        WasmSetLocal reduction = (WasmSetLocal) getVectorLoop().getBody().get(1);
+        WasmSimdBinary vectorSum = (WasmSimdBinary) reduction.getValue();
+        WasmSimdPairwiseAdd widening = (WasmSimdPairwiseAdd) vectorSum.getSecond();
+        assertSame(WasmSimdShape.INT32X4, widening.getShape());
+        assertSame(WasmSimdShape.INT16X8, ((WasmSimdPairwiseAdd) widening.getOperand()).getShape());
+        WasmIntBinary step = (WasmIntBinary) ((WasmSetLocal) getVectorLoop().getBody().get(2)).getValue();
+        assertEquals(16, ((WasmInt32Constant) step.getSecond()).getValue());
+    }
+
+    @Test
+    public void keepsReadAheadAfterStore() {
+        WasmLocal a = local(WasmType.INT32);
+        WasmLocal b = local(WasmType.INT32);
+        buildLoop(store(a, 0, constant(0)), store(b, 0, load(a, 1)));
+
+        LoopVectorization vectorization = new LoopVectorization();
+        vectorization.apply(function);
+
+        assertEquals(0, vectorization.getVectorizedLoops());
+        assertEquals(1, wrapper.getBody().size());
+    }
+
+    @Test
+    public void keepsLoopWithCall() {
+        WasmLocal a = local(WasmType.INT32);
+        WasmCall call = new WasmCall("g");
+        call.getArguments().add(new WasmGetLocal(counter));
+        buildLoop(store(a, 0, call));
+
+        LoopVectorization vectorization = new LoopVectorization();
+        vectorization.apply(function);
+
+        assertEquals(0, vectorization.getVectorizedLoops());
+        assertEquals(1, wrapper.getBody().size());
+    }
+
+    // Builds the loop in the shape produced by the generator for for (...; i < n; ++i)
+    private void buildLoop(WasmExpression... statements) {
+        for (WasmExpression statement : statements) {
+            loop.getBody().add(statement);
+        }
+        loop.getBody().add(new WasmSetLocal(counter, add(new WasmGetLocal(counter), constant(1))));
+        loop.getBody().add(new WasmBranch(new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.GE_SIGNED,
+                new WasmGetLocal(counter), new WasmGetLocal(bound)), wrapper));
+        loop.getBody().add(new WasmBreak(loop));
+        wrapper.getBody().add(loop);
+        function.getBody().add(wrapper);
+    }
+
+    private WasmBlock getVectorLoop() {
+        for (WasmExpression part : wrapper.getBody()) {
+            if (part instanceof WasmBlock && part != loop) {
+                WasmBlock vectorWrapper = (WasmBlock) ((WasmBlock) part).getBody().get(1);
+                return (WasmBlock) vectorWrapper.getBody().get(0);
+            }
+        }
+        throw new AssertionError("Vector loop not found");
+    }
+
+    private WasmLocal local(WasmType type) {
+        WasmLocal local = new WasmLocal(type);
+        function.add(local);
+        return local;
+    }
+
+    private WasmExpression address(WasmLocal array, int offset) {
+        WasmExpression index = new WasmGetLocal(counter);
+        if (offset != 0) {
+            index = add(index, constant(offset));
+        }
+        return add(add(new WasmGetLocal(array), constant(12)), new WasmIntBinary(WasmIntType.INT32,
+                WasmIntBinaryOperation.SHL, index, constant(2)));
+    }
+
+    private WasmExpression load(WasmLocal array, int offset) {
+        return new WasmLoadInt32(4, address(array, offset), WasmInt32Subtype.INT32);
+    }
+
+    private WasmExpression store(WasmLocal array, int offset, WasmExpression value) {
+        return new WasmStoreInt32(4, address(array, offset), value, WasmInt32Subtype.INT32);
+    }
+
+    private static WasmExpression constant(int value) {
+        return new WasmInt32Constant(value);
+    }
+
+    private static WasmIntBinary add(WasmExpression first, WasmExpression second) {
+        return new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, first, second);
+    }
+
+    private static WasmIntBinary mul(WasmExpression first, WasmExpression second) {
+        return new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.MUL, first, second);
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.backend.wasm.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.teavm.backend.wasm.model.WasmFunction;
+import org.teavm.backend.wasm.model.WasmLocal;
+import org.teavm.backend.wasm.model.WasmType;
+import org.teavm.backend.wasm.model.expression.WasmBlock;
+import org.teavm.backend.wasm.model.expression.WasmBranch;
+import org.teavm.backend.wasm.model.expression.WasmConditional;
+import org.teavm.backend.wasm.model.expression.WasmExpression;
+import org.teavm.backend.wasm.model.expression.WasmGetLocal;
+import org.teavm.backend.wasm.model.expression.WasmInt32Constant;
+import org.teavm.backend.wasm.model.expression.WasmInt32Subtype;
+import org.teavm.backend.wasm.model.expression.WasmIntBinary;
+import org.teavm.backend.wasm.model.expression.WasmIntBinaryOperation;
+import org.teavm.backend.wasm.model.expression.WasmIntType;
+import org.teavm.backend.wasm.model.expression.WasmLoadInt32;
+import org.teavm.backend.wasm.model.expression.WasmReturn;
+import org.teavm.backend.wasm.model.expression.WasmSetLocal;
+import org.teavm.backend.wasm.model.expression.WasmStoreInt32;
+import org.teavm.backend.wasm.model.expression.WasmTeeLocal;
+import org.teavm.backend.wasm.model.expression.WasmThrow;
+import org.teavm.backend.wasm.model.expression.WasmTry;
+
+public class WasmOptimizerTest {
+    @Test
+    public void foldsConstants() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        function.getBody().add(new WasmReturn(add(mul(constant(3), constant(4)), constant(0))));
+
+        ConstantFolding folding = new ConstantFolding();
+        folding.apply(function);
+
+        WasmReturn ret = (WasmReturn) function.getBody().get(0);
+        assertEquals(12, ((WasmInt32Constant) ret.getValue()).getValue());
+        assertEquals(2, folding.getFoldedExpressions());
+    }
+
+    @Test
+    public void keepsDivisionByZero() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        WasmIntBinary division = new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.DIV_SIGNED,
+                constant(1), constant(0));
+        function.getBody().add(new WasmReturn(division));
+
+        new ConstantFolding().apply(function);
+
+        assertSame(division, ((WasmReturn) function.getBody().get(0)).getValue());
+    }
+
+    @Test
+    public void replacesConditionalOnConstant() {
+        WasmFunction function = new WasmFunction("f");
+        WasmLocal local = local(function, WasmType.INT32);
+        WasmConditional conditional = new WasmConditional(constant(0));
+        conditional.getThenBlock().getBody().add(new WasmSetLocal(local, constant(1)));
+        conditional.getElseBlock().getBody().add(new WasmSetLocal(local, constant(2)));
+        function.getBody().add(conditional);
+
+        new ConstantFolding().apply(function);
+        new BlockFlattening().apply(function);
+
+        assertEquals(1, function.getBody().size());
+        WasmSetLocal assignment = (WasmSetLocal) function.getBody().get(0);
+        assertEquals(2, ((WasmInt32Constant) assignment.getValue()).getValue());
+    }
+
+    @Test
+    public void keepsReferencedBlocks() {
+        WasmFunction function = new WasmFunction("f");
+        WasmLocal local = local(function, WasmType.INT32);
+        WasmBlock inner = new WasmBlock(false);
+        WasmBlock outer = new WasmBlock(false);
+        outer.getBody().add(inner);
+        inner.getBody().add(new WasmBranch(new WasmGetLocal(local), outer));
+        inner.getBody().add(new WasmSetLocal(local, constant(1)));
+        function.getBody().add(outer);
+
+        BlockFlattening flattening = new BlockFlattening();
+        flattening.apply(function);
+
+        assertEquals(1, flattening.getFlattenedBlocks());
+        assertSame(outer, function.getBody().get(0));
+        assertEquals(2, outer.getBody().size());
+    }
+
+    @Test
+    public void reusesLoadedValue() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        WasmLocal pointer = local(function, WasmType.INT32);
+        function.getBody().add(new WasmReturn(add(load(pointer), load(pointer))));
+
+        RedundantLoadElimination elimination = new RedundantLoadElimination();
+        elimination.apply(function);
+
+        assertEquals(1, elimination.getEliminatedLoads());
+        WasmIntBinary sum = (WasmIntBinary) ((WasmReturn) function.getBody().get(0)).getValue();
+        WasmTeeLocal tee = (WasmTeeLocal) sum.getFirst();
+        assertTrue(tee.getValue() instanceof WasmLoadInt32);
+        assertSame(tee.getLocal(), ((WasmGetLocal) sum.getSecond()).getLocal());
+    }
+
+    @Test
+    public void doesNotReuseLoadAfterStore() {
+        WasmFunction function = new WasmFunction("f");
+        WasmLocal pointer = local(function, WasmType.INT32);
+        WasmLocal value = local(function, WasmType.INT32);
+        function.getBody().add(new WasmSetLocal(value, load(pointer)));
+        function.getBody().add(new WasmStoreInt32(4, constant(16), constant(1), WasmInt32Subtype.INT32));
+        function.getBody().add(new WasmSetLocal(value, add(new WasmGetLocal(value), load(pointer))));
+
+        RedundantLoadElimination elimination = new RedundantLoadElimination();
+        elimination.apply(function);
+
+        assertEquals(0, elimination.getEliminatedLoads());
+        assertEquals(2, function.getLocalVariables().size());
+    }
+
+    @Test
+    public void formsTee() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        WasmLocal local = local(function, WasmType.INT32);
+        function.getBody().add(new WasmSetLocal(local, load(local)));
+        function.getBody().add(new WasmReturn(mul(new WasmGetLocal(local), new WasmGetLocal(local))));
+
+        TeeFormation teeFormation = new TeeFormation();
+        teeFormation.apply(function);
+
+        assertEquals(1, teeFormation.getFormedTees());
+        assertEquals(1, function.getBody().size());
+        WasmIntBinary product = (WasmIntBinary) ((WasmReturn) function.getBody().get(0)).getValue();
+        assertSame(local, ((WasmTeeLocal) product.getFirst()).getLocal());
+    }
+
+    @Test
+    public void removesAssignmentOfSingleUse() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        WasmLocal local = local(function, WasmType.INT32);
+        function.getBody().add(new WasmSetLocal(local, constant(5)));
+        function.getBody().add(new WasmReturn(add(new WasmGetLocal(local), constant(1))));
+
+        TeeFormation teeFormation = new TeeFormation();
+        teeFormation.apply(function);
+
+        assertEquals(1, teeFormation.getRemovedAssignments());
+        WasmIntBinary sum = (WasmIntBinary) ((WasmReturn) function.getBody().get(0)).getValue();
+        assertEquals(5, ((WasmInt32Constant) sum.getFirst()).getValue());
+    }
+
+    @Test
+    public void mergesLocalsWithDisjointLifetimes() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        WasmLocal first = local(function, WasmType.INT32);
+        WasmLocal wide = local(function, WasmType.INT64);
+        WasmLocal second = local(function, WasmType.INT32);
+        function.getBody().add(new WasmSetLocal(first, constant(1)));
+        function.getBody().add(new WasmStoreInt32(4, constant(16), new WasmGetLocal(first),
+                WasmInt32Subtype.INT32));
+        function.getBody().add(new WasmSetLocal(wide, new WasmGetLocal(wide)));
+        function.getBody().add(new WasmSetLocal(second, constant(2)));
+        function.getBody().add(new WasmReturn(new WasmGetLocal(second)));
+
+        LocalCoalescing coalescing = new LocalCoalescing();
+        coalescing.apply(function);
+
+        assertEquals(1, coalescing.getRemovedLocals());
+        WasmSetLocal assignment = (WasmSetLocal) function.getBody().get(3);
+        assertSame(first, assignment.getLocal());
+        assertEquals(2, function.getLocalVariables().size());
+    }
+
+    @Test
+    public void keepsLocalsLiveAcrossLoop() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        WasmLocal counter = local(function, WasmType.INT32);
+        WasmLocal sum = local(function, WasmType.INT32);
+        WasmLocal temp = local(function, WasmType.INT32);
+        function.getBody().add(new WasmSetLocal(counter, constant(10)));
+        function.getBody().add(new WasmSetLocal(sum, constant(0)));
+        WasmBlock loop = new WasmBlock(true);
+        loop.getBody().add(new WasmSetLocal(temp, load(counter)));
+        loop.getBody().add(new WasmSetLocal(sum, add(new WasmGetLocal(sum), new WasmGetLocal(temp))));
+        loop.getBody().add(new WasmSetLocal(counter, add(new WasmGetLocal(counter), constant(-1))));
+        loop.getBody().add(new WasmBranch(new WasmGetLocal(counter), loop));
+        function.getBody().add(loop);
+        function.getBody().add(new WasmReturn(new WasmGetLocal(sum)));
+
+        new LocalCoalescing().apply(function);
+
+        WasmSetLocal first = (WasmSetLocal) loop.getBody().get(0);
+        WasmSetLocal second = (WasmSetLocal) loop.getBody().get(1);
+        WasmSetLocal third = (WasmSetLocal) loop.getBody().get(2);
+        assertNotSame(first.getLocal(), second.getLocal());
+        assertNotSame(second.getLocal(), third.getLocal());
+        assertNotSame(first.getLocal(), third.getLocal());
+    }
+
+    @Test
+    public void keepsLocalsLiveInCatch() {
+        WasmFunction function = new WasmFunction("f");
+        function.setResult(WasmType.INT32);
+        WasmLocal saved = local(function, WasmType.INT32);
+        WasmLocal temp = local(function, WasmType.INT32);
+        function.getBody().add(new WasmSetLocal(saved, constant(1)));
+        WasmTry tryExpr = new WasmTry();
+        tryExpr.getBody().getBody().add(new WasmSetLocal(temp, constant(2)));
+        tryExpr.getBody().getBody().add(new WasmStoreInt32(4, constant(16), new WasmGetLocal(temp),
+                WasmInt32Subtype.INT32));
+        tryExpr.getBody().getBody().add(new WasmThrow());
+        tryExpr.getCatchBlock().getBody().add(new WasmReturn(new WasmGetLocal(saved)));
+        function.getBody().add(tryExpr);
+        function.getBody().add(new WasmReturn(constant(0)));
+
+        new LocalCoalescing().apply(function);
+
+        WasmSetLocal first = (WasmSetLocal) function.getBody().get(0);
+        WasmSetLocal second = (WasmSetLocal) tryExpr.getBody().getBody().get(0);
+        assertNotSame(first.getLocal(), second.getLocal());
+    }
+
+    private static WasmLocal local(WasmFunction function, WasmType type) {
+        WasmLocal local = new WasmLocal(type);
+        function.add(local);
+        return local;
+    }
+
+    private static WasmExpression constant(int value) {
+        return new WasmInt32Constant(value);
+    }
+
+    private static WasmExpression load(WasmLocal pointer) {
+        return new WasmLoadInt32(4, new WasmGetLocal(pointer), WasmInt32Subtype.INT32);
+    }
+
+    private static WasmIntBinary add(WasmExpression first, WasmExpression second) {
+        return new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.ADD, first, second);
+    }
+
+    private static WasmIntBinary mul(WasmExpression first, WasmExpression second) {
+        return new WasmIntBinary(WasmIntType.INT32, WasmIntBinaryOperation.MUL, first, second);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2014 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.teavm.parsing.ClassDateProvider;
+
+public class ClassDependencyIOTest {
+    private File file;
+    private Map<String, Date> dates = new HashMap<>();
+    private Map<String, byte[]> hashes = new HashMap<>();
+    private ClassDateProvider provider = new ClassDateProvider() {
+        @Override
+        public Date getModificationDate(String className) {
+            return dates.get(className);
+        }
+
+        @Override
+        public byte[] getContentHash(String className) {
+            return hashes.get(className);
+        }
+    };
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("teavm-dependencies", ".bin");
+        file.setLastModified(100000);
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void olderClassesAccepted() throws IOException {
+        dates.put("A", new Date(50000));
+        dates.put("B", new Date(100000));
+        assertTrue(check(write("A", "B")));
+    }
+
+    @Test
+    public void newerClassWithSameContentAccepted() throws IOException {
+        dates.put("A", new Date(50000));
+        hashes.put("A", new byte[] { 1, 2, 3 });
+        byte[] data = write("A");
+        dates.put("A", new Date(200000));
+
+        assertTrue(check(data));
+        assertTrue(file.lastModified() > 200000);
+    }
+
+    @Test
+    public void newerClassWithChangedContentRejected() throws IOException {
+        dates.put("A", new Date(50000));
+        hashes.put("A", new byte[] { 1, 2, 3 });
+        byte[] data = write("A");
+        dates.put("A", new Date(200000));
+        hashes.put("A", new byte[] { 1, 2, 4 });
+
+        assertFalse(check(data));
+    }
+
+    @Test
+    public void missingClassRejected() throws IOException {
+        dates.put("A", new Date(50000));
+        hashes.put("A", new byte[] { 1, 2, 3 });
+        byte[] data = write("A");
+        dates.remove("A");
+        hashes.remove("A");
+
+        assertFalse(check(data));
+    }
+
+    private byte[] write(String... classNames) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ClassDependencyIO.write(new DataOutputStream(output), Arrays.asList(classNames), provider);
+        return output.toByteArray();
+    }
+
+    private boolean check(byte[] data) throws IOException {
+        return ClassDependencyIO.isUpToDate(new DataInputStream(new ByteArrayInputStream(data)), file, provider);
+    }
+}
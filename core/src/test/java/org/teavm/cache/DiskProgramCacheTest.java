@@ -0,0 +1,172 @@
+/*
+ *  Copyright 2014 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.cache;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.instructions.ExitInstruction;
+import org.teavm.model.instructions.IntegerConstantInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+
+public class DiskProgramCacheTest {
+    private static final MethodReference FOO = new MethodReference("test.A", "foo", ValueType.VOID);
+    private static final MethodReference BAR = new MethodReference("test.A", "bar", ValueType.VOID);
+    private static final MethodReference BAZ = new MethodReference("test.B", "baz", ValueType.VOID);
+    private File directory;
+    private Map<String, Date> dates = new HashMap<>();
+    private FileSymbolTable symbolTable;
+    private FileSymbolTable fileTable;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("teavm-program-cache").toFile();
+        dates.put("test.A", new Date(System.currentTimeMillis() - 60000));
+        dates.put("test.B", new Date(System.currentTimeMillis() - 60000));
+        dates.put("test.C", new Date(System.currentTimeMillis() - 60000));
+    }
+
+    @After
+    public void deleteDirectory() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void storesPrograms() throws IOException {
+        DiskProgramCache cache = createCache();
+        cache.store(FOO, createProgram(1, null));
+        cache.store(BAR, createProgram(2, null));
+        cache.flush();
+
+        cache = createCache();
+        assertThat(constantOf(cache.get(FOO)), is(1));
+        assertThat(constantOf(cache.get(BAR)), is(2));
+        assertThat(cache.get(BAZ), nullValue());
+    }
+
+    @Test
+    public void keepsProgramsBetweenFlushes() throws IOException {
+        DiskProgramCache cache = createCache();
+        cache.store(FOO, createProgram(1, null));
+        cache.flush();
+
+        cache = createCache();
+        cache.store(BAR, createProgram(2, null));
+        cache.flush();
+
+        cache = createCache();
+        assertThat(constantOf(cache.get(FOO)), is(1));
+        assertThat(constantOf(cache.get(BAR)), is(2));
+    }
+
+    @Test
+    public void flushesWhileOldGenerationIsMapped() throws IOException {
+        DiskProgramCache cache = createCache();
+        cache.store(FOO, createProgram(1, null));
+        cache.store(BAZ, createProgram(3, null));
+        cache.flush();
+
+        DiskProgramCache reader = createCache();
+        assertThat(constantOf(reader.get(FOO)), is(1));
+
+        cache = createCache();
+        cache.store(BAR, createProgram(2, null));
+        cache.flush();
+        cache.store(FOO, createProgram(4, null));
+        cache.flush();
+
+        assertThat(constantOf(reader.get(BAZ)), is(3));
+
+        cache = createCache();
+        assertThat(constantOf(cache.get(FOO)), is(4));
+        assertThat(constantOf(cache.get(BAR)), is(2));
+        assertThat(constantOf(cache.get(BAZ)), is(3));
+    }
+
+    @Test
+    public void dropsProgramsWithChangedDependencies() throws IOException {
+        DiskProgramCache cache = createCache();
+        cache.store(FOO, createProgram(1, "test.C"));
+        cache.store(BAZ, createProgram(3, null));
+        cache.flush();
+
+        dates.put("test.C", new Date(System.currentTimeMillis() + 60000));
+        cache = createCache();
+        assertThat(cache.get(FOO), nullValue());
+        assertThat(cache.get(BAZ), notNullValue());
+        cache.flush();
+
+        dates.put("test.C", new Date(System.currentTimeMillis() - 60000));
+        cache = createCache();
+        assertThat(cache.get(FOO), nullValue());
+        assertThat(constantOf(cache.get(BAZ)), is(3));
+    }
+
+    private DiskProgramCache createCache() throws IOException {
+        if (symbolTable != null) {
+            symbolTable.flush();
+            fileTable.flush();
+        }
+        symbolTable = new FileSymbolTable(new File(directory, "symbols"));
+        fileTable = new FileSymbolTable(new File(directory, "files"));
+        if (new File(directory, "symbols").exists()) {
+            symbolTable.update();
+        }
+        return new DiskProgramCache(directory, symbolTable, fileTable, dates::get);
+    }
+
+    private static Program createProgram(int constant, String calledClass) {
+        Program program = new Program();
+        program.createVariable();
+        BasicBlock block = program.createBasicBlock();
+        IntegerConstantInstruction constantInsn = new IntegerConstantInstruction();
+        constantInsn.setConstant(constant);
+        constantInsn.setReceiver(program.createVariable());
+        block.getInstructions().add(constantInsn);
+        if (calledClass != null) {
+            InvokeInstruction invoke = new InvokeInstruction();
+            invoke.setType(InvocationType.SPECIAL);
+            invoke.setMethod(new MethodReference(calledClass, "run", ValueType.VOID));
+            block.getInstructions().add(invoke);
+        }
+        block.getInstructions().add(new ExitInstruction());
+        return program;
+    }
+
+    private static int constantOf(Program program) {
+        assertThat(program.basicBlockAt(0).getInstructions().get(0), instanceOf(IntegerConstantInstruction.class));
+        return ((IntegerConstantInstruction) program.basicBlockAt(0).getInstructions().get(0)).getConstant();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.model.optimization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.Test;
+import org.teavm.model.BasicBlock;
+import org.teavm.model.ClassHolder;
+import org.teavm.model.MethodHolder;
+import org.teavm.model.MethodReference;
+import org.teavm.model.Program;
+import org.teavm.model.ValueType;
+import org.teavm.model.instructions.ExitInstruction;
+import org.teavm.model.instructions.InvocationType;
+import org.teavm.model.instructions.InvokeInstruction;
+import org.teavm.model.instructions.JumpInstruction;
+import org.teavm.model.util.ProgramUtils;
+
+public class CallProfileTest {
+    private static final MethodReference CALLER = new MethodReference("foo.Bar", "run", ValueType.VOID);
+    private static final MethodReference CALLEE = new MethodReference("foo.Shape", "draw", ValueType.VOID);
+
+    @Test
+    public void readsAndWritesProfile() throws IOException {
+        CallProfile profile = read(CALLER + " 0 2000 foo.Circle:1500 foo.Square:500\n"
+                + "# comment\n"
+                + "\n"
+                + CALLER + " 1 10 *:10\n");
+
+        CallSiteProfile first = profile.get(CALLER, 0);
+        assertEquals(2000, first.getCount());
+        assertEquals(Long.valueOf(1500), first.getReceiverTypes().get("foo.Circle"));
+        assertNull(first.getMonomorphicReceiver());
+        assertEquals(10, profile.get(CALLER, 1).getOtherReceiverCount());
+        assertNull(profile.get(CALLER, 2));
+
+        StringWriter writer = new StringWriter();
+        profile.write(writer);
+        CallProfile copy = read(writer.toString());
+        assertEquals(2000, copy.get(CALLER, 0).getCount());
+        assertEquals(first.getReceiverTypes(), copy.get(CALLER, 0).getReceiverTypes());
+        assertEquals(10, copy.get(CALLER, 1).getOtherReceiverCount());
+    }
+
+    @Test
+    public void sumsUpRepeatedCallSites() throws IOException {
+        CallProfile profile = read(CALLER + " 0 1000 foo.Circle:1000\n" + CALLER + " 0 500 foo.Circle:500\n");
+        CallSiteProfile callSite = profile.get(CALLER, 0);
+        assertEquals(1500, callSite.getCount());
+        assertEquals("foo.Circle", callSite.getMonomorphicReceiver());
+    }
+
+    @Test
+    public void detectsHotCallSites() throws IOException {
+        CallProfile profile = read(CALLER + " 0 10000000\n" + CALLER + " 1 20000\n" + CALLER + " 2 5000\n"
+                + CALLER + " 3 50\n");
+        assertTrue(profile.isHot(profile.get(CALLER, 0)));
+        assertTrue(profile.isHot(profile.get(CALLER, 1)));
+        assertFalse(profile.isHot(profile.get(CALLER, 2)));
+        assertFalse(profile.isHot(profile.get(CALLER, 3)));
+        assertFalse(profile.isHot(null));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMalformedLine() throws IOException {
+        read(CALLER + " 0 10 foo.Circle\n");
+    }
+
+    @Test
+    public void bindsCallSitesAndCopiesBindings() throws IOException {
+        CallProfile profile = read(CALLER + " 1 3000 foo.Circle:3000\n");
+        MethodHolder method = new MethodHolder(CALLER.getDescriptor());
+        Program program = new Program();
+        program.createVariable();
+        BasicBlock first = program.createBasicBlock();
+        BasicBlock second = program.createBasicBlock();
+        first.getInstructions().add(invoke(program));
+        JumpInstruction jump = new JumpInstruction();
+        jump.setTarget(second);
+        first.getInstructions().add(jump);
+        second.getInstructions().add(invoke(program));
+        second.getInstructions().add(new ExitInstruction());
+        method.setProgram(program);
+        new ClassHolder(CALLER.getClassName()).addMethod(method);
+
+        profile.bind(method);
+        List<InvokeInstruction> callSites = CallProfile.getCallSites(program);
+        assertEquals(2, callSites.size());
+        assertNull(profile.get(callSites.get(0)));
+        assertSame(profile.get(CALLER, 1), profile.get(callSites.get(1)));
+
+        Program copy = ProgramUtils.copy(program);
+        profile.copyBindings(program, copy);
+        List<InvokeInstruction> copiedCallSites = CallProfile.getCallSites(copy);
+        assertNull(profile.get(copiedCallSites.get(0)));
+        assertSame(profile.get(CALLER, 1), profile.get(copiedCallSites.get(1)));
+    }
+
+    private static InvokeInstruction invoke(Program program) {
+        InvokeInstruction invoke = new InvokeInstruction();
+        invoke.setType(InvocationType.VIRTUAL);
+        invoke.setMethod(CALLEE);
+        invoke.setInstance(program.variableAt(0));
+        return invoke;
+    }
+
+    private static CallProfile read(String text) throws IOException {
+        return CallProfile.read(new StringReader(text));
+    }
+}
@@ -200,13 +200,6 @@ public class JavaScriptConvGenerator implements Generator {
     }
 
     private void generateStringToJavaScript(GeneratorContext context, SourceWriter writer) throws IOException {
-        FieldReference charsField = new FieldReference("java.lang.String", "characters");
-        writer.append("var result = \"\";").softNewLine();
-        writer.append("var data = ").append(context.getParameterName(1)).append('.')
-                .appendField(charsField).append(".data;").softNewLine();
-        writer.append("for (var i = 0; i < data.length; i = (i + 1) | 0) {").indent().softNewLine();
-        writer.append("result += String.fromCharCode(data[i]);").softNewLine();
-        writer.outdent().append("}").softNewLine();
-        writer.append("return result;").softNewLine();
+        writer.append("return $rt_ustr(").append(context.getParameterName(1)).append(");").softNewLine();
     }
 }
@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.interop;
+
+/**
+ * <p>Element-wise operations on primitive arrays. All methods are plain loops and behave the same on
+ * every target. When the WebAssembly target is configured to emit SIMD instructions, these loops are
+ * vectorized, so they can serve as building blocks of numeric kernels.</p>
+ *
+ * <p>Methods that produce an array take the number of elements from the result array, which must not be
+ * longer than the source arrays.</p>
+ *
+ * @author Alexey Andreev
+ */
+public final class Vectors {
+    private Vectors() {
+    }
+
+    public static void add(int[] a, int[] b, int[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] + b[i];
+        }
+    }
+
+    public static void add(float[] a, float[] b, float[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] + b[i];
+        }
+    }
+
+    public static void add(double[] a, double[] b, double[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] + b[i];
+        }
+    }
+
+    public static void subtract(int[] a, int[] b, int[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] - b[i];
+        }
+    }
+
+    public static void subtract(float[] a, float[] b, float[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] - b[i];
+        }
+    }
+
+    public static void subtract(double[] a, double[] b, double[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] - b[i];
+        }
+    }
+
+    public static void multiply(int[] a, int[] b, int[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    public static void multiply(float[] a, float[] b, float[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    public static void multiply(double[] a, double[] b, double[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    public static void xor(byte[] a, byte[] b, byte[] result) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = (byte) (a[i] ^ b[i]);
+        }
+    }
+
+    /**
+     * Computes <code>y[i] = k * x[i] + y[i]</code> for all elements of <code>y</code>.
+     */
+    public static void scaleAdd(float k, float[] x, float[] y) {
+        for (int i = 0; i < y.length; ++i) {
+            y[i] = k * x[i] + y[i];
+        }
+    }
+
+    /**
+     * Computes <code>y[i] = k * x[i] + y[i]</code> for all elements of <code>y</code>.
+     */
+    public static void scaleAdd(double k, double[] x, double[] y) {
+        for (int i = 0; i < y.length; ++i) {
+            y[i] = k * x[i] + y[i];
+        }
+    }
+
+    public static void fill(int[] array, int value) {
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = value;
+        }
+    }
+
+    public static void fill(float[] array, float value) {
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = value;
+        }
+    }
+
+    public static int sum(int[] array) {
+        int sum = 0;
+        for (int i = 0; i < array.length; ++i) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    public static int sum(byte[] array) {
+        int sum = 0;
+        for (int i = 0; i < array.length; ++i) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Sums elements of the array treating them as unsigned bytes.
+     */
+    public static int sumUnsigned(byte[] array) {
+        int sum = 0;
+        for (int i = 0; i < array.length; ++i) {
+            sum += array[i] & 0xFF;
+        }
+        return sum;
+    }
+}
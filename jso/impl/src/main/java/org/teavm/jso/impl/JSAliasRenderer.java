@@ -35,6 +35,7 @@ class JSAliasRenderer implements RendererListener {
     private JSDependencyListener dependencyListener;
     private SourceWriter writer;
     private ClassReaderSource classSource;
+    private boolean lazyMetadata;
 
     public JSAliasRenderer(JSDependencyListener dependencyListener) {
         this.dependencyListener = dependencyListener;
@@ -44,6 +45,7 @@ class JSAliasRenderer implements RendererListener {
     public void begin(RenderingManager context, BuildTarget buildTarget) throws IOException {
         writer = context.getWriter();
         classSource = context.getClassSource();
+        lazyMetadata = context.isLazyMetadata();
     }
 
     @Override
@@ -66,6 +68,10 @@ class JSAliasRenderer implements RendererListener {
                     continue;
                 }
                 if (first) {
+                    if (lazyMetadata) {
+                        writer.append("$rt_materializeClass(").appendClass(entry.getKey()).append(");")
+                                .softNewLine();
+                    }
                     writer.append("c").ws().append("=").ws().appendClass(entry.getKey()).append(".prototype;")
                             .softNewLine();
                     first = false;
@@ -56,18 +56,12 @@ public final class Platform {
 
     @DelegateTo("isAssignableLowLevel")
     public static boolean isAssignable(PlatformClass from, PlatformClass to) {
-        if (from == to) {
-            return true;
-        }
-        PlatformSequence<PlatformClass> supertypes = from.getMetadata().getSupertypes();
-        for (int i = 0; i < supertypes.getLength(); ++i) {
-            if (isAssignable(supertypes.get(i), to)) {
-                return true;
-            }
-        }
-        return false;
+        return from == to || isAssignableImpl(from, to);
     }
 
+    @JSBody(params = { "from", "to" }, script = "return $rt_isAssignable(from, to);")
+    private static native boolean isAssignableImpl(PlatformClass from, PlatformClass to);
+
     @SuppressWarnings("unused")
     private static boolean isAssignableLowLevel(RuntimeClass from, RuntimeClass to) {
         return to.isSupertypeOf.apply(from);
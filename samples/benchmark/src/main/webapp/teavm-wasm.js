@@ -62,7 +62,11 @@ var Benchmark = function() {
                     currentTimeMillis: currentTimeMillis,
                     isNaN: isNaN,
                     isFinite: isFinite,
+                    isInfinite: function(v) { return !isFinite(v) && !isNaN(v); },
                     getNaN: function() { return NaN; },
+                    copySign: function(magnitude, sign) {
+                        return (sign < 0 || 1 / sign < 0 ? -1 : 1) * Math.abs(magnitude);
+                    },
                     putchar: function(code) { putchar(benchmark, code); }
                 },
                 benchmark: {
@@ -86,4 +86,27 @@ public class DoubleTest {
         assertEquals("0x0.8p-1022", Double.toHexString(0x0.8p-1022));
         assertEquals("0x0.001p-1022", Double.toHexString(0x0.001p-1022));
     }
+
+    @Test
+    public void nanAndInfinityDetected() {
+        assertTrue(Double.isNaN(Double.NaN));
+        assertTrue(Double.isNaN(0.0 / 0.0));
+        assertFalse(Double.isNaN(Double.POSITIVE_INFINITY));
+        assertFalse(Double.isNaN(-1.0));
+        assertTrue(Double.isInfinite(Double.NEGATIVE_INFINITY));
+        assertFalse(Double.isInfinite(Double.NaN));
+        assertFalse(Double.isInfinite(Double.MAX_VALUE));
+    }
+
+    @Test
+    public void bitsRoundTrip() {
+        assertEquals(0x7FF8000000000000L, Double.doubleToLongBits(Double.NaN));
+        assertEquals(0x7FF8000000000000L, Double.doubleToLongBits(Double.longBitsToDouble(0x7FF8000000000000L | 1)));
+        assertEquals(0x8000000000000000L, Double.doubleToLongBits(-0.0));
+        for (int i = 0; i < 2000; ++i) {
+            long bits = i * 0x9E3779B97F4A7C15L;
+            double value = Double.longBitsToDouble(bits);
+            assertEquals(Double.isNaN(value) ? 0x7FF8000000000000L : bits, Double.doubleToLongBits(value));
+        }
+    }
 }
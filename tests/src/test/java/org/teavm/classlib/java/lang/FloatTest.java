@@ -85,4 +85,27 @@ public class FloatTest {
         assertEquals("0x1.0p-126", Float.toHexString((float)Math.pow(2, -126)));
         assertEquals("0x0.001p-126", Float.toHexString(0x0.001p-126f));
     }
+
+    @Test
+    public void nanAndInfinityDetected() {
+        assertTrue(Float.isNaN(Float.NaN));
+        assertTrue(Float.isNaN(0f / 0f));
+        assertFalse(Float.isNaN(Float.POSITIVE_INFINITY));
+        assertFalse(Float.isNaN(-1f));
+        assertTrue(Float.isInfinite(Float.NEGATIVE_INFINITY));
+        assertFalse(Float.isInfinite(Float.NaN));
+        assertFalse(Float.isInfinite(Float.MAX_VALUE));
+    }
+
+    @Test
+    public void bitsRoundTrip() {
+        assertEquals(0x7FC00000, Float.floatToIntBits(Float.NaN));
+        assertEquals(0x7FC00000, Float.floatToIntBits(Float.intBitsToFloat(0x7FC00000 | 1)));
+        assertEquals(0x80000000, Float.floatToIntBits(-0f));
+        for (int i = 0; i < 2000; ++i) {
+            int bits = i * 0x21F0AA;
+            float value = Float.intBitsToFloat(bits);
+            assertEquals(Float.isNaN(value) ? 0x7FC00000 : bits, Float.floatToIntBits(value));
+        }
+    }
 }
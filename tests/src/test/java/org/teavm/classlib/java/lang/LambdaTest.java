@@ -2,7 +2,12 @@ package org.teavm.classlib.java.lang;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.teavm.junit.TeaVMTestRunner;
@@ -32,6 +37,33 @@ public class LambdaTest {
         assertArrayEquals(new int[] { 1, 2, 3 }, array);
     }
 
+    @Test
+    public void methodReferenceResultBoxed() {
+        Supplier<Integer> supplier = "foo"::length;
+        assertEquals(Integer.valueOf(3), supplier.get());
+    }
+
+    @Test
+    public void methodReferenceResultDiscarded() {
+        List<String> list = new ArrayList<>();
+        Consumer<String> consumer = list::add;
+        consumer.accept("foo");
+        assertEquals(1, list.size());
+    }
+
+    @Test
+    public void exceptionCaughtAfterLambda() {
+        try {
+            Runnable runnable = () -> {
+                throw new IllegalStateException();
+            };
+            runnable.run();
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // ok
+        }
+    }
+
     static <T> T[] map(T[] array, Function<T> f) {
         @SuppressWarnings("unchecked")
         T[] result = (T[]) Array.newInstance(array.getClass().getComponentType(), array.length);
@@ -61,4 +61,91 @@ public class MathTest {
         assertEquals(-1, Math.round(-1.3));
         assertEquals(-2, Math.round(-1.8));
     }
+
+    @Test
+    public void copySignWorks() {
+        assertEquals(3.0, Math.copySign(3.0, 0.0), 1E-14);
+        assertEquals(-3.0, Math.copySign(3.0, -0.0), 1E-14);
+        assertEquals(-3.0, Math.copySign(-3.0, -5.0), 1E-14);
+        assertEquals(3.0, Math.copySign(-3.0, 5.0), 1E-14);
+        assertEquals(Double.NEGATIVE_INFINITY, 1 / Math.copySign(0.0, Double.NEGATIVE_INFINITY), 1E-14);
+        assertEquals(-2f, Math.copySign(2f, -1f), 1E-7f);
+    }
+
+    @Test
+    public void minMaxWork() {
+        assertEquals(-1.5, Math.min(-1.5, 2.0), 1E-14);
+        assertEquals(2.0, Math.max(-1.5, 2.0), 1E-14);
+        assertTrue(Double.isNaN(Math.min(Double.NaN, 1.0)));
+        assertTrue(Double.isNaN(Math.max(1.0, Double.NaN)));
+        assertEquals(Double.NEGATIVE_INFINITY, 1 / Math.min(0.0, -0.0), 1E-14);
+        assertEquals(Double.POSITIVE_INFINITY, 1 / Math.max(-0.0, 0.0), 1E-14);
+        assertEquals(1f, Math.max(1f, -3f), 1E-7f);
+    }
+
+    @Test
+    public void absWorks() {
+        assertEquals(2.5, Math.abs(-2.5), 1E-14);
+        assertEquals(2.5f, Math.abs(2.5f), 1E-7f);
+        assertEquals(Double.POSITIVE_INFINITY, 1 / Math.abs(-0.0), 1E-14);
+        assertTrue(Double.isNaN(Math.abs(Double.NaN)));
+    }
+
+    @Test
+    public void floorCeilWork() {
+        assertEquals(2.0, Math.floor(2.5), 1E-14);
+        assertEquals(-3.0, Math.floor(-2.5), 1E-14);
+        assertEquals(3.0, Math.ceil(2.5), 1E-14);
+        assertEquals(-2.0, Math.ceil(-2.5), 1E-14);
+        assertEquals(Double.NEGATIVE_INFINITY, 1 / Math.floor(-0.0), 1E-14);
+        assertEquals(Double.NEGATIVE_INFINITY, 1 / Math.ceil(-0.5), 1E-14);
+        assertEquals(Double.POSITIVE_INFINITY, Math.floor(Double.POSITIVE_INFINITY), 1E-14);
+        assertTrue(Double.isNaN(Math.floor(Double.NaN)));
+        assertTrue(Double.isNaN(Math.ceil(Double.NaN)));
+    }
+
+    @Test
+    public void sqrtWorks() {
+        assertEquals(1.5, Math.sqrt(2.25), 1E-14);
+        assertEquals(Double.POSITIVE_INFINITY, Math.sqrt(Double.POSITIVE_INFINITY), 1E-14);
+        assertEquals(Double.NEGATIVE_INFINITY, 1 / Math.sqrt(-0.0), 1E-14);
+        assertTrue(Double.isNaN(Math.sqrt(-1)));
+        assertTrue(Double.isNaN(Math.sqrt(Double.NaN)));
+    }
+
+    @Test
+    public void floatMinMaxWork() {
+        assertEquals(-1f, Math.min(-1f, 2f), 1E-7f);
+        assertEquals(2f, Math.max(-1f, 2f), 1E-7f);
+        assertTrue(Float.isNaN(Math.min(Float.NaN, 1f)));
+        assertTrue(Float.isNaN(Math.max(1f, Float.NaN)));
+        assertEquals(Float.NEGATIVE_INFINITY, 1 / Math.min(0f, -0f), 1E-7f);
+        assertEquals(Float.POSITIVE_INFINITY, 1 / Math.max(-0f, 0f), 1E-7f);
+    }
+
+    @Test
+    public void functionsAgreeWithDefinitions() {
+        for (int i = -2000; i <= 2000; ++i) {
+            double x = i * 0.37 + 0.125;
+            double y = 500 - i * 0.73;
+
+            double floor = Math.floor(x);
+            double ceil = Math.ceil(x);
+            assertEquals(floor, (double) (long) floor, 0);
+            assertEquals(ceil, (double) (long) ceil, 0);
+            assertTrue(floor <= x && x < floor + 1);
+            assertTrue(ceil - 1 < x && x <= ceil);
+
+            double length = Math.sqrt(x * x + y * y);
+            assertEquals(x * x + y * y, length * length, (x * x + y * y) * 1E-12);
+
+            double clamped = Math.max(-50, Math.min(50, x));
+            assertEquals(x < -50 ? -50 : x > 50 ? 50 : x, clamped, 0);
+            assertEquals(x < 0 ? -x : x, Math.abs(x), 0);
+            assertEquals((float) (y < 0 ? -y : y), Math.abs((float) y), 0);
+            if (y != 0) {
+                assertEquals(y < 0 ? -Math.abs(x) : Math.abs(x), Math.copySign(x, y), 0);
+            }
+        }
+    }
 }
@@ -285,4 +285,51 @@ public class StringTest {
     public void internsConstants() {
         assertSame("abc", ("a" + "bc").intern());
     }
+
+    @Test
+    public void splitsByLiteral() {
+        assertArrayEquals(new String[] { "a", "b", "", "c" }, "a,b,,c,,".split(","));
+        assertArrayEquals(new String[] { "", "a", "b" }, ",a,b".split(","));
+        assertArrayEquals(new String[] { "a", "b" }, "a::b".split("::"));
+        assertArrayEquals(new String[] { "a", "b", "c" }, "a|b|c".split("\\|"));
+        assertArrayEquals(new String[] { "abc" }, "abc".split(";"));
+        assertArrayEquals(new String[] { "" }, "".split(","));
+        assertArrayEquals(new String[0], ",,".split(","));
+    }
+
+    @Test
+    public void splitsByLiteralWithLimit() {
+        assertArrayEquals(new String[] { "a", "b,c,," }, "a,b,c,,".split(",", 2));
+        assertArrayEquals(new String[] { "a", "b", "c", "", "" }, "a,b,c,,".split(",", -1));
+    }
+
+    @Test
+    public void splitsByRegex() {
+        assertArrayEquals(new String[] { "a", "b", "c" }, "a1b22c".split("[0-9]+"));
+        assertArrayEquals(new String[] { "a", "b" }, "a.b".split("\\."));
+        assertArrayEquals(new String[] { "a", "b" }, "a b".split("\\s"));
+    }
+
+    @Test
+    public void replacesLiteral() {
+        assertEquals("a-b-c", "a.b.c".replaceAll("\\.", "-"));
+        assertEquals("a-b.c", "a.b.c".replaceFirst("\\.", "-"));
+        assertEquals("x::y::z", "x,y,z".replaceAll(",", "::"));
+        assertEquals("xyz", "xyz".replaceAll(",", "::"));
+    }
+
+    @Test
+    public void replacesRegex() {
+        assertEquals("a#b#", "a12b3".replaceAll("[0-9]+", "#"));
+        assertEquals("[a].b", "a.b".replaceFirst("(a)", "[$1]"));
+        assertEquals("a$b", "a.b".replaceAll("\\.", "\\$"));
+    }
+
+    @Test
+    public void matchesRepeatedly() {
+        for (int i = 0; i < 40; ++i) {
+            assertTrue(("a" + i).matches("a[0-9]+"));
+            assertFalse(("b" + i).matches("a" + i));
+        }
+    }
 }
@@ -17,6 +17,7 @@ package org.teavm.classlib.java.util;
 
 import static org.junit.Assert.*;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -36,6 +37,183 @@ public class ArraysTest {
         assertEquals(Integer.valueOf(7), array[5]);
     }
 
+    @Test
+    public void largeIntArraySorted() {
+        int[] array = new int[1000];
+        int seed = 12345;
+        for (int i = 0; i < array.length; ++i) {
+            seed = seed * 1103515245 + 12345;
+            array[i] = (seed >>> 8) % (i % 2 == 0 ? 50 : 100000);
+        }
+        Arrays.sort(array);
+        for (int i = 1; i < array.length; ++i) {
+            assertTrue(array[i - 1] <= array[i]);
+        }
+    }
+
+    @Test
+    public void arrayRangeSorted() {
+        int[] array = new int[200];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = array.length - i;
+        }
+        Arrays.sort(array, 50, 150);
+        assertEquals(200, array[0]);
+        assertEquals(151, array[49]);
+        for (int i = 50; i < 150; ++i) {
+            assertEquals(51 + i - 50, array[i]);
+        }
+        assertEquals(50, array[150]);
+        assertEquals(1, array[199]);
+    }
+
+    @Test
+    public void doubleArraySorted() {
+        double[] array = { 3, Double.NaN, 0.0, -1, -0.0, Double.NEGATIVE_INFINITY, 0.0, -0.0 };
+        Arrays.sort(array);
+        assertEquals(Double.NEGATIVE_INFINITY, array[0], 0);
+        assertEquals(-1, array[1], 0);
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(array[2]));
+        assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(array[3]));
+        assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(array[4]));
+        assertEquals(Double.doubleToLongBits(0.0), Double.doubleToLongBits(array[5]));
+        assertEquals(3, array[6], 0);
+        assertTrue(Double.isNaN(array[7]));
+    }
+
+    @Test
+    public void objectSortIsStable() {
+        String[] array = new String[300];
+        for (int i = 0; i < array.length; ++i) {
+            int key = i % 10 == 0 ? (i * 7) % 5 : i / 60;
+            array[i] = key + ":" + i;
+        }
+        Arrays.sort(array, (a, b) -> Integer.compare(key(a), key(b)));
+        for (int i = 1; i < array.length; ++i) {
+            int cmp = Integer.compare(key(array[i - 1]), key(array[i]));
+            assertTrue(cmp < 0 || cmp == 0 && index(array[i - 1]) < index(array[i]));
+        }
+    }
+
+    @Test
+    public void patternedIntArraysSorted() {
+        int[] array = new int[10000];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = array.length - i - 1;
+        }
+        Arrays.sort(array);
+        assertIdentity(array);
+
+        Arrays.sort(array);
+        assertIdentity(array);
+
+        int seed = 12345;
+        for (int i = 0; i < array.length / 100; ++i) {
+            seed = nextSeed(seed);
+            int j = (seed >>> 1) % array.length;
+            seed = nextSeed(seed);
+            int k = (seed >>> 1) % array.length;
+            int tmp = array[j];
+            array[j] = array[k];
+            array[k] = tmp;
+        }
+        Arrays.sort(array);
+        assertIdentity(array);
+
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = i < array.length / 2 ? i : array.length - i - 1;
+        }
+        Arrays.sort(array);
+        for (int i = 0; i < array.length; ++i) {
+            assertEquals(i / 2, array[i]);
+        }
+    }
+
+    @Test
+    public void randomIntArraySorted() {
+        int[] array = new int[10000];
+        int[] counts = new int[64];
+        int seed = 12345;
+        for (int i = 0; i < array.length; ++i) {
+            seed = nextSeed(seed);
+            array[i] = seed >> 8;
+            counts[array[i] & 63]++;
+        }
+        Arrays.sort(array);
+        for (int i = 1; i < array.length; ++i) {
+            assertTrue(array[i - 1] <= array[i]);
+        }
+        for (int value : array) {
+            counts[value & 63]--;
+        }
+        for (int count : counts) {
+            assertEquals(0, count);
+        }
+    }
+
+    @Test
+    public void largeDoubleArraySorted() {
+        double[] array = new double[5000];
+        int seed = 12345;
+        for (int i = 0; i < array.length; ++i) {
+            seed = nextSeed(seed);
+            switch (i % 50) {
+                case 0:
+                    array[i] = Double.NaN;
+                    break;
+                case 1:
+                    array[i] = -0.0;
+                    break;
+                case 2:
+                    array[i] = 0.0;
+                    break;
+                default:
+                    array[i] = (seed >> 8) / 7.0;
+                    break;
+            }
+        }
+        Arrays.sort(array);
+        for (int i = 1; i < array.length; ++i) {
+            assertTrue(Double.compare(array[i - 1], array[i]) <= 0);
+        }
+        assertTrue(Double.isNaN(array[array.length - 100]));
+        assertFalse(Double.isNaN(array[array.length - 101]));
+    }
+
+    @Test
+    public void objectArrayWithRunsSortedByComparator() {
+        Integer[] array = new Integer[10000];
+        for (int i = 0; i < array.length; ++i) {
+            int run = i / 1000;
+            int offset = i % 1000;
+            array[i] = run % 2 == 0 ? offset * 10 + run : (1000 - offset) * 10 + run;
+        }
+        Arrays.sort(array, Comparator.reverseOrder());
+        for (int i = 1; i < array.length; ++i) {
+            assertTrue(array[i - 1] >= array[i]);
+        }
+        assertEquals(Integer.valueOf(10009), array[0]);
+        assertEquals(Integer.valueOf(0), array[array.length - 1]);
+    }
+
+    private static void assertIdentity(int[] array) {
+        for (int i = 0; i < array.length; ++i) {
+            assertEquals(i, array[i]);
+        }
+    }
+
+    private static int nextSeed(int seed) {
+        return seed * 1103515245 + 12345;
+    }
+
+    private static int key(String s) {
+        return Integer.parseInt(s.substring(0, s.indexOf(':')));
+    }
+
+    private static int index(String s) {
+        return Integer.parseInt(s.substring(s.indexOf(':') + 1));
+    }
+
     @Test
     public void binarySearchWorks() {
         Integer[] array = { 2, 4, 6, 8, 10, 12, 14, 16 };
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class ArrayBlockingQueueTest {
+    @Test
+    public void boundedRingBuffer() {
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(3);
+        assertTrue(queue.offer(1));
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(3));
+        assertFalse(queue.offer(4));
+        assertEquals(0, queue.remainingCapacity());
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertTrue(queue.offer(4));
+        assertTrue(queue.remove(3));
+        assertEquals("[2, 4]", queue.toString());
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals("[2, 4]", drained.toString());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void producerAndConsumerSuspend() throws InterruptedException {
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(2);
+        List<Integer> consumed = new ArrayList<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                while (true) {
+                    int value = queue.take();
+                    if (value < 0) {
+                        break;
+                    }
+                    consumed.add(value);
+                }
+            } catch (InterruptedException e) {
+                // stop consuming
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < 20; ++i) {
+            queue.put(i);
+        }
+        queue.put(-1);
+        consumer.join(1000);
+        assertEquals(20, consumed.size());
+        for (int i = 0; i < 20; ++i) {
+            assertEquals(Integer.valueOf(i), consumed.get(i));
+        }
+    }
+
+    @Test
+    public void timedPollExpires() throws InterruptedException {
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(1);
+        long start = System.currentTimeMillis();
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        queue.put(1);
+        assertFalse(queue.offer(2, 10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void timedPollIsWokenByProducer() throws InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(1);
+        new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                // proceed anyway
+            }
+            queue.offer("done");
+        }).start();
+        assertEquals("done", queue.poll(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void handsOffManyValues() throws InterruptedException {
+        BlockingQueue<Integer> queue = new ArrayBlockingQueue<>(16);
+        new Thread(() -> {
+            try {
+                for (int i = 0; i < 10000; ++i) {
+                    queue.put(i);
+                }
+                queue.put(-1);
+            } catch (InterruptedException e) {
+                // stop producing
+            }
+        }).start();
+        int expected = 0;
+        long sum = 0;
+        while (true) {
+            int value = queue.take();
+            if (value < 0) {
+                break;
+            }
+            assertEquals(expected++, value);
+            sum += value;
+        }
+        assertEquals(10000, expected);
+        assertEquals(49995000, sum);
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class CompletableFutureTest {
+    @Test
+    public void runsDependentsOnCompletion() {
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        List<String> log = new ArrayList<>();
+        CompletableFuture<String> result = source.thenApply(x -> x * 2)
+                .thenCombine(CompletableFuture.completedFuture(5), (a, b) -> a + "+" + b);
+        source.thenAccept(x -> log.add("accept " + x));
+        source.thenRun(() -> log.add("run"));
+        assertFalse(result.isDone());
+        source.complete(4);
+        assertEquals("8+5", result.join());
+        assertEquals(2, log.size());
+        assertTrue(log.contains("accept 4"));
+        assertTrue(log.contains("run"));
+    }
+
+    @Test
+    public void propagatesExceptions() throws InterruptedException {
+        CompletableFuture<Integer> source = new CompletableFuture<>();
+        CompletableFuture<Integer> dependent = source.thenApply(x -> x + 1);
+        CompletableFuture<Integer> recovered = dependent.exceptionally(e -> -1);
+        CompletableFuture<String> handled = source.handle((v, e) -> e.getMessage());
+        source.completeExceptionally(new IllegalStateException("failure"));
+        assertEquals(Integer.valueOf(-1), recovered.join());
+        assertEquals("failure", handled.join());
+        assertTrue(dependent.isCompletedExceptionally());
+        try {
+            dependent.join();
+            fail("Exception expected");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            dependent.get();
+            fail("Exception expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void composesAndCombinesMany() {
+        CompletableFuture<Integer> a = new CompletableFuture<>();
+        CompletableFuture<Integer> b = new CompletableFuture<>();
+        CompletableFuture<Integer> either = a.applyToEither(b, x -> x * 10);
+        CompletableFuture<Void> all = CompletableFuture.allOf(a, b);
+        CompletableFuture<Object> any = CompletableFuture.anyOf(a, b);
+        b.complete(2);
+        assertEquals(Integer.valueOf(20), either.join());
+        assertEquals(2, any.join());
+        assertFalse(all.isDone());
+        a.complete(3);
+        assertTrue(all.isDone());
+        assertEquals(Integer.valueOf(5), a.thenCompose(x -> b.thenApply(y -> x + y)).join());
+    }
+
+    @Test
+    public void waitsForAsyncSupplier() throws Exception {
+        CompletableFuture<Integer> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                // complete anyway
+            }
+            return 42;
+        });
+        assertEquals(Integer.valueOf(43), future.thenApplyAsync(x -> x + 1).get());
+    }
+
+    @Test
+    public void cancels() {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        CompletableFuture<Integer> dependent = future.thenApply(x -> x);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertFalse(future.complete(1));
+        assertTrue(dependent.isCompletedExceptionally());
+    }
+}
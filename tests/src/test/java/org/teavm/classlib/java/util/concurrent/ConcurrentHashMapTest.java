@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import static org.junit.Assert.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class ConcurrentHashMapTest {
+    @Test
+    public void putsAndGets() {
+        Map<String, Integer> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < 1000; ++i) {
+            map.put("key" + i, i);
+        }
+        assertEquals(1000, map.size());
+        assertEquals(Integer.valueOf(123), map.get("key123"));
+        assertNull(map.get("missing"));
+        assertEquals(Integer.valueOf(5), map.put("key5", 50));
+        assertEquals(Integer.valueOf(50), map.remove("key5"));
+        assertFalse(map.containsKey("key5"));
+        assertTrue(map.containsValue(999));
+        assertEquals(new HashMap<>(map), map);
+    }
+
+    @Test
+    public void atomicOperations() {
+        ConcurrentMap<String, Integer> map = new ConcurrentHashMap<>();
+        assertNull(map.putIfAbsent("a", 1));
+        assertEquals(Integer.valueOf(1), map.putIfAbsent("a", 2));
+        assertFalse(map.replace("a", 2, 3));
+        assertTrue(map.replace("a", 1, 3));
+        assertEquals(Integer.valueOf(3), map.replace("a", 4));
+        assertFalse(map.remove("a", 3));
+        assertTrue(map.remove("a", 4));
+        assertTrue(map.isEmpty());
+        assertEquals(Integer.valueOf(7), map.getOrDefault("b", 7));
+        assertEquals(Integer.valueOf(2), map.merge("c", 2, Integer::sum));
+        assertEquals(Integer.valueOf(5), map.merge("c", 3, Integer::sum));
+    }
+
+    @Test
+    public void rejectsNulls() {
+        Map<String, String> map = new ConcurrentHashMap<>();
+        try {
+            map.put(null, "a");
+            fail("NPE expected");
+        } catch (NullPointerException e) {
+            // ok
+        }
+        try {
+            map.put("a", null);
+            fail("NPE expected");
+        } catch (NullPointerException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void iteratesWhileModified() {
+        Map<Integer, Integer> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < 100; ++i) {
+            map.put(i, i);
+        }
+        Set<Integer> seen = new HashSet<>();
+        Iterator<Integer> iter = map.keySet().iterator();
+        while (iter.hasNext()) {
+            int key = iter.next();
+            assertTrue("Key seen twice: " + key, seen.add(key));
+            if (key % 2 == 0) {
+                iter.remove();
+            }
+            map.put(key + 1000, key);
+        }
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(seen.contains(i));
+            assertEquals(i % 2 != 0, map.containsKey(i));
+        }
+    }
+
+    @Test
+    public void entrySetWritesThrough() {
+        Map<String, Integer> map = new ConcurrentHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            entry.setValue(entry.getValue() * 10);
+        }
+        assertEquals(Integer.valueOf(10), map.get("a"));
+        assertEquals(Integer.valueOf(20), map.get("b"));
+    }
+
+    @Test
+    public void keySetView() {
+        Set<String> set = ConcurrentHashMap.newKeySet();
+        assertTrue(set.add("a"));
+        assertFalse(set.add("a"));
+        assertTrue(set.add("b"));
+        assertEquals(2, set.size());
+        assertTrue(set.remove("a"));
+        assertFalse(set.contains("a"));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Map<Integer, Integer> plain = new HashMap<>();
+        Map<Integer, Integer> concurrent = new ConcurrentHashMap<>();
+        assertEquals(fill(plain), fill(concurrent));
+        assertEquals(5000, concurrent.size());
+        assertEquals(plain, concurrent);
+        assertNull(concurrent.get(0));
+        assertEquals(Integer.valueOf(9999), concurrent.get(9999 * 7));
+    }
+
+    private static int fill(Map<Integer, Integer> map) {
+        for (int i = 0; i < 10000; ++i) {
+            map.put(i * 7, i);
+        }
+        int result = 0;
+        for (int i = 0; i < 70000; i += 3) {
+            Integer value = map.get(i);
+            if (value != null) {
+                result += value;
+            }
+        }
+        for (int i = 0; i < 10000; i += 2) {
+            map.remove(i * 7);
+        }
+        return result;
+    }
+}
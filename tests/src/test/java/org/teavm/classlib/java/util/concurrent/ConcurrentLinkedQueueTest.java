@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import static org.junit.Assert.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class ConcurrentLinkedQueueTest {
+    @Test
+    public void fifoOrder() {
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>(Arrays.asList(1, 2, 3));
+        queue.offer(4);
+        assertEquals(4, queue.size());
+        assertEquals(Integer.valueOf(1), queue.peek());
+        assertEquals(Integer.valueOf(1), queue.poll());
+        assertEquals(Integer.valueOf(2), queue.poll());
+        assertTrue(queue.remove(4));
+        assertEquals(Integer.valueOf(3), queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+        queue.offer(5);
+        assertEquals("[5]", queue.toString());
+    }
+
+    @Test
+    public void iteratorSkipsRemovedElements() {
+        Queue<Integer> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 6; ++i) {
+            queue.offer(i);
+        }
+        Iterator<Integer> iter = queue.iterator();
+        assertEquals(Integer.valueOf(0), iter.next());
+        queue.poll();
+        queue.remove(3);
+        queue.offer(6);
+        StringBuilder sb = new StringBuilder();
+        while (iter.hasNext()) {
+            sb.append(iter.next());
+        }
+        assertEquals("12456", sb.toString());
+    }
+
+    @Test
+    public void matchesArrayDeque() {
+        Queue<Integer> plain = new ArrayDeque<>();
+        Queue<Integer> concurrent = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 10000; ++i) {
+            plain.offer(i);
+            concurrent.offer(i);
+            if ((i & 1) != 0) {
+                assertEquals(plain.poll(), concurrent.poll());
+            }
+        }
+        assertEquals(5000, concurrent.size());
+        while (!plain.isEmpty()) {
+            assertEquals(plain.poll(), concurrent.poll());
+        }
+        assertTrue(concurrent.isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class ExecutorServiceTest {
+    @Test
+    public void runsSubmittedTasks() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicInteger counter = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            futures.add(executor.submit(() -> {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    // count anyway
+                }
+                counter.incrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        assertEquals(10, counter.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void invokesAll() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 1; i <= 5; ++i) {
+            int n = i;
+            tasks.add(() -> n * n);
+        }
+        int sum = 0;
+        for (Future<Integer> future : executor.invokeAll(tasks)) {
+            assertTrue(future.isDone());
+            sum += future.get();
+        }
+        assertEquals(55, sum);
+        int any = executor.invokeAny(tasks);
+        assertTrue(any >= 1 && any <= 25);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void reportsTaskFailure() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> future = executor.submit(() -> {
+            throw new IllegalArgumentException("bad");
+        });
+        try {
+            future.get();
+            fail("Exception expected");
+        } catch (ExecutionException e) {
+            assertEquals("bad", e.getCause().getMessage());
+        }
+        executor.shutdown();
+        try {
+            executor.execute(() -> { });
+            fail("Exception expected");
+        } catch (RejectedExecutionException e) {
+            // ok
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.concurrent.atomic;
+
+import static org.junit.Assert.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class AtomicIntegerTest {
+    @Test
+    public void countsLikePlainInt() {
+        AtomicInteger counter = new AtomicInteger();
+        int plain = 0;
+        for (int i = 0; i < 100000; ++i) {
+            if ((i & 3) != 0) {
+                assertEquals(++plain, counter.incrementAndGet());
+            } else {
+                plain += i & 15;
+                assertEquals(plain, counter.addAndGet(i & 15));
+            }
+        }
+        assertEquals(plain, counter.get());
+        assertEquals(225000, counter.get());
+    }
+
+    @Test
+    public void updatesAtomically() {
+        AtomicInteger value = new AtomicInteger(5);
+        assertEquals(5, value.getAndIncrement());
+        assertEquals(6, value.getAndSet(10));
+        assertFalse(value.compareAndSet(6, 7));
+        assertTrue(value.compareAndSet(10, 7));
+        assertEquals(14, value.updateAndGet(x -> x * 2));
+        assertEquals(14, value.getAndAccumulate(3, Math::max));
+        assertEquals(17, value.accumulateAndGet(3, Integer::sum));
+        assertEquals(16, value.decrementAndGet());
+        assertEquals("16", value.toString());
+        assertEquals(16L, value.longValue());
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class CollectorsTest {
+    private static final List<String> WORDS = Arrays.asList("the", "quick", "brown", "fox", "jumps", "over", "the",
+            "lazy", "dog");
+
+    @Test
+    public void joins() {
+        assertEquals("[the, quick, brown]", WORDS.stream().limit(3).collect(Collectors.joining(", ", "[", "]")));
+        assertEquals("[]", Stream.<String>empty().collect(Collectors.joining(", ", "[", "]")));
+        assertEquals(",,a", Stream.of("", "", "a").collect(Collectors.joining(",")));
+        assertEquals("thequick", WORDS.stream().limit(2).collect(Collectors.joining()));
+    }
+
+    @Test
+    public void collectsToCollections() {
+        assertEquals(new HashSet<>(Arrays.asList("the", "fox", "dog")), WORDS.stream().filter(w -> w.length() == 3)
+                .collect(Collectors.toSet()));
+        assertEquals(Arrays.asList("over", "lazy"), WORDS.stream().filter(w -> w.length() == 4)
+                .collect(Collectors.toCollection(LinkedList::new)));
+    }
+
+    @Test
+    public void groups() {
+        Map<Integer, Long> byLength = WORDS.stream().collect(Collectors.groupingBy(String::length,
+                TreeMap::new, Collectors.counting()));
+        assertEquals("{3=4, 4=2, 5=3}", byLength.toString());
+        Map<Integer, List<String>> lists = WORDS.stream().collect(Collectors.groupingBy(String::length));
+        assertEquals(Arrays.asList("over", "lazy"), lists.get(4));
+    }
+
+    @Test
+    public void largeInputsMatchLoops() {
+        List<String> words = new ArrayList<>();
+        int seed = 12345;
+        for (int i = 0; i < 10000; ++i) {
+            seed = seed * 1103515245 + 12345;
+            words.add("word" + (seed >>> 1) % 1000 % 100);
+        }
+
+        List<Integer> lengths = new ArrayList<>();
+        Map<String, Long> counts = new HashMap<>();
+        for (String word : words) {
+            if (word.length() > 5) {
+                lengths.add(word.length());
+            }
+            Long count = counts.get(word);
+            counts.put(word, count != null ? count + 1 : 1L);
+        }
+
+        assertEquals(lengths, words.stream().map(String::length).filter(n -> n > 5).collect(Collectors.toList()));
+        assertEquals(counts, words.stream().collect(Collectors.groupingBy(w -> w, Collectors.counting())));
+    }
+
+    @Test
+    public void partitions() {
+        Map<Boolean, List<String>> parts = WORDS.stream().collect(Collectors.partitioningBy(w -> w.contains("o")));
+        assertEquals(Arrays.asList("brown", "fox", "over", "dog"), parts.get(true));
+        assertEquals(5, parts.get(false).size());
+    }
+
+    @Test
+    public void collectsToMap() {
+        Map<String, Integer> map = WORDS.stream().collect(Collectors.toMap(w -> w, String::length, Integer::sum));
+        assertEquals(Integer.valueOf(6), map.get("the"));
+        assertEquals(Integer.valueOf(5), map.get("quick"));
+        try {
+            WORDS.stream().collect(Collectors.toMap(w -> w, String::length));
+            fail("Duplicate key should cause exception");
+        } catch (IllegalStateException e) {
+            // ok
+        }
+    }
+
+    @Test
+    public void summarizes() {
+        assertEquals(Integer.valueOf(35), WORDS.stream().collect(Collectors.summingInt(String::length)));
+        assertEquals(35.0 / 9, WORDS.stream().collect(Collectors.averagingInt(String::length)), 1e-9);
+        assertEquals(Optional.of("brown"), WORDS.stream().collect(Collectors.minBy(String::compareTo)));
+        assertEquals(Integer.valueOf(9), WORDS.stream().collect(Collectors.collectingAndThen(Collectors.toList(),
+                List::size)));
+        assertEquals(new HashSet<>(Arrays.asList(3, 4, 5)), WORDS.stream().collect(Collectors.mapping(
+                String::length, Collectors.toSet())));
+        assertEquals(Optional.of("dog"), WORDS.stream().collect(Collectors.reducing((a, b) -> b)));
+    }
+}
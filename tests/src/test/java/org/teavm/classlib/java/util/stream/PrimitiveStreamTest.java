@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.PrimitiveIterator;
+import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class PrimitiveStreamTest {
+    @Test
+    public void intRangesFused() {
+        assertEquals(112761, IntStream.range(0, 100).filter(i -> i % 3 == 0).map(i -> i * i).sum());
+        assertArrayEquals(new int[] { 5, 6, 7 }, IntStream.rangeClosed(5, 7).toArray());
+        assertArrayEquals(new int[0], IntStream.range(5, 5).toArray());
+        assertEquals(3, IntStream.rangeClosed(Integer.MAX_VALUE - 2, Integer.MAX_VALUE).count());
+        assertEquals(10, IntStream.range(0, 10).count());
+    }
+
+    @Test
+    public void intPipelinesMatchLoops() {
+        int[] numbers = new int[10000];
+        int seed = 12345;
+        for (int i = 0; i < numbers.length; ++i) {
+            seed = seed * 1103515245 + 12345;
+            numbers[i] = (seed >>> 1) % 1000;
+        }
+
+        int sum = 0;
+        for (int n : numbers) {
+            if (n % 3 != 0) {
+                sum += n * n;
+            }
+        }
+        assertEquals(sum, IntStream.of(numbers).filter(n -> n % 3 != 0).map(n -> n * n).sum());
+
+        int count = 0;
+        int last = -1;
+        for (int i = 0; i < 100000 && count < 10000; ++i) {
+            int n = i ^ (i >>> 3);
+            if ((n & 7) == 1) {
+                ++count;
+                last = n;
+            }
+        }
+        assertEquals(count, IntStream.range(0, 100000).map(n -> n ^ (n >>> 3)).filter(n -> (n & 7) == 1)
+                .limit(10000).count());
+        assertEquals(last, IntStream.range(0, 100000).map(n -> n ^ (n >>> 3)).filter(n -> (n & 7) == 1)
+                .skip(9999).findFirst().getAsInt());
+    }
+
+    @Test
+    public void intAggregates() {
+        assertEquals(OptionalInt.of(-4), IntStream.of(3, -4, 8, 0).min());
+        assertEquals(OptionalInt.of(8), IntStream.of(3, -4, 8, 0).max());
+        assertEquals(OptionalInt.empty(), IntStream.empty().max());
+        assertEquals(OptionalDouble.of(1.75), IntStream.of(3, -4, 8, 0).average());
+        assertEquals(OptionalDouble.empty(), IntStream.empty().average());
+        assertEquals(24, IntStream.rangeClosed(1, 4).reduce(1, (a, b) -> a * b));
+    }
+
+    @Test
+    public void intSortsAndRemovesDuplicates() {
+        assertArrayEquals(new int[] { -2, 1, 3, 5 }, IntStream.of(5, 1, 3, 1, -2, 5).distinct().sorted().toArray());
+    }
+
+    @Test
+    public void intConverts() {
+        assertEquals("0,1,2", IntStream.range(0, 3).mapToObj(Integer::toString).collect(Collectors.joining(",")));
+        assertEquals(Arrays.asList(1, 2), IntStream.of(1, 2).boxed().collect(Collectors.toList()));
+        assertEquals(3000000000L, IntStream.of(1000000000, 2000000000).asLongStream().sum());
+        assertEquals(3.0, IntStream.of(1, 4).asDoubleStream().map(Math::sqrt).sum(), 1e-9);
+        assertEquals(6, IntStream.range(0, 3).flatMap(i -> IntStream.range(0, i + 1)).count());
+    }
+
+    @Test
+    public void intIterates() {
+        PrimitiveIterator.OfInt iter = IntStream.iterate(1, i -> i * 3).limit(3).iterator();
+        int sum = 0;
+        while (iter.hasNext()) {
+            sum += iter.nextInt();
+        }
+        assertEquals(13, sum);
+        assertArrayEquals(new int[] { 4, 4 }, IntStream.generate(() -> 4).limit(2).toArray());
+    }
+
+    @Test
+    public void longStreams() {
+        assertEquals(333328333350000L, LongStream.range(0, 100000).map(x -> x * x).sum());
+        assertEquals(5, LongStream.rangeClosed(1, 5).count());
+        assertEquals(10, LongStream.range(-5, 5).count());
+        assertEquals(3, LongStream.range(Long.MIN_VALUE, Long.MIN_VALUE + 3).count());
+        assertEquals(0, LongStream.range(5, -5).count());
+        assertArrayEquals(new long[] { 3, 2, 1 }, LongStream.of(1, 2, 3).map(x -> -x).sorted().map(x -> -x)
+                .toArray());
+        assertEquals(6, LongStream.of(1, 2, 3).mapToInt(x -> (int) x).sum());
+    }
+
+    @Test
+    public void doubleStreams() {
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = 0.1;
+        }
+        assertEquals(100.0, DoubleStream.of(values).sum(), 0);
+        assertEquals(0.1, DoubleStream.of(values).average().getAsDouble(), 0);
+        assertEquals(3, DoubleStream.of(1.5, 0.5, 2.5).filter(x -> x > 1).mapToLong(x -> (long) x).sum());
+        assertEquals(OptionalDouble.of(0.5), DoubleStream.of(1.5, 0.5, 2.5).min());
+        assertTrue(Double.isNaN(DoubleStream.of(1, Double.NaN).max().getAsDouble()));
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.classlib.java.util.stream;
+
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class StreamTest {
+    private static final List<String> WORDS = Arrays.asList("the", "quick", "brown", "fox", "jumps", "over", "the",
+            "lazy", "dog");
+
+    @Test
+    public void filtersAndMaps() {
+        assertEquals(Arrays.asList("QUICK", "BROWN", "JUMPS", "OVER", "LAZY"), WORDS.stream()
+                .filter(w -> w.length() > 3)
+                .map(String::toUpperCase)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void sortsAndRemovesDuplicates() {
+        assertEquals(Arrays.asList("brown", "dog", "fox", "jumps", "lazy", "over", "quick", "the"),
+                WORDS.stream().distinct().sorted().collect(Collectors.toList()));
+        assertEquals(Arrays.asList("quick", "brown", "jumps", "over", "lazy", "the", "fox", "the", "dog"),
+                WORDS.stream().sorted((a, b) -> Integer.compare(b.length(), a.length()))
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void limitsAndSkips() {
+        assertEquals(Arrays.asList("brown", "fox"), WORDS.stream().skip(2).limit(2).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(8, 16, 32), Stream.iterate(1, x -> x * 2).skip(3).limit(3)
+                .collect(Collectors.toList()));
+        assertEquals(0, WORDS.stream().skip(100).count());
+        assertEquals(0, Stream.generate(() -> "a").limit(0).count());
+    }
+
+    @Test
+    public void flatMaps() {
+        assertEquals(Arrays.asList("the", 3, "quick", 5, "brown"), WORDS.stream()
+                .flatMap(w -> Stream.of(w, w.length()))
+                .limit(5)
+                .collect(Collectors.toList()));
+        assertEquals(12, WORDS.stream().flatMapToInt(String::chars).filter(c -> c > 'q').count());
+    }
+
+    @Test
+    public void reduces() {
+        assertEquals("thequickbrownfoxjumpsoverthelazydog", WORDS.stream().reduce("", String::concat));
+        assertEquals(Optional.of("quick"), WORDS.stream().reduce((a, b) -> b.length() > a.length() ? b : a));
+        assertEquals(Optional.empty(), Stream.<String>empty().reduce(String::concat));
+        assertEquals(Optional.of("brown"), WORDS.stream().min(String::compareTo));
+        assertEquals(Optional.of("the"), WORDS.stream().max(String::compareTo));
+        assertEquals(35, (int) WORDS.stream().reduce(0, (sum, w) -> sum + w.length(), Integer::sum));
+    }
+
+    @Test
+    public void matchesAndFinds() {
+        assertTrue(WORDS.stream().anyMatch(w -> w.startsWith("j")));
+        assertFalse(WORDS.stream().allMatch(w -> w.length() == 3));
+        assertTrue(WORDS.stream().noneMatch(String::isEmpty));
+        assertEquals(Optional.of("jumps"), WORDS.stream().filter(w -> w.startsWith("j")).findFirst());
+        assertEquals(Optional.empty(), WORDS.stream().filter(String::isEmpty).findAny());
+        assertTrue(Stream.iterate(0, x -> x + 1).anyMatch(x -> x == 1000));
+    }
+
+    @Test
+    public void evaluatesLazily() {
+        List<String> log = new ArrayList<>();
+        Stream<Integer> stream = Stream.of(1, 2, 3)
+                .peek(x -> log.add("a" + x))
+                .filter(x -> x != 2)
+                .peek(x -> log.add("b" + x));
+        assertTrue(log.isEmpty());
+        assertEquals(Optional.of(1), stream.findFirst());
+        assertEquals(Arrays.asList("a1", "b1"), log);
+    }
+
+    @Test
+    public void iterates() {
+        Iterator<Integer> iter = Stream.iterate(1, x -> x + 1).filter(x -> x % 7 == 0).iterator();
+        assertEquals(Integer.valueOf(7), iter.next());
+        assertEquals(Integer.valueOf(14), iter.next());
+        assertTrue(iter.hasNext());
+        iter = Stream.of(1).iterator();
+        assertEquals(Integer.valueOf(1), iter.next());
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void concatenates() {
+        assertEquals(Arrays.asList(1, 2, 3), Stream.concat(Stream.of(1, 2), Stream.of(3))
+                .collect(Collectors.toList()));
+        assertEquals(5, IntStream.concat(IntStream.range(0, 3), IntStream.generate(() -> 0)).limit(5).count());
+    }
+
+    @Test
+    public void createsFromArraysAndBuilder() {
+        String[] array = { "a", "b", "c", "d" };
+        assertEquals("bc", Arrays.stream(array, 1, 3).collect(Collectors.joining()));
+        assertArrayEquals(new String[] { "b", "c", "d" }, Arrays.stream(array).skip(1).toArray(String[]::new));
+        assertEquals(Arrays.asList(1, 2), Stream.<Integer>builder().add(1).add(2).build()
+                .collect(Collectors.toList()));
+        assertEquals(Collections.emptyList(), Stream.empty().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void runsCloseHandlers() {
+        StringBuilder sb = new StringBuilder();
+        Stream<String> stream = Stream.of("a").onClose(() -> sb.append("1")).onClose(() -> sb.append("2"));
+        try (Stream<String> mapped = stream.map(String::toUpperCase)) {
+            assertEquals(1, mapped.count());
+        }
+        assertEquals("12", sb.toString());
+    }
+}
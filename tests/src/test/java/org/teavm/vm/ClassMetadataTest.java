@@ -0,0 +1,135 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class ClassMetadataTest {
+    private static StringBuilder log = new StringBuilder();
+
+    @Test
+    public void staticMethodCalledBeforeInstantiation() {
+        log.setLength(0);
+        assertEquals(42, WithInitializer.answer());
+        assertEquals(42, WithInitializer.answer());
+        assertEquals("init;", log.toString());
+    }
+
+    @Test
+    public void uninstantiatedClassInspected() {
+        assertEquals(Base.class, Derived.class.getSuperclass());
+        assertTrue(Base.class.isAssignableFrom(Derived.class));
+        assertTrue(Marker.class.isAssignableFrom(Derived.class));
+        assertFalse(Derived.class.isAssignableFrom(Base.class));
+        assertEquals("org.teavm.vm.ClassMetadataTest$Derived", Derived.class.getName());
+        Object object = "foo";
+        assertFalse(object instanceof Base);
+        assertFalse(object instanceof Marker);
+    }
+
+    @Test
+    public void subclassInstantiatedBeforeSuperclass() {
+        log.setLength(0);
+        Base object = new Leaf();
+        String initialized = log.toString();
+        assertEquals(18, initialized.length());
+        assertTrue(initialized.contains("base;"));
+        assertTrue(initialized.contains("derived;"));
+        assertTrue(initialized.contains("leaf;"));
+        assertEquals("leaf", object.name());
+        assertEquals(3, object.depth());
+        assertTrue(object instanceof Marker);
+        assertTrue(object instanceof Derived);
+        assertEquals("base", new Base().name());
+    }
+
+    @Test
+    public void arrayOfUninstantiatedClass() {
+        Object array = new Unused[2];
+        assertSame(Unused.class, array.getClass().getComponentType());
+        assertTrue(array.getClass().isArray());
+        assertTrue(array instanceof Unused[]);
+        assertFalse(array instanceof Base[]);
+        assertEquals(2, ((Unused[]) array).length);
+    }
+
+    static class WithInitializer {
+        static int value;
+
+        static {
+            log.append("init;");
+            value = 42;
+        }
+
+        static int answer() {
+            return value;
+        }
+    }
+
+    interface Marker {
+    }
+
+    static class Base {
+        static {
+            log.append("base;");
+        }
+
+        String name() {
+            return "base";
+        }
+
+        int depth() {
+            return 1;
+        }
+    }
+
+    static class Derived extends Base implements Marker {
+        static {
+            log.append("derived;");
+        }
+
+        @Override
+        int depth() {
+            return super.depth() + 1;
+        }
+    }
+
+    static class Leaf extends Derived {
+        static {
+            log.append("leaf;");
+        }
+
+        @Override
+        String name() {
+            return "leaf";
+        }
+
+        @Override
+        int depth() {
+            return super.depth() + 1;
+        }
+    }
+
+    static class Unused {
+    }
+}
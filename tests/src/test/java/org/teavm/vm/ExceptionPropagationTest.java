@@ -0,0 +1,217 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class ExceptionPropagationTest {
+    @Test
+    public void callsWithoutThrowsComplete() {
+        int result = 0;
+        for (int i = 0; i < 1000; ++i) {
+            result += chain(i, 20, -1);
+        }
+        assertEquals(expectedSum(1000), result);
+    }
+
+    @Test
+    public void exceptionUnwindsFramesWithoutHandlers() {
+        for (int depth = 0; depth <= 20; ++depth) {
+            try {
+                chain(1, 20, depth);
+                fail("Exception expected at depth " + depth);
+            } catch (IllegalStateException e) {
+                assertEquals("depth " + depth, e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void handlerInIntermediateFrameCatches() {
+        assertEquals(chain(5, 10, -1), catchingChain(5, 10, -1));
+        int outerFrames = chain(5, 10, -1) - chain(5 >>> 5, 5, -1);
+        assertEquals(outerFrames - 1, catchingChain(5, 10, 3));
+    }
+
+    @Test
+    public void handlerSelectedByExceptionType() {
+        assertEquals("state", classify(new IllegalStateException()));
+        assertEquals("argument", classify(new IllegalArgumentException()));
+        assertEquals("runtime", classify(new UnsupportedOperationException()));
+        assertEquals("none", classify(null));
+    }
+
+    @Test
+    public void exceptionWithoutMatchingHandlerPropagates() {
+        try {
+            catchOnlyArgument(new IllegalStateException("outer"));
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("outer", e.getMessage());
+        }
+    }
+
+    @Test
+    public void valuesSurviveCallsInTryBlocks() {
+        List<String> log = new ArrayList<>();
+        String prefix = "item";
+        int sum = 0;
+        for (int i = 0; i < 200; ++i) {
+            try {
+                int[] garbage = new int[64];
+                garbage[0] = i;
+                sum += chain(garbage[0], 5, i % 10 == 0 ? 2 : -1);
+            } catch (IllegalStateException e) {
+                log.add(prefix + i);
+            }
+        }
+        assertEquals(20, log.size());
+        assertEquals("item0", log.get(0));
+        assertEquals("item190", log.get(19));
+        int expected = 0;
+        for (int i = 0; i < 200; ++i) {
+            if (i % 10 != 0) {
+                expected += chain(i, 5, -1);
+            }
+        }
+        assertEquals(expected, sum);
+    }
+
+    @Test
+    public void sameExceptionIsCaught() {
+        IllegalStateException exception = new IllegalStateException();
+        try {
+            rethrow(exception, 10);
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    @Test
+    public void nestedHandlersAndFinally() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            try {
+                sb.append('a');
+                chain(1, 3, 1);
+                sb.append('b');
+            } catch (IllegalArgumentException e) {
+                sb.append('c');
+            } finally {
+                sb.append('d');
+            }
+            sb.append('e');
+        } catch (IllegalStateException e) {
+            sb.append('f');
+        }
+        assertEquals("adf", sb.toString());
+    }
+
+    @Test
+    public void exceptionThrownFromHandlerPropagates() {
+        try {
+            try {
+                chain(1, 3, 0);
+            } catch (IllegalStateException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+            fail("Exception expected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("depth 0", e.getMessage());
+        }
+    }
+
+    private static int expectedSum(int count) {
+        int result = 0;
+        for (int i = 0; i < count; ++i) {
+            int value = i;
+            for (int depth = 20; depth > 0; --depth) {
+                result += step(value, depth);
+                value >>>= 1;
+            }
+            result += value & 7;
+        }
+        return result;
+    }
+
+    private static int chain(int value, int depth, int throwAt) {
+        if (depth == throwAt) {
+            throw new IllegalStateException("depth " + depth);
+        }
+        if (depth == 0) {
+            return value & 7;
+        }
+        return step(value, depth) + chain(value >>> 1, depth - 1, throwAt);
+    }
+
+    private static int step(int value, int depth) {
+        return (value ^ depth) & 3;
+    }
+
+    private static int catchingChain(int value, int depth, int throwAt) {
+        if (depth == 5) {
+            try {
+                return chain(value, depth, throwAt);
+            } catch (IllegalStateException e) {
+                return -1;
+            }
+        }
+        return step(value, depth) + catchingChain(value >>> 1, depth - 1, throwAt);
+    }
+
+    private static String classify(RuntimeException exception) {
+        try {
+            throwIfNotNull(exception);
+            return "none";
+        } catch (IllegalStateException e) {
+            return "state";
+        } catch (IllegalArgumentException e) {
+            return "argument";
+        } catch (RuntimeException e) {
+            return "runtime";
+        }
+    }
+
+    private static void catchOnlyArgument(RuntimeException exception) {
+        try {
+            throwIfNotNull(exception);
+        } catch (IllegalArgumentException e) {
+            fail("Wrong handler");
+        }
+    }
+
+    private static void throwIfNotNull(RuntimeException exception) {
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static void rethrow(RuntimeException exception, int depth) {
+        if (depth == 0) {
+            throw exception;
+        }
+        rethrow(exception, depth - 1);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class InstanceOfTest {
+    @Test
+    public void interfaceInheritedFromSuperclass() {
+        Object[] objects = { new C(), new D(), new E(), new A() };
+        int count = 0;
+        for (Object object : objects) {
+            if (object instanceof J) {
+                count++;
+            }
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void superinterfaceOfImplementedInterface() {
+        Object[] objects = { new A(), new E(), "foo" };
+        assertTrue(objects[0] instanceof I);
+        assertTrue(objects[1] instanceof I);
+        assertTrue(objects[1] instanceof K);
+        assertFalse(objects[2] instanceof I);
+        assertFalse(objects[0] instanceof K);
+    }
+
+    @Test
+    public void checksRepeatedly() {
+        Object[] objects = { new A(), new B(), new C(), new D(), new E() };
+        int count = 0;
+        for (int i = 0; i < 100; ++i) {
+            for (Object object : objects) {
+                if (object instanceof K) {
+                    count++;
+                }
+                if (object instanceof I) {
+                    count++;
+                }
+            }
+        }
+        assertEquals(600, count);
+    }
+
+    @Test
+    public void checksArrays() {
+        Object[] objects = { new J[0], new I[0], new int[0], new Object() };
+        assertTrue(objects[0] instanceof J[]);
+        assertFalse(objects[1] instanceof J[]);
+        assertTrue(objects[2] instanceof int[]);
+        assertFalse(objects[3] instanceof int[]);
+        assertTrue(objects[0] instanceof Object);
+    }
+
+    @Test
+    public void classAssignability() {
+        assertTrue(I.class.isAssignableFrom(E.class));
+        assertTrue(J.class.isAssignableFrom(D.class));
+        assertTrue(Object.class.isAssignableFrom(K.class));
+        assertTrue(K.class.isAssignableFrom(K.class));
+        assertFalse(K.class.isAssignableFrom(D.class));
+        assertFalse(E.class.isAssignableFrom(I.class));
+        assertTrue(J.class.isInstance(new E()));
+        assertFalse(K.class.isInstance(new B()));
+        Object object = new D();
+        assertSame(object, J.class.cast(object));
+    }
+
+    @Test
+    public void deepHierarchy() {
+        Object[] objects = { new C1(), new C4(), new C8(), new C12(), new C16(), new Other() };
+        int top = 0;
+        int bottom = 0;
+        int unrelated = 0;
+        int castable = 0;
+        int instances = 0;
+        for (int i = 0; i < 1000; ++i) {
+            Object object = objects[i % objects.length];
+            if (object instanceof I1) {
+                top++;
+            }
+            if (object instanceof I8) {
+                bottom++;
+            }
+            if (object instanceof Unrelated) {
+                unrelated++;
+            }
+            if (J3.class.cast(object) != null) {
+                castable++;
+            }
+            if (J1.class.isInstance(object)) {
+                instances++;
+            }
+        }
+        assertEquals(834, top);
+        assertEquals(834, bottom);
+        assertEquals(0, unrelated);
+        assertEquals(1000, castable);
+        assertEquals(667, instances);
+    }
+
+    @Test
+    public void castToUnrelatedInterfaceFails() {
+        Object object = new C16();
+        try {
+            Unrelated.class.cast(object);
+            fail("Exception expected");
+        } catch (ClassCastException e) {
+            // expected
+        }
+        assertTrue(J4.class.isInstance(object));
+        assertFalse(J1.class.isInstance(new C1()));
+    }
+
+    interface I {
+    }
+
+    interface J extends I {
+    }
+
+    interface K extends J {
+        int k();
+    }
+
+    static class A implements I {
+    }
+
+    static class B extends A {
+    }
+
+    static class C extends B implements J {
+    }
+
+    static class D extends C {
+    }
+
+    static class E extends D implements K {
+        @Override
+        public int k() {
+            return 5;
+        }
+    }
+
+    interface I1 {
+    }
+
+    interface I2 extends I1 {
+    }
+
+    interface I3 extends I2 {
+    }
+
+    interface I4 extends I3 {
+    }
+
+    interface I5 extends I4 {
+    }
+
+    interface I6 extends I5 {
+    }
+
+    interface I7 extends I6 {
+    }
+
+    interface I8 extends I7 {
+    }
+
+    interface J1 {
+    }
+
+    interface J2 extends J1 {
+    }
+
+    interface J3 {
+    }
+
+    interface J4 extends J3 {
+    }
+
+    interface Unrelated {
+    }
+
+    static class C1 implements I8, J4 {
+    }
+
+    static class C2 extends C1 implements J2 {
+    }
+
+    static class C3 extends C2 implements J4 {
+    }
+
+    static class C4 extends C3 {
+    }
+
+    static class C5 extends C4 implements J3 {
+    }
+
+    static class C6 extends C5 {
+    }
+
+    static class C7 extends C6 implements J2 {
+    }
+
+    static class C8 extends C7 {
+    }
+
+    static class C9 extends C8 {
+    }
+
+    static class C10 extends C9 implements J4 {
+    }
+
+    static class C11 extends C10 {
+    }
+
+    static class C12 extends C11 {
+    }
+
+    static class C13 extends C12 implements J3 {
+    }
+
+    static class C14 extends C13 {
+    }
+
+    static class C15 extends C14 {
+    }
+
+    static class C16 extends C15 implements J2 {
+    }
+
+    static class Other implements J3 {
+    }
+}
@@ -16,6 +16,7 @@
 package org.teavm.vm;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.teavm.junit.TeaVMTestRunner;
@@ -56,7 +57,91 @@ public class LongTest {
         assertEquals(0, a / b);
     }
 
+    @Test
+    public void overflowWrapsAround() {
+        assertEquals(Long.MIN_VALUE, id(Long.MAX_VALUE) + 1);
+        assertEquals(Long.MAX_VALUE, id(Long.MIN_VALUE) - 1);
+        assertEquals(-2L, id(Long.MAX_VALUE) * 2);
+        assertEquals(0x200000001L, id(0x100000001L) * id(0x100000001L) - id(0x100000000L) * 0x100000000L);
+        assertEquals(4611686018427387904L, id(1L << 62) * id(-4611686018427387903L));
+        long hash = id(0xCBF29CE484222325L);
+        for (int i = 0; i < 16; ++i) {
+            hash ^= i;
+            hash *= 0x100000001B3L;
+        }
+        assertEquals(8972538887847352181L, hash);
+    }
+
+    @Test
+    public void divisionAndRemainderKeepSign() {
+        assertEquals(-3L, id(-7) / 2);
+        assertEquals(-1L, id(-7) % 2);
+        assertEquals(-3L, id(7) / -2);
+        assertEquals(1L, id(7) % -2);
+        assertEquals(3L, id(-7) / -2);
+        assertEquals(-1L, id(-7) % -2);
+        assertEquals(-1317624576693539401L, id(Long.MIN_VALUE) / 7);
+        assertEquals(-1L, id(Long.MIN_VALUE) % 7);
+        assertEquals(Long.MIN_VALUE, id(Long.MIN_VALUE) / -1);
+        assertEquals(0L, id(Long.MIN_VALUE) % -1);
+    }
+
+    @Test
+    public void shiftsByLargeAmounts() {
+        assertEquals(0x10000000000L, id(1) << 40);
+        assertEquals(Long.MIN_VALUE, id(1) << 63);
+        assertEquals(0xFFFFFFFFL, id(-1) >>> 32);
+        assertEquals(-1L, id(-1) >> 40);
+        assertEquals(-0x80000000L, id(Long.MIN_VALUE) >> 32);
+        assertEquals(1L, id(Long.MIN_VALUE) >>> 63);
+        assertEquals(0x1234567L, id(0x1234567890000000L) >>> 36);
+        int shift = (int) id(65);
+        assertEquals(2L, id(1) << shift);
+        assertEquals(0x7FFFFFFFFFFFFFFFL, id(-1) >>> shift);
+        assertEquals(-1L, id(-2) >> shift);
+        shift = (int) id(64);
+        assertEquals(12345L, id(12345) << shift);
+    }
+
+    @Test
+    public void convertsToAndFromIntAndDouble() {
+        assertEquals(0x23456789, (int) id(0x123456789L));
+        assertEquals(Integer.MIN_VALUE, (int) id(0xFFFFFFFF80000000L));
+        assertEquals(-1, (int) id(0xFFFFFFFFL));
+        int negative = (int) id(-5);
+        assertEquals(-5L, (long) negative);
+        assertEquals(0xFFFFFFFBL, negative & 0xFFFFFFFFL);
+        assertEquals(9.223372036854776E18, (double) id(Long.MAX_VALUE), 0);
+        assertEquals(-9.223372036854776E18, (double) id(Long.MIN_VALUE), 0);
+        assertEquals(9007199254740993.0, (double) id(9007199254740993L), 0);
+        assertEquals(Long.MAX_VALUE, (long) idDouble(1e19));
+        assertEquals(Long.MIN_VALUE, (long) idDouble(-1e19));
+        assertEquals(0L, (long) idDouble(Double.NaN));
+        assertEquals(Long.MAX_VALUE, (long) idDouble(Double.POSITIVE_INFINITY));
+        assertEquals(-2L, (long) idDouble(-2.9));
+        assertEquals(4503599627370497L, (long) idDouble(4503599627370497.0));
+    }
+
+    @Test
+    public void minValue() {
+        long min = id(Long.MIN_VALUE);
+        assertEquals(min, -min);
+        assertEquals(min, Math.abs(min));
+        assertEquals("-9223372036854775808", Long.toString(min));
+        assertEquals("-8000000000000000", Long.toString(min, 16));
+        assertEquals(min, Long.parseLong("-9223372036854775808"));
+        assertTrue(Long.compare(min, Long.MAX_VALUE) < 0);
+        assertEquals(Integer.MIN_VALUE, Long.valueOf(min).hashCode());
+        assertTrue(min < 0);
+        assertTrue(min < id(Long.MAX_VALUE));
+        assertEquals(Long.MIN_VALUE, Long.valueOf(min).longValue());
+    }
+
     private static long id(long value) {
         return value;
     }
+
+    private static double idDouble(double value) {
+        return value;
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class LoopUnrollingTest {
+    @Test
+    public void fixedLoopUnrolled() {
+        int sum = 0;
+        for (int i = 0; i < 5; ++i) {
+            sum = sum * 3 + i;
+        }
+        assertEquals(58, sum);
+    }
+
+    @Test
+    public void loopOverConstantArray() {
+        int[] array = new int[5];
+        for (int i = 0; i < array.length; ++i) {
+            array[i] = i * i;
+        }
+        int sum = 0;
+        for (int i = array.length - 1; i >= 0; --i) {
+            sum = sum * 10 + array[i];
+        }
+        assertEquals(169410, sum);
+    }
+
+    @Test
+    public void loopWithStep() {
+        int sum = 0;
+        for (int i = 10; i > 0; i -= 3) {
+            sum = sum * 100 + i;
+        }
+        assertEquals(10070401, sum);
+    }
+
+    @Test
+    public void loopWithoutIterations() {
+        int sum = 1;
+        for (int i = 5; i < 3; ++i) {
+            sum += i;
+        }
+        assertEquals(1, sum);
+    }
+
+    @Test
+    public void counterAvailableAfterLoop() {
+        int i;
+        int sum = 0;
+        for (i = 0; i != 4; ++i) {
+            sum += i;
+        }
+        assertEquals(4, i);
+        assertEquals(6, sum);
+    }
+
+    @Test
+    public void nestedLoops() {
+        int sum = 0;
+        for (int i = 0; i < 3; ++i) {
+            for (int j = 0; j < 3; ++j) {
+                sum = sum * 2 + i * j;
+            }
+        }
+        assertEquals(40, sum);
+    }
+
+    @Test
+    public void loopWithEarlyExit() {
+        assertEquals(3, findFirst(new int[] { 1, 2, 3, 7, 9 }, 7));
+        assertEquals(-1, findFirst(new int[] { 1, 2, 3, 4, 5 }, 7));
+    }
+
+    private static int findFirst(int[] array, int value) {
+        for (int i = 0; i < 5; ++i) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void multiplicationReduced() {
+        assertEquals(2100, sumOfMultiples(10, 0, 20));
+        assertEquals(0, sumOfMultiples(10, 5, 5));
+        assertEquals(108, sumOfMultiples(-7, 0, 6));
+    }
+
+    private static int sumOfMultiples(int k, int from, int to) {
+        int sum = 0;
+        for (int i = from; i < to; ++i) {
+            sum += i * 10 + k;
+        }
+        return sum;
+    }
+
+    @Test
+    public void multiplicationReducedInNestedLoop() {
+        int[] matrix = new int[12];
+        int width = width();
+        for (int i = 0; i < 3; ++i) {
+            for (int j = 0; j < width; ++j) {
+                matrix[i * 4 + j] = i * 3 + j * 5;
+            }
+        }
+        int sum = 0;
+        for (int i = 0; i < matrix.length; ++i) {
+            sum += matrix[i] * (i + 1);
+        }
+        assertEquals(990, sum);
+    }
+
+    private static int width() {
+        return 4;
+    }
+
+    @Test
+    public void reducedMultiplicationOverflows() {
+        int sum = 0;
+        for (int i = 0; i < count(); ++i) {
+            sum += i * 1000000007;
+        }
+        int expected = 0;
+        for (int i = 0; i < count(); ++i) {
+            expected += (int) ((long) i * 1000000007L);
+        }
+        assertEquals(expected, sum);
+    }
+
+    private static int count() {
+        return 100;
+    }
+}
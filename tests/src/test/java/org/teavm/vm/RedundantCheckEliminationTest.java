@@ -0,0 +1,136 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class RedundantCheckEliminationTest {
+    @Test
+    public void indexCheckedInCountedLoop() {
+        int[] array = { 1, 2, 3, 4, 5 };
+        int sum = 0;
+        for (int i = 0; i < array.length; ++i) {
+            sum += get(array, i);
+        }
+        assertEquals(15, sum);
+    }
+
+    @Test
+    public void indexCheckedInReverseLoop() {
+        int[] array = { 1, 2, 3, 4, 5 };
+        int sum = 0;
+        for (int i = array.length - 1; i >= 0; --i) {
+            sum = sum * 10 + get(array, i);
+        }
+        assertEquals(54321, sum);
+    }
+
+    @Test
+    public void indexCheckedInNestedLoops() {
+        int[] array = { 1, 2, 3, 4 };
+        int sum = 0;
+        for (int i = 0; i < array.length; ++i) {
+            for (int j = i; j < array.length; ++j) {
+                sum += get(array, i) * get(array, j);
+            }
+        }
+        assertEquals(65, sum);
+    }
+
+    @Test
+    public void failingCheckKept() {
+        int[] array = { 1, 2, 3 };
+        int sum = 0;
+        try {
+            for (int i = 0; i <= array.length; ++i) {
+                sum += get(array, i);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            sum += 100;
+        }
+        assertEquals(106, sum);
+    }
+
+    @Test
+    public void checkAgainstOtherArrayKept() {
+        int[] first = new int[4];
+        int[] second = { 1, 2 };
+        int sum = 0;
+        try {
+            for (int i = 0; i < first.length; ++i) {
+                sum += get(second, i);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            sum += 100;
+        }
+        assertEquals(103, sum);
+    }
+
+    @Test
+    public void stringCharactersChecked() {
+        String text = "hello";
+        int sum = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            sum += text.charAt(i);
+        }
+        assertEquals(532, sum);
+    }
+
+    @Test
+    public void nullCheckOfAllocatedObject() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3; ++i) {
+            if (sb != null) {
+                sb.append(i);
+            }
+        }
+        assertEquals("012", sb.toString());
+    }
+
+    @Test
+    public void nullCheckOfNullableValueKept() {
+        assertEquals(-1, length(null));
+        assertEquals(3, length(new int[3]));
+    }
+
+    @Test
+    public void dereferencedValueIsNotNull() {
+        int[] array = create(2);
+        int length = array.length;
+        assertNotNull(array);
+        assertEquals(2, length);
+    }
+
+    private static int get(int[] array, int index) {
+        if (index < 0 || index >= array.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        return array[index];
+    }
+
+    private static int length(int[] array) {
+        return array != null ? array.length : -1;
+    }
+
+    private static int[] create(int length) {
+        return new int[length];
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import java.util.function.IntUnaryOperator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class ScalarReplacementTest {
+    @Test
+    public void valueHoldersInLoop() {
+        Vector sum = new Vector(0, 0);
+        for (int i = 0; i < 10; ++i) {
+            Vector delta = new Vector(i, i * 2);
+            sum.x += delta.x;
+            if ((i & 1) == 0) {
+                sum.y += delta.y;
+            }
+        }
+        assertEquals(45, sum.x, 0.0001);
+        assertEquals(40, sum.y, 0.0001);
+    }
+
+    @Test
+    public void defaultValuesRead() {
+        Holder holder = new Holder();
+        assertEquals(0, holder.count);
+        assertEquals(0L, holder.total);
+        assertEquals(0.0, holder.ratio, 0.0001);
+        assertNull(holder.tag);
+        for (int i = 0; i < 5; ++i) {
+            holder.count++;
+            holder.total += 1L << (30 + i);
+        }
+        assertEquals(5, holder.count);
+        assertEquals(31L << 30, holder.total);
+    }
+
+    @Test
+    public void objectsReturnedByFactory() {
+        int result = 0;
+        for (int i = 0; i < 7; ++i) {
+            Pair pair = Pair.of(i, 7 - i);
+            result += pair.first * pair.second;
+        }
+        assertEquals(56, result);
+    }
+
+    @Test
+    public void fieldsWrittenInBranches() {
+        assertEquals(50, branches(5));
+        assertEquals(2, branches(2));
+    }
+
+    private static int branches(int n) {
+        Pair pair = new Pair();
+        if (n > 3) {
+            pair.first = n;
+        } else {
+            pair.second = n;
+        }
+        return pair.first * 10 + pair.second;
+    }
+
+    @Test
+    public void fieldsWrittenInTryBlock() {
+        assertEquals(502, divide(2));
+        assertEquals(105, divide(0));
+    }
+
+    private static int divide(int n) {
+        Pair pair = new Pair();
+        pair.first = 1;
+        try {
+            pair.first = 10 / n;
+            pair.second = 2;
+        } catch (ArithmeticException e) {
+            pair.second = 5;
+        }
+        return pair.first * 100 + pair.second;
+    }
+
+    @Test
+    public void capturingLambda() {
+        int k = 3;
+        IntUnaryOperator add = x -> x + k;
+        int result = 0;
+        for (int i = 0; i < 5; ++i) {
+            result = add.applyAsInt(result);
+        }
+        assertEquals(15, result);
+    }
+
+    @Test
+    public void escapingObjectsKeepIdentity() {
+        Pair first = Pair.of(1, 2);
+        Pair second = Pair.of(1, 2);
+        assertNotSame(first, second);
+        first.first = 5;
+        assertEquals(1, second.first);
+    }
+
+    static class Vector {
+        double x;
+        double y;
+
+        Vector(double x, double y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    static class Holder {
+        int count;
+        long total;
+        double ratio;
+        Object tag;
+    }
+
+    static class Pair {
+        int first;
+        int second;
+
+        static Pair of(int first, int second) {
+            Pair pair = new Pair();
+            pair.first = first;
+            pair.second = second;
+            return pair;
+        }
+    }
+}
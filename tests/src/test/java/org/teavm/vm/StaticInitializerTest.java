@@ -0,0 +1,155 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class StaticInitializerTest {
+    @Test
+    public void lookupTablesComputed() {
+        assertArrayEquals(new int[] { 0, 1, 4, 9, 16, 25, 36, 49 }, Tables.SQUARES);
+        assertEquals('f', Tables.HEX[15]);
+        assertEquals(-128, Tables.BYTES[0]);
+        assertTrue(Tables.FLAGS[3]);
+        assertFalse(Tables.FLAGS[4]);
+        assertEquals(1L << 40, Tables.POWERS[40]);
+        assertEquals(0.5, Tables.HALVES[1], 0.0001);
+    }
+
+    @Test
+    public void scalarsComputed() {
+        assertEquals(5040, Scalars.FACTORIAL);
+        assertEquals(0x123456789L, Scalars.LONG_VALUE);
+        assertEquals(1.25, Scalars.RATIO, 0.0001);
+        assertEquals("seven", Scalars.NAME);
+        assertTrue(Scalars.ENABLED);
+    }
+
+    @Test
+    public void tableIsSharedAndMutable() {
+        int[] squares = Tables.SQUARES;
+        squares[0] = 100;
+        assertSame(squares, Tables.SQUARES);
+        assertEquals(100, Tables.SQUARES[0]);
+        squares[0] = 0;
+    }
+
+    @Test
+    public void aliasedArraysKeepIdentity() {
+        assertSame(Aliased.FIRST, Aliased.SECOND);
+    }
+
+    @Test
+    public void initializersWithSideEffectsRunLazily() {
+        int before = Log.count;
+        assertEquals(before, Log.count);
+        assertEquals(3, SideEffect.VALUE);
+        assertEquals(before + 1, Log.count);
+    }
+
+    @Test
+    public void initializersReadingOtherClassesRunLazily() {
+        Config.base = 21;
+        assertEquals(42, Dependent.VALUE);
+    }
+
+    static class Tables {
+        static final int[] SQUARES = new int[8];
+        static final char[] HEX = new char[16];
+        static final byte[] BYTES = new byte[4];
+        static final boolean[] FLAGS = new boolean[8];
+        static final long[] POWERS = new long[63];
+        static final double[] HALVES = new double[4];
+
+        static {
+            for (int i = 0; i < SQUARES.length; ++i) {
+                SQUARES[i] = i * i;
+            }
+            for (int i = 0; i < HEX.length; ++i) {
+                HEX[i] = digit(i);
+            }
+            for (int i = 0; i < BYTES.length; ++i) {
+                BYTES[i] = (byte) (128 + i);
+            }
+            for (int i = 0; i < FLAGS.length; ++i) {
+                FLAGS[i] = (i & 1) == 1;
+            }
+            for (int i = 0; i < POWERS.length; ++i) {
+                POWERS[i] = 1L << i;
+            }
+            for (int i = 0; i < HALVES.length; ++i) {
+                HALVES[i] = 1.0 / (1 << i);
+            }
+        }
+
+        private static char digit(int value) {
+            return (char) (value < 10 ? '0' + value : 'a' + value - 10);
+        }
+    }
+
+    static class Scalars {
+        static final int FACTORIAL;
+        static final long LONG_VALUE = (0x12345L << 16) | 0x6789;
+        static final double RATIO;
+        static final String NAME;
+        static final boolean ENABLED;
+
+        static {
+            int result = 1;
+            for (int i = 2; i <= 7; ++i) {
+                result *= i;
+            }
+            FACTORIAL = result;
+            RATIO = 5 / 4.0;
+            NAME = result > 5000 ? "seven" : "six";
+            ENABLED = FACTORIAL % 10 == 0;
+        }
+    }
+
+    static class Aliased {
+        static final int[] FIRST = { 1, 2, 3 };
+        static final int[] SECOND = FIRST;
+    }
+
+    static class Log {
+        static int count;
+    }
+
+    static class SideEffect {
+        static final int VALUE;
+
+        static {
+            Log.count++;
+            VALUE = 3;
+        }
+    }
+
+    static class Config {
+        static int base;
+    }
+
+    static class Dependent {
+        static final int VALUE = Config.base * 2;
+    }
+}
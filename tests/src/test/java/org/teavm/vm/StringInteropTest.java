@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.jso.JSBody;
+import org.teavm.jso.JSObject;
+import org.teavm.junit.SkipJVM;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class StringInteropTest {
+    @Test
+    public void buildsJson() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 3; ++i) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(i).append(",\"name\":\"");
+            escape(sb, "item \"" + i + "\"\n" + "line");
+            sb.append("\",\"active\":").append((i & 1) == 0).append('}');
+        }
+        String json = sb.append(']').toString();
+        assertEquals("[{\"id\":0,\"name\":\"item \\\"0\\\"\\nline\",\"active\":true},"
+                + "{\"id\":1,\"name\":\"item \\\"1\\\"\\nline\",\"active\":false},"
+                + "{\"id\":2,\"name\":\"item \\\"2\\\"\\nline\",\"active\":true}]", json);
+        assertEquals(750837300, json.hashCode());
+    }
+
+    @Test
+    public void parses() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; ++i) {
+            sb.append("key").append(i).append('=').append("value").append(i * 3).append(';');
+        }
+        String input = sb.toString();
+        int result = 0;
+        int count = 0;
+        int start = 0;
+        while (start < input.length()) {
+            int end = input.indexOf(';', start);
+            int eq = input.indexOf('=', start);
+            String key = input.substring(start, eq);
+            String value = input.substring(eq + 1, end);
+            if (key.startsWith("key") && value.endsWith("0")) {
+                result += value.length();
+            }
+            result += key.compareTo(value);
+            start = end + 1;
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(-1025, result);
+    }
+
+    @Test
+    public void usesStringsAsKeys() {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < 1000; ++i) {
+            String key = "user-" + (i % 50);
+            Integer count = map.get(key);
+            map.put(key, count != null ? count + 1 : 1);
+        }
+        assertEquals(50, map.size());
+        assertEquals(Integer.valueOf(20), map.get(new StringBuilder("user-").append(7).toString()));
+        int result = 0;
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            result += entry.getKey().hashCode() * entry.getValue();
+        }
+        assertEquals(-1484682764, result);
+    }
+
+    @Test
+    public void switchesOnBuiltString() {
+        int result = 0;
+        for (int i = 0; i < 4; ++i) {
+            switch ("case" + i) {
+                case "case0":
+                    result += 1;
+                    break;
+                case "case2":
+                    result += 10;
+                    break;
+                default:
+                    result += 100;
+                    break;
+            }
+        }
+        assertEquals(211, result);
+    }
+
+    @Test
+    @SkipJVM
+    public void passesStringsToJavaScript() {
+        Node node = createNode();
+        int result = 0;
+        for (int i = 0; i < 100; ++i) {
+            setText(node, "Row " + i + ": " + (i * 7 % 1000) + " items");
+            String text = getText(node);
+            result += text.length() + text.indexOf(':');
+        }
+        assertEquals(2263, result);
+
+        String text = "\u00e9t\u00e9 \ud83d\ude00";
+        setText(node, text);
+        String copy = getText(node);
+        assertEquals(text, copy);
+        assertEquals(text.hashCode(), copy.hashCode());
+        assertEquals(6, copy.length());
+        assertEquals(0x1F600, copy.codePointAt(4));
+    }
+
+    @Test
+    @SkipJVM
+    public void usesStringsFromJavaScriptAsKeys() {
+        Map<String, Integer> map = new HashMap<>();
+        map.put("foo", 1);
+        map.put(concat("b", "ar"), 2);
+        String foo = concat("f", "oo");
+        assertNotSame("foo", foo);
+        assertEquals(Integer.valueOf(1), map.get(foo));
+        assertEquals(Integer.valueOf(2), map.get("bar"));
+        assertTrue(foo.equals("foo"));
+        assertEquals(0, foo.compareTo("foo"));
+    }
+
+    private static void escape(StringBuilder sb, String text) {
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+    }
+
+    interface Node extends JSObject {
+    }
+
+    @JSBody(params = {}, script = "return { textContent: '' };")
+    private static native Node createNode();
+
+    @JSBody(params = { "node", "text" }, script = "node.textContent = text;")
+    private static native void setText(Node node, String text);
+
+    @JSBody(params = "node", script = "return node.textContent;")
+    private static native String getText(Node node);
+
+    @JSBody(params = { "a", "b" }, script = "return a + b;")
+    private static native String concat(String a, String b);
+}
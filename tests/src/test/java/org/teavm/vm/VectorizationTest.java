@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2016 Alexey Andreev.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.teavm.vm;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.teavm.interop.Vectors;
+import org.teavm.junit.TeaVMTestRunner;
+
+@RunWith(TeaVMTestRunner.class)
+public class VectorizationTest {
+    private static final int[] LENGTHS = { 0, 1, 3, 4, 5, 15, 16, 17, 33, 1000 };
+
+    @Test
+    public void scaleAddMatchesLoop() {
+        for (int length : LENGTHS) {
+            float[] x = new float[length];
+            float[] y = new float[length];
+            float[] expected = new float[length];
+            for (int i = 0; i < length; ++i) {
+                x[i] = (i % 201 - 100) / 8f;
+                y[i] = (i % 37 - 18) / 4f;
+                expected[i] = 0.5f * x[i] + y[i];
+            }
+            Vectors.scaleAdd(0.5f, x, y);
+            for (int i = 0; i < length; ++i) {
+                assertEquals(expected[i], y[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void convolutionMatchesLoop() {
+        for (int length : LENGTHS) {
+            float[] signal = new float[length + 2];
+            for (int i = 0; i < signal.length; ++i) {
+                signal[i] = i % 7;
+            }
+            float[] result = new float[length];
+            convolve(signal, result, 0.25f, 0.5f, 0.25f);
+            for (int i = 0; i < length; ++i) {
+                assertEquals((signal[i] + 2 * signal[i + 1] + signal[i + 2]) / 4, result[i], 0);
+            }
+        }
+    }
+
+    private static void convolve(float[] signal, float[] result, float k0, float k1, float k2) {
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = signal[i] * k0 + signal[i + 1] * k1 + signal[i + 2] * k2;
+        }
+    }
+
+    @Test
+    public void byteSumsMatchLoop() {
+        for (int length : LENGTHS) {
+            byte[] bytes = new byte[length];
+            int sum = 0;
+            int unsignedSum = 0;
+            for (int i = 0; i < length; ++i) {
+                bytes[i] = (byte) (i * 37 + 11);
+                sum += bytes[i];
+                unsignedSum += bytes[i] & 0xFF;
+            }
+            assertEquals(sum, Vectors.sum(bytes));
+            assertEquals(unsignedSum, Vectors.sumUnsigned(bytes));
+        }
+        assertEquals(-128 * 17, Vectors.sum(filled(17, (byte) -128)));
+        assertEquals(255 * 17, Vectors.sumUnsigned(filled(17, (byte) -1)));
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] array = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            array[i] = value;
+        }
+        return array;
+    }
+
+    @Test
+    public void intArithmeticMatchesLoop() {
+        for (int length : LENGTHS) {
+            int[] a = new int[length];
+            int[] b = new int[length];
+            int expectedSum = 0;
+            for (int i = 0; i < length; ++i) {
+                a[i] = i % 1000 - 500;
+                b[i] = 3 - i % 11;
+                expectedSum += a[i] * b[i] + a[i];
+            }
+            int[] result = new int[length];
+            Vectors.multiply(a, b, result);
+            Vectors.add(result, a, result);
+            for (int i = 0; i < length; ++i) {
+                assertEquals(a[i] * b[i] + a[i], result[i]);
+            }
+            assertEquals(expectedSum, Vectors.sum(result));
+        }
+    }
+
+    @Test
+    public void resultLengthLimitsOperation() {
+        int[] a = { 1, 2, 3, 4, 5, 6, 7 };
+        int[] result = new int[5];
+        Vectors.add(a, a, result);
+        assertEquals(30, Vectors.sum(result));
+        Vectors.fill(result, -1);
+        assertEquals(-5, Vectors.sum(result));
+    }
+}
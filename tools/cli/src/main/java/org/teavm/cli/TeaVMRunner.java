@@ -68,6 +68,48 @@ public final class TeaVMRunner {
                 .hasArg()
                 .withArgName("number")
                 .create("O"));
+        options.addOption(OptionBuilder
+                .withDescription("number of threads used to optimize methods (1 by default)")
+                .hasArg()
+                .withArgName("number")
+                .withLongOpt("optimization-threads")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("number of threads used to propagate types during dependency analysis "
+                        + "(1 by default)")
+                .hasArg()
+                .withArgName("number")
+                .withLongOpt("dependency-analysis-threads")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("instrument generated code to collect call profile, which is printed by "
+                        + "dumpCallProfile() function")
+                .withLongOpt("instrument-call-profile")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("call profile collected by an instrumented build, used to optimize hot call sites")
+                .hasArg()
+                .withArgName("file")
+                .withLongOpt("call-profile")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("report how many null checks and index checks were removed from each method")
+                .withLongOpt("report-removed-checks")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("report size of WebAssembly binary before and after optimizations "
+                        + "and number of avoided GC root stores")
+                .withLongOpt("report-wasm-optimizations")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("vectorize loops over arrays using WebAssembly SIMD instructions")
+                .withLongOpt("wasm-simd")
+                .create());
+        options.addOption(OptionBuilder
+                .withDescription("propagate exceptions using WebAssembly exception handling instructions "
+                        + "(produces only C and wast files)")
+                .withLongOpt("wasm-native-exceptions")
+                .create());
         options.addOption(OptionBuilder
                 .withArgName("separate|merge|none")
                 .hasArg()
@@ -200,6 +242,53 @@ public final class TeaVMRunner {
             }
         }
 
+        if (commandLine.hasOption("optimization-threads")) {
+            int threads;
+            try {
+                threads = Integer.parseInt(commandLine.getOptionValue("optimization-threads"));
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads < 1) {
+                System.err.print("Wrong number of optimization threads");
+                printUsage(options);
+                return;
+            }
+            tool.setOptimizationThreads(threads);
+        }
+        if (commandLine.hasOption("dependency-analysis-threads")) {
+            int threads;
+            try {
+                threads = Integer.parseInt(commandLine.getOptionValue("dependency-analysis-threads"));
+            } catch (NumberFormatException e) {
+                threads = 0;
+            }
+            if (threads < 1) {
+                System.err.print("Wrong number of dependency analysis threads");
+                printUsage(options);
+                return;
+            }
+            tool.setDependencyAnalysisThreads(threads);
+        }
+        if (commandLine.hasOption("instrument-call-profile")) {
+            tool.setCallProfileInstrumentation(true);
+        }
+        if (commandLine.hasOption("call-profile")) {
+            tool.setCallProfileFile(new File(commandLine.getOptionValue("call-profile")));
+        }
+        if (commandLine.hasOption("report-removed-checks")) {
+            tool.setRemovedChecksReported(true);
+        }
+        if (commandLine.hasOption("report-wasm-optimizations")) {
+            tool.setWasmOptimizationReported(true);
+        }
+        if (commandLine.hasOption("wasm-simd")) {
+            tool.setWasmSimdEnabled(true);
+        }
+        if (commandLine.hasOption("wasm-native-exceptions")) {
+            tool.setWasmNativeExceptionsEnabled(true);
+        }
+
         if (commandLine.hasOption('S')) {
             tool.setSourceMapsFileGenerated(true);
         }
@@ -16,6 +16,7 @@
 package org.teavm.tooling;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,12 +31,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import org.apache.commons.io.IOUtils;
 import org.teavm.backend.javascript.JavaScriptTarget;
 import org.teavm.backend.javascript.rendering.RenderingManager;
 import org.teavm.backend.wasm.WasmTarget;
+import org.teavm.backend.wasm.optimization.WasmOptimizationReport;
 import org.teavm.backend.wasm.render.WasmBinaryVersion;
 import org.teavm.cache.DiskCachedClassHolderSource;
 import org.teavm.cache.DiskProgramCache;
@@ -54,6 +57,7 @@ import org.teavm.model.MethodReader;
 import org.teavm.model.MethodReference;
 import org.teavm.model.PreOptimizingClassHolderSource;
 import org.teavm.model.ProgramReader;
+import org.teavm.model.optimization.CallProfile;
 import org.teavm.parsing.ClasspathClassHolderSource;
 import org.teavm.tooling.sources.SourceFileProvider;
 import org.teavm.tooling.sources.SourceFilesCopier;
@@ -95,11 +99,24 @@ public class TeaVMTool implements BaseTeaVMTool {
     private TeaVMProgressListener progressListener;
     private TeaVM vm;
     private TeaVMOptimizationLevel optimizationLevel = TeaVMOptimizationLevel.SIMPLE;
+    private int optimizationThreads = 1;
+    private int dependencyAnalysisThreads = 1;
+    private boolean callProfileInstrumentation;
+    private File callProfileFile;
+    private boolean removedChecksReported;
+    private boolean wasmOptimizationReported;
+    private boolean wasmSimdEnabled;
+    private boolean wasmNativeExceptionsEnabled;
     private List<SourceFileProvider> sourceFileProviders = new ArrayList<>();
     private DebugInformationBuilder debugEmitter;
     private JavaScriptTarget javaScriptTarget;
     private WasmTarget webAssemblyTarget;
     private WasmBinaryVersion wasmVersion = WasmBinaryVersion.V_0xC;
+    private int minHeapSize = 8 * 1024 * 1024;
+    private boolean bigIntLongs;
+    private boolean lazyMetadata;
+    private boolean nativeStrings;
+    private int maxHeapSize = 128 * 1024 * 1024;
 
     public File getTargetDirectory() {
         return targetDirectory;
@@ -238,6 +255,70 @@ public class TeaVMTool implements BaseTeaVMTool {
         this.optimizationLevel = optimizationLevel;
     }
 
+    public int getOptimizationThreads() {
+        return optimizationThreads;
+    }
+
+    public void setOptimizationThreads(int optimizationThreads) {
+        this.optimizationThreads = optimizationThreads;
+    }
+
+    public boolean isCallProfileInstrumentation() {
+        return callProfileInstrumentation;
+    }
+
+    public void setCallProfileInstrumentation(boolean callProfileInstrumentation) {
+        this.callProfileInstrumentation = callProfileInstrumentation;
+    }
+
+    public File getCallProfileFile() {
+        return callProfileFile;
+    }
+
+    public void setCallProfileFile(File callProfileFile) {
+        this.callProfileFile = callProfileFile;
+    }
+
+    public boolean isRemovedChecksReported() {
+        return removedChecksReported;
+    }
+
+    public void setRemovedChecksReported(boolean removedChecksReported) {
+        this.removedChecksReported = removedChecksReported;
+    }
+
+    public boolean isWasmOptimizationReported() {
+        return wasmOptimizationReported;
+    }
+
+    public void setWasmOptimizationReported(boolean wasmOptimizationReported) {
+        this.wasmOptimizationReported = wasmOptimizationReported;
+    }
+
+    public boolean isWasmSimdEnabled() {
+        return wasmSimdEnabled;
+    }
+
+    public void setWasmSimdEnabled(boolean wasmSimdEnabled) {
+        this.wasmSimdEnabled = wasmSimdEnabled;
+    }
+
+    public boolean isWasmNativeExceptionsEnabled() {
+        return wasmNativeExceptionsEnabled;
+    }
+
+    public void setWasmNativeExceptionsEnabled(boolean wasmNativeExceptionsEnabled) {
+        this.wasmNativeExceptionsEnabled = wasmNativeExceptionsEnabled;
+    }
+
+    public int getDependencyAnalysisThreads() {
+        return dependencyAnalysisThreads;
+    }
+
+    public void setDependencyAnalysisThreads(int dependencyAnalysisThreads) {
+        this.dependencyAnalysisThreads = dependencyAnalysisThreads;
+    }
+
     public ClassLoader getClassLoader() {
         return classLoader;
     }
@@ -255,6 +336,46 @@ public class TeaVMTool implements BaseTeaVMTool {
         this.wasmVersion = wasmVersion;
     }
 
+    public boolean isBigIntLongs() {
+        return bigIntLongs;
+    }
+
+    public void setBigIntLongs(boolean bigIntLongs) {
+        this.bigIntLongs = bigIntLongs;
+    }
+
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
+    public boolean isNativeStrings() {
+        return nativeStrings;
+    }
+
+    public void setNativeStrings(boolean nativeStrings) {
+        this.nativeStrings = nativeStrings;
+    }
+
+    public int getMinHeapSize() {
+        return minHeapSize;
+    }
+
+    public void setMinHeapSize(int minHeapSize) {
+        this.minHeapSize = minHeapSize;
+    }
+
+    public int getMaxHeapSize() {
+        return maxHeapSize;
+    }
+
+    public void setMaxHeapSize(int maxHeapSize) {
+        this.maxHeapSize = maxHeapSize;
+    }
+
     public void setProgressListener(TeaVMProgressListener progressListener) {
         this.progressListener = progressListener;
     }
@@ -325,6 +446,9 @@ public class TeaVMTool implements BaseTeaVMTool {
     private TeaVMTarget prepareJavaScriptTarget() {
         javaScriptTarget = new JavaScriptTarget();
         javaScriptTarget.setMinifying(minifying);
+        javaScriptTarget.setBigIntLongs(bigIntLongs);
+        javaScriptTarget.setLazyMetadata(lazyMetadata);
+        javaScriptTarget.setNativeStrings(nativeStrings);
 
         debugEmitter = debugInformationGenerated || sourceMapsFileGenerated
                 ? new DebugInformationBuilder() : null;
@@ -343,6 +467,12 @@ public class TeaVMTool implements BaseTeaVMTool {
         webAssemblyTarget.setCEmitted(debugInformationGenerated);
         webAssemblyTarget.setWastEmitted(debugInformationGenerated);
         webAssemblyTarget.setVersion(wasmVersion);
+        webAssemblyTarget.setMinHeapSize(minHeapSize);
+        webAssemblyTarget.setMaxHeapSize(maxHeapSize);
+        webAssemblyTarget.setOptimized(optimizationLevel != TeaVMOptimizationLevel.SIMPLE);
+        webAssemblyTarget.setOptimizationReported(wasmOptimizationReported);
+        webAssemblyTarget.setSimdEnabled(wasmSimdEnabled);
+        webAssemblyTarget.setNativeExceptionsEnabled(wasmNativeExceptionsEnabled);
         return webAssemblyTarget;
     }
 
@@ -351,6 +481,8 @@ public class TeaVMTool implements BaseTeaVMTool {
             cancelled = false;
             log.info("Building JavaScript file");
             TeaVMBuilder vmBuilder = new TeaVMBuilder(prepareTarget());
+            vmBuilder.setOptimizationThreads(optimizationThreads);
+            vmBuilder.setDependencyAnalysisThreads(dependencyAnalysisThreads);
             if (incremental) {
                 cacheDirectory.mkdirs();
                 symbolTable = new FileSymbolTable(new File(cacheDirectory, "symbols"));
@@ -384,6 +516,13 @@ public class TeaVMTool implements BaseTeaVMTool {
             vm.setProgramCache(programCache);
             vm.setIncremental(incremental);
             vm.setOptimizationLevel(optimizationLevel);
+            vm.setCallProfileInstrumentation(callProfileInstrumentation);
+            vm.setRemovedChecksReported(removedChecksReported);
+            if (callProfileFile != null) {
+                try (Reader reader = new InputStreamReader(new FileInputStream(callProfileFile), "UTF-8")) {
+                    vm.setCallProfile(CallProfile.read(reader));
+                }
+            }
 
             vm.installPlugins();
             for (ClassHolderTransformer transformer : transformers) {
@@ -441,6 +580,12 @@ public class TeaVMTool implements BaseTeaVMTool {
                 log.info("Output file built with errors");
                 TeaVMProblemRenderer.describeProblems(vm, log);
             }
+            if (removedChecksReported) {
+                reportRemovedChecks(vm);
+            }
+            if (targetType == TeaVMTargetType.WEBASSEMBLY && webAssemblyTarget.getOptimizationReport() != null) {
+                reportWasmOptimizations(webAssemblyTarget.getOptimizationReport());
+            }
 
             if (targetType == TeaVMTargetType.JAVASCRIPT) {
                 try (OutputStream output = new FileOutputStream(new File(targetDirectory, outputName), true)) {
@@ -478,6 +623,32 @@ public class TeaVMTool implements BaseTeaVMTool {
         return targetFileName;
     }
 
+    private void reportRemovedChecks(TeaVM vm) {
+        List<Map.Entry<MethodReference, Integer>> entries = new ArrayList<>(vm.getRemovedChecks().entrySet());
+        entries.sort((a, b) -> a.getKey().toString().compareTo(b.getKey().toString()));
+        int total = 0;
+        for (Map.Entry<MethodReference, Integer> entry : entries) {
+            log.info("Removed " + entry.getValue() + " checks from " + entry.getKey());
+            total += entry.getValue();
+        }
+        log.info("Removed " + total + " checks from " + entries.size() + " methods");
+    }
+
+    private void reportWasmOptimizations(WasmOptimizationReport report) {
+        int saved = report.getOriginalSize() - report.getOptimizedSize();
+        log.info("WebAssembly binary size is " + report.getOptimizedSize() + " bytes, " + saved
+                + " bytes saved by optimizations (" + report.getOriginalSize() + " bytes before)");
+        log.info("Vectorized " + report.getVectorizedLoops() + " loops");
+        log.info("Folded " + report.getFoldedExpressions() + " expressions, flattened "
+                + report.getFlattenedBlocks() + " blocks");
+        log.info("Eliminated " + report.getEliminatedLoads() + " redundant loads, formed "
+                + report.getFormedTees() + " tee_local instructions, removed "
+                + report.getRemovedAssignments() + " assignments");
+        log.info("Removed " + report.getRemovedLocals() + " locals");
+        log.info("Emitted " + report.getGCRootStores() + " GC root stores, " + report.getRemovedGCRootStores()
+                + " stores avoided, " + report.getSkippedGCCallSites() + " calls never trigger GC");
+    }
+
     private void additionalJavaScriptOutput(Writer writer) throws IOException {
         if (mainClass != null) {
             writer.append("main = $rt_mainStarter(main);\n");
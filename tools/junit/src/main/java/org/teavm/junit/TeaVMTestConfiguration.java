@@ -76,4 +76,58 @@ interface TeaVMTestConfiguration {
             target.setMinifying(true);
         }
     };
+
+    TeaVMTestConfiguration LAZY_METADATA = new TeaVMTestConfiguration() {
+        @Override
+        public String getSuffix() {
+            return "lazy";
+        }
+
+        @Override
+        public void apply(TeaVM vm) {
+            vm.setOptimizationLevel(TeaVMOptimizationLevel.SIMPLE);
+        }
+
+        @Override
+        public void apply(JavaScriptTarget target) {
+            target.setMinifying(false);
+            target.setLazyMetadata(true);
+        }
+    };
+
+    TeaVMTestConfiguration NATIVE_STRINGS = new TeaVMTestConfiguration() {
+        @Override
+        public String getSuffix() {
+            return "native-strings";
+        }
+
+        @Override
+        public void apply(TeaVM vm) {
+            vm.setOptimizationLevel(TeaVMOptimizationLevel.SIMPLE);
+        }
+
+        @Override
+        public void apply(JavaScriptTarget target) {
+            target.setMinifying(false);
+            target.setNativeStrings(true);
+        }
+    };
+
+    TeaVMTestConfiguration BIG_INT_LONGS = new TeaVMTestConfiguration() {
+        @Override
+        public String getSuffix() {
+            return "bigint";
+        }
+
+        @Override
+        public void apply(TeaVM vm) {
+            vm.setOptimizationLevel(TeaVMOptimizationLevel.SIMPLE);
+        }
+
+        @Override
+        public void apply(JavaScriptTarget target) {
+            target.setMinifying(false);
+            target.setBigIntLongs(true);
+        }
+    };
 }
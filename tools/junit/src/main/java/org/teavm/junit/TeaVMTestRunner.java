@@ -407,6 +407,15 @@ public class TeaVMTestRunner extends Runner {
         if (Boolean.parseBoolean(System.getProperty("teavm.junit.optimized", "false"))) {
             configurations.add(TeaVMTestConfiguration.OPTIMIZED);
         }
+        if (Boolean.parseBoolean(System.getProperty("teavm.junit.lazyMetadata", "false"))) {
+            configurations.add(TeaVMTestConfiguration.LAZY_METADATA);
+        }
+        if (Boolean.parseBoolean(System.getProperty("teavm.junit.nativeStrings", "false"))) {
+            configurations.add(TeaVMTestConfiguration.NATIVE_STRINGS);
+        }
+        if (Boolean.parseBoolean(System.getProperty("teavm.junit.bigIntLongs", "false"))) {
+            configurations.add(TeaVMTestConfiguration.BIG_INT_LONGS);
+        }
         return configurations;
     }
 
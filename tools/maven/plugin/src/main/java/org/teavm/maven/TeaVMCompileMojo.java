@@ -69,6 +69,30 @@ public class TeaVMCompileMojo extends AbstractTeaVMMojo {
     @Parameter
     private TeaVMOptimizationLevel optimizationLevel = TeaVMOptimizationLevel.SIMPLE;
 
+    @Parameter
+    private int optimizationThreads = 1;
+
+    @Parameter
+    private int dependencyAnalysisThreads = 1;
+
+    @Parameter
+    private boolean callProfileInstrumentation;
+
+    @Parameter
+    private File callProfileFile;
+
+    @Parameter
+    private boolean removedChecksReported;
+
+    @Parameter
+    private boolean wasmOptimizationReported;
+
+    @Parameter
+    private boolean wasmSimdEnabled;
+
+    @Parameter
+    private boolean wasmNativeExceptionsEnabled;
+
     @Parameter
     private TeaVMTargetType targetType = TeaVMTargetType.JAVASCRIPT;
 
@@ -80,6 +104,21 @@ public class TeaVMCompileMojo extends AbstractTeaVMMojo {
     @Parameter
     private WasmBinaryVersion wasmVersion = WasmBinaryVersion.V_0xC;
 
+    @Parameter
+    private int minHeapSize = 8 * 1024 * 1024;
+
+    @Parameter
+    private int maxHeapSize = 128 * 1024 * 1024;
+
+    @Parameter
+    private boolean bigIntLongs;
+
+    @Parameter
+    private boolean lazyMetadata;
+
+    @Parameter
+    private boolean nativeStrings;
+
     @Override
     protected File getTargetDirectory() {
         return targetDirectory;
@@ -98,6 +137,14 @@ public class TeaVMCompileMojo extends AbstractTeaVMMojo {
                 tool.setTargetFileName(targetFileName);
             }
             tool.setOptimizationLevel(optimizationLevel);
+            tool.setOptimizationThreads(optimizationThreads);
+            tool.setDependencyAnalysisThreads(dependencyAnalysisThreads);
+            tool.setCallProfileInstrumentation(callProfileInstrumentation);
+            tool.setCallProfileFile(callProfileFile);
+            tool.setRemovedChecksReported(removedChecksReported);
+            tool.setWasmOptimizationReported(wasmOptimizationReported);
+            tool.setWasmSimdEnabled(wasmSimdEnabled);
+            tool.setWasmNativeExceptionsEnabled(wasmNativeExceptionsEnabled);
             if (classAliases != null) {
                 tool.getClassAliases().addAll(Arrays.asList(classAliases));
             }
@@ -107,6 +154,11 @@ public class TeaVMCompileMojo extends AbstractTeaVMMojo {
             tool.setCacheDirectory(cacheDirectory);
             tool.setTargetType(targetType);
             tool.setWasmVersion(wasmVersion);
+            tool.setMinHeapSize(minHeapSize);
+            tool.setMaxHeapSize(maxHeapSize);
+            tool.setBigIntLongs(bigIntLongs);
+            tool.setLazyMetadata(lazyMetadata);
+            tool.setNativeStrings(nativeStrings);
             tool.generate();
             if (stopOnErrors && !tool.getProblemProvider().getSevereProblems().isEmpty()) {
                 throw new MojoExecutionException("Build error");